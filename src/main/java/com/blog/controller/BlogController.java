@@ -2,34 +2,53 @@ package com.blog.controller;
 
 import com.blog.dao.BlogPostDAO;
 import com.blog.dao.MediaDAO;
+import com.blog.model.AnalyticsEvent;
 import com.blog.model.BlogPost;
 import com.blog.model.Media;
+import com.blog.model.PostCursor;
+import com.blog.model.PostPage;
+import com.blog.model.PostStats;
+import com.blog.model.PostSummary;
+import com.blog.model.SearchResult;
+import com.blog.model.TrendingPost;
 import com.blog.model.User;
 import com.blog.service.AnalyticsService;
+import com.blog.service.PostPopularity;
+import com.blog.service.ThumbnailStore;
+import com.blog.util.DatabaseSetup;
 import com.blog.util.DatabaseUtil;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 public class BlogController {
+    // Loaded posts kept for re-opening and permission checks
+    private static final int POST_CACHE_SIZE = Integer.getInteger("blog.postCache.size", 100);
+    private static final long POST_CACHE_TTL_MILLIS = Long.getLong("blog.postCache.ttlMillis", 60_000L);
+    
     private final BlogPostDAO blogPostDAO;
     private final MediaDAO mediaDAO;
     private final UserController userController;
     private final CommentController commentController;
     private final LikeController likeController;
     private final AnalyticsService analyticsService;
+    private final PostCache postCache;
 
     public BlogController(UserController userController) {
         this.blogPostDAO = new BlogPostDAO();
         this.mediaDAO = new MediaDAO();
         this.userController = userController;
-        this.commentController = new CommentController(userController);
-        this.likeController = new LikeController(userController);
+        this.postCache = new PostCache(POST_CACHE_SIZE, POST_CACHE_TTL_MILLIS);
+        // Comment and reaction writes drop the post they belong to from the cache
+        this.commentController = new CommentController(userController, postCache::invalidate);
+        this.likeController = new LikeController(userController, postCache::invalidate);
         this.analyticsService = AnalyticsService.getInstance();
     }
 
@@ -63,15 +82,8 @@ public class BlogController {
         
         // Track event if successful
         if (success && post.getId() > 0) {
-            Map<String, Object> properties = new HashMap<>();
-            properties.put("postId", post.getId());
-            properties.put("title", title);
-            properties.put("status", status);
-            properties.put("tags", tags);
-            properties.put("contentLength", content.length());
-            
-            analyticsService.trackEvent(AnalyticsService.EVENT_POST_CREATE, 
-                currentUser, properties);
+            analyticsService.trackEvent(AnalyticsService.EVENT_POST_CREATE, currentUser, post.getId(),
+                AnalyticsEvent.ATTR_CONTENT_LENGTH, content.length());
         }
         
         return success;
@@ -87,7 +99,7 @@ public class BlogController {
         }
 
         // Validate post ownership
-        Optional<BlogPost> postOpt = blogPostDAO.getPostById(postId);
+        Optional<BlogPost> postOpt = getPostById(postId);
         if (postOpt.isEmpty() || postOpt.get().getAuthor().getId() != userController.getCurrentUser().getId()) {
             return false;
         }
@@ -106,7 +118,9 @@ public class BlogController {
             media.setCaption(caption);
             
             // Save media
-            return mediaDAO.saveMedia(media);
+            boolean success = mediaDAO.saveMedia(media);
+            postCache.invalidate(postId);
+            return success;
             
         } catch (IOException e) {
             System.err.println("Error reading file: " + e.getMessage());
@@ -124,7 +138,7 @@ public class BlogController {
         }
 
         // Validate post ownership
-        Optional<BlogPost> postOpt = blogPostDAO.getPostById(postId);
+        Optional<BlogPost> postOpt = getPostById(postId);
         if (postOpt.isEmpty() || postOpt.get().getAuthor().getId() != userController.getCurrentUser().getId()) {
             return false;
         }
@@ -135,7 +149,9 @@ public class BlogController {
         media.setCaption(caption);
         
         // Save media
-        return mediaDAO.saveMedia(media);
+        boolean success = mediaDAO.saveMedia(media);
+        postCache.invalidate(postId);
+        return success;
     }
     
     /**
@@ -155,13 +171,16 @@ public class BlogController {
 
         // Check post ownership
         Media media = mediaOpt.get();
-        Optional<BlogPost> postOpt = blogPostDAO.getPostById(media.getPostId());
+        Optional<BlogPost> postOpt = getPostById(media.getPostId());
         if (postOpt.isEmpty() || postOpt.get().getAuthor().getId() != userController.getCurrentUser().getId()) {
             return false;
         }
 
         // Delete the media
-        return mediaDAO.deleteMedia(mediaId);
+        boolean success = mediaDAO.deleteMedia(mediaId);
+        postCache.invalidate(media.getPostId());
+        ThumbnailStore.getInstance().invalidate(mediaId);
+        return success;
     }
 
     /**
@@ -179,13 +198,22 @@ public class BlogController {
     }
     
     /**
-     * Get all blog posts (for admin)
+     * Get a page of published blog posts, newest first
+     * @param after cursor from the previous page, or null for the first page
+     * @param limit maximum number of posts in the page
+     */
+    public PostPage getAllPosts(PostCursor after, int limit) {
+        return blogPostDAO.getPublishedPostsPage(after, limit);
+    }
+    
+    /**
+     * Get summaries of all blog posts in any status (for admin)
      */
-    public List<BlogPost> getAllPostsForAdmin() {
+    public List<PostSummary> getAllPostsForAdmin() {
         if (!userController.isLoggedIn() || !userController.isCurrentUserAdmin()) {
             return List.of();
         }
-        return blogPostDAO.getAllPostsForAdmin();
+        return blogPostDAO.getPostSummariesForAdmin();
     }
 
     /**
@@ -199,6 +227,17 @@ public class BlogController {
         return blogPostDAO.getPostsByUser(userController.getCurrentUser().getId());
     }
     
+    /**
+     * Get a page of the current user's posts, newest first
+     */
+    public PostPage getCurrentUserPosts(PostCursor after, int limit) {
+        if (!userController.isLoggedIn()) {
+            return PostPage.empty();
+        }
+        
+        return blogPostDAO.getPostsByUserPage(userController.getCurrentUser().getId(), after, limit);
+    }
+    
     /**
      * Get posts by a specific tag
      */
@@ -209,11 +248,45 @@ public class BlogController {
         
         return blogPostDAO.getPostsByTag(tag.trim());
     }
+    
+    /**
+     * Get a page of posts with a specific tag, newest first
+     */
+    public PostPage getPostsByTag(String tag, PostCursor after, int limit) {
+        if (tag == null || tag.trim().isEmpty()) {
+            return PostPage.empty();
+        }
+        
+        return blogPostDAO.getPostsByTagPage(tag.trim(), after, limit);
+    }
+    
+    /**
+     * Get the tags of all published posts with how many posts use each, most
+     * used first
+     */
+    public Map<String, Integer> getTagCounts() {
+        return blogPostDAO.getTagCounts();
+    }
+    
+    /**
+     * Get like, dislike and comment counts for a page of posts, with the
+     * current user's reaction to each, in one query
+     * @return stats keyed by post id; posts that don't exist are left out
+     */
+    public Map<Integer, PostStats> getPostStats(Collection<Integer> postIds) {
+        int userId = userController.isLoggedIn() ? userController.getCurrentUser().getId() : 0;
+        return blogPostDAO.getPostStats(postIds, userId);
+    }
 
     /**
-     * Get a specific blog post by ID
+     * Get a specific blog post by ID, with its media, comments and likes.
+     * Served from the post cache when it was loaded recently.
      */
     public Optional<BlogPost> getPostById(int id) {
+        return postCache.get(id, this::loadPost);
+    }
+    
+    private BlogPost loadPost(int id) {
         Optional<BlogPost> postOpt = blogPostDAO.getPostById(id);
         
         if (postOpt.isPresent()) {
@@ -225,10 +298,10 @@ public class BlogController {
             // Load likes
             post.setLikes(likeController.getLikesForPost(id));
             
-            return Optional.of(post);
+            return post;
         }
         
-        return Optional.empty();
+        return null;
     }
     
     /**
@@ -243,7 +316,7 @@ public class BlogController {
             // Increment the view count in the database
             blogPostDAO.incrementViewCount(id);
             
-            // Update the view count in the post object
+            // Update the view count in the post object, which is also the cached copy
             post.incrementViewCount();
             
             return Optional.of(post);
@@ -268,7 +341,7 @@ public class BlogController {
         }
 
         // Get the post
-        Optional<BlogPost> postOpt = blogPostDAO.getPostById(postId);
+        Optional<BlogPost> postOpt = getPostById(postId);
         if (postOpt.isEmpty()) {
             return false;
         }
@@ -281,29 +354,19 @@ public class BlogController {
             return false;
         }
 
-        // Update the post
-        post.setTitle(title);
-        post.setContent(content);
-        post.setTags(tags);
-        
         // Only update status if provided
-        if (status != null && !status.trim().isEmpty()) {
-            post.setStatus(status);
-        }
+        String newStatus = (status != null && !status.trim().isEmpty()) ? status : post.getStatus();
         
-        boolean success = blogPostDAO.updatePost(post);
+        // Write a copy: the cached post is shared, and must not show the edit if the write fails
+        BlogPost updated = new BlogPost(post.getId(), title, content, post.getCreatedAt(),
+            post.getUpdatedAt(), post.getAuthor(), newStatus, tags);
+        boolean success = blogPostDAO.updatePost(updated);
         
         // Track event if successful
         if (success) {
-            Map<String, Object> properties = new HashMap<>();
-            properties.put("postId", postId);
-            properties.put("title", title);
-            properties.put("status", post.getStatus());
-            properties.put("tags", tags);
-            properties.put("contentLength", content.length());
-            
-            analyticsService.trackEvent(AnalyticsService.EVENT_POST_EDIT, 
-                currentUser, properties);
+            postCache.invalidate(postId);
+            analyticsService.trackEvent(AnalyticsService.EVENT_POST_EDIT, currentUser, postId,
+                AnalyticsEvent.ATTR_CONTENT_LENGTH, content.length());
         }
         
         return success;
@@ -324,7 +387,7 @@ public class BlogController {
         }
 
         // Get the post
-        Optional<BlogPost> postOpt = blogPostDAO.getPostById(postId);
+        Optional<BlogPost> postOpt = getPostById(postId);
         if (postOpt.isEmpty()) {
             return false;
         }
@@ -337,9 +400,14 @@ public class BlogController {
             return false;
         }
 
-        // Update the status
-        post.setStatus(status);
-        return blogPostDAO.updatePost(post);
+        // Update the status on a copy, leaving the shared cached post as it was if the write fails
+        BlogPost updated = new BlogPost(post.getId(), post.getTitle(), post.getContent(), post.getCreatedAt(),
+            post.getUpdatedAt(), post.getAuthor(), status, post.getTags());
+        boolean success = blogPostDAO.updatePost(updated);
+        if (success) {
+            postCache.invalidate(postId);
+        }
+        return success;
     }
 
     /**
@@ -352,7 +420,7 @@ public class BlogController {
         }
         
         // Check if user is the post author or an admin
-        Optional<BlogPost> postOpt = blogPostDAO.getPostById(postId);
+        Optional<BlogPost> postOpt = getPostById(postId);
         if (postOpt.isEmpty()) {
             return false;
         }
@@ -364,17 +432,12 @@ public class BlogController {
             return false;
         }
 
-        // Track event before deleting
-        Map<String, Object> properties = new HashMap<>();
-        properties.put("postId", postId);
-        properties.put("title", postOpt.get().getTitle());
-        properties.put("authorId", authorId);
-        
         boolean success = blogPostDAO.deletePost(postId, authorId);
+        postCache.invalidate(postId);
         
         if (success) {
-            analyticsService.trackEvent(AnalyticsService.EVENT_POST_DELETE, 
-                currentUser, properties);
+            analyticsService.trackEvent(AnalyticsService.EVENT_POST_DELETE, currentUser, postId,
+                AnalyticsEvent.ATTR_AUTHOR_ID, authorId);
         }
         
         return success;
@@ -388,12 +451,8 @@ public class BlogController {
         
         // Track event if successful
         if (success && userController.isLoggedIn()) {
-            Map<String, Object> properties = new HashMap<>();
-            properties.put("postId", postId);
-            properties.put("commentLength", content.length());
-            
-            analyticsService.trackEvent(AnalyticsService.EVENT_COMMENT_CREATE, 
-                userController.getCurrentUser(), properties);
+            analyticsService.trackEvent(AnalyticsService.EVENT_COMMENT_CREATE, userController.getCurrentUser(),
+                postId, AnalyticsEvent.ATTR_COMMENT_LENGTH, content.length());
         }
         
         return success;
@@ -421,11 +480,8 @@ public class BlogController {
         
         // Track event if successful
         if (success && userController.isLoggedIn()) {
-            Map<String, Object> properties = new HashMap<>();
-            properties.put("commentId", commentId);
-            
-            analyticsService.trackEvent(AnalyticsService.EVENT_COMMENT_DELETE, 
-                userController.getCurrentUser(), properties);
+            analyticsService.trackEvent(AnalyticsService.EVENT_COMMENT_DELETE, userController.getCurrentUser(),
+                0, AnalyticsEvent.ATTR_COMMENT_ID, commentId);
         }
         
         return success;
@@ -446,12 +502,7 @@ public class BlogController {
         
         // Track event if successful
         if (success && userController.isLoggedIn()) {
-            Map<String, Object> properties = new HashMap<>();
-            properties.put("postId", postId);
-            properties.put("reaction", "like");
-            
-            analyticsService.trackEvent(AnalyticsService.EVENT_LIKE, 
-                userController.getCurrentUser(), properties);
+            analyticsService.trackEvent(AnalyticsService.EVENT_LIKE, userController.getCurrentUser(), postId);
         }
         
         return success;
@@ -465,12 +516,7 @@ public class BlogController {
         
         // Track event if successful
         if (success && userController.isLoggedIn()) {
-            Map<String, Object> properties = new HashMap<>();
-            properties.put("postId", postId);
-            properties.put("reaction", "dislike");
-            
-            analyticsService.trackEvent(AnalyticsService.EVENT_DISLIKE, 
-                userController.getCurrentUser(), properties);
+            analyticsService.trackEvent(AnalyticsService.EVENT_DISLIKE, userController.getCurrentUser(), postId);
         }
         
         return success;
@@ -490,6 +536,13 @@ public class BlogController {
         return likeController.getUserReaction(postId);
     }
     
+    /**
+     * Get the post cache, for its hit and eviction counters
+     */
+    public PostCache getPostCache() {
+        return postCache;
+    }
+    
     /**
      * Get the comment controller
      */
@@ -537,10 +590,93 @@ public class BlogController {
     }
     
     /**
-     * Get posts sorted by popularity (view count)
+     * Get a page of posts matching the query in title or content, newest first
+     */
+    public PostPage searchPosts(String query, PostCursor after, int limit) {
+        if (query == null || query.trim().isEmpty()) {
+            return getAllPosts(after, limit); // Return all posts if search query is empty
+        }
+        
+        return blogPostDAO.searchPostsPage(query.trim(), after, limit);
+    }
+    
+    /**
+     * Full-text search, best matches first, with highlighted titles and snippets
+     * @param offset number of results to skip
+     * @param limit maximum number of results
+     */
+    public List<SearchResult> searchPostsRanked(String query, int offset, int limit) {
+        if (query == null || query.trim().isEmpty()) {
+            return List.of();
+        }
+        
+        return blogPostDAO.searchPostsRanked(query.trim(), offset, limit);
+    }
+    
+    /**
+     * Rebuild the full-text search index from the posts table (admin only)
+     */
+    public boolean rebuildSearchIndex() {
+        if (!userController.isLoggedIn() || !userController.isCurrentUserAdmin()) {
+            return false;
+        }
+        return DatabaseSetup.rebuildSearchIndex();
+    }
+    
+    /**
+     * Get summaries of posts sorted by popularity (view count)
+     */
+    public List<PostSummary> getPopularPosts() {
+        return blogPostDAO.getPopularPostSummaries();
+    }
+    
+    /**
+     * Get a page of posts sorted by popularity (view count)
+     */
+    public PostPage getPopularPosts(PostCursor after, int limit) {
+        return blogPostDAO.getPostsByPopularityPage(after, limit);
+    }
+    
+    /**
+     * Get the posts with the most views in a recent window, estimated by the
+     * analytics popularity sketches, most viewed first
+     */
+    public List<TrendingPost> getTrendingPostStats(PostPopularity.Window window, int limit) {
+        return analyticsService.getPopularity().getTrending(window, limit);
+    }
+    
+    /**
+     * Get summaries of the published posts trending in a recent window, most
+     * viewed first
+     */
+    public List<PostSummary> getTrendingPosts(PostPopularity.Window window, int limit) {
+        // Ask for extra, since some trending posts may since have been unpublished or deleted
+        List<TrendingPost> trending = getTrendingPostStats(window, limit * 2);
+        Map<Integer, PostSummary> summaries = getPublishedPostSummaries(
+            trending.stream().map(TrendingPost::getPostId).collect(Collectors.toList()));
+        
+        List<PostSummary> posts = new ArrayList<>();
+        for (TrendingPost post : trending) {
+            PostSummary summary = summaries.get(post.getPostId());
+            if (summary != null && posts.size() < limit) {
+                posts.add(summary);
+            }
+        }
+        return posts;
+    }
+    
+    /**
+     * Get summaries of the published posts among the given ids, by post id
+     */
+    public Map<Integer, PostSummary> getPublishedPostSummaries(Collection<Integer> postIds) {
+        return blogPostDAO.getPublishedPostSummaries(postIds);
+    }
+    
+    /**
+     * Get the estimated number of distinct signed-in readers of each post
      */
-    public List<BlogPost> getPopularPosts() {
-        return blogPostDAO.getPostsByPopularity();
+    public Map<Integer, Long> getUniqueViewers(Collection<Integer> postIds) {
+        return analyticsService.getPopularity().getUniqueViewers(postIds);
     }
     
     /**
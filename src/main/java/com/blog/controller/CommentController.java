@@ -7,6 +7,7 @@ import com.blog.model.User;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.IntConsumer;
 
 /**
  * Controller class for managing comments
@@ -14,10 +15,17 @@ import java.util.Optional;
 public class CommentController {
     private final CommentDAO commentDAO;
     private final UserController userController;
+    // Told the post id after every comment write, so cached posts can be dropped
+    private final IntConsumer postChanged;
     
     public CommentController(UserController userController) {
+        this(userController, postId -> { });
+    }
+    
+    public CommentController(UserController userController, IntConsumer postChanged) {
         this.commentDAO = new CommentDAO();
         this.userController = userController;
+        this.postChanged = postChanged;
     }
     
     /**
@@ -43,7 +51,9 @@ public class CommentController {
         Comment comment = CommentFactory.createTopLevelComment(content.trim(), currentUser, postId);
         
         // Save comment
-        return commentDAO.createComment(comment);
+        boolean success = commentDAO.createComment(comment);
+        postChanged.accept(postId);
+        return success;
     }
     
     /**
@@ -80,7 +90,9 @@ public class CommentController {
                                                          parentCommentId, level);
         
         // Save reply
-        return commentDAO.createComment(reply);
+        boolean success = commentDAO.createComment(reply);
+        postChanged.accept(postId);
+        return success;
     }
     
     /**
@@ -115,7 +127,9 @@ public class CommentController {
         }
         
         // Update comment
-        return commentDAO.updateComment(commentId, content.trim());
+        boolean success = commentDAO.updateComment(commentId, content.trim());
+        postChanged.accept(comment.getPostId());
+        return success;
     }
     
     /**
@@ -144,7 +158,9 @@ public class CommentController {
         }
         
         // Delete comment (this will also delete all replies)
-        return commentDAO.deleteComment(commentId);
+        boolean success = commentDAO.deleteComment(commentId);
+        postChanged.accept(comment.getPostId());
+        return success;
     }
     
     /**
@@ -159,7 +175,9 @@ public class CommentController {
             return false;
         }
         
-        return commentDAO.toggleCommentHidden(commentId);
+        boolean success = commentDAO.toggleCommentHidden(commentId);
+        commentDAO.getCommentById(commentId).ifPresent(comment -> postChanged.accept(comment.getPostId()));
+        return success;
     }
     
     /**
@@ -1,12 +1,13 @@
 package com.blog.controller;
 
 import com.blog.dao.LikeDAO;
-import com.blog.factory.LikeFactory;
 import com.blog.model.Like;
+import com.blog.model.ReactionState;
 import com.blog.model.User;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.IntConsumer;
 
 /**
  * Controller class for managing likes and dislikes
@@ -14,10 +15,17 @@ import java.util.Optional;
 public class LikeController {
     private final LikeDAO likeDAO;
     private final UserController userController;
+    // Told the post id after every reaction write, so cached posts can be dropped
+    private final IntConsumer postChanged;
     
     public LikeController(UserController userController) {
+        this(userController, postId -> { });
+    }
+    
+    public LikeController(UserController userController, IntConsumer postChanged) {
         this.likeDAO = new LikeDAO();
         this.userController = userController;
+        this.postChanged = postChanged;
     }
     
     /**
@@ -35,35 +43,26 @@ public class LikeController {
     }
     
     /**
-     * React to a post (like or dislike)
+     * React to a post (like or dislike); reacting the same way twice removes the reaction
      */
     private boolean reactToPost(int postId, boolean isLike) {
+        return toggleReaction(postId, isLike) != null;
+    }
+    
+    /**
+     * Toggle the current user's like or dislike on a post in one transaction
+     * @return the new reaction and counts, or null if not logged in or the write failed
+     */
+    public ReactionState toggleReaction(int postId, boolean isLike) {
         // Check if user is logged in
         if (!userController.isLoggedIn()) {
-            return false;
+            return null;
         }
         
         User currentUser = userController.getCurrentUser();
-        
-        // Check if user already has a reaction
-        Optional<Like> existingReaction = likeDAO.getLikeByUserAndPost(currentUser.getId(), postId);
-        
-        if (existingReaction.isPresent()) {
-            Like reaction = existingReaction.get();
-            
-            // If same reaction type, remove it (toggle off)
-            if (reaction.isLike() == isLike) {
-                return likeDAO.deleteLike(currentUser.getId(), postId);
-            } else {
-                // If different reaction type, update it
-                reaction.setLike(isLike);
-                return likeDAO.createLike(reaction);
-            }
-        } else {
-            // Create new reaction
-            Like newReaction = LikeFactory.createReaction(postId, currentUser, isLike);
-            return likeDAO.createLike(newReaction);
-        }
+        ReactionState state = likeDAO.toggleReaction(currentUser.getId(), postId, isLike);
+        postChanged.accept(postId);
+        return state;
     }
     
     /**
@@ -76,7 +75,9 @@ public class LikeController {
         }
         
         User currentUser = userController.getCurrentUser();
-        return likeDAO.deleteLike(currentUser.getId(), postId);
+        boolean success = likeDAO.deleteLike(currentUser.getId(), postId);
+        postChanged.accept(postId);
+        return success;
     }
     
     /**
@@ -107,10 +108,7 @@ public class LikeController {
      * @return int array where [0] is likes count and [1] is dislikes count
      */
     public int[] getLikeCountsForPost(int postId) {
-        int[] counts = new int[2];
-        counts[0] = likeDAO.countLikesForPost(postId);
-        counts[1] = likeDAO.countDislikesForPost(postId);
-        return counts;
+        return likeDAO.getReactionCounts(postId);
     }
     
     /**
@@ -0,0 +1,115 @@
+package com.blog.controller;
+
+import com.blog.model.BlogPost;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.IntFunction;
+
+/**
+ * Fully loaded posts (media, threaded comments, likes) by id, kept by
+ * {@link BlogController} so that opening, re-opening and permission-checking a
+ * post doesn't reload all of it each time. Bounded in size (least recently
+ * used posts are dropped first) and in age, so changes made outside this
+ * process show up within the TTL.
+ *
+ * Every write that changes what a loaded post shows must call
+ * {@link #invalidate(int)}; the controllers do this for posts, media,
+ * comments and reactions.
+ */
+public class PostCache {
+    private final int maxSize;
+    private final long ttlMillis;
+    private final Map<Integer, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // Bumped by every invalidation so a load that raced with a write isn't cached
+    private long generation;
+    
+    private long hits;
+    private long misses;
+    private long expirations;
+    private long invalidations;
+    
+    public PostCache(int maxSize, long ttlMillis) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+    }
+    
+    /**
+     * Get the cached post, or load and cache it
+     * @param loader loads the full post; may return null if there is none
+     */
+    public Optional<BlogPost> get(int postId, IntFunction<BlogPost> loader) {
+        long loadGeneration;
+        synchronized (this) {
+            Entry entry = entries.get(postId);
+            if (entry != null) {
+                if (System.currentTimeMillis() - entry.loadedAt < ttlMillis) {
+                    hits++;
+                    return Optional.of(entry.post);
+                }
+                entries.remove(postId);
+                expirations++;
+            }
+            misses++;
+            loadGeneration = generation;
+        }
+        
+        // Load outside the lock so one slow post doesn't block the others
+        BlogPost post = loader.apply(postId);
+        if (post == null || maxSize <= 0) {
+            return Optional.ofNullable(post);
+        }
+        
+        synchronized (this) {
+            if (generation == loadGeneration) {
+                entries.put(postId, new Entry(post, System.currentTimeMillis()));
+                while (entries.size() > maxSize) {
+                    Integer eldest = entries.keySet().iterator().next();
+                    entries.remove(eldest);
+                }
+            }
+        }
+        return Optional.of(post);
+    }
+    
+    /**
+     * Drop a post after anything it shows has changed
+     */
+    public synchronized void invalidate(int postId) {
+        generation++;
+        if (entries.remove(postId) != null) {
+            invalidations++;
+        }
+    }
+    
+    public synchronized void clear() {
+        generation++;
+        entries.clear();
+    }
+    
+    public synchronized int size() {
+        return entries.size();
+    }
+    
+    public synchronized double getHitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+    
+    @Override
+    public synchronized String toString() {
+        return String.format("%d/%d posts, hits %d, misses %d, expired %d, invalidated %d (hit ratio %.1f%%)",
+            entries.size(), maxSize, hits, misses, expirations, invalidations, getHitRatio() * 100);
+    }
+    
+    private static class Entry {
+        final BlogPost post;
+        final long loadedAt;
+        
+        Entry(BlogPost post, long loadedAt) {
+            this.post = post;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -1,12 +1,13 @@
 package com.blog.controller;
 
 import com.blog.dao.UserDAO;
+import com.blog.model.Availability;
 import com.blog.model.User;
+import com.blog.service.AvatarStore;
 import com.blog.util.SessionManager;
 
 import java.util.List;
 import java.util.Optional;
-import java.util.UUID;
 
 public class UserController {
     // Singleton instance
@@ -44,13 +45,14 @@ public class UserController {
             return false;
         }
 
-        // Check if username or email already exists
-        if (userDAO.isUsernameTaken(username)) {
+        // Check if username or email already exists, in one lookup
+        Availability availability = userDAO.checkAvailability(username, email);
+        if (availability.isUsernameTaken()) {
             System.out.println("Registration failed: Username taken: " + username);
             return false;
         }
 
-        if (userDAO.isEmailTaken(email)) {
+        if (availability.isEmailTaken()) {
             System.out.println("Registration failed: Email taken: " + email);
             return false;
         }
@@ -77,13 +79,14 @@ public class UserController {
             return false;
         }
 
-        // Check if username or email already exists
-        if (userDAO.isUsernameTaken(username)) {
+        // Check if username or email already exists, in one lookup
+        Availability availability = userDAO.checkAvailability(username, email);
+        if (availability.isUsernameTaken()) {
             System.out.println("Registration failed: Username taken: " + username);
             return false;
         }
 
-        if (userDAO.isEmailTaken(email)) {
+        if (availability.isEmailTaken()) {
             System.out.println("Registration failed: Email taken: " + email);
             return false;
         }
@@ -106,6 +109,14 @@ public class UserController {
         return result;
     }
     
+    /**
+     * Check whether a username and/or email are free, for validating the
+     * registration form as the user types; pass null to skip either
+     */
+    public Availability checkAvailability(String username, String email) {
+        return userDAO.checkAvailability(username, email);
+    }
+    
     public int getLastRegisteredUserId() {
         return userDAO.getLastRegisteredUserId();
     }
@@ -115,7 +126,11 @@ public class UserController {
             return false;
         }
         
-        return userDAO.updateProfilePicture(userId, imageData);
+        boolean success = userDAO.updateProfilePicture(userId, imageData);
+        if (success) {
+            AvatarStore.getInstance().invalidate(userId);
+        }
+        return success;
     }
 
     public boolean login(String username, String password) {
@@ -133,8 +148,7 @@ public class UserController {
         if (userOpt.isPresent()) {
             currentUser = userOpt.get();
             // Create a new session
-            currentSessionToken = UUID.randomUUID().toString();
-            sessionManager.createSession(currentUser.getId(), currentSessionToken);
+            currentSessionToken = sessionManager.issueSession(currentUser.getId());
             
             System.out.println("Login successful for user: " + username);
             return true;
@@ -233,8 +247,8 @@ public class UserController {
         
         boolean success = userDAO.updateProfilePicture(currentUser.getId(), imageData);
         if (success) {
-            // Update current user's profile image
-            currentUser.setProfileImageData(imageData);
+            // Cached avatars of the old image are stale
+            AvatarStore.getInstance().invalidate(currentUser.getId());
         }
         return success;
     }
@@ -273,6 +287,17 @@ public class UserController {
         return false;
     }
 
+    /**
+     * Make a new key sign new session tokens (admin only); tokens signed
+     * with the previous key stay valid until they expire
+     */
+    public boolean rotateSessionSigningKey() {
+        if (!isLoggedIn() || !currentUser.isAdmin()) {
+            return false;
+        }
+        return sessionManager.rotateSigningKey();
+    }
+
     public boolean isLoggedIn() {
         return currentUser != null;
     }
@@ -2,19 +2,62 @@ package com.blog.dao;
 
 import com.blog.model.BlogPost;
 import com.blog.model.Media;
+import com.blog.model.PostCursor;
+import com.blog.model.PostPage;
+import com.blog.model.PostStats;
+import com.blog.model.PostSummary;
+import com.blog.model.SearchResult;
 import com.blog.model.User;
 import com.blog.util.DatabaseUtil;
+import com.blog.util.ViewCountBuffer;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class BlogPostDAO {
+    // Post columns plus the author's scalar columns, so list queries need no per-row user lookup
+    private static final String POST_COLUMNS =
+        "p.id, p.title, p.content, p.user_id, p.created_at, p.updated_at, p.status, p.tags, p.view_count, " +
+        "p.like_count, p.dislike_count, p.comment_count, " +
+        "u.username, u.email, u.full_name, u.role, u.profile_picture, u.bio";
+    private static final String POST_FROM = " FROM blog_posts p JOIN users u ON u.id = p.user_id ";
+    
+    // Columns of a PostSummary: a bounded preview instead of the content, the
+    // trigger-maintained counters, and the thumbnail id from an index-only subquery
+    private static final String SUMMARY_COLUMNS =
+        "p.id, p.title, substr(p.content, 1, " + (PostSummary.PREVIEW_LENGTH + 1) + ") AS preview, " +
+        "p.user_id, p.created_at, p.status, p.tags, p.view_count, u.username, " +
+        "p.like_count, p.dislike_count, p.comment_count, " +
+        "(SELECT m.id FROM media m WHERE m.post_id = p.id AND m.file_type LIKE 'image/%' " +
+        "ORDER BY m.id LIMIT 1) AS thumbnail_id";
+    
+    // Restricts a query to posts matching a full-text search expression
+    private static final String SEARCH_MATCH = "p.id IN (SELECT rowid FROM blog_posts_fts WHERE blog_posts_fts MATCH ?)";
+    
+    // Restricts a query to posts with the named tag, via the post_tags index
+    private static final String TAG_MATCH =
+        "p.id IN (SELECT pt.post_id FROM post_tags pt JOIN tags t ON t.id = pt.tag_id WHERE t.name = ?)";
+    
+    // SQLite's default limit on bound parameters is 999
+    private static final int MAX_IDS_PER_QUERY = 900;
+    
+    // A "quoted phrase" or a run of non-space characters
+    private static final Pattern QUERY_TOKEN = Pattern.compile("\"([^\"]*)\"|(\\S+)");
     
     private final MediaDAO mediaDAO = new MediaDAO();
-    private final UserDAO userDAO = UserDAO.getInstance();
+    private final ViewCountBuffer viewCounts = ViewCountBuffer.getInstance();
     
     public boolean createPost(BlogPost post) {
         String sql = "INSERT INTO blog_posts (title, content, user_id, status, tags, created_at, updated_at, view_count) " +
@@ -25,6 +68,8 @@ public class BlogPostDAO {
         ResultSet rs = null;
         try {
             conn = DatabaseUtil.getConnection();
+            // The post row and its post_tags rows are saved together or not at all
+            conn.setAutoCommit(false);
             pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
             
             pstmt.setString(1, post.getTitle());
@@ -44,6 +89,8 @@ public class BlogPostDAO {
                     int postId = rs.getInt(1);
                     post.setId(postId);
                     
+                    replacePostTags(conn, postId, post.getTags());
+                    
                     // Save media attachments if any
                     if (post.getMediaAttachments() != null && !post.getMediaAttachments().isEmpty()) {
                         for (Media media : post.getMediaAttachments()) {
@@ -52,6 +99,7 @@ public class BlogPostDAO {
                         }
                     }
                     
+                    conn.commit();
                     return true;
                 }
             }
@@ -62,118 +110,93 @@ public class BlogPostDAO {
             System.err.println("Error creating post: " + e.getMessage());
             return false;
         } finally {
-            closeResources(pstmt, rs);
+            endTransaction(conn);
+            closeResources(conn, pstmt, rs);
         }
     }
     
     public List<BlogPost> getAllPosts() {
-        String sql = "SELECT * FROM blog_posts WHERE status = 'published' ORDER BY created_at DESC";
+        String sql = "SELECT " + POST_COLUMNS + POST_FROM + "WHERE p.status = 'published' ORDER BY p.created_at DESC";
         List<BlogPost> posts = new ArrayList<>();
         
         Connection conn = null;
-        Statement stmt = null;
+        PreparedStatement pstmt = null;
         ResultSet rs = null;
         try {
-            conn = DatabaseUtil.getConnection();
-            stmt = conn.createStatement();
-            rs = stmt.executeQuery(sql);
+            conn = DatabaseUtil.getReadConnection();
+            pstmt = conn.prepareStatement(sql);
+            rs = pstmt.executeQuery();
             
             while (rs.next()) {
-                BlogPost post = extractPostFromResultSet(rs);
-                if (post != null) {
-                    // Load media attachments
-                    List<Media> mediaList = mediaDAO.getMediaByPostId(post.getId());
-                    post.setMediaAttachments(mediaList);
-                    
-                    posts.add(post);
-                }
+                posts.add(extractPostFromResultSet(rs));
             }
             
+            // Load media attachments for every post in one batch
+            attachMedia(posts);
+            
         } catch (SQLException e) {
             System.err.println("Error retrieving posts: " + e.getMessage());
         } finally {
-            closeResources(stmt, rs);
+            closeResources(conn, pstmt, rs);
         }
         
         return posts;
     }
     
     public List<BlogPost> getAllPostsForAdmin() {
-        String sql = "SELECT * FROM blog_posts ORDER BY created_at DESC";
+        String sql = "SELECT " + POST_COLUMNS + POST_FROM + "ORDER BY p.created_at DESC";
         List<BlogPost> posts = new ArrayList<>();
         
         Connection conn = null;
-        Statement stmt = null;
+        PreparedStatement pstmt = null;
         ResultSet rs = null;
         try {
-            conn = DatabaseUtil.getConnection();
-            stmt = conn.createStatement();
-            rs = stmt.executeQuery(sql);
+            conn = DatabaseUtil.getReadConnection();
+            pstmt = conn.prepareStatement(sql);
+            rs = pstmt.executeQuery();
             
             while (rs.next()) {
-                BlogPost post = extractPostFromResultSet(rs);
-                if (post != null) {
-                    // Load media attachments
-                    List<Media> mediaList = mediaDAO.getMediaByPostId(post.getId());
-                    post.setMediaAttachments(mediaList);
-                    
-                    posts.add(post);
-                }
+                posts.add(extractPostFromResultSet(rs));
             }
             
+            // Load media attachments for every post in one batch
+            attachMedia(posts);
+            
         } catch (SQLException e) {
             System.err.println("Error retrieving posts: " + e.getMessage());
         } finally {
-            closeResources(stmt, rs);
+            closeResources(conn, pstmt, rs);
         }
         
         return posts;
     }
     
     public List<BlogPost> getPostsByUser(int userId) {
-        String sql = "SELECT * FROM blog_posts WHERE user_id = ? ORDER BY created_at DESC";
+        String sql = "SELECT " + POST_COLUMNS + POST_FROM + "WHERE p.user_id = ? ORDER BY p.created_at DESC";
         List<BlogPost> posts = new ArrayList<>();
         
         Connection conn = null;
         PreparedStatement pstmt = null;
         ResultSet rs = null;
         try {
-            conn = DatabaseUtil.getConnection();
+            conn = DatabaseUtil.getReadConnection();
             pstmt = conn.prepareStatement(sql);
             
             pstmt.setInt(1, userId);
             
             rs = pstmt.executeQuery();
-            Optional<User> userOpt = userDAO.getUserById(userId);
             
-            if (userOpt.isPresent()) {
-                User user = userOpt.get();
-                
-                while (rs.next()) {
-                    int postId = rs.getInt("id");
-                    BlogPost post = new BlogPost(
-                        postId,
-                        rs.getString("title"),
-                        rs.getString("content"),
-                        rs.getTimestamp("created_at"),
-                        rs.getTimestamp("updated_at"),
-                        user,
-                        rs.getString("status"),
-                        rs.getString("tags")
-                    );
-                    
-                    // Load media attachments
-                    List<Media> mediaList = mediaDAO.getMediaByPostId(postId);
-                    post.setMediaAttachments(mediaList);
-                    
-                    posts.add(post);
-                }
+            while (rs.next()) {
+                posts.add(extractPostFromResultSet(rs));
             }
             
+            // Load media attachments for every post in one batch
+            attachMedia(posts);
+            
         } catch (SQLException e) {
             System.err.println("Error retrieving user posts: " + e.getMessage());
         } finally {
-            closeResources(pstmt, rs);
+            closeResources(conn, pstmt, rs);
         }
         
         return posts;
@@ -181,52 +204,45 @@ public class BlogPostDAO {
     
     public List<BlogPost> getPostsByTag(String tag) {
         // Match posts that have this tag in their tags field
-        String sql = "SELECT * FROM blog_posts WHERE status = 'published' AND (tags LIKE ? OR tags LIKE ? OR tags LIKE ? OR tags = ?) ORDER BY created_at DESC";
+        String sql = "SELECT " + POST_COLUMNS + POST_FROM +
+                     "WHERE p.status = 'published' AND " + TAG_MATCH + " ORDER BY p.created_at DESC";
         List<BlogPost> posts = new ArrayList<>();
         
         Connection conn = null;
         PreparedStatement pstmt = null;
         ResultSet rs = null;
         try {
-            conn = DatabaseUtil.getConnection();
+            conn = DatabaseUtil.getReadConnection();
             pstmt = conn.prepareStatement(sql);
             
-            // Match tag as a single tag or part of a comma-separated list
-            pstmt.setString(1, tag + ",%");  // Starts with this tag
-            pstmt.setString(2, "%," + tag + ",%");  // Has this tag in middle
-            pstmt.setString(3, "%," + tag);  // Ends with this tag
-            pstmt.setString(4, tag);  // Is exactly this tag
+            pstmt.setString(1, tag.trim());
             
             rs = pstmt.executeQuery();
             
             while (rs.next()) {
-                BlogPost post = extractPostFromResultSet(rs);
-                if (post != null) {
-                    // Load media attachments
-                    List<Media> mediaList = mediaDAO.getMediaByPostId(post.getId());
-                    post.setMediaAttachments(mediaList);
-                    
-                    posts.add(post);
-                }
+                posts.add(extractPostFromResultSet(rs));
             }
             
+            // Load media attachments for every post in one batch
+            attachMedia(posts);
+            
         } catch (SQLException e) {
             System.err.println("Error retrieving posts by tag: " + e.getMessage());
         } finally {
-            closeResources(pstmt, rs);
+            closeResources(conn, pstmt, rs);
         }
         
         return posts;
     }
     
     public Optional<BlogPost> getPostById(int id) {
-        String sql = "SELECT * FROM blog_posts WHERE id = ?";
+        String sql = "SELECT " + POST_COLUMNS + POST_FROM + "WHERE p.id = ?";
         
         Connection conn = null;
         PreparedStatement pstmt = null;
         ResultSet rs = null;
         try {
-            conn = DatabaseUtil.getConnection();
+            conn = DatabaseUtil.getReadConnection();
             pstmt = conn.prepareStatement(sql);
             
             pstmt.setInt(1, id);
@@ -234,26 +250,26 @@ public class BlogPostDAO {
             rs = pstmt.executeQuery();
             if (rs.next()) {
                 BlogPost post = extractPostFromResultSet(rs);
-                if (post != null) {
-                    // Load media attachments
-                    List<Media> mediaList = mediaDAO.getMediaByPostId(post.getId());
-                    post.setMediaAttachments(mediaList);
-                    
-                    return Optional.of(post);
-                }
+                
+                // Load media attachments
+                List<Media> mediaList = mediaDAO.getMediaByPostId(post.getId());
+                post.setMediaAttachments(mediaList);
+                
+                return Optional.of(post);
             }
             
         } catch (SQLException e) {
             System.err.println("Error retrieving post: " + e.getMessage());
         } finally {
-            closeResources(pstmt, rs);
+            closeResources(conn, pstmt, rs);
         }
         
         return Optional.empty();
     }
     
     public boolean updatePost(BlogPost post) {
-        String sql = "UPDATE blog_posts SET title = ?, content = ?, status = ?, tags = ?, updated_at = ?, view_count = ? " +
+        // view_count is left alone: it only moves through the view count buffer
+        String sql = "UPDATE blog_posts SET title = ?, content = ?, status = ?, tags = ?, updated_at = ? " +
                      "WHERE id = ? AND user_id = ?";
         
         Connection conn = null;
@@ -262,6 +278,7 @@ public class BlogPostDAO {
             post.setUpdatedAt(new Date()); // Update the timestamp
             
             conn = DatabaseUtil.getConnection();
+            conn.setAutoCommit(false);
             pstmt = conn.prepareStatement(sql);
             
             pstmt.setString(1, post.getTitle());
@@ -269,18 +286,24 @@ public class BlogPostDAO {
             pstmt.setString(3, post.getStatus());
             pstmt.setString(4, post.getTags());
             pstmt.setTimestamp(5, new Timestamp(post.getUpdatedAt().getTime()));
-            pstmt.setInt(6, post.getViewCount());
-            pstmt.setInt(7, post.getId());
-            pstmt.setInt(8, post.getAuthor().getId());
+            pstmt.setInt(6, post.getId());
+            pstmt.setInt(7, post.getAuthor().getId());
             
             int affectedRows = pstmt.executeUpdate();
-            return affectedRows > 0;
+            if (affectedRows == 0) {
+                return false;
+            }
+            
+            replacePostTags(conn, post.getId(), post.getTags());
+            conn.commit();
+            return true;
             
         } catch (SQLException e) {
             System.err.println("Error updating post: " + e.getMessage());
             return false;
         } finally {
-            closeResources(pstmt, null);
+            endTransaction(conn);
+            closeResources(conn, pstmt, null);
         }
     }
     
@@ -303,46 +326,115 @@ public class BlogPostDAO {
             pstmt.setInt(2, userId);
             
             int affectedRows = pstmt.executeUpdate();
+            if (affectedRows > 0) {
+                viewCounts.discard(postId);
+            }
             return affectedRows > 0;
             
         } catch (SQLException e) {
             System.err.println("Error deleting post: " + e.getMessage());
             return false;
         } finally {
-            closeResources(pstmt, null);
+            closeResources(conn, pstmt, null);
         }
     }
     
     /**
-     * Extract a BlogPost object from a ResultSet
+     * Extract a BlogPost and its author from a row selected with POST_COLUMNS
      */
     private BlogPost extractPostFromResultSet(ResultSet rs) throws SQLException {
-        int userId = rs.getInt("user_id");
-        Optional<User> userOpt = userDAO.getUserById(userId);
+        BlogPost post = new BlogPost(
+            rs.getInt("id"),
+            rs.getString("title"),
+            rs.getString("content"),
+            rs.getTimestamp("created_at"),
+            rs.getTimestamp("updated_at"),
+            extractAuthorFromResultSet(rs),
+            rs.getString("status"),
+            rs.getString("tags")
+        );
         
-        if (userOpt.isPresent()) {
-            int postId = rs.getInt("id");
-            BlogPost post = new BlogPost(
-                postId,
-                rs.getString("title"),
-                rs.getString("content"),
-                rs.getTimestamp("created_at"),
-                rs.getTimestamp("updated_at"),
-                userOpt.get(),
-                rs.getString("status"),
-                rs.getString("tags")
-            );
-            
-            // Set the view count
-            post.setViewCount(rs.getInt("view_count"));
-            
-            return post;
+        // Set the view count, including views not yet flushed, and the
+        // trigger-maintained reaction and comment counters
+        post.setViewCount(rs.getInt("view_count") + viewCounts.getPending(post.getId()));
+        post.setLikeCount(rs.getInt("like_count"));
+        post.setDislikeCount(rs.getInt("dislike_count"));
+        post.setCommentCount(rs.getInt("comment_count"));
+        
+        return post;
+    }
+    
+    /**
+     * Build the author from the joined user columns. The password hash and the
+     * profile image BLOB are deliberately not selected for list views.
+     */
+    private User extractAuthorFromResultSet(ResultSet rs) throws SQLException {
+        User author = new User();
+        author.setId(rs.getInt("user_id"));
+        author.setUsername(rs.getString("username"));
+        author.setEmail(rs.getString("email"));
+        author.setFullName(rs.getString("full_name"));
+        
+        String role = rs.getString("role");
+        if (role != null) {
+            author.setRole(role);
         }
+        author.setProfilePicture(rs.getString("profile_picture"));
+        author.setBio(rs.getString("bio"));
         
-        return null;
+        return author;
     }
     
-    private void closeResources(Statement stmt, ResultSet rs) {
+    /**
+     * Build a PostSummary from a row selected with SUMMARY_COLUMNS
+     */
+    private PostSummary extractSummaryFromResultSet(ResultSet rs) throws SQLException {
+        int id = rs.getInt("id");
+        String preview = rs.getString("preview");
+        if (preview == null) {
+            preview = "";
+        } else if (preview.length() > PostSummary.PREVIEW_LENGTH) {
+            preview = preview.substring(0, PostSummary.PREVIEW_LENGTH) + "...";
+        }
+        
+        return new PostSummary(
+            id,
+            rs.getString("title"),
+            preview,
+            rs.getTimestamp("created_at"),
+            rs.getInt("user_id"),
+            rs.getString("username"),
+            rs.getString("status"),
+            rs.getString("tags"),
+            rs.getInt("view_count") + viewCounts.getPending(id),
+            rs.getInt("like_count"),
+            rs.getInt("dislike_count"),
+            rs.getInt("comment_count"),
+            rs.getInt("thumbnail_id")
+        );
+    }
+    
+    /**
+     * Load the media attachments for a list of posts with one query per batch
+     * of ids instead of one query per post
+     */
+    private void attachMedia(List<BlogPost> posts) {
+        if (posts.isEmpty()) {
+            return;
+        }
+        
+        List<Integer> postIds = new ArrayList<>(posts.size());
+        for (BlogPost post : posts) {
+            postIds.add(post.getId());
+        }
+        
+        Map<Integer, List<Media>> mediaByPost = mediaDAO.getMediaByPostIds(postIds);
+        for (BlogPost post : posts) {
+            post.setMediaAttachments(mediaByPost.getOrDefault(post.getId(), new ArrayList<>()));
+        }
+    }
+    
+    private void closeResources(Connection conn, Statement stmt, ResultSet rs) {
         try {
             if (rs != null) {
                 rs.close();
@@ -350,6 +442,9 @@ public class BlogPostDAO {
             if (stmt != null) {
                 stmt.close();
             }
+            if (conn != null) {
+                conn.close(); // Returns the lease to the pool
+            }
         } catch (SQLException e) {
             System.err.println("Error closing resources: " + e.getMessage());
         }
@@ -362,105 +457,535 @@ public class BlogPostDAO {
      * @return List of blog posts matching the search criteria
      */
     public List<BlogPost> searchPosts(String query) {
-        String sql = "SELECT * FROM blog_posts WHERE status = 'published' AND (title LIKE ? OR content LIKE ?) ORDER BY created_at DESC";
+        String sql = "SELECT " + POST_COLUMNS + POST_FROM +
+                     "WHERE p.status = 'published' AND " + SEARCH_MATCH + " ORDER BY p.created_at DESC";
         List<BlogPost> posts = new ArrayList<>();
         
+        String matchQuery = toMatchQuery(query);
+        if (matchQuery == null) {
+            return posts;
+        }
+        
         Connection conn = null;
         PreparedStatement pstmt = null;
         ResultSet rs = null;
         try {
-            conn = DatabaseUtil.getConnection();
+            conn = DatabaseUtil.getReadConnection();
             pstmt = conn.prepareStatement(sql);
             
-            // Add wildcards to search for partial matches
-            String searchPattern = "%" + query + "%";
-            pstmt.setString(1, searchPattern);
-            pstmt.setString(2, searchPattern);
+            pstmt.setString(1, matchQuery);
             
             rs = pstmt.executeQuery();
             
             while (rs.next()) {
-                BlogPost post = extractPostFromResultSet(rs);
-                if (post != null) {
-                    // Load media attachments
-                    List<Media> mediaList = mediaDAO.getMediaByPostId(post.getId());
-                    post.setMediaAttachments(mediaList);
-                    
-                    posts.add(post);
-                }
+                posts.add(extractPostFromResultSet(rs));
             }
             
+            // Load media attachments for every post in one batch
+            attachMedia(posts);
+            
         } catch (SQLException e) {
             System.err.println("Error searching posts: " + e.getMessage());
         } finally {
-            closeResources(pstmt, rs);
+            closeResources(conn, pstmt, rs);
         }
         
         return posts;
     }
     
     /**
-     * Increment the view count for a post by 1
+     * Count one view of a post. The increment is buffered in memory and
+     * written with other views in a periodic batch, see {@link ViewCountBuffer}.
      * 
      * @param postId The ID of the post
-     * @return true if successful, false otherwise
+     * @return true, since buffering can't fail
      */
     public boolean incrementViewCount(int postId) {
-        String sql = "UPDATE blog_posts SET view_count = view_count + 1 WHERE id = ?";
+        viewCounts.record(postId);
+        return true;
+    }
+    
+    /**
+     * Get all posts sorted by view count (most viewed first)
+     * 
+     * @return List of blog posts sorted by view count
+     */
+    public List<BlogPost> getPostsByPopularity() {
+        String sql = "SELECT " + POST_COLUMNS + POST_FROM +
+                     "WHERE p.status = 'published' ORDER BY p.view_count DESC, p.created_at DESC";
+        List<BlogPost> posts = new ArrayList<>();
         
         Connection conn = null;
         PreparedStatement pstmt = null;
+        ResultSet rs = null;
         try {
-            conn = DatabaseUtil.getConnection();
+            conn = DatabaseUtil.getReadConnection();
             pstmt = conn.prepareStatement(sql);
+            rs = pstmt.executeQuery();
             
-            pstmt.setInt(1, postId);
+            while (rs.next()) {
+                posts.add(extractPostFromResultSet(rs));
+            }
             
-            int affectedRows = pstmt.executeUpdate();
-            return affectedRows > 0;
+            // Load media attachments for every post in one batch
+            attachMedia(posts);
             
         } catch (SQLException e) {
-            System.err.println("Error incrementing view count: " + e.getMessage());
-            return false;
+            System.err.println("Error retrieving posts by popularity: " + e.getMessage());
         } finally {
-            closeResources(pstmt, null);
+            closeResources(conn, pstmt, rs);
         }
+        
+        return posts;
     }
     
     /**
-     * Get all posts sorted by view count (most viewed first)
+     * Get a page of published posts, newest first
+     */
+    public PostPage getPublishedPostsPage(PostCursor after, int limit) {
+        return queryPage("p.status = 'published'", List.of(), false, after, limit);
+    }
+    
+    /**
+     * Get a page of a user's posts of any status, newest first
+     */
+    public PostPage getPostsByUserPage(int userId, PostCursor after, int limit) {
+        return queryPage("p.user_id = ?", List.of(userId), false, after, limit);
+    }
+    
+    /**
+     * Get a page of published posts with a tag, newest first
+     */
+    public PostPage getPostsByTagPage(String tag, PostCursor after, int limit) {
+        return queryPage("p.status = 'published' AND " + TAG_MATCH, List.of(tag.trim()), false, after, limit);
+    }
+    
+    /**
+     * Get a page of published posts whose title or content matches, newest first
+     */
+    public PostPage searchPostsPage(String query, PostCursor after, int limit) {
+        String matchQuery = toMatchQuery(query);
+        if (matchQuery == null) {
+            return PostPage.empty();
+        }
+        return queryPage("p.status = 'published' AND " + SEARCH_MATCH, List.of(matchQuery), false, after, limit);
+    }
+    
+    /**
+     * Full-text search over published posts, best matches first (BM25, with
+     * title matches weighted above tag and content matches). Supports prefix
+     * terms (java*) and "quoted phrases"; the last word typed is treated as a
+     * prefix. Offset paging is used because ranking has to score every match
+     * anyway.
+     */
+    public List<SearchResult> searchPostsRanked(String query, int offset, int limit) {
+        String sql = "SELECT " + SUMMARY_COLUMNS + ", " +
+                     "highlight(blog_posts_fts, 0, ?, ?) AS title_highlight, " +
+                     "snippet(blog_posts_fts, 1, ?, ?, '...', 24) AS snippet, " +
+                     "bm25(blog_posts_fts, 10.0, 1.0, 5.0) AS score " +
+                     "FROM blog_posts_fts f " +
+                     "JOIN blog_posts p ON p.id = f.rowid " +
+                     "JOIN users u ON u.id = p.user_id " +
+                     "WHERE blog_posts_fts MATCH ? AND p.status = 'published' " +
+                     "ORDER BY score LIMIT ? OFFSET ?";
+        List<SearchResult> results = new ArrayList<>();
+        
+        String matchQuery = toMatchQuery(query);
+        if (matchQuery == null || limit <= 0) {
+            return results;
+        }
+        
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            conn = DatabaseUtil.getReadConnection();
+            pstmt = conn.prepareStatement(sql);
+            
+            pstmt.setString(1, SearchResult.HIGHLIGHT_START);
+            pstmt.setString(2, SearchResult.HIGHLIGHT_END);
+            pstmt.setString(3, SearchResult.HIGHLIGHT_START);
+            pstmt.setString(4, SearchResult.HIGHLIGHT_END);
+            pstmt.setString(5, matchQuery);
+            pstmt.setInt(6, limit);
+            pstmt.setInt(7, Math.max(0, offset));
+            
+            rs = pstmt.executeQuery();
+            
+            while (rs.next()) {
+                results.add(new SearchResult(extractSummaryFromResultSet(rs), rs.getString("title_highlight"),
+                                             rs.getString("snippet"), rs.getDouble("score")));
+            }
+            
+        } catch (SQLException e) {
+            System.err.println("Error searching posts: " + e.getMessage());
+        } finally {
+            closeResources(conn, pstmt, rs);
+        }
+        
+        return results;
+    }
+    
+    /**
+     * Turn user input into an FTS5 query. Every word is quoted so that
+     * punctuation and FTS keywords in the input are matched literally rather
+     * than parsed as syntax; a trailing * makes a word a prefix term.
      * 
-     * @return List of blog posts sorted by view count
+     * @return the MATCH expression, or null if the input has no words
      */
-    public List<BlogPost> getPostsByPopularity() {
-        String sql = "SELECT * FROM blog_posts WHERE status = 'published' ORDER BY view_count DESC, created_at DESC";
-        List<BlogPost> posts = new ArrayList<>();
+    private static String toMatchQuery(String input) {
+        if (input == null) {
+            return null;
+        }
+        
+        List<String> terms = new ArrayList<>();
+        boolean lastIsBareWord = false;
+        
+        Matcher matcher = QUERY_TOKEN.matcher(input);
+        while (matcher.find()) {
+            if (matcher.group(1) != null) {
+                // "quoted phrase"
+                String phrase = matcher.group(1).trim();
+                if (!phrase.isEmpty()) {
+                    terms.add(quote(phrase));
+                    lastIsBareWord = false;
+                }
+            } else {
+                String word = matcher.group(2);
+                boolean prefix = word.endsWith("*");
+                word = word.replace("*", "").replace("\"", "");
+                if (word.isEmpty()) {
+                    continue;
+                }
+                terms.add(quote(word) + (prefix ? "*" : ""));
+                lastIsBareWord = !prefix;
+            }
+        }
+        
+        if (terms.isEmpty()) {
+            return null;
+        }
+        
+        // Search as you type: the last word may be unfinished
+        if (lastIsBareWord) {
+            int last = terms.size() - 1;
+            terms.set(last, terms.get(last) + "*");
+        }
+        
+        return String.join(" ", terms);
+    }
+    
+    private static String quote(String text) {
+        return "\"" + text.replace("\"", "\"\"") + "\"";
+    }
+    
+    /**
+     * Get a page of published posts, most viewed first
+     */
+    public PostPage getPostsByPopularityPage(PostCursor after, int limit) {
+        return queryPage("p.status = 'published'", List.of(), true, after, limit);
+    }
+    
+    /**
+     * Get summaries of every post in any status, newest first, for the admin
+     * posts table
+     */
+    public List<PostSummary> getPostSummariesForAdmin() {
+        return querySummaries("1 = 1", "p.created_at DESC, p.id DESC");
+    }
+    
+    /**
+     * Get summaries of published posts, most viewed first
+     */
+    public List<PostSummary> getPopularPostSummaries() {
+        return querySummaries("p.status = 'published'", "p.view_count DESC, p.created_at DESC, p.id DESC");
+    }
+    
+    /**
+     * Get summaries of the published posts among the given ids, in batches of
+     * primary key lookups
+     * @return summaries by post id; ids of missing or unpublished posts are left out
+     */
+    public Map<Integer, PostSummary> getPublishedPostSummaries(Collection<Integer> postIds) {
+        Map<Integer, PostSummary> summaries = new HashMap<>();
+        if (postIds.isEmpty()) {
+            return summaries;
+        }
+        List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(postIds));
         
         Connection conn = null;
-        Statement stmt = null;
+        PreparedStatement pstmt = null;
         ResultSet rs = null;
         try {
-            conn = DatabaseUtil.getConnection();
-            stmt = conn.createStatement();
-            rs = stmt.executeQuery(sql);
+            conn = DatabaseUtil.getReadConnection();
+            
+            for (int from = 0; from < ids.size(); from += MAX_IDS_PER_QUERY) {
+                List<Integer> batch = ids.subList(from, Math.min(from + MAX_IDS_PER_QUERY, ids.size()));
+                
+                String placeholders = String.join(", ", Collections.nCopies(batch.size(), "?"));
+                String sql = "SELECT " + SUMMARY_COLUMNS + POST_FROM +
+                             "WHERE p.id IN (" + placeholders + ") AND p.status = 'published'";
+                pstmt = conn.prepareStatement(sql);
+                
+                for (int i = 0; i < batch.size(); i++) {
+                    pstmt.setInt(i + 1, batch.get(i));
+                }
+                
+                rs = pstmt.executeQuery();
+                while (rs.next()) {
+                    PostSummary summary = extractSummaryFromResultSet(rs);
+                    summaries.put(summary.getId(), summary);
+                }
+                
+                rs.close();
+                pstmt.close();
+            }
+        
+        } catch (SQLException e) {
+            System.err.println("Error retrieving post summaries: " + e.getMessage());
+        } finally {
+            closeResources(conn, pstmt, rs);
+        }
+        
+        return summaries;
+    }
+    
+    private List<PostSummary> querySummaries(String filter, String order) {
+        String sql = "SELECT " + SUMMARY_COLUMNS + POST_FROM + "WHERE " + filter + " ORDER BY " + order;
+        List<PostSummary> summaries = new ArrayList<>();
+        
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            conn = DatabaseUtil.getReadConnection();
+            pstmt = conn.prepareStatement(sql);
+            rs = pstmt.executeQuery();
             
             while (rs.next()) {
-                BlogPost post = extractPostFromResultSet(rs);
-                if (post != null) {
-                    // Load media attachments
-                    List<Media> mediaList = mediaDAO.getMediaByPostId(post.getId());
-                    post.setMediaAttachments(mediaList);
-                    
-                    posts.add(post);
+                summaries.add(extractSummaryFromResultSet(rs));
+            }
+            
+        } catch (SQLException e) {
+            System.err.println("Error retrieving post summaries: " + e.getMessage());
+        } finally {
+            closeResources(conn, pstmt, rs);
+        }
+        
+        return summaries;
+    }
+    
+    /**
+     * Run a keyset-paginated feed query. Instead of OFFSET, the query seeks past
+     * the cursor with a row-value comparison, so SQLite walks the sort index from
+     * that point and reads at most limit + 1 rows whatever the page number.
+     */
+    private PostPage queryPage(String filter, List<Object> filterParams, boolean byPopularity,
+                               PostCursor after, int limit) {
+        if (limit <= 0) {
+            return PostPage.empty();
+        }
+        
+        StringBuilder sql = new StringBuilder("SELECT ").append(SUMMARY_COLUMNS).append(POST_FROM)
+            .append("WHERE ").append(filter);
+        if (after != null) {
+            sql.append(byPopularity
+                ? " AND (p.view_count, p.created_at, p.id) < (?, ?, ?)"
+                : " AND (p.created_at, p.id) < (?, ?)");
+        }
+        sql.append(byPopularity
+            ? " ORDER BY p.view_count DESC, p.created_at DESC, p.id DESC"
+            : " ORDER BY p.created_at DESC, p.id DESC");
+        // One extra row tells us whether there is another page
+        sql.append(" LIMIT ?");
+        
+        List<PostSummary> posts = new ArrayList<>();
+        PostCursor nextCursor = null;
+        
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            conn = DatabaseUtil.getReadConnection();
+            pstmt = conn.prepareStatement(sql.toString());
+            
+            int index = 1;
+            for (Object param : filterParams) {
+                pstmt.setObject(index++, param);
+            }
+            if (after != null) {
+                if (byPopularity) {
+                    pstmt.setInt(index++, after.getViewCount());
                 }
+                pstmt.setObject(index++, after.getCreatedAt());
+                pstmt.setInt(index++, after.getId());
+            }
+            pstmt.setInt(index, limit + 1);
+            
+            rs = pstmt.executeQuery();
+            
+            // The cursor holds the stored view count, which the summary's (with pending views) may exceed
+            Object lastCreatedAt = null;
+            int lastViewCount = 0;
+            while (rs.next()) {
+                if (posts.size() == limit) {
+                    PostSummary last = posts.get(posts.size() - 1);
+                    nextCursor = new PostCursor(lastCreatedAt, last.getId(), lastViewCount);
+                    break;
+                }
+                lastCreatedAt = rs.getObject("created_at");
+                lastViewCount = rs.getInt("view_count");
+                posts.add(extractSummaryFromResultSet(rs));
             }
             
         } catch (SQLException e) {
-            System.err.println("Error retrieving posts by popularity: " + e.getMessage());
+            System.err.println("Error retrieving page of posts: " + e.getMessage());
         } finally {
-            closeResources(stmt, rs);
+            closeResources(conn, pstmt, rs);
         }
         
-        return posts;
+        return new PostPage(posts, nextCursor);
+    }
+    
+    /**
+     * Get every tag used by a published post with its number of published
+     * posts, most used first. One aggregate over the post_tags index.
+     */
+    public Map<String, Integer> getTagCounts() {
+        String sql = "SELECT t.name, COUNT(*) AS post_count " +
+                     "FROM post_tags pt " +
+                     "JOIN tags t ON t.id = pt.tag_id " +
+                     "JOIN blog_posts p ON p.id = pt.post_id " +
+                     "WHERE p.status = 'published' " +
+                     "GROUP BY t.id " +
+                     "ORDER BY post_count DESC, t.name COLLATE NOCASE";
+        Map<String, Integer> tagCounts = new LinkedHashMap<>();
+        
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            conn = DatabaseUtil.getReadConnection();
+            pstmt = conn.prepareStatement(sql);
+            rs = pstmt.executeQuery();
+            
+            while (rs.next()) {
+                tagCounts.put(rs.getString("name"), rs.getInt("post_count"));
+            }
+            
+        } catch (SQLException e) {
+            System.err.println("Error retrieving tag counts: " + e.getMessage());
+        } finally {
+            closeResources(conn, pstmt, rs);
+        }
+        
+        return tagCounts;
+    }
+    
+    /**
+     * Get the counters of several posts at once, with the given user's reaction
+     * to each, keyed by post id. One query per batch of ids: the counters come
+     * from the post rows and the reaction from the likes(post_id, user_id) key.
+     * 
+     * @param userId the viewing user, or 0 for nobody
+     */
+    public Map<Integer, PostStats> getPostStats(Collection<Integer> postIds, int userId) {
+        Map<Integer, PostStats> stats = new HashMap<>();
+        if (postIds == null || postIds.isEmpty()) {
+            return stats;
+        }
+        
+        List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(postIds));
+        
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            conn = DatabaseUtil.getReadConnection();
+            
+            for (int from = 0; from < ids.size(); from += MAX_IDS_PER_QUERY) {
+                List<Integer> batch = ids.subList(from, Math.min(from + MAX_IDS_PER_QUERY, ids.size()));
+                
+                String placeholders = String.join(", ", Collections.nCopies(batch.size(), "?"));
+                String sql = "SELECT p.id, p.like_count, p.dislike_count, p.comment_count, l.is_like " +
+                             "FROM blog_posts p LEFT JOIN likes l ON l.post_id = p.id AND l.user_id = ? " +
+                             "WHERE p.id IN (" + placeholders + ")";
+                pstmt = conn.prepareStatement(sql);
+                
+                pstmt.setInt(1, userId);
+                for (int i = 0; i < batch.size(); i++) {
+                    pstmt.setInt(i + 2, batch.get(i));
+                }
+                
+                rs = pstmt.executeQuery();
+                while (rs.next()) {
+                    boolean isLike = rs.getBoolean("is_like");
+                    Boolean reaction = rs.wasNull() ? null : isLike;
+                    int postId = rs.getInt("id");
+                    stats.put(postId, new PostStats(postId, rs.getInt("like_count"), rs.getInt("dislike_count"),
+                        rs.getInt("comment_count"), reaction));
+                }
+                
+                rs.close();
+                pstmt.close();
+            }
+            
+        } catch (SQLException e) {
+            System.err.println("Error retrieving post stats: " + e.getMessage());
+        } finally {
+            closeResources(conn, pstmt, rs);
+        }
+        
+        return stats;
+    }
+    
+    /**
+     * Replace a post's rows in post_tags with the tags in the given
+     * comma-separated list, creating any tags that don't exist yet. Runs on the
+     * caller's connection so it commits or rolls back with the post itself.
+     */
+    private void replacePostTags(Connection conn, int postId, String tags) throws SQLException {
+        try (PreparedStatement delete = conn.prepareStatement("DELETE FROM post_tags WHERE post_id = ?")) {
+            delete.setInt(1, postId);
+            delete.executeUpdate();
+        }
+        
+        Set<String> tagNames = BlogPost.parseTags(tags);
+        if (tagNames.isEmpty()) {
+            return;
+        }
+        
+        try (PreparedStatement insertTag = conn.prepareStatement(
+                 "INSERT INTO tags (name) VALUES (?) ON CONFLICT(name) DO NOTHING");
+             PreparedStatement link = conn.prepareStatement(
+                 "INSERT OR IGNORE INTO post_tags (post_id, tag_id) SELECT ?, id FROM tags WHERE name = ?")) {
+            
+            for (String name : tagNames) {
+                insertTag.setString(1, name);
+                insertTag.executeUpdate();
+                
+                link.setInt(1, postId);
+                link.setString(2, name);
+                link.executeUpdate();
+            }
+        }
+    }
+    
+    /**
+     * Roll back whatever a write method left uncommitted and return the
+     * connection to auto-commit mode
+     */
+    private void endTransaction(Connection conn) {
+        if (conn == null) {
+            return;
+        }
+        try {
+            if (!conn.getAutoCommit()) {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            System.err.println("Error ending transaction: " + e.getMessage());
+        }
     }
-} 
\ No newline at end of file
+}
\ No newline at end of file
@@ -92,7 +92,7 @@ public class CommentDAO {
     public Optional<Comment> getCommentById(int commentId) {
         String sql = "SELECT * FROM comments WHERE id = ?";
         
-        try (Connection conn = DatabaseUtil.getConnection();
+        try (Connection conn = DatabaseUtil.getReadConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setInt(1, commentId);
@@ -175,9 +175,9 @@ public class CommentDAO {
      * Count comments for a post
      */
     public int countCommentsForPost(int postId) {
-        String sql = "SELECT COUNT(*) FROM comments WHERE post_id = ?";
+        String sql = "SELECT comment_count FROM blog_posts WHERE id = ?";
         
-        try (Connection conn = DatabaseUtil.getConnection();
+        try (Connection conn = DatabaseUtil.getReadConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setInt(1, postId);
@@ -212,7 +212,7 @@ public class CommentDAO {
         
         String sql = "SELECT * FROM comments WHERE post_id = ? ORDER BY created_at ASC";
         
-        try (Connection conn = DatabaseUtil.getConnection();
+        try (Connection conn = DatabaseUtil.getReadConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setInt(1, postId);
@@ -259,9 +259,9 @@ public class CommentDAO {
      * Get comment count for a post
      */
     public int getCommentCountForPost(int postId) {
-        String sql = "SELECT COUNT(*) FROM comments WHERE post_id = ?";
+        String sql = "SELECT comment_count FROM blog_posts WHERE id = ?";
         
-        try (Connection conn = DatabaseUtil.getConnection();
+        try (Connection conn = DatabaseUtil.getReadConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setInt(1, postId);
@@ -2,6 +2,7 @@ package com.blog.dao;
 
 import com.blog.factory.LikeFactory;
 import com.blog.model.Like;
+import com.blog.model.ReactionState;
 import com.blog.model.User;
 import com.blog.util.DatabaseUtil;
 
@@ -18,57 +19,123 @@ public class LikeDAO {
     }
     
     /**
-     * Create a new like or dislike
+     * Create a new like or dislike, or change the user's existing reaction to
+     * the post. A single UPSERT on the (post_id, user_id) unique key.
      */
     public boolean createLike(Like like) {
-        // First, check if the user already has a like/dislike for this post
-        Optional<Like> existingLike = getLikeByUserAndPost(like.getUser().getId(), like.getPostId());
+        String sql = "INSERT INTO likes (post_id, user_id, is_like, created_at) VALUES (?, ?, ?, ?) " +
+                     "ON CONFLICT(post_id, user_id) DO UPDATE SET is_like = excluded.is_like " +
+                     "RETURNING id";
         
-        if (existingLike.isPresent()) {
-            // Update existing like/dislike
-            String updateSql = "UPDATE likes SET is_like = ? WHERE id = ?";
-            
-            try (Connection conn = DatabaseUtil.getConnection();
-                 PreparedStatement stmt = conn.prepareStatement(updateSql)) {
-                
-                stmt.setBoolean(1, like.isLike());
-                stmt.setInt(2, existingLike.get().getId());
-                
-                int rowsAffected = stmt.executeUpdate();
-                return rowsAffected > 0;
-                
-            } catch (SQLException e) {
-                System.err.println("Error updating like: " + e.getMessage());
-                return false;
+        try (Connection conn = DatabaseUtil.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setInt(1, like.getPostId());
+            stmt.setInt(2, like.getUser().getId());
+            stmt.setBoolean(3, like.isLike());
+            stmt.setTimestamp(4, new Timestamp(like.getCreatedAt().getTime()));
+            
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    like.setId(rs.getInt(1));
+                    return true;
+                }
             }
-        } else {
-            // Create new like/dislike
-            String insertSql = "INSERT INTO likes (post_id, user_id, is_like, created_at) VALUES (?, ?, ?, ?)";
-            
-            try (Connection conn = DatabaseUtil.getConnection();
-                 PreparedStatement stmt = conn.prepareStatement(insertSql, Statement.RETURN_GENERATED_KEYS)) {
-                
-                stmt.setInt(1, like.getPostId());
-                stmt.setInt(2, like.getUser().getId());
-                stmt.setBoolean(3, like.isLike());
-                stmt.setTimestamp(4, new Timestamp(like.getCreatedAt().getTime()));
-                
-                int rowsAffected = stmt.executeUpdate();
-                
-                if (rowsAffected > 0) {
-                    ResultSet generatedKeys = stmt.getGeneratedKeys();
-                    if (generatedKeys.next()) {
-                        like.setId(generatedKeys.getInt(1));
-                        return true;
-                    }
+            
+            return false;
+            
+        } catch (SQLException e) {
+            System.err.println("Error saving like: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Toggle a user's like or dislike on a post: the same reaction again
+     * removes it, anything else sets it. Runs in one transaction and returns
+     * the resulting reaction with the post's counts, so a click needs no
+     * lookups before or after.
+     *
+     * @return the new state, or null if the write failed
+     */
+    public ReactionState toggleReaction(int userId, int postId, boolean isLike) {
+        // Inserts, or flips an opposite reaction; changes nothing if the same reaction exists
+        String upsertSql = "INSERT INTO likes (post_id, user_id, is_like, created_at) VALUES (?, ?, ?, ?) " +
+                           "ON CONFLICT(post_id, user_id) DO UPDATE SET is_like = excluded.is_like " +
+                           "WHERE likes.is_like <> excluded.is_like";
+        String deleteSql = "DELETE FROM likes WHERE post_id = ? AND user_id = ? AND is_like = ?";
+        
+        Connection conn = null;
+        try {
+            conn = DatabaseUtil.getConnection();
+            conn.setAutoCommit(false);
+            
+            Boolean reaction;
+            try (PreparedStatement upsert = conn.prepareStatement(upsertSql)) {
+                upsert.setInt(1, postId);
+                upsert.setInt(2, userId);
+                upsert.setBoolean(3, isLike);
+                upsert.setTimestamp(4, new Timestamp(System.currentTimeMillis()));
+                reaction = upsert.executeUpdate() > 0 ? Boolean.valueOf(isLike) : null;
+            }
+            
+            if (reaction == null) {
+                // The same reaction was already there, so this click takes it back
+                try (PreparedStatement delete = conn.prepareStatement(deleteSql)) {
+                    delete.setInt(1, postId);
+                    delete.setInt(2, userId);
+                    delete.setBoolean(3, isLike);
+                    delete.executeUpdate();
                 }
-                
-                return false;
-                
-            } catch (SQLException e) {
-                System.err.println("Error creating like: " + e.getMessage());
-                return false;
             }
+            
+            int[] counts = countReactions(conn, postId);
+            conn.commit();
+            return new ReactionState(reaction, counts[0], counts[1]);
+            
+        } catch (SQLException e) {
+            System.err.println("Error toggling reaction: " + e.getMessage());
+            return null;
+        } finally {
+            endTransaction(conn);
+        }
+    }
+    
+    /**
+     * Read a post's like and dislike counters, which the likes triggers keep
+     * current within the same transaction
+     * @return [likes, dislikes]
+     */
+    private int[] countReactions(Connection conn, int postId) throws SQLException {
+        String sql = "SELECT like_count, dislike_count FROM blog_posts WHERE id = ?";
+        
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, postId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return new int[]{rs.getInt(1), rs.getInt(2)};
+                }
+            }
+        }
+        return new int[]{0, 0};
+    }
+    
+    /**
+     * Roll back anything left uncommitted, restore auto-commit and return the
+     * connection to the pool
+     */
+    private void endTransaction(Connection conn) {
+        if (conn == null) {
+            return;
+        }
+        try {
+            if (!conn.getAutoCommit()) {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+            conn.close();
+        } catch (SQLException e) {
+            System.err.println("Error ending transaction: " + e.getMessage());
         }
     }
     
@@ -78,7 +145,7 @@ public class LikeDAO {
     public Optional<Like> getLikeByUserAndPost(int userId, int postId) {
         String sql = "SELECT * FROM likes WHERE user_id = ? AND post_id = ?";
         
-        try (Connection conn = DatabaseUtil.getConnection();
+        try (Connection conn = DatabaseUtil.getReadConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setInt(1, userId);
@@ -149,7 +216,7 @@ public class LikeDAO {
         List<Like> likes = new ArrayList<>();
         String sql = "SELECT * FROM likes WHERE post_id = ?";
         
-        try (Connection conn = DatabaseUtil.getConnection();
+        try (Connection conn = DatabaseUtil.getReadConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setInt(1, postId);
@@ -176,41 +243,28 @@ public class LikeDAO {
      * Count likes for a post
      */
     public int countLikesForPost(int postId) {
-        return countReactionsForPost(postId, true);
+        return getReactionCounts(postId)[0];
     }
     
     /**
      * Count dislikes for a post
      */
     public int countDislikesForPost(int postId) {
-        return countReactionsForPost(postId, false);
+        return getReactionCounts(postId)[1];
     }
     
     /**
-     * Count reactions (likes or dislikes) for a post
+     * Get a post's like and dislike counts from its counter columns
+     * @return int array where [0] is likes count and [1] is dislikes count
      */
-    private int countReactionsForPost(int postId, boolean isLike) {
-        String sql = "SELECT COUNT(*) FROM likes WHERE post_id = ? AND is_like = ?";
-        
-        try (Connection conn = DatabaseUtil.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
-            stmt.setInt(1, postId);
-            stmt.setBoolean(2, isLike);
-            
-            ResultSet rs = stmt.executeQuery();
-            
-            if (rs.next()) {
-                return rs.getInt(1);
-            }
-            
-            rs.close();
-            
+    public int[] getReactionCounts(int postId) {
+        try (Connection conn = DatabaseUtil.getReadConnection()) {
+            return countReactions(conn, postId);
         } catch (SQLException e) {
             System.err.println("Error counting reactions: " + e.getMessage());
         }
         
-        return 0;
+        return new int[]{0, 0};
     }
     
     /**
@@ -6,10 +6,20 @@ import com.blog.util.DatabaseUtil;
 import java.io.ByteArrayInputStream;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public class MediaDAO {
+    // Everything except the file data, which is only loaded for a single item
+    private static final String MEDIA_COLUMNS = "id, post_id, file_name, file_type, file_path, uploaded_at, caption";
+    
+    // SQLite's default limit on bound parameters is 999
+    private static final int MAX_IDS_PER_QUERY = 900;
     
     /**
      * Save a media file to the database
@@ -57,7 +67,7 @@ public class MediaDAO {
             System.err.println("Error saving media: " + e.getMessage());
             return false;
         } finally {
-            closeResources(pstmt, rs);
+            closeResources(conn, pstmt, rs);
         }
     }
     
@@ -65,41 +75,128 @@ public class MediaDAO {
      * Get all media attached to a post
      */
     public List<Media> getMediaByPostId(int postId) {
-        String sql = "SELECT id, post_id, file_name, file_type, file_path, uploaded_at, caption FROM media WHERE post_id = ?";
+        String sql = "SELECT " + MEDIA_COLUMNS + " FROM media WHERE post_id = ?";
         List<Media> mediaList = new ArrayList<>();
         
         Connection conn = null;
         PreparedStatement pstmt = null;
         ResultSet rs = null;
         try {
-            conn = DatabaseUtil.getConnection();
+            conn = DatabaseUtil.getReadConnection();
             pstmt = conn.prepareStatement(sql);
             
             pstmt.setInt(1, postId);
             
             rs = pstmt.executeQuery();
             while (rs.next()) {
-                Media media = new Media();
-                media.setId(rs.getInt("id"));
-                media.setPostId(rs.getInt("post_id"));
-                media.setFileName(rs.getString("file_name"));
-                media.setFileType(rs.getString("file_type"));
-                media.setFilePath(rs.getString("file_path"));
-                media.setUploadedAt(rs.getTimestamp("uploaded_at"));
-                media.setCaption(rs.getString("caption"));
-                
-                mediaList.add(media);
+                mediaList.add(extractMediaFromResultSet(rs));
             }
             
         } catch (SQLException e) {
             System.err.println("Error retrieving media: " + e.getMessage());
         } finally {
-            closeResources(pstmt, rs);
+            closeResources(conn, pstmt, rs);
         }
         
         return mediaList;
     }
     
+    /**
+     * Get the media attached to several posts at once, keyed by post id. Issues
+     * one query per batch of ids instead of one query per post.
+     */
+    public Map<Integer, List<Media>> getMediaByPostIds(Collection<Integer> postIds) {
+        Map<Integer, List<Media>> mediaByPost = new HashMap<>();
+        if (postIds == null || postIds.isEmpty()) {
+            return mediaByPost;
+        }
+        
+        List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(postIds));
+        
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            conn = DatabaseUtil.getReadConnection();
+            
+            for (int from = 0; from < ids.size(); from += MAX_IDS_PER_QUERY) {
+                List<Integer> batch = ids.subList(from, Math.min(from + MAX_IDS_PER_QUERY, ids.size()));
+                
+                String placeholders = String.join(", ", Collections.nCopies(batch.size(), "?"));
+                String sql = "SELECT " + MEDIA_COLUMNS + " FROM media WHERE post_id IN (" + placeholders + ") ORDER BY post_id, id";
+                pstmt = conn.prepareStatement(sql);
+                
+                for (int i = 0; i < batch.size(); i++) {
+                    pstmt.setInt(i + 1, batch.get(i));
+                }
+                
+                rs = pstmt.executeQuery();
+                while (rs.next()) {
+                    Media media = extractMediaFromResultSet(rs);
+                    mediaByPost.computeIfAbsent(media.getPostId(), k -> new ArrayList<>()).add(media);
+                }
+                
+                rs.close();
+                pstmt.close();
+            }
+            
+        } catch (SQLException e) {
+            System.err.println("Error retrieving media: " + e.getMessage());
+        } finally {
+            closeResources(conn, pstmt, rs);
+        }
+        
+        return mediaByPost;
+    }
+    
+    /**
+     * Get the binary data of several media files at once, keyed by media id.
+     * Issues one query per batch of ids instead of one query per file; ids
+     * with no row are left out.
+     */
+    public Map<Integer, byte[]> getMediaDataByIds(Collection<Integer> mediaIds) {
+        Map<Integer, byte[]> dataById = new HashMap<>();
+        if (mediaIds == null || mediaIds.isEmpty()) {
+            return dataById;
+        }
+        
+        List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(mediaIds));
+        
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            conn = DatabaseUtil.getReadConnection();
+            
+            for (int from = 0; from < ids.size(); from += MAX_IDS_PER_QUERY) {
+                List<Integer> batch = ids.subList(from, Math.min(from + MAX_IDS_PER_QUERY, ids.size()));
+                
+                String placeholders = String.join(", ", Collections.nCopies(batch.size(), "?"));
+                String sql = "SELECT id, file_data FROM media WHERE id IN (" + placeholders + ")";
+                pstmt = conn.prepareStatement(sql);
+                
+                for (int i = 0; i < batch.size(); i++) {
+                    pstmt.setInt(i + 1, batch.get(i));
+                }
+                
+                rs = pstmt.executeQuery();
+                while (rs.next()) {
+                    dataById.put(rs.getInt("id"), rs.getBytes("file_data"));
+                }
+                
+                rs.close();
+                pstmt.close();
+            }
+            
+        } catch (SQLException e) {
+            System.err.println("Error retrieving media data: " + e.getMessage());
+        } finally {
+            closeResources(conn, pstmt, rs);
+        }
+        
+        return dataById;
+    }
+    
     /**
      * Get a specific media file with its binary data
      */
@@ -110,7 +207,7 @@ public class MediaDAO {
         PreparedStatement pstmt = null;
         ResultSet rs = null;
         try {
-            conn = DatabaseUtil.getConnection();
+            conn = DatabaseUtil.getReadConnection();
             pstmt = conn.prepareStatement(sql);
             
             pstmt.setInt(1, id);
@@ -133,7 +230,7 @@ public class MediaDAO {
         } catch (SQLException e) {
             System.err.println("Error retrieving media: " + e.getMessage());
         } finally {
-            closeResources(pstmt, rs);
+            closeResources(conn, pstmt, rs);
         }
         
         return Optional.empty();
@@ -160,7 +257,7 @@ public class MediaDAO {
             System.err.println("Error deleting media: " + e.getMessage());
             return false;
         } finally {
-            closeResources(pstmt, null);
+            closeResources(conn, pstmt, null);
         }
     }
     
@@ -185,11 +282,26 @@ public class MediaDAO {
             System.err.println("Error deleting media for post: " + e.getMessage());
             return false;
         } finally {
-            closeResources(pstmt, null);
+            closeResources(conn, pstmt, null);
         }
     }
     
-    private void closeResources(Statement stmt, ResultSet rs) {
+    /**
+     * Extract a Media object, without its file data, from a row selected with MEDIA_COLUMNS
+     */
+    private Media extractMediaFromResultSet(ResultSet rs) throws SQLException {
+        Media media = new Media();
+        media.setId(rs.getInt("id"));
+        media.setPostId(rs.getInt("post_id"));
+        media.setFileName(rs.getString("file_name"));
+        media.setFileType(rs.getString("file_type"));
+        media.setFilePath(rs.getString("file_path"));
+        media.setUploadedAt(rs.getTimestamp("uploaded_at"));
+        media.setCaption(rs.getString("caption"));
+        return media;
+    }
+    
+    private void closeResources(Connection conn, Statement stmt, ResultSet rs) {
         try {
             if (rs != null) {
                 rs.close();
@@ -197,6 +309,9 @@ public class MediaDAO {
             if (stmt != null) {
                 stmt.close();
             }
+            if (conn != null) {
+                conn.close(); // Returns the lease to the pool
+            }
         } catch (SQLException e) {
             System.err.println("Error closing resources: " + e.getMessage());
         }
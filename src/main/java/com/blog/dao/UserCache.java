@@ -0,0 +1,156 @@
+package com.blog.dao;
+
+import com.blog.model.User;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+/**
+ * Identity map of users keyed by id, shared by every DAO through
+ * {@link UserDAO#getUserById}. While a user stays cached, every lookup of that
+ * id returns the same {@link User} instance, so rendering 2,000 comments by 40
+ * authors loads 40 users instead of 2,000.
+ *
+ * Lookups are lock-free reads of a ConcurrentHashMap. The size is bounded with
+ * a CLOCK sweep (an approximation of LRU): each hit marks its entry as
+ * referenced, and when the map is full the sweep evicts the first unreferenced
+ * entry in insertion order, giving referenced ones a second chance.
+ */
+public class UserCache {
+    private final int maxSize;
+    private final ConcurrentHashMap<Integer, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<Entry> clock = new ConcurrentLinkedQueue<>();
+    // Bumped by every invalidation so a load that raced with a write isn't cached
+    private final AtomicLong generation = new AtomicLong();
+    
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    
+    public UserCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+    
+    /**
+     * Get the cached user, or load and cache it
+     * @param loader reads the user from the database; may return null if there is none
+     * @return the user, or null if the loader found none
+     */
+    public User get(int id, IntFunction<User> loader) {
+        Entry entry = entries.get(id);
+        if (entry != null) {
+            entry.referenced = true;
+            hits.increment();
+            return entry.user;
+        }
+        
+        misses.increment();
+        long loadGeneration = generation.get();
+        User user = loader.apply(id);
+        if (user == null || maxSize <= 0) {
+            return user;
+        }
+        
+        synchronized (this) {
+            if (generation.get() != loadGeneration) {
+                return user; // A write happened meanwhile; this copy may be stale
+            }
+            Entry existing = entries.get(id);
+            if (existing != null) {
+                return existing.user; // Loaded concurrently; keep one instance per id
+            }
+            Entry added = new Entry(id, user);
+            entries.put(id, added);
+            clock.add(added);
+            evictIfNeeded();
+        }
+        return user;
+    }
+    
+    /**
+     * Drop a user; call whenever their row changes
+     */
+    public void invalidate(int id) {
+        synchronized (this) {
+            generation.incrementAndGet();
+            Entry removed = entries.remove(id);
+            if (removed != null) {
+                clock.remove(removed);
+                invalidations.increment();
+            }
+        }
+    }
+    
+    public synchronized void clear() {
+        generation.incrementAndGet();
+        entries.clear();
+        clock.clear();
+    }
+    
+    private void evictIfNeeded() {
+        while (entries.size() > maxSize) {
+            Entry candidate = clock.poll();
+            if (candidate == null) {
+                return;
+            }
+            if (entries.get(candidate.id) != candidate) {
+                continue; // Already invalidated or replaced
+            }
+            if (candidate.referenced) {
+                candidate.referenced = false;
+                clock.add(candidate);
+            } else {
+                entries.remove(candidate.id, candidate);
+                evictions.increment();
+            }
+        }
+    }
+    
+    public int size() {
+        return entries.size();
+    }
+    
+    public long getHits() {
+        return hits.sum();
+    }
+    
+    public long getMisses() {
+        return misses.sum();
+    }
+    
+    public long getEvictions() {
+        return evictions.sum();
+    }
+    
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+    
+    public double getHitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("%d/%d users, hits %d, misses %d, evicted %d, invalidated %d (hit ratio %.1f%%)",
+            size(), maxSize, getHits(), getMisses(), getEvictions(), getInvalidations(), getHitRatio() * 100);
+    }
+    
+    private static class Entry {
+        final int id;
+        final User user;
+        volatile boolean referenced;
+        
+        Entry(int id, User user) {
+            this.id = id;
+            this.user = user;
+        }
+    }
+}
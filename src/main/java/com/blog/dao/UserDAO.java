@@ -1,7 +1,10 @@
 package com.blog.dao;
 
+import com.blog.model.Availability;
 import com.blog.model.User;
+import com.blog.util.BloomFilter;
 import com.blog.util.DatabaseUtil;
+import com.blog.util.PasswordHashing;
 
 import java.io.ByteArrayInputStream;
 import java.sql.Connection;
@@ -10,16 +13,39 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Data Access Object for User entity.
  * Implemented as a singleton to ensure consistent database access.
  */
 public class UserDAO {
+    // Every scalar column; the profile image BLOB is read only by getProfileImageData
+    private static final String USER_COLUMNS =
+        "id, username, password, email, full_name, role, profile_picture, bio";
+    
+    // Users kept in the identity map; a few KB each without the image BLOB
+    private static final int USER_CACHE_SIZE = 2048;
+    
+    // Bloom filter of normalized usernames and emails: at least this many
+    // entries, twice the registered count when built, 1% false positives
+    private static final int NAME_FILTER_CAPACITY = Integer.getInteger("blog.users.nameFilterCapacity", 10_000);
+    private static final double NAME_FILTER_FALSE_POSITIVES = 0.01;
+    private static final String USERNAME_KEY = "u:";
+    private static final String EMAIL_KEY = "e:";
+    
     // Singleton instance
     private static UserDAO instance;
     
+    private final UserCache userCache = new UserCache(USER_CACHE_SIZE);
+    
+    // Null until first needed, after it fills up, or if building it failed
+    private volatile BloomFilter nameFilter;
+    private final LongAdder definitelyFree = new LongAdder();
+    private final LongAdder availabilityQueries = new LongAdder();
+    
     /**
      * Private constructor for Singleton pattern
      */
@@ -56,13 +82,17 @@ public class UserDAO {
             pstmt.setString(6, user.getBio());
             
             int affectedRows = pstmt.executeUpdate();
-            return affectedRows > 0;
+            if (affectedRows > 0) {
+                addToNameFilter(user.getUsername(), user.getEmail());
+                return true;
+            }
+            return false;
             
         } catch (SQLException e) {
             System.err.println("Error registering user: " + e.getMessage());
             return false;
         } finally {
-            closeResources(pstmt, null);
+            closeResources(conn, pstmt, null);
         }
     }
     
@@ -91,7 +121,8 @@ public class UserDAO {
             System.err.println("Error updating profile picture: " + e.getMessage());
             return false;
         } finally {
-            closeResources(pstmt, null);
+            userCache.invalidate(userId);
+            closeResources(conn, pstmt, null);
         }
     }
     
@@ -111,27 +142,34 @@ public class UserDAO {
             pstmt.setInt(5, user.getId());
             
             int affectedRows = pstmt.executeUpdate();
-            return affectedRows > 0;
+            if (affectedRows > 0) {
+                // The old email stays in the filter; it only costs a query if checked again
+                addToNameFilter(null, user.getEmail());
+                return true;
+            }
+            return false;
             
         } catch (SQLException e) {
             System.err.println("Error updating user profile: " + e.getMessage());
             return false;
         } finally {
-            closeResources(pstmt, null);
+            userCache.invalidate(user.getId());
+            closeResources(conn, pstmt, null);
         }
     }
     
     public boolean changePassword(int userId, String newPassword) {
         String sql = "UPDATE users SET password = ? WHERE id = ?";
         
+        // Hash before taking the writer; the KDF is deliberately slow
+        String encryptedPassword = PasswordHashing.hash(newPassword);
+        
         Connection conn = null;
         PreparedStatement pstmt = null;
         try {
             conn = DatabaseUtil.getConnection();
             pstmt = conn.prepareStatement(sql);
             
-            // Encrypt the password
-            String encryptedPassword = User.encryptPassword(newPassword);
             pstmt.setString(1, encryptedPassword);
             pstmt.setInt(2, userId);
             
@@ -142,145 +180,317 @@ public class UserDAO {
             System.err.println("Error changing password: " + e.getMessage());
             return false;
         } finally {
-            closeResources(pstmt, null);
+            userCache.invalidate(userId);
+            closeResources(conn, pstmt, null);
         }
     }
     
+    /**
+     * Check a username and password. The hash is verified after the read
+     * connection is returned, since a KDF verification takes a while; a hash
+     * in a legacy format or below the current cost is replaced on success.
+     */
     public Optional<User> authenticateUser(String username, String password) {
         // First check if user exists
         if (username == null || password == null) {
             return Optional.empty();
         }
         
-        String sql = "SELECT * FROM users WHERE username = ?";
+        String sql = "SELECT " + USER_COLUMNS + " FROM users WHERE username = ?";
         
+        User user = null;
         Connection conn = null;
         PreparedStatement pstmt = null;
         ResultSet rs = null;
         try {
-            conn = DatabaseUtil.getConnection();
+            conn = DatabaseUtil.getReadConnection();
             pstmt = conn.prepareStatement(sql);
             
             pstmt.setString(1, username);
             
             rs = pstmt.executeQuery();
             if (rs.next()) {
-                // User exists, check password
-                String storedPassword = rs.getString("password");
-                
-                // Check if stored password matches input password directly
-                // This handles the case where passwords are stored in plaintext in the database
-                if (password.equals(storedPassword)) {
-                    User user = extractUserFromResultSet(rs);
-                    return Optional.of(user);
-                }
-                
-                // If direct comparison fails, try with encrypted password
-                // This handles the case where passwords are expected to be encrypted
-                String encryptedInputPassword = User.encryptPassword(password);
-                if (encryptedInputPassword.equals(storedPassword)) {
-                    User user = extractUserFromResultSet(rs);
-                    return Optional.of(user);
-                }
+                user = extractUserFromResultSet(rs);
             }
             
         } catch (SQLException e) {
             System.err.println("Error authenticating user: " + e.getMessage());
         } finally {
-            closeResources(pstmt, rs);
+            closeResources(conn, pstmt, rs);
         }
         
-        return Optional.empty();
+        if (user == null || !PasswordHashing.verify(password, user.getPassword())) {
+            return Optional.empty();
+        }
+        
+        // Transparent upgrade from SHA-256 (or plaintext) to the current KDF
+        if (PasswordHashing.needsRehash(user.getPassword())) {
+            String newHash = PasswordHashing.hash(password);
+            if (upgradePasswordHash(user.getId(), user.getPassword(), newHash)) {
+                user.setEncryptedPassword(newHash);
+            }
+        }
+        return Optional.of(user);
+    }
+    
+    /**
+     * Replace a user's password hash, unless the password changed since it was read
+     */
+    private boolean upgradePasswordHash(int userId, String oldHash, String newHash) {
+        String sql = "UPDATE users SET password = ? WHERE id = ? AND password = ?";
+        
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        try {
+            conn = DatabaseUtil.getConnection();
+            pstmt = conn.prepareStatement(sql);
+            
+            pstmt.setString(1, newHash);
+            pstmt.setInt(2, userId);
+            pstmt.setString(3, oldHash);
+            
+            int affectedRows = pstmt.executeUpdate();
+            return affectedRows > 0;
+            
+        } catch (SQLException e) {
+            System.err.println("Error upgrading password hash: " + e.getMessage());
+            return false;
+        } finally {
+            userCache.invalidate(userId);
+            closeResources(conn, pstmt, null);
+        }
     }
     
+    /**
+     * Get a user by id. Served from the identity map when cached, so repeated
+     * lookups of the same author return the same instance without a query.
+     */
     public Optional<User> getUserById(int id) {
-        String sql = "SELECT * FROM users WHERE id = ?";
+        return Optional.ofNullable(userCache.get(id, this::loadUserById));
+    }
+    
+    private User loadUserById(int id) {
+        String sql = "SELECT " + USER_COLUMNS + " FROM users WHERE id = ?";
         
         Connection conn = null;
         PreparedStatement pstmt = null;
         ResultSet rs = null;
         try {
-            conn = DatabaseUtil.getConnection();
+            conn = DatabaseUtil.getReadConnection();
             pstmt = conn.prepareStatement(sql);
             
             pstmt.setInt(1, id);
             
             rs = pstmt.executeQuery();
             if (rs.next()) {
-                User user = extractUserFromResultSet(rs);
-                return Optional.of(user);
+                return extractUserFromResultSet(rs);
             }
             
         } catch (SQLException e) {
             System.err.println("Error getting user: " + e.getMessage());
         } finally {
-            closeResources(pstmt, rs);
+            closeResources(conn, pstmt, rs);
         }
         
-        return Optional.empty();
+        return null;
     }
     
-    public boolean isUsernameTaken(String username) {
-        String sql = "SELECT COUNT(*) FROM users WHERE username = ?";
+    /**
+     * Get a user's profile image bytes. User objects don't carry the image;
+     * views get decoded avatars from AvatarStore, which calls this.
+     * @return the image data, or empty if the user has none
+     */
+    public Optional<byte[]> getProfileImageData(int userId) {
+        String sql = "SELECT profile_image_data FROM users WHERE id = ?";
         
         Connection conn = null;
         PreparedStatement pstmt = null;
         ResultSet rs = null;
         try {
-            conn = DatabaseUtil.getConnection();
+            conn = DatabaseUtil.getReadConnection();
             pstmt = conn.prepareStatement(sql);
             
-            pstmt.setString(1, username);
+            pstmt.setInt(1, userId);
             
             rs = pstmt.executeQuery();
             if (rs.next()) {
-                return rs.getInt(1) > 0;
+                byte[] imageData = rs.getBytes("profile_image_data");
+                if (imageData != null && imageData.length > 0) {
+                    return Optional.of(imageData);
+                }
             }
             
         } catch (SQLException e) {
-            System.err.println("Error checking username: " + e.getMessage());
+            System.err.println("Error getting profile image: " + e.getMessage());
         } finally {
-            closeResources(pstmt, rs);
+            closeResources(conn, pstmt, rs);
         }
         
-        return false;
+        return Optional.empty();
+    }
+    
+    public boolean isUsernameTaken(String username) {
+        return checkAvailability(username, null).isUsernameTaken();
     }
     
     public boolean isEmailTaken(String email) {
-        String sql = "SELECT COUNT(*) FROM users WHERE email = ?";
+        return checkAvailability(null, email).isEmailTaken();
+    }
+    
+    /**
+     * Check whether a username and email are registered; either may be null
+     * to skip it. Values the name filter has never seen are free without a
+     * query; otherwise one indexed query answers for both.
+     */
+    public Availability checkAvailability(String username, String email) {
+        String sql = "SELECT EXISTS(SELECT 1 FROM users WHERE username = ?), " +
+                     "EXISTS(SELECT 1 FROM users WHERE email = ?)";
+        
+        BloomFilter filter = getNameFilter();
+        boolean checkUsername = username != null &&
+            (filter == null || filter.mightContain(USERNAME_KEY + normalize(username)));
+        boolean checkEmail = email != null &&
+            (filter == null || filter.mightContain(EMAIL_KEY + normalize(email)));
+        if (!checkUsername && !checkEmail) {
+            definitelyFree.increment();
+            return new Availability(false, false);
+        }
         
         Connection conn = null;
         PreparedStatement pstmt = null;
         ResultSet rs = null;
         try {
-            conn = DatabaseUtil.getConnection();
+            conn = DatabaseUtil.getReadConnection();
             pstmt = conn.prepareStatement(sql);
             
-            pstmt.setString(1, email);
+            // A NULL never matches, so a value the filter ruled out isn't looked up
+            pstmt.setString(1, checkUsername ? username : null);
+            pstmt.setString(2, checkEmail ? email : null);
             
+            availabilityQueries.increment();
             rs = pstmt.executeQuery();
             if (rs.next()) {
-                return rs.getInt(1) > 0;
+                return new Availability(rs.getInt(1) > 0, rs.getInt(2) > 0);
             }
             
         } catch (SQLException e) {
-            System.err.println("Error checking email: " + e.getMessage());
+            System.err.println("Error checking username and email: " + e.getMessage());
         } finally {
-            closeResources(pstmt, rs);
+            closeResources(conn, pstmt, rs);
         }
         
-        return false;
+        return new Availability(false, false);
+    }
+    
+    /**
+     * Get the name filter, building it from the users table if needed
+     * 
+     * @return the filter, or null if it couldn't be built
+     */
+    private BloomFilter getNameFilter() {
+        BloomFilter filter = nameFilter;
+        if (filter != null) {
+            return filter;
+        }
+        synchronized (this) {
+            if (nameFilter != null) {
+                return nameFilter;
+            }
+            
+            // Each column is read from its unique index rather than the table
+            List<String> usernames = loadColumn("SELECT username FROM users");
+            List<String> emails = loadColumn("SELECT email FROM users");
+            if (usernames == null || emails == null) {
+                return null;
+            }
+            
+            int capacity = Math.max(NAME_FILTER_CAPACITY, 2 * (usernames.size() + emails.size()));
+            filter = new BloomFilter(capacity, NAME_FILTER_FALSE_POSITIVES);
+            for (String username : usernames) {
+                filter.add(USERNAME_KEY + normalize(username));
+            }
+            for (String email : emails) {
+                filter.add(EMAIL_KEY + normalize(email));
+            }
+            nameFilter = filter;
+            return filter;
+        }
+    }
+    
+    private List<String> loadColumn(String sql) {
+        List<String> values = new ArrayList<>();
+        
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            conn = DatabaseUtil.getReadConnection();
+            pstmt = conn.prepareStatement(sql);
+            
+            rs = pstmt.executeQuery();
+            while (rs.next()) {
+                values.add(rs.getString(1));
+            }
+            return values;
+            
+        } catch (SQLException e) {
+            System.err.println("Error loading usernames and emails: " + e.getMessage());
+            return null;
+        } finally {
+            closeResources(conn, pstmt, rs);
+        }
+    }
+        
+    /**
+     * Record a newly stored username and/or email. Synchronized with building
+     * the filter, so a row committed during a build is never missed.
+     */
+    private synchronized void addToNameFilter(String username, String email) {
+        BloomFilter filter = nameFilter;
+        if (filter == null) {
+            return; // Built from the table when next needed
+        }
+        if (username != null) {
+            filter.add(USERNAME_KEY + normalize(username));
+        }
+        if (email != null) {
+            filter.add(EMAIL_KEY + normalize(email));
+        }
+        // Past capacity the false positive rate climbs; rebuild larger on next use
+        if (filter.getInsertions() > filter.getCapacity()) {
+            nameFilter = null;
+        }
+    }
+    
+    /**
+     * Case and surrounding spaces don't make a name distinct for the filter.
+     * It only ever over-reports, so the exact query stays the authority.
+     */
+    private static String normalize(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+    
+    /**
+     * Name filter size and how often it saved a query, for diagnostics
+     */
+    public String getNameFilterStatus() {
+        BloomFilter filter = nameFilter;
+        String size = filter == null ? "not built"
+            : String.format("%d entries in %d KB, %d hashes, ~%.2f%% false positives", filter.getInsertions(),
+                filter.sizeInBytes() / 1024, filter.getHashCount(), 100 * filter.getExpectedFalsePositiveRate());
+        return size + "; " + definitelyFree.sum() + " checks answered from memory, " +
+               availabilityQueries.sum() + " queried";
     }
     
     public List<User> getAllUsers() {
-        String sql = "SELECT * FROM users ORDER BY username";
+        String sql = "SELECT " + USER_COLUMNS + " FROM users ORDER BY username";
         List<User> users = new ArrayList<>();
         
         Connection conn = null;
         PreparedStatement pstmt = null;
         ResultSet rs = null;
         try {
-            conn = DatabaseUtil.getConnection();
+            conn = DatabaseUtil.getReadConnection();
             pstmt = conn.prepareStatement(sql);
             
             rs = pstmt.executeQuery();
@@ -292,7 +502,7 @@ public class UserDAO {
         } catch (SQLException e) {
             System.err.println("Error getting all users: " + e.getMessage());
         } finally {
-            closeResources(pstmt, rs);
+            closeResources(conn, pstmt, rs);
         }
         
         return users;
@@ -322,20 +532,10 @@ public class UserDAO {
             user.setBio(bio);
         }
         
-        try {
-            byte[] imageData = rs.getBytes("profile_image_data");
-            if (imageData != null) {
-                user.setProfileImageData(imageData);
-            }
-        } catch (SQLException e) {
-            // Profile image data might not exist yet
-            System.err.println("Warning: Could not retrieve profile image data: " + e.getMessage());
-        }
-        
         return user;
     }
     
-    private void closeResources(PreparedStatement stmt, ResultSet rs) {
+    private void closeResources(Connection conn, PreparedStatement stmt, ResultSet rs) {
         try {
             if (rs != null) {
                 rs.close();
@@ -343,6 +543,9 @@ public class UserDAO {
             if (stmt != null) {
                 stmt.close();
             }
+            if (conn != null) {
+                conn.close(); // Returns the lease to the pool
+            }
         } catch (SQLException e) {
             System.err.println("Error closing resources: " + e.getMessage());
         }
@@ -355,7 +558,7 @@ public class UserDAO {
         PreparedStatement pstmt = null;
         ResultSet rs = null;
         try {
-            conn = DatabaseUtil.getConnection();
+            conn = DatabaseUtil.getReadConnection();
             pstmt = conn.prepareStatement(sql);
             
             rs = pstmt.executeQuery();
@@ -366,12 +569,19 @@ public class UserDAO {
         } catch (SQLException e) {
             System.err.println("Error getting last user ID: " + e.getMessage());
         } finally {
-            closeResources(pstmt, rs);
+            closeResources(conn, pstmt, rs);
         }
         
         return -1; // Return -1 if no user found or error occurs
     }
     
+    /**
+     * Hit and eviction counters of the user identity map, for sizing it
+     */
+    public UserCache getUserCache() {
+        return userCache;
+    }
+    
     // For testing purposes - should not be used in production
     protected static void resetInstance() {
         instance = null;
@@ -1,91 +1,198 @@
 package com.blog.model;
 
+import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
- * Analytics event class implementing the Prototype pattern
- * Used to track user interactions with the blog
+ * Analytics event with primitive fields only: an event type id, the user and
+ * post involved (0 for none), a timestamp, and one typed attribute (a key id
+ * and a long value). Tracking an event stores these fields without building
+ * any maps or strings; names and text are only produced by {@link #toString()}
+ * and {@link #describe()} when a report asks for them.
+ *
+ * Instances are mutable so the analytics consumer can reuse them; code that
+ * keeps an event it was handed must {@link #copy()} it.
  */
-public class AnalyticsEvent implements Cloneable {
-    private String eventType;
-    private Date timestamp;
+public class AnalyticsEvent {
+    // Event types
+    public static final int PAGE_VIEW = 0;
+    public static final int LOGIN = 1;
+    public static final int LOGOUT = 2;
+    public static final int POST_VIEW = 3;
+    public static final int COMMENT = 4;
+    public static final int REGISTRATION = 5;
+    public static final int POST_CREATE = 6;
+    public static final int POST_EDIT = 7;
+    public static final int POST_DELETE = 8;
+    public static final int COMMENT_CREATE = 9;
+    public static final int COMMENT_DELETE = 10;
+    public static final int LIKE = 11;
+    public static final int DISLIKE = 12;
+    
+    private static final String[] TYPE_NAMES = {
+        "page_view", "login", "logout", "post_view", "comment", "registration", "post_create",
+        "post_edit", "post_delete", "comment_create", "comment_delete", "like", "dislike"
+    };
+    
+    public static final int TYPE_COUNT = TYPE_NAMES.length;
+    
+    // Attribute keys
+    public static final int ATTR_NONE = 0;
+    /** One of the PAGE_ values */
+    public static final int ATTR_PAGE = 1;
+    public static final int ATTR_CONTENT_LENGTH = 2;
+    public static final int ATTR_COMMENT_LENGTH = 3;
+    public static final int ATTR_COMMENT_ID = 4;
+    public static final int ATTR_AUTHOR_ID = 5;
+    /** One of the METHOD_ values */
+    public static final int ATTR_METHOD = 6;
+    public static final int ATTR_SESSION_SECONDS = 7;
+    /** 1 when the event follows an automatic login */
+    public static final int ATTR_AUTO_LOGIN = 8;
+    /** PROFILE_ flags set at registration */
+    public static final int ATTR_PROFILE_FLAGS = 9;
+    
+    private static final String[] ATTRIBUTE_NAMES = {
+        "", "page", "contentLength", "commentLength", "commentId", "authorId", "method",
+        "session_duration_seconds", "auto_login", "profile"
+    };
+    
+    // Values of ATTR_PAGE
+    public static final int PAGE_LOGIN = 0;
+    public static final int PAGE_REGISTER = 1;
+    public static final int PAGE_BLOG_LIST = 2;
+    private static final String[] PAGE_NAMES = {"login", "register", "blog_list"};
+    
+    // Values of ATTR_METHOD
+    public static final int METHOD_CREDENTIALS = 0;
+    public static final int METHOD_SESSION_TOKEN = 1;
+    private static final String[] METHOD_NAMES = {"credentials", "session_token"};
+    
+    // Bits of ATTR_PROFILE_FLAGS
+    public static final int PROFILE_HAS_BIO = 1;
+    public static final int PROFILE_HAS_PICTURE = 2;
+    
+    private int type;
     private int userId;
-    private String username;
-    private Map<String, Object> properties;
+    private int postId;
+    private long timestamp;
+    private int attributeKey;
+    private long attributeValue;
     
-    // Constructor for creating a new event template
-    public AnalyticsEvent(String eventType) {
-        this.eventType = eventType;
-        this.timestamp = new Date();
-        this.properties = new HashMap<>();
+    public AnalyticsEvent() {
     }
     
-    // Clone the event (Prototype pattern implementation)
-    @Override
-    public AnalyticsEvent clone() {
-        try {
-            AnalyticsEvent clone = (AnalyticsEvent) super.clone();
-            clone.timestamp = new Date(); // Fresh timestamp
-            clone.properties = new HashMap<>(this.properties); // Deep copy of properties
-            return clone;
-        } catch (CloneNotSupportedException e) {
-            throw new RuntimeException("Could not clone AnalyticsEvent", e);
-        }
+    public AnalyticsEvent(int type, int userId, int postId, long timestamp, int attributeKey, long attributeValue) {
+        set(type, userId, postId, timestamp, attributeKey, attributeValue);
     }
     
-    // Create a copy with user information
-    public AnalyticsEvent withUser(User user) {
-        AnalyticsEvent clone = this.clone();
-        clone.userId = user != null ? user.getId() : -1;
-        clone.username = user != null ? user.getUsername() : "anonymous";
-        return clone;
+    /**
+     * Overwrite every field, so one instance can be reused for many events
+     */
+    public void set(int type, int userId, int postId, long timestamp, int attributeKey, long attributeValue) {
+        this.type = type;
+        this.userId = userId;
+        this.postId = postId;
+        this.timestamp = timestamp;
+        this.attributeKey = attributeKey;
+        this.attributeValue = attributeValue;
     }
     
-    // Add a property to the event
-    public AnalyticsEvent withProperty(String key, Object value) {
-        AnalyticsEvent clone = this.clone();
-        clone.properties.put(key, value);
-        return clone;
+    public void copyFrom(AnalyticsEvent other) {
+        set(other.type, other.userId, other.postId, other.timestamp, other.attributeKey, other.attributeValue);
     }
     
-    // Getters and setters
-    public String getEventType() {
-        return eventType;
+    public AnalyticsEvent copy() {
+        return new AnalyticsEvent(type, userId, postId, timestamp, attributeKey, attributeValue);
     }
     
-    public Date getTimestamp() {
-        return timestamp;
+    public static boolean isValidType(int type) {
+        return type >= 0 && type < TYPE_COUNT;
     }
     
+    /**
+     * @return the name used in reports, e.g. "page_view"
+     */
+    public static String typeName(int type) {
+        return isValidType(type) ? TYPE_NAMES[type] : "unknown_" + type;
+    }
+    
+    public int getType() {
+        return type;
+    }
+    
+    public String getTypeName() {
+        return typeName(type);
+    }
+    
+    /**
+     * @return the user's id, or 0 for an anonymous event
+     */
     public int getUserId() {
         return userId;
     }
     
-    public String getUsername() {
-        return username;
+    /**
+     * @return the post's id, or 0 if the event isn't about a post
+     */
+    public int getPostId() {
+        return postId;
+    }
+    
+    public long getTimestamp() {
+        return timestamp;
     }
     
-    public Map<String, Object> getProperties() {
-        return properties;
+    public int getAttributeKey() {
+        return attributeKey;
     }
     
-    @Override
-    public String toString() {
+    public long getAttributeValue() {
+        return attributeValue;
+    }
+    
+    /**
+     * Render the user, post and attribute, e.g. "user=3, post=12, page=login"
+     */
+    public String describe() {
         StringBuilder sb = new StringBuilder();
-        sb.append("[").append(timestamp).append("] ");
-        sb.append(eventType).append(" - ");
-        sb.append("User: ").append(username).append(" (").append(userId).append(") ");
-        
-        if (!properties.isEmpty()) {
-            sb.append("Properties: {");
-            properties.forEach((key, value) -> 
-                sb.append(key).append("=").append(value).append(", "));
-            sb.delete(sb.length() - 2, sb.length());
-            sb.append("}");
+        sb.append(userId > 0 ? "user=" + userId : "anonymous");
+        if (postId > 0) {
+            sb.append(", post=").append(postId);
+        }
+        if (attributeKey != ATTR_NONE) {
+            sb.append(", ").append(attributeName(attributeKey)).append("=").append(attributeValueText());
         }
-        
         return sb.toString();
     }
-} 
\ No newline at end of file
+    
+    private static String attributeName(int key) {
+        return key > 0 && key < ATTRIBUTE_NAMES.length ? ATTRIBUTE_NAMES[key] : "attr" + key;
+    }
+    
+    private String attributeValueText() {
+        switch (attributeKey) {
+            case ATTR_PAGE:
+                return nameOf(PAGE_NAMES, attributeValue);
+            case ATTR_METHOD:
+                return nameOf(METHOD_NAMES, attributeValue);
+            case ATTR_AUTO_LOGIN:
+                return String.valueOf(attributeValue != 0);
+            case ATTR_PROFILE_FLAGS:
+                return "bio:" + ((attributeValue & PROFILE_HAS_BIO) != 0) +
+                    " picture:" + ((attributeValue & PROFILE_HAS_PICTURE) != 0);
+            default:
+                return String.valueOf(attributeValue);
+        }
+    }
+    
+    private static String nameOf(String[] names, long value) {
+        return value >= 0 && value < names.length ? names[(int) value] : String.valueOf(value);
+    }
+    
+    @Override
+    public String toString() {
+        return "[" + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date(timestamp)) + "] " +
+            getTypeName() + " - " + describe();
+    }
+}
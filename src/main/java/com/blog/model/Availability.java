@@ -0,0 +1,35 @@
+package com.blog.model;
+
+/**
+ * Whether a username and an email address are already registered. A value
+ * that wasn't checked is reported as free.
+ */
+public final class Availability {
+    private final boolean usernameTaken;
+    private final boolean emailTaken;
+    
+    public Availability(boolean usernameTaken, boolean emailTaken) {
+        this.usernameTaken = usernameTaken;
+        this.emailTaken = emailTaken;
+    }
+    
+    public boolean isUsernameTaken() {
+        return usernameTaken;
+    }
+    
+    public boolean isEmailTaken() {
+        return emailTaken;
+    }
+    
+    /**
+     * Neither the username nor the email is taken
+     */
+    public boolean isAvailable() {
+        return !usernameTaken && !emailTaken;
+    }
+    
+    @Override
+    public String toString() {
+        return "Availability{usernameTaken=" + usernameTaken + ", emailTaken=" + emailTaken + "}";
+    }
+}
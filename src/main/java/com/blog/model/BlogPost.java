@@ -2,7 +2,12 @@ package com.blog.model;
 
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 public class BlogPost {
     private int id;
@@ -278,6 +283,23 @@ public class BlogPost {
         return tags.split(",");
     }
     
+    /**
+     * Split a comma-separated tag list into trimmed, non-empty names, ignoring
+     * repeats that differ only in case
+     */
+    public static Set<String> parseTags(String tags) {
+        Map<String, String> byLowerCase = new LinkedHashMap<>();
+        if (tags != null) {
+            for (String tag : tags.split(",")) {
+                String name = tag.trim();
+                if (!name.isEmpty()) {
+                    byLowerCase.putIfAbsent(name.toLowerCase(Locale.ROOT), name);
+                }
+            }
+        }
+        return new LinkedHashSet<>(byLowerCase.values());
+    }
+    
     /**
      * Returns true if the post is published
      */
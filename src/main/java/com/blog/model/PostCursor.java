@@ -0,0 +1,37 @@
+package com.blog.model;
+
+/**
+ * Position in a post feed, taken from the last post of a page. The next page
+ * starts strictly after this position in (created_at, id) order, or
+ * (view_count, created_at, id) order for the popularity feed, so fetching a
+ * page costs the same however deep into the feed it is.
+ */
+public class PostCursor {
+    // Raw created_at column value, so the seek compares it with the stored values like for like
+    private final Object createdAt;
+    private final int id;
+    private final int viewCount;
+    
+    public PostCursor(Object createdAt, int id, int viewCount) {
+        this.createdAt = createdAt;
+        this.id = id;
+        this.viewCount = viewCount;
+    }
+    
+    public Object getCreatedAt() {
+        return createdAt;
+    }
+    
+    public int getId() {
+        return id;
+    }
+    
+    public int getViewCount() {
+        return viewCount;
+    }
+    
+    @Override
+    public String toString() {
+        return "PostCursor{createdAt=" + createdAt + ", id=" + id + ", viewCount=" + viewCount + "}";
+    }
+}
@@ -0,0 +1,39 @@
+package com.blog.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a post feed plus the cursor for the page after it
+ */
+public class PostPage {
+    private final List<PostSummary> posts;
+    private final PostCursor nextCursor;
+    
+    public PostPage(List<PostSummary> posts, PostCursor nextCursor) {
+        this.posts = posts;
+        this.nextCursor = nextCursor;
+    }
+    
+    /**
+     * An empty last page
+     */
+    public static PostPage empty() {
+        return new PostPage(Collections.emptyList(), null);
+    }
+    
+    public List<PostSummary> getPosts() {
+        return posts;
+    }
+    
+    /**
+     * Cursor to pass back for the next page, or null if this is the last page
+     */
+    public PostCursor getNextCursor() {
+        return nextCursor;
+    }
+    
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,57 @@
+package com.blog.model;
+
+/**
+ * Like, dislike and comment counts for one post, together with the viewing
+ * user's own reaction. Fetched for a whole page of posts at once through
+ * {@code BlogController.getPostStats}.
+ */
+public final class PostStats {
+    private final int postId;
+    private final int likeCount;
+    private final int dislikeCount;
+    private final int commentCount;
+    private final Boolean userReaction;
+    
+    /**
+     * @param userReaction true if the viewer liked the post, false if they
+     *                     disliked it, null if they haven't reacted
+     */
+    public PostStats(int postId, int likeCount, int dislikeCount, int commentCount, Boolean userReaction) {
+        this.postId = postId;
+        this.likeCount = likeCount;
+        this.dislikeCount = dislikeCount;
+        this.commentCount = commentCount;
+        this.userReaction = userReaction;
+    }
+    
+    public int getPostId() {
+        return postId;
+    }
+    
+    public int getLikeCount() {
+        return likeCount;
+    }
+    
+    public int getDislikeCount() {
+        return dislikeCount;
+    }
+    
+    public int getCommentCount() {
+        return commentCount;
+    }
+    
+    /**
+     * @return true if liked, false if disliked, null if the viewer hasn't reacted
+     */
+    public Boolean getUserReaction() {
+        return userReaction;
+    }
+    
+    public boolean isLikedByUser() {
+        return Boolean.TRUE.equals(userReaction);
+    }
+    
+    public boolean isDislikedByUser() {
+        return Boolean.FALSE.equals(userReaction);
+    }
+}
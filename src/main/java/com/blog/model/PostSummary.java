@@ -0,0 +1,118 @@
+package com.blog.model;
+
+import java.util.Date;
+
+/**
+ * Read-only view of a post for feeds and tables: just what a list row shows.
+ * Unlike {@link BlogPost} it carries no full content, no author {@link User}
+ * and no media, only a short preview, the author's name and the id of the
+ * first image to use as a thumbnail.
+ */
+public final class PostSummary {
+    // Characters of content kept for the preview
+    public static final int PREVIEW_LENGTH = 200;
+    
+    private final int id;
+    private final String title;
+    private final String preview;
+    private final Date createdAt;
+    private final int authorId;
+    private final String authorName;
+    private final String status;
+    private final String tags;
+    private final int viewCount;
+    private final int likeCount;
+    private final int dislikeCount;
+    private final int commentCount;
+    private final int thumbnailMediaId;
+    
+    public PostSummary(int id, String title, String preview, Date createdAt, int authorId, String authorName,
+                       String status, String tags, int viewCount, int likeCount, int dislikeCount,
+                       int commentCount, int thumbnailMediaId) {
+        this.id = id;
+        this.title = title;
+        this.preview = preview;
+        this.createdAt = createdAt;
+        this.authorId = authorId;
+        this.authorName = authorName;
+        this.status = status;
+        this.tags = tags;
+        this.viewCount = viewCount;
+        this.likeCount = likeCount;
+        this.dislikeCount = dislikeCount;
+        this.commentCount = commentCount;
+        this.thumbnailMediaId = thumbnailMediaId;
+    }
+    
+    public int getId() {
+        return id;
+    }
+    
+    public String getTitle() {
+        return title;
+    }
+    
+    /**
+     * The first PREVIEW_LENGTH characters of the content, with "..." appended
+     * if the content is longer
+     */
+    public String getPreview() {
+        return preview;
+    }
+    
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+    
+    public int getAuthorId() {
+        return authorId;
+    }
+    
+    public String getAuthorName() {
+        return authorName;
+    }
+    
+    public String getStatus() {
+        return status;
+    }
+    
+    public String getTags() {
+        return tags;
+    }
+    
+    public int getViewCount() {
+        return viewCount;
+    }
+    
+    public int getLikeCount() {
+        return likeCount;
+    }
+    
+    public int getDislikeCount() {
+        return dislikeCount;
+    }
+    
+    public int getCommentCount() {
+        return commentCount;
+    }
+    
+    /**
+     * Id of the post's first image attachment, or 0 if it has none
+     */
+    public int getThumbnailMediaId() {
+        return thumbnailMediaId;
+    }
+    
+    public boolean hasThumbnail() {
+        return thumbnailMediaId > 0;
+    }
+    
+    public boolean isPublished() {
+        return "published".equals(status);
+    }
+    
+    @Override
+    public String toString() {
+        return "PostSummary{id=" + id + ", title='" + title + "', author='" + authorName + "'}";
+    }
+}
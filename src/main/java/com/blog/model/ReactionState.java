@@ -0,0 +1,43 @@
+package com.blog.model;
+
+/**
+ * A user's reaction to a post right after changing it, with the post's
+ * like and dislike counts from the same transaction
+ */
+public class ReactionState {
+    private final Boolean reaction;
+    private final int likeCount;
+    private final int dislikeCount;
+    
+    /**
+     * @param reaction true for a like, false for a dislike, null for no reaction
+     */
+    public ReactionState(Boolean reaction, int likeCount, int dislikeCount) {
+        this.reaction = reaction;
+        this.likeCount = likeCount;
+        this.dislikeCount = dislikeCount;
+    }
+    
+    /**
+     * @return true if liked, false if disliked, null if no reaction
+     */
+    public Boolean getReaction() {
+        return reaction;
+    }
+    
+    public boolean isLiked() {
+        return Boolean.TRUE.equals(reaction);
+    }
+    
+    public boolean isDisliked() {
+        return Boolean.FALSE.equals(reaction);
+    }
+    
+    public int getLikeCount() {
+        return likeCount;
+    }
+    
+    public int getDislikeCount() {
+        return dislikeCount;
+    }
+}
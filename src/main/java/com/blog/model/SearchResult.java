@@ -0,0 +1,74 @@
+package com.blog.model;
+
+/**
+ * A post matched by full-text search, with its relevance score and the
+ * matching terms marked in the title and a snippet of the content
+ */
+public class SearchResult {
+    // Markers the search index puts around matched terms; never present in user text
+    public static final String HIGHLIGHT_START = "\u0002";
+    public static final String HIGHLIGHT_END = "\u0003";
+    
+    private final PostSummary post;
+    private final String highlightedTitle;
+    private final String snippet;
+    private final double score;
+    
+    public SearchResult(PostSummary post, String highlightedTitle, String snippet, double score) {
+        this.post = post;
+        this.highlightedTitle = highlightedTitle;
+        this.snippet = snippet;
+        this.score = score;
+    }
+    
+    public PostSummary getPost() {
+        return post;
+    }
+    
+    /**
+     * Title with matched terms between HIGHLIGHT_START and HIGHLIGHT_END
+     */
+    public String getHighlightedTitle() {
+        return highlightedTitle;
+    }
+    
+    /**
+     * Best matching fragment of the content, with matched terms marked
+     */
+    public String getSnippet() {
+        return snippet;
+    }
+    
+    /**
+     * BM25 relevance; lower is a better match
+     */
+    public double getScore() {
+        return score;
+    }
+    
+    /**
+     * Get the highlighted title as HTML, with matches in bold
+     */
+    public String getTitleHtml() {
+        return toHtml(highlightedTitle);
+    }
+    
+    /**
+     * Get the snippet as HTML, with matches in bold
+     */
+    public String getSnippetHtml() {
+        return toHtml(snippet);
+    }
+    
+    private static String toHtml(String marked) {
+        if (marked == null) {
+            return "";
+        }
+        
+        String escaped = marked.replace("&", "&amp;")
+                               .replace("<", "&lt;")
+                               .replace(">", "&gt;")
+                               .replace("\n", " ");
+        return escaped.replace(HIGHLIGHT_START, "<b>").replace(HIGHLIGHT_END, "</b>");
+    }
+}
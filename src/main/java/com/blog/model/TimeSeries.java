@@ -0,0 +1,51 @@
+package com.blog.model;
+
+/**
+ * Event counts in consecutive, equally sized time buckets, oldest first
+ */
+public class TimeSeries {
+    private final long firstBucketStart;
+    private final long bucketMillis;
+    private final long[] counts;
+    
+    public TimeSeries(long firstBucketStart, long bucketMillis, long[] counts) {
+        this.firstBucketStart = firstBucketStart;
+        this.bucketMillis = bucketMillis;
+        this.counts = counts;
+    }
+    
+    public int size() {
+        return counts.length;
+    }
+    
+    public long getBucketMillis() {
+        return bucketMillis;
+    }
+    
+    /**
+     * Start of a bucket, in epoch milliseconds
+     */
+    public long getBucketStart(int index) {
+        return firstBucketStart + index * bucketMillis;
+    }
+    
+    public long getCount(int index) {
+        return counts[index];
+    }
+    
+    public long getTotal() {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        return total;
+    }
+    
+    public long getMax() {
+        long max = 0;
+        for (long count : counts) {
+            max = Math.max(max, count);
+        }
+        return max;
+    }
+}
@@ -0,0 +1,54 @@
+package com.blog.model;
+
+/**
+ * Estimated views of one post in a recent time window, from the popularity
+ * sketches in {@code PostPopularity}. The true number of views is between
+ * {@link #getMinViews()} and {@link #getViews()}.
+ */
+public final class TrendingPost {
+    private final int postId;
+    private final long views;
+    private final long maxError;
+    private final long uniqueViewers;
+    
+    /**
+     * @param views upper bound on the views in the window
+     * @param maxError how far views may exceed the true count
+     * @param uniqueViewers estimated distinct signed-in readers of the post
+     */
+    public TrendingPost(int postId, long views, long maxError, long uniqueViewers) {
+        this.postId = postId;
+        this.views = views;
+        this.maxError = maxError;
+        this.uniqueViewers = uniqueViewers;
+    }
+    
+    public int getPostId() {
+        return postId;
+    }
+    
+    public long getViews() {
+        return views;
+    }
+    
+    public long getMaxError() {
+        return maxError;
+    }
+    
+    /**
+     * Views the post certainly had in the window
+     */
+    public long getMinViews() {
+        return views - maxError;
+    }
+    
+    public long getUniqueViewers() {
+        return uniqueViewers;
+    }
+    
+    @Override
+    public String toString() {
+        return "TrendingPost{postId=" + postId + ", views=" + views + " (-" + maxError + ")" +
+               ", uniqueViewers~" + uniqueViewers + "}";
+    }
+}
@@ -1,8 +1,6 @@
 package com.blog.model;
 
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.util.Base64;
+import com.blog.util.PasswordHashing;
 
 public class User {
     private int id;
@@ -120,22 +118,14 @@ public class User {
         this.profileImageData = profileImageData;
     }
     
-    // Password encryption using SHA-256
+    // Password hashing with the configured KDF (salted, iterated)
     public static String encryptPassword(String password) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] hash = md.digest(password.getBytes());
-            return Base64.getEncoder().encodeToString(hash);
-        } catch (NoSuchAlgorithmException e) {
-            System.err.println("Error encrypting password: " + e.getMessage());
-            return password; // Return unencrypted password if encryption fails
-        }
+        return PasswordHashing.hash(password);
     }
     
-    // Validate password
+    // Validate password against the stored hash, in any supported format
     public boolean validatePassword(String inputPassword) {
-        String encryptedInput = encryptPassword(inputPassword);
-        return encryptedInput.equals(this.password);
+        return PasswordHashing.verify(inputPassword, this.password);
     }
     
     // Determine if user is admin
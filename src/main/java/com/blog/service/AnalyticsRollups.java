@@ -0,0 +1,296 @@
+package com.blog.service;
+
+import com.blog.model.AnalyticsEvent;
+import com.blog.model.TimeSeries;
+import com.blog.util.LongCountMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Continuous per-minute, per-hour and per-day event counts by type, by post
+ * and by user, fed by {@link AnalyticsService} on its consumer thread.
+ *
+ * Each resolution is a circular time wheel: a fixed number of buckets in
+ * primitive arrays, where the bucket for a new period overwrites the one
+ * from a full turn earlier. Counts by type are a flat long array; counts by
+ * post and by user are a {@link LongCountMap} per bucket, keyed by id and
+ * event type. Queries read only the buckets they cover, so their cost
+ * depends on the number of buckets, not on how many events were tracked.
+ *
+ * Buckets are aligned to local time, using the time zone's offset at startup.
+ */
+public class AnalyticsRollups {
+    /** Pass as the event type to count every type */
+    public static final int ALL_TYPES = -1;
+    
+    // Distinct posts or users counted per bucket; events beyond this only count by type
+    private static final int MAX_KEYS_PER_BUCKET = Integer.getInteger("blog.analytics.rollup.maxKeysPerBucket", 50_000);
+    
+    /**
+     * Bucket sizes, each with how many buckets its wheel keeps
+     */
+    public enum Resolution {
+        MINUTE(60_000L, 180),
+        HOUR(3_600_000L, 7 * 24),
+        DAY(86_400_000L, 90);
+        
+        private final long bucketMillis;
+        private final int bucketCount;
+        
+        Resolution(long bucketMillis, int bucketCount) {
+            this.bucketMillis = bucketMillis;
+            this.bucketCount = bucketCount;
+        }
+        
+        public long getBucketMillis() {
+            return bucketMillis;
+        }
+        
+        /**
+         * How many buckets are kept, i.e. the longest series that can be queried
+         */
+        public int getBucketCount() {
+            return bucketCount;
+        }
+    }
+    
+    // What a wheel query counts by
+    private static final int BY_TYPE = 0;
+    private static final int BY_POST = 1;
+    private static final int BY_USER = 2;
+    
+    private final long offsetMillis;
+    private final Wheel[] wheels;
+    
+    public AnalyticsRollups() {
+        this(TimeZone.getDefault().getOffset(System.currentTimeMillis()));
+    }
+    
+    /**
+     * @param offsetMillis added to timestamps before bucketing, so buckets line up with local time
+     */
+    public AnalyticsRollups(long offsetMillis) {
+        this.offsetMillis = offsetMillis;
+        Resolution[] resolutions = Resolution.values();
+        wheels = new Wheel[resolutions.length];
+        for (int i = 0; i < resolutions.length; i++) {
+            wheels[i] = new Wheel(resolutions[i]);
+        }
+    }
+    
+    /**
+     * Count an event in every resolution; called on the analytics consumer thread
+     */
+    public void accept(AnalyticsEvent event) {
+        long localTime = event.getTimestamp() + offsetMillis;
+        for (Wheel wheel : wheels) {
+            wheel.add(Math.floorDiv(localTime, wheel.resolution.bucketMillis), event);
+        }
+    }
+    
+    /**
+     * Count events of a type in the most recent buckets, up to now
+     * @param eventType One of the AnalyticsService.EVENT_ types, or ALL_TYPES
+     * @param buckets How many buckets, at most the resolution's bucket count
+     */
+    public TimeSeries getSeries(Resolution resolution, int eventType, int buckets) {
+        return wheel(resolution).series(lastPeriod(resolution), buckets, eventType, BY_TYPE, 0);
+    }
+    
+    /**
+     * Count events of a type about one post in the most recent buckets
+     */
+    public TimeSeries getPostSeries(Resolution resolution, int postId, int eventType, int buckets) {
+        return wheel(resolution).series(lastPeriod(resolution), buckets, eventType, BY_POST, postId);
+    }
+    
+    /**
+     * Count events of a type by one user in the most recent buckets
+     */
+    public TimeSeries getUserSeries(Resolution resolution, int userId, int eventType, int buckets) {
+        return wheel(resolution).series(lastPeriod(resolution), buckets, eventType, BY_USER, userId);
+    }
+    
+    /**
+     * Total events of a type in the most recent buckets
+     */
+    public long getTotal(Resolution resolution, int eventType, int buckets) {
+        return getSeries(resolution, eventType, buckets).getTotal();
+    }
+    
+    /**
+     * Posts with the most events of a type in the most recent buckets
+     * @return post ids and counts, highest count first
+     */
+    public Map<Integer, Long> getTopPosts(Resolution resolution, int eventType, int buckets, int limit) {
+        return wheel(resolution).top(lastPeriod(resolution), buckets, eventType, BY_POST, limit);
+    }
+    
+    /**
+     * Users with the most events of a type in the most recent buckets
+     * @return user ids and counts, highest count first
+     */
+    public Map<Integer, Long> getTopUsers(Resolution resolution, int eventType, int buckets, int limit) {
+        return wheel(resolution).top(lastPeriod(resolution), buckets, eventType, BY_USER, limit);
+    }
+    
+    /**
+     * Events whose post or user wasn't counted because a bucket was full
+     */
+    public long getOverflowed() {
+        long overflowed = 0;
+        for (Wheel wheel : wheels) {
+            overflowed += wheel.getOverflowed();
+        }
+        return overflowed;
+    }
+    
+    private Wheel wheel(Resolution resolution) {
+        return wheels[resolution.ordinal()];
+    }
+    
+    private long lastPeriod(Resolution resolution) {
+        return Math.floorDiv(System.currentTimeMillis() + offsetMillis, resolution.bucketMillis);
+    }
+    
+    /**
+     * Key of an id and event type in the per-bucket maps; never 0 for a positive id
+     */
+    private static long key(int id, int eventType) {
+        return ((long) id << 8) | eventType;
+    }
+    
+    /**
+     * One resolution's buckets. Written by the consumer thread and read by
+     * queries, under the wheel's lock.
+     */
+    private class Wheel {
+        final Resolution resolution;
+        final int size;
+        // Period (time / bucketMillis) each slot currently holds; Long.MIN_VALUE if unused
+        final long[] periods;
+        final long[] typeCounts;
+        final LongCountMap[] postCounts;
+        final LongCountMap[] userCounts;
+        long newestPeriod = Long.MIN_VALUE;
+        long overflowed;
+        
+        Wheel(Resolution resolution) {
+            this.resolution = resolution;
+            this.size = resolution.bucketCount;
+            this.periods = new long[size];
+            Arrays.fill(periods, Long.MIN_VALUE);
+            this.typeCounts = new long[size * AnalyticsEvent.TYPE_COUNT];
+            this.postCounts = new LongCountMap[size];
+            this.userCounts = new LongCountMap[size];
+        }
+        
+        synchronized void add(long period, AnalyticsEvent event) {
+            if (newestPeriod != Long.MIN_VALUE && period <= newestPeriod - size) {
+                return; // Older than the wheel keeps
+            }
+            newestPeriod = Math.max(newestPeriod, period);
+            
+            int slot = (int) Math.floorMod(period, (long) size);
+            if (periods[slot] != period) {
+                // The slot still holds a period a full turn (or more) older; reuse it
+                periods[slot] = period;
+                Arrays.fill(typeCounts, slot * AnalyticsEvent.TYPE_COUNT,
+                    (slot + 1) * AnalyticsEvent.TYPE_COUNT, 0);
+                if (postCounts[slot] != null) {
+                    postCounts[slot].clear();
+                    userCounts[slot].clear();
+                }
+            }
+            
+            int type = event.getType();
+            typeCounts[slot * AnalyticsEvent.TYPE_COUNT + type]++;
+            if (event.getPostId() > 0) {
+                count(postCounts, slot, key(event.getPostId(), type));
+            }
+            if (event.getUserId() > 0) {
+                count(userCounts, slot, key(event.getUserId(), type));
+            }
+        }
+        
+        private void count(LongCountMap[] maps, int slot, long key) {
+            if (maps[slot] == null) {
+                postCounts[slot] = new LongCountMap(MAX_KEYS_PER_BUCKET);
+                userCounts[slot] = new LongCountMap(MAX_KEYS_PER_BUCKET);
+            }
+            if (!maps[slot].add(key, 1)) {
+                overflowed++;
+            }
+        }
+        
+        /**
+         * Slot holding a period, or -1 if nothing was counted in it
+         */
+        private int slotOf(long period) {
+            int slot = (int) Math.floorMod(period, (long) size);
+            return periods[slot] == period ? slot : -1;
+        }
+        
+        synchronized TimeSeries series(long lastPeriod, int buckets, int eventType, int dimension, int id) {
+            buckets = Math.max(1, Math.min(buckets, size));
+            long firstPeriod = lastPeriod - buckets + 1;
+            long[] counts = new long[buckets];
+            for (int i = 0; i < buckets; i++) {
+                int slot = slotOf(firstPeriod + i);
+                if (slot >= 0) {
+                    counts[i] = count(slot, eventType, dimension, id);
+                }
+            }
+            return new TimeSeries(firstPeriod * resolution.bucketMillis - offsetMillis, resolution.bucketMillis, counts);
+        }
+        
+        private long count(int slot, int eventType, int dimension, int id) {
+            int from = eventType == ALL_TYPES ? 0 : eventType;
+            int to = eventType == ALL_TYPES ? AnalyticsEvent.TYPE_COUNT - 1 : eventType;
+            long total = 0;
+            for (int type = from; type <= to; type++) {
+                if (dimension == BY_TYPE) {
+                    total += typeCounts[slot * AnalyticsEvent.TYPE_COUNT + type];
+                } else {
+                    LongCountMap map = dimension == BY_POST ? postCounts[slot] : userCounts[slot];
+                    total += map == null ? 0 : map.get(key(id, type));
+                }
+            }
+            return total;
+        }
+        
+        synchronized Map<Integer, Long> top(long lastPeriod, int buckets, int eventType, int dimension, int limit) {
+            buckets = Math.max(1, Math.min(buckets, size));
+            LongCountMap totals = new LongCountMap(Integer.MAX_VALUE);
+            for (long period = lastPeriod - buckets + 1; period <= lastPeriod; period++) {
+                int slot = slotOf(period);
+                LongCountMap map = slot < 0 ? null : dimension == BY_POST ? postCounts[slot] : userCounts[slot];
+                if (map != null) {
+                    map.forEach((key, count) -> {
+                        if (eventType == ALL_TYPES || (key & 0xFF) == eventType) {
+                            totals.add(key >>> 8, count);
+                        }
+                    });
+                }
+            }
+            
+            List<long[]> ranked = new ArrayList<>(totals.size());
+            totals.forEach((id, count) -> ranked.add(new long[]{id, count}));
+            ranked.sort((a, b) -> Long.compare(b[1], a[1]));
+            Map<Integer, Long> top = new LinkedHashMap<>();
+            for (int i = 0; i < ranked.size() && i < limit; i++) {
+                top.put((int) ranked.get(i)[0], ranked.get(i)[1]);
+            }
+            return top;
+        }
+        
+        synchronized long getOverflowed() {
+            return overflowed;
+        }
+    }
+}
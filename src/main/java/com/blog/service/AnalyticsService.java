@@ -1,176 +1,628 @@
 package com.blog.service;
 
+import com.blog.model.AnalyticsEvent;
 import com.blog.model.User;
+import com.blog.util.AnalyticsLog;
+import com.blog.util.AnalyticsLogReader;
+import com.blog.util.MpscSequencer;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
 /**
- * Service for tracking analytics events
+ * Service for tracking analytics events.
+ *
+ * Callers on any thread publish events into a bounded lock-free ring buffer
+ * ({@link MpscSequencer}); a single consumer thread drains it and feeds each
+ * event to the registered {@link EventAggregator}s, so aggregation needs no
+ * locking and never runs on the caller's thread. When the buffer is full the
+ * configured {@link OverflowPolicy} decides whether the caller drops the
+ * event, samples, or waits; every event that doesn't make it is counted.
+ *
+ * Events are {@link AnalyticsEvent}s of primitive fields. The ring stores
+ * them in parallel primitive arrays, and the consumer hands the aggregators
+ * one reused event object, so tracking an event allocates nothing on either
+ * thread; text is only rendered when a report asks for it.
+ *
+ * Events are also appended to an {@link AnalyticsLog} on disk, by the
+ * consumer thread. When it starts, the consumer replays the part of the log
+ * that the longest rollup or trending window still covers into the counts,
+ * recent events, rollups and trending, so they survive a restart; events
+ * tracked meanwhile wait in the buffer until the replay is done.
  */
 public class AnalyticsService {
     // Event types
-    public static final String EVENT_PAGE_VIEW = "page_view";
-    public static final String EVENT_LOGIN = "login";
-    public static final String EVENT_LOGOUT = "logout";
-    public static final String EVENT_POST_VIEW = "post_view";
-    public static final String EVENT_COMMENT = "comment";
-    public static final String EVENT_REGISTRATION = "registration";
+    public static final int EVENT_PAGE_VIEW = AnalyticsEvent.PAGE_VIEW;
+    public static final int EVENT_LOGIN = AnalyticsEvent.LOGIN;
+    public static final int EVENT_LOGOUT = AnalyticsEvent.LOGOUT;
+    public static final int EVENT_POST_VIEW = AnalyticsEvent.POST_VIEW;
+    public static final int EVENT_COMMENT = AnalyticsEvent.COMMENT;
+    public static final int EVENT_REGISTRATION = AnalyticsEvent.REGISTRATION;
+    public static final int EVENT_POST_CREATE = AnalyticsEvent.POST_CREATE;
+    public static final int EVENT_POST_EDIT = AnalyticsEvent.POST_EDIT;
+    public static final int EVENT_POST_DELETE = AnalyticsEvent.POST_DELETE;
+    public static final int EVENT_COMMENT_CREATE = AnalyticsEvent.COMMENT_CREATE;
+    public static final int EVENT_COMMENT_DELETE = AnalyticsEvent.COMMENT_DELETE;
+    public static final int EVENT_LIKE = AnalyticsEvent.LIKE;
+    public static final int EVENT_DISLIKE = AnalyticsEvent.DISLIKE;
+    
+    // Ingestion settings
+    private static final int BUFFER_CAPACITY = Integer.getInteger("blog.analytics.capacity", 8192);
+    private static final OverflowPolicy OVERFLOW_POLICY =
+        OverflowPolicy.fromName(System.getProperty("blog.analytics.overflow", "drop"));
+    // Under SAMPLE, one in this many events is kept once the buffer is past its high-water mark
+    private static final int SAMPLE_RATE = Math.max(1, Integer.getInteger("blog.analytics.sampleRate", 10));
+    // Whether the on-disk log is replayed into the counts and recent events on startup
+    private static final boolean REPLAY_LOG =
+        Boolean.parseBoolean(System.getProperty("blog.analytics.log.replay", "true"));
+    
+    // Events of each type kept for getEvents and reports
+    private static final int RECENT_EVENTS_PER_TYPE = 1000;
+    private static final int DRAIN_BATCH = 256;
+    private static final long IDLE_PARK_NANOS = 1_000_000L;
+    private static final long BLOCKED_PARK_NANOS = 50_000L;
+    
+    /**
+     * What trackEvent does when the buffer is full
+     */
+    public enum OverflowPolicy {
+        /** Discard the event */
+        DROP,
+        /** Keep only one in SAMPLE_RATE events while the buffer is nearly full, drop when full */
+        SAMPLE,
+        /** Wait until the consumer frees a slot */
+        BLOCK;
+        
+        static OverflowPolicy fromName(String name) {
+            try {
+                return valueOf(name.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                System.err.println("Unknown analytics overflow policy '" + name + "', using DROP");
+                return DROP;
+            }
+        }
+    }
+    
+    /**
+     * Receives every tracked event, in order, on the analytics consumer thread.
+     * The event object is reused for the next event; copy it to keep it.
+     */
+    public interface EventAggregator {
+        void accept(AnalyticsEvent event);
+    }
     
     private static AnalyticsService instance;
     
-    private final Map<String, List<AnalyticsEvent>> events;
+    private final MpscSequencer sequencer;
+    // Event fields by ring slot, written by producers between claim and publish
+    private final int[] types;
+    private final int[] userIds;
+    private final int[] postIds;
+    private final long[] timestamps;
+    private final int[] attributeKeys;
+    private final long[] attributeValues;
+    
+    private final OverflowPolicy overflowPolicy;
+    private final int highWaterMark;
+    // Copied on write; an array so dispatching doesn't allocate an iterator per event
+    private volatile EventAggregator[] aggregators = new EventAggregator[0];
+    private final Thread consumer;
+    private volatile boolean running = true;
+    // The consumer's reused event, filled from a slot and passed to the aggregators
+    private final AnalyticsEvent current = new AnalyticsEvent();
+    
+    // Built-in aggregators: totals per type, and a bounded window of recent events per type
+    private final AtomicLongArray eventCounts = new AtomicLongArray(AnalyticsEvent.TYPE_COUNT);
+    private final RecentEvents[] recentEvents = new RecentEvents[AnalyticsEvent.TYPE_COUNT];
+    private final AnalyticsRollups rollups = new AnalyticsRollups();
+    private final PostPopularity popularity = new PostPopularity();
+    
+    // Ingestion counters
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder sampledOut = new LongAdder();
+    private final LongAdder blockedWaits = new LongAdder();
+    private volatile long consumed;
+    
+    // Durable copy of every consumed event; null if disabled or it couldn't be opened
+    private final AnalyticsLog log;
+    private volatile boolean replaying;
+    private volatile long replayed;
     
-    private AnalyticsService() {
-        events = new HashMap<>();
+    private AnalyticsService(int capacity, OverflowPolicy overflowPolicy, AnalyticsLog log) {
+        this.sequencer = new MpscSequencer(capacity);
+        int slots = sequencer.capacity();
+        this.types = new int[slots];
+        this.userIds = new int[slots];
+        this.postIds = new int[slots];
+        this.timestamps = new long[slots];
+        this.attributeKeys = new int[slots];
+        this.attributeValues = new long[slots];
+        this.overflowPolicy = overflowPolicy;
+        this.highWaterMark = slots - slots / 4;
+        
+        for (int type = 0; type < recentEvents.length; type++) {
+            recentEvents[type] = new RecentEvents(RECENT_EVENTS_PER_TYPE);
+        }
+        addAggregator(this::countEvent);
+        addAggregator(this::rememberEvent);
+        addAggregator(rollups::accept);
+        addAggregator(popularity::accept);
+        
+        // The consumer restores the built-in aggregates, but not the log, before it drains new events
+        this.log = log;
+        EventAggregator[] restored = aggregators;
+        if (log != null) {
+            replaying = REPLAY_LOG;
+            addAggregator(log::append);
+        }
+        
+        consumer = new Thread(() -> runConsumer(restored), "analytics-consumer");
+        consumer.setDaemon(true);
+        consumer.start();
     }
     
-    public static AnalyticsService getInstance() {
+    public static synchronized AnalyticsService getInstance() {
         if (instance == null) {
-            instance = new AnalyticsService();
+            instance = new AnalyticsService(BUFFER_CAPACITY, OVERFLOW_POLICY, AnalyticsLog.fromSystemProperties(getReplayMillis()));
         }
         return instance;
     }
     
     /**
-     * Track an analytics event with a simple detail string
-     * @param eventType The type of event
-     * @param details Additional details about the event
+     * Register an aggregator; it sees events published from now on
      */
-    public void trackEvent(String eventType, String details) {
-        AnalyticsEvent event = new AnalyticsEvent(eventType, details, System.currentTimeMillis());
-        addEvent(eventType, event);
+    public synchronized void addAggregator(EventAggregator aggregator) {
+        EventAggregator[] updated = Arrays.copyOf(aggregators, aggregators.length + 1);
+        updated[aggregators.length] = aggregator;
+        aggregators = updated;
     }
     
     /**
-     * Track an analytics event with a user and properties
-     * @param eventType The type of event
-     * @param user The user associated with the event
-     * @param properties Properties of the event
+     * Track an event that isn't about a post
+     * @param eventType One of the EVENT_ types
+     * @param user The user involved, or null if anonymous
      */
-    public void trackEvent(String eventType, User user, Map<String, Object> properties) {
-        String details = buildDetailsString(user, properties);
-        AnalyticsEvent event = new AnalyticsEvent(eventType, details, System.currentTimeMillis());
-        addEvent(eventType, event);
+    public void trackEvent(int eventType, User user) {
+        trackEvent(eventType, user, 0, AnalyticsEvent.ATTR_NONE, 0);
     }
     
     /**
-     * Track an analytics event with a user and key-value pair
-     * @param eventType The type of event
-     * @param user The user associated with the event
-     * @param key Property key
-     * @param value Property value
+     * Track an event
+     * @param eventType One of the EVENT_ types
+     * @param user The user involved, or null if anonymous
+     * @param postId The post involved, or 0 for none
      */
-    public void trackEvent(String eventType, User user, String key, Object value) {
-        Map<String, Object> properties = new HashMap<>();
-        properties.put(key, value);
-        trackEvent(eventType, user, properties);
+    public void trackEvent(int eventType, User user, int postId) {
+        trackEvent(eventType, user, postId, AnalyticsEvent.ATTR_NONE, 0);
     }
     
     /**
-     * Track an analytics event without a user
-     * @param eventType The type of event
-     * @param properties Properties of the event
+     * Track an event with one attribute
+     * @param eventType One of the EVENT_ types
+     * @param user The user involved, or null if anonymous
+     * @param postId The post involved, or 0 for none
+     * @param attributeKey One of the AnalyticsEvent.ATTR_ keys
+     * @param attributeValue The attribute's value
      */
-    public void trackEvent(String eventType, Map<String, Object> properties) {
-        trackEvent(eventType, null, properties);
+    public void trackEvent(int eventType, User user, int postId, int attributeKey, long attributeValue) {
+        trackEvent(eventType, user != null ? user.getId() : 0, postId, attributeKey, attributeValue);
     }
     
     /**
-     * Add an event to the events map
-     * @param eventType The type of event
-     * @param event The event to add
+     * Publish an event to the consumer thread, applying the overflow policy if
+     * the buffer is full. Lock-free unless the policy is BLOCK and the buffer
+     * is full, and allocation-free.
+     * @param eventType One of the EVENT_ types
+     * @param userId The user's id, or 0 if anonymous
+     * @param postId The post's id, or 0 for none
+     * @param attributeKey One of the AnalyticsEvent.ATTR_ keys
+     * @param attributeValue The attribute's value
      */
-    private void addEvent(String eventType, AnalyticsEvent event) {
-        if (!events.containsKey(eventType)) {
-            events.put(eventType, new ArrayList<>());
+    public void trackEvent(int eventType, int userId, int postId, int attributeKey, long attributeValue) {
+        if (!AnalyticsEvent.isValidType(eventType)) {
+            System.err.println("Unknown analytics event type: " + eventType);
+            return;
+        }
+        
+        if (overflowPolicy == OverflowPolicy.SAMPLE && sequencer.size() >= highWaterMark
+                && ThreadLocalRandom.current().nextInt(SAMPLE_RATE) != 0) {
+            sampledOut.increment();
+            return;
+        }
+        
+        long timestamp = System.currentTimeMillis();
+        long position = sequencer.claim();
+        if (position < 0) {
+            if (overflowPolicy != OverflowPolicy.BLOCK || Thread.currentThread() == consumer) {
+                dropped.increment();
+                return;
+            }
+            
+            blockedWaits.increment();
+            while (position < 0) {
+                if (!running) {
+                    dropped.increment(); // Shut down while waiting
+                    return;
+                }
+                LockSupport.parkNanos(BLOCKED_PARK_NANOS);
+                position = sequencer.claim();
+            }
         }
         
-        events.get(eventType).add(event);
+        int slot = sequencer.index(position);
+        types[slot] = eventType;
+        userIds[slot] = userId;
+        postIds[slot] = postId;
+        timestamps[slot] = timestamp;
+        attributeKeys[slot] = attributeKey;
+        attributeValues[slot] = attributeValue;
+        sequencer.publish(position);
     }
     
     /**
-     * Build a details string from user and properties
-     * @param user The user associated with the event
-     * @param properties Properties of the event
-     * @return A formatted details string
+     * Feed the logged events the longest window still covers to the given
+     * aggregators; older ones would fall outside every rollup and trending
+     * window anyway. They aren't counted as consumed, since they weren't
+     * tracked by this process.
      */
-    private String buildDetailsString(User user, Map<String, Object> properties) {
-        StringBuilder details = new StringBuilder();
-        
-        if (user != null) {
-            details.append("User: ").append(user.getUsername()).append(" (").append(user.getId()).append(")");
-        } else {
-            details.append("User: Anonymous");
+    private void replayLog(EventAggregator[] restored) {
+        long started = System.currentTimeMillis();
+        long from = started - getReplayMillis();
+        try {
+            replayed = new AnalyticsLogReader(log.getDirectory()).replay(event -> {
+                if (AnalyticsEvent.isValidType(event.getType())) {
+                    for (EventAggregator aggregator : restored) {
+                        aggregator.accept(event);
+                    }
+                }
+            }, from);
+            System.out.println("Analytics: replayed " + replayed + " logged events in " +
+                (System.currentTimeMillis() - started) + " ms");
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error replaying analytics log: " + e.getMessage());
+        } finally {
+            replaying = false;
         }
-        
-        if (properties != null && !properties.isEmpty()) {
-            details.append(", Properties: {");
-            boolean first = true;
-            for (Map.Entry<String, Object> entry : properties.entrySet()) {
-                if (!first) {
-                    details.append(", ");
+    }
+    
+    /**
+     * How far back the replay reaches: the longest span any rollup or trending
+     * window covers. The log keeps events this long by default.
+     */
+    public static long getReplayMillis() {
+        long millis = 0;
+        for (AnalyticsRollups.Resolution resolution : AnalyticsRollups.Resolution.values()) {
+            millis = Math.max(millis, resolution.getBucketMillis() * resolution.getBucketCount());
+        }
+        for (PostPopularity.Window window : PostPopularity.Window.values()) {
+            millis = Math.max(millis, window.getMillis());
+        }
+        return millis;
+    }
+    
+    /**
+     * Consumer thread: replay the log if asked, then drain the buffer into
+     * the aggregators until shutdown, then drain whatever is left and close the log
+     */
+    private void runConsumer(EventAggregator[] restored) {
+        if (replaying) {
+            replayLog(restored);
+        }
+        while (true) {
+            int drained = drain(DRAIN_BATCH);
+            if (log != null) {
+                log.maybeSync(System.currentTimeMillis());
+            }
+            if (drained == 0) {
+                if (!running) {
+                    // Producers that saw running == true may still be publishing
+                    if (sequencer.size() == 0) {
+                        if (log != null) {
+                            log.close();
+                        }
+                        return;
+                    }
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
                 }
-                details.append(entry.getKey()).append("=").append(entry.getValue());
-                first = false;
             }
-            details.append("}");
         }
-        
-        return details.toString();
     }
     
     /**
-     * Get all events of a specific type
-     * @param eventType The type of events to retrieve
-     * @return A list of events
+     * Pass up to maxEvents published events to the aggregators, oldest first
+     * @return the number of events drained
+     */
+    private int drain(int maxEvents) {
+        int drained = 0;
+        while (drained < maxEvents) {
+            long position = sequencer.next();
+            if (position < 0) {
+                break;
+            }
+            int slot = sequencer.index(position);
+            current.set(types[slot], userIds[slot], postIds[slot], timestamps[slot],
+                attributeKeys[slot], attributeValues[slot]);
+            // Free the slot before aggregating; the fields are in current now
+            sequencer.release(position);
+            dispatch(current);
+            drained++;
+        }
+        return drained;
+    }
+    
+    private void dispatch(AnalyticsEvent event) {
+        for (EventAggregator aggregator : aggregators) {
+            try {
+                aggregator.accept(event);
+            } catch (RuntimeException e) {
+                System.err.println("Error aggregating analytics event: " + e.getMessage());
+            }
+        }
+        consumed++;
+    }
+    
+    private void countEvent(AnalyticsEvent event) {
+        eventCounts.incrementAndGet(event.getType());
+    }
+    
+    private void rememberEvent(AnalyticsEvent event) {
+        recentEvents[event.getType()].add(event);
+    }
+    
+    /**
+     * Whether the consumer is still replaying the on-disk log, so the counts,
+     * rollups and trending don't yet cover the events from before this start
+     */
+    public boolean isReplaying() {
+        return replaying;
+    }
+    
+    /**
+     * Wait until the startup replay is done and every event published so far
+     * has reached the aggregators
+     * @return false if that didn't happen within the timeout
+     */
+    public boolean awaitDrained(long timeoutMillis) {
+        long target = sequencer.getClaimedCount();
+        long deadline = System.nanoTime() + timeoutMillis * 1_000_000L;
+        while (replaying || consumed < target) {
+            if (System.nanoTime() >= deadline || !consumer.isAlive()) {
+                return false;
+            }
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+        return true;
+    }
+    
+    /**
+     * Get the most recent events of a specific type, oldest first
+     * @param eventType One of the EVENT_ types
+     * @return A list of at most RECENT_EVENTS_PER_TYPE events
      */
-    public List<AnalyticsEvent> getEvents(String eventType) {
-        return events.getOrDefault(eventType, new ArrayList<>());
+    public List<AnalyticsEvent> getEvents(int eventType) {
+        if (!AnalyticsEvent.isValidType(eventType)) {
+            return new ArrayList<>();
+        }
+        return recentEvents[eventType].snapshot(RECENT_EVENTS_PER_TYPE);
     }
     
     /**
-     * Get all tracked events
-     * @return A map of event types to lists of events
+     * Get the most recent events of any type, newest first. Reads at most
+     * limit events per type, however many have been tracked.
+     */
+    public List<AnalyticsEvent> getRecentEvents(int limit) {
+        List<AnalyticsEvent> events = new ArrayList<>();
+        for (RecentEvents recent : recentEvents) {
+            events.addAll(recent.snapshot(limit));
+        }
+        events.sort((e1, e2) -> Long.compare(e2.getTimestamp(), e1.getTimestamp()));
+        return events.size() > limit ? new ArrayList<>(events.subList(0, limit)) : events;
+    }
+    
+    /**
+     * Per-minute, per-hour and per-day counts by type, post and user
+     */
+    public AnalyticsRollups getRollups() {
+        return rollups;
+    }
+    
+    /**
+     * Trending posts per sliding window and unique readers per post
+     */
+    public PostPopularity getPopularity() {
+        return popularity;
+    }
+    
+    /**
+     * Get the most recent events of every type that has any
+     * @return A map of event type names to lists of events
      */
     public Map<String, List<AnalyticsEvent>> getAllEvents() {
+        Map<String, List<AnalyticsEvent>> events = new HashMap<>();
+        for (int type = 0; type < AnalyticsEvent.TYPE_COUNT; type++) {
+            List<AnalyticsEvent> recent = getEvents(type);
+            if (!recent.isEmpty()) {
+                events.put(AnalyticsEvent.typeName(type), recent);
+            }
+        }
         return events;
     }
     
     /**
-     * Shutdown the analytics service
+     * Get the total number of events of a type consumed since startup
+     */
+    public long getEventCount(int eventType) {
+        return AnalyticsEvent.isValidType(eventType) ? eventCounts.get(eventType) : 0;
+    }
+    
+    /**
+     * Get the total number of events of each type consumed since startup
+     * @return A map of event type names to counts, for types seen at least once
+     */
+    public Map<String, Long> getEventCounts() {
+        Map<String, Long> counts = new HashMap<>();
+        for (int type = 0; type < AnalyticsEvent.TYPE_COUNT; type++) {
+            long count = eventCounts.get(type);
+            if (count > 0) {
+                counts.put(AnalyticsEvent.typeName(type), count);
+            }
+        }
+        return counts;
+    }
+    
+    /**
+     * Get a snapshot of the ingestion counters
+     */
+    public IngestionStats getIngestionStats() {
+        return new IngestionStats(overflowPolicy, sequencer.capacity(), sequencer.size(), sequencer.getClaimedCount(), consumed,
+            dropped.sum(), sampledOut.sum(), blockedWaits.sum());
+    }
+    
+    /**
+     * Describe the on-disk log for diagnostics
+     */
+    public String getLogStatus() {
+        if (log == null) {
+            return "disabled";
+        }
+        return log + ", " + replayed + (replaying ? " replayed so far" : " replayed at startup");
+    }
+    
+    /**
+     * Stop the consumer thread after it has drained the events already
+     * published and written them to the log
      */
     public void shutdown() {
-        // No resources to release in this implementation
-        System.out.println("Analytics service shutdown");
+        running = false;
+        LockSupport.unpark(consumer);
+        try {
+            consumer.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println("Analytics service shutdown: " + getIngestionStats());
     }
     
     /**
-     * Inner class representing an analytics event
+     * Ingestion counters at one point in time
      */
-    public static class AnalyticsEvent {
-        private final String type;
-        private final String details;
-        private final long timestamp;
+    public static class IngestionStats {
+        private final OverflowPolicy overflowPolicy;
+        private final int capacity;
+        private final int queued;
+        private final long published;
+        private final long consumed;
+        private final long dropped;
+        private final long sampledOut;
+        private final long blockedWaits;
+        
+        public IngestionStats(OverflowPolicy overflowPolicy, int capacity, int queued, long published,
+                              long consumed, long dropped, long sampledOut, long blockedWaits) {
+            this.overflowPolicy = overflowPolicy;
+            this.capacity = capacity;
+            this.queued = queued;
+            this.published = published;
+            this.consumed = consumed;
+            this.dropped = dropped;
+            this.sampledOut = sampledOut;
+            this.blockedWaits = blockedWaits;
+        }
+        
+        public OverflowPolicy getOverflowPolicy() {
+            return overflowPolicy;
+        }
+        
+        public int getCapacity() {
+            return capacity;
+        }
+        
+        public int getQueued() {
+            return queued;
+        }
+        
+        public long getPublished() {
+            return published;
+        }
+        
+        public long getConsumed() {
+            return consumed;
+        }
+        
+        /**
+         * Events lost because the buffer was full
+         */
+        public long getDropped() {
+            return dropped;
+        }
+        
+        /**
+         * Events skipped by the SAMPLE policy while the buffer was nearly full
+         */
+        public long getSampledOut() {
+            return sampledOut;
+        }
+        
+        /**
+         * Calls that had to wait for space under the BLOCK policy
+         */
+        public long getBlockedWaits() {
+            return blockedWaits;
+        }
         
-        public AnalyticsEvent(String type, String details, long timestamp) {
-            this.type = type;
-            this.details = details;
-            this.timestamp = timestamp;
+        @Override
+        public String toString() {
+            return String.format("%s, %d/%d queued, published %d, consumed %d, dropped %d, sampled out %d, blocked %d",
+                overflowPolicy, queued, capacity, published, consumed, dropped, sampledOut, blockedWaits);
         }
+    }
+    
+    /**
+     * Fixed window of the last events of one type. The event objects are
+     * allocated once and then overwritten in a ring.
+     */
+    private static class RecentEvents {
+        private final AnalyticsEvent[] events;
+        private int next;
+        private int size;
         
-        public String getType() {
-            return type;
+        RecentEvents(int capacity) {
+            this.events = new AnalyticsEvent[capacity];
         }
         
-        public String getDetails() {
-            return details;
+        synchronized void add(AnalyticsEvent event) {
+            if (events[next] == null) {
+                events[next] = event.copy();
+            } else {
+                events[next].copyFrom(event);
+            }
+            next = (next + 1) % events.length;
+            if (size < events.length) {
+                size++;
+            }
         }
         
-        public long getTimestamp() {
-            return timestamp;
+        /**
+         * Copy the newest events, at most limit of them, oldest first
+         */
+        synchronized List<AnalyticsEvent> snapshot(int limit) {
+            int count = Math.min(size, limit);
+            List<AnalyticsEvent> copy = new ArrayList<>(count);
+            // next is one past the newest event
+            int first = next - count + events.length;
+            for (int i = 0; i < count; i++) {
+                copy.add(events[(first + i) % events.length].copy());
+            }
+            return copy;
         }
     }
-} 
\ No newline at end of file
+}
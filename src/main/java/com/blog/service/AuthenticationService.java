@@ -1,11 +1,19 @@
 package com.blog.service;
 
 import com.blog.controller.UserController;
+import com.blog.model.AnalyticsEvent;
 import com.blog.model.User;
 
-import java.util.HashMap;
-import java.util.Map;
+import com.blog.util.PasswordHashing;
+
 import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Singleton service class for handling authentication operations including
@@ -15,6 +23,12 @@ public class AuthenticationService {
     // Singleton instance
     private static AuthenticationService instance;
     
+    // Logins run on a small pool with a bounded queue: password verification is
+    // deliberately slow, so a burst must neither block the EDT nor take every core
+    private static final int LOGIN_THREADS =
+        Integer.getInteger("blog.auth.loginThreads", Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    private static final int LOGIN_QUEUE = Integer.getInteger("blog.auth.loginQueue", 8);
+    
     // Reference to UserController (also a singleton)
     private final UserController userController;
     
@@ -24,11 +38,24 @@ public class AuthenticationService {
     // Timestamp of last login
     private long lastLoginTime;
 
+    private final ExecutorService loginExecutor;
+    
     // Private constructor for Singleton pattern
     private AuthenticationService() {
         this.userController = UserController.getInstance();
         this.analyticsService = AnalyticsService.getInstance();
         this.lastLoginTime = 0;
+        
+        AtomicInteger threadCount = new AtomicInteger();
+        this.loginExecutor = new ThreadPoolExecutor(LOGIN_THREADS, LOGIN_THREADS, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(LOGIN_QUEUE), r -> {
+                Thread thread = new Thread(r, "login-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        
+        // Calibrate the password hasher now, so the first login doesn't pay for it
+        this.loginExecutor.execute(PasswordHashing::getHasher);
     }
     
     /**
@@ -57,17 +84,30 @@ public class AuthenticationService {
             lastLoginTime = System.currentTimeMillis();
             
             // Track login event
-            User user = userController.getCurrentUser();
-            Map<String, Object> properties = new HashMap<>();
-            properties.put("method", "credentials");
-            properties.put("username", username);
-            
-            analyticsService.trackEvent(AnalyticsService.EVENT_LOGIN, user, properties);
+            analyticsService.trackEvent(AnalyticsService.EVENT_LOGIN, userController.getCurrentUser(), 0,
+                AnalyticsEvent.ATTR_METHOD, AnalyticsEvent.METHOD_CREDENTIALS);
         }
         
         return success;
     }
     
+    /**
+     * Authenticate a user on the login executor instead of the calling thread
+     * 
+     * @param username The username
+     * @param password The password
+     * @return a future completing with the login result, or exceptionally with
+     *         RejectedExecutionException if too many logins are already queued
+     */
+    public CompletableFuture<Boolean> loginAsync(String username, String password) {
+        try {
+            return CompletableFuture.supplyAsync(() -> login(username, password), loginExecutor);
+        } catch (RejectedExecutionException e) {
+            System.err.println("Login rejected: " + LOGIN_QUEUE + " logins already waiting");
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+    
     /**
      * Register a new user with basic information
      * 
@@ -82,17 +122,13 @@ public class AuthenticationService {
         
         if (success) {
             // Track registration event
-            Map<String, Object> properties = new HashMap<>();
-            properties.put("username", username);
-            properties.put("email", email);
-            
-            analyticsService.trackEvent(AnalyticsService.EVENT_REGISTRATION, null, properties);
+            analyticsService.trackEvent(AnalyticsService.EVENT_REGISTRATION, null);
             
             // Auto login
             if (login(username, password)) {
                 // Now the user is logged in, update analytics with user info
-                analyticsService.trackEvent(AnalyticsService.EVENT_REGISTRATION, 
-                    userController.getCurrentUser(), "auto_login", true);
+                analyticsService.trackEvent(AnalyticsService.EVENT_REGISTRATION, userController.getCurrentUser(), 0,
+                    AnalyticsEvent.ATTR_AUTO_LOGIN, 1);
             }
         }
         
@@ -116,19 +152,14 @@ public class AuthenticationService {
         
         if (success) {
             // Track registration event
-            Map<String, Object> properties = new HashMap<>();
-            properties.put("username", username);
-            properties.put("email", email);
-            properties.put("role", role);
-            properties.put("has_bio", bio != null && !bio.trim().isEmpty());
-            
-            analyticsService.trackEvent(AnalyticsService.EVENT_REGISTRATION, null, properties);
+            analyticsService.trackEvent(AnalyticsService.EVENT_REGISTRATION, null, 0,
+                AnalyticsEvent.ATTR_PROFILE_FLAGS, profileFlags(bio, null));
             
             // Auto login
             if (login(username, password)) {
                 // Now the user is logged in, update analytics with user info
-                analyticsService.trackEvent(AnalyticsService.EVENT_REGISTRATION, 
-                    userController.getCurrentUser(), "auto_login", true);
+                analyticsService.trackEvent(AnalyticsService.EVENT_REGISTRATION, userController.getCurrentUser(), 0,
+                    AnalyticsEvent.ATTR_AUTO_LOGIN, 1);
             }
         }
         
@@ -162,37 +193,42 @@ public class AuthenticationService {
         
         if (success) {
             // Track registration event
-            Map<String, Object> properties = new HashMap<>();
-            properties.put("username", username);
-            properties.put("email", email);
-            properties.put("role", role);
-            properties.put("has_bio", bio != null && !bio.trim().isEmpty());
-            properties.put("has_profile_picture", profileImageData != null && profileImageData.length > 0);
-            
-            analyticsService.trackEvent(AnalyticsService.EVENT_REGISTRATION, null, properties);
+            analyticsService.trackEvent(AnalyticsService.EVENT_REGISTRATION, null, 0,
+                AnalyticsEvent.ATTR_PROFILE_FLAGS, profileFlags(bio, profileImageData));
             
             // Auto login
             if (login(username, password)) {
                 // Now the user is logged in, update analytics with user info
-                analyticsService.trackEvent(AnalyticsService.EVENT_REGISTRATION, 
-                    userController.getCurrentUser(), "auto_login", true);
+                analyticsService.trackEvent(AnalyticsService.EVENT_REGISTRATION, userController.getCurrentUser(), 0,
+                    AnalyticsEvent.ATTR_AUTO_LOGIN, 1);
             }
         }
         
         return success;
     }
     
+    /**
+     * Profile details given at registration, as AnalyticsEvent.PROFILE_ flags
+     */
+    private static int profileFlags(String bio, byte[] profileImageData) {
+        int flags = 0;
+        if (bio != null && !bio.trim().isEmpty()) {
+            flags |= AnalyticsEvent.PROFILE_HAS_BIO;
+        }
+        if (profileImageData != null && profileImageData.length > 0) {
+            flags |= AnalyticsEvent.PROFILE_HAS_PICTURE;
+        }
+        return flags;
+    }
+    
     /**
      * Log out the current user
      */
     public void logout() {
         // Track logout event before logging out
         if (userController.isLoggedIn()) {
-            User user = userController.getCurrentUser();
-            Map<String, Object> properties = new HashMap<>();
-            properties.put("session_duration_seconds", (System.currentTimeMillis() - lastLoginTime) / 1000);
-            
-            analyticsService.trackEvent(AnalyticsService.EVENT_LOGOUT, user, properties);
+            analyticsService.trackEvent(AnalyticsService.EVENT_LOGOUT, userController.getCurrentUser(), 0,
+                AnalyticsEvent.ATTR_SESSION_SECONDS, (System.currentTimeMillis() - lastLoginTime) / 1000);
         }
         
         userController.logout();
@@ -238,8 +274,8 @@ public class AuthenticationService {
             lastLoginTime = System.currentTimeMillis();
             
             // Track session resume event
-            User user = userController.getCurrentUser();
-            analyticsService.trackEvent(AnalyticsService.EVENT_LOGIN, user, "method", "session_token");
+            analyticsService.trackEvent(AnalyticsService.EVENT_LOGIN, userController.getCurrentUser(), 0,
+                AnalyticsEvent.ATTR_METHOD, AnalyticsEvent.METHOD_SESSION_TOKEN);
         }
         
         return success;
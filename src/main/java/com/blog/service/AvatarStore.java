@@ -0,0 +1,158 @@
+package com.blog.service;
+
+import com.blog.dao.UserDAO;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Ellipse2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Decoded, scaled profile images. User reads no longer carry the image BLOB;
+ * views ask this store for an avatar of the size they draw instead. Each
+ * (user, size) pair is loaded, decoded and scaled once, then kept in an LRU
+ * bounded by the pixel memory it holds. Users without an image are cached too,
+ * so repaints don't query the database.
+ */
+public class AvatarStore {
+    // Budget for cached pixels (4 bytes per ARGB pixel)
+    private static final long DEFAULT_MAX_BYTES = 8L * 1024 * 1024;
+    // Also bounds the image-less entries, which hold no pixels
+    private static final int MAX_ENTRIES = 2000;
+    
+    // Cached for users with no usable image
+    private static final BufferedImage NO_AVATAR = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+    
+    private static AvatarStore instance;
+    
+    private final UserDAO userDAO;
+    private final long maxBytes;
+    private final Map<Long, BufferedImage> avatars = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+    private long hits;
+    private long misses;
+    
+    private AvatarStore(UserDAO userDAO, long maxBytes) {
+        this.userDAO = userDAO;
+        this.maxBytes = maxBytes;
+    }
+    
+    public static synchronized AvatarStore getInstance() {
+        if (instance == null) {
+            instance = new AvatarStore(UserDAO.getInstance(), DEFAULT_MAX_BYTES);
+        }
+        return instance;
+    }
+    
+    /**
+     * Get a user's profile image scaled and clipped to a circle of the given
+     * diameter
+     * @return the avatar, or empty if the user has no profile image
+     */
+    public synchronized Optional<BufferedImage> getAvatar(int userId, int size) {
+        if (size <= 0) {
+            return Optional.empty();
+        }
+        
+        Long key = key(userId, size);
+        BufferedImage avatar = avatars.get(key);
+        if (avatar != null) {
+            hits++;
+        } else {
+            misses++;
+            avatar = load(userId, size);
+            avatars.put(key, avatar);
+            cachedBytes += bytesOf(avatar);
+            evictIfNeeded();
+        }
+        
+        return avatar == NO_AVATAR ? Optional.empty() : Optional.of(avatar);
+    }
+    
+    /**
+     * Drop every cached size of a user's avatar; call after the image changes
+     */
+    public synchronized void invalidate(int userId) {
+        Iterator<Map.Entry<Long, BufferedImage>> it = avatars.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, BufferedImage> entry = it.next();
+            if ((int) (entry.getKey() >>> 32) == userId) {
+                cachedBytes -= bytesOf(entry.getValue());
+                it.remove();
+            }
+        }
+    }
+    
+    public synchronized void clear() {
+        avatars.clear();
+        cachedBytes = 0;
+    }
+    
+    /**
+     * Scale an image and clip it to a circle of the given diameter
+     */
+    public static BufferedImage toCircle(BufferedImage source, int size) {
+        BufferedImage circle = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = circle.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g2.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g2.setClip(new Ellipse2D.Float(0, 0, size, size));
+        g2.drawImage(source, 0, 0, size, size, null);
+        g2.dispose();
+        return circle;
+    }
+    
+    private BufferedImage load(int userId, int size) {
+        Optional<byte[]> data = userDAO.getProfileImageData(userId);
+        if (data.isEmpty()) {
+            return NO_AVATAR;
+        }
+        
+        try {
+            BufferedImage source = ImageIO.read(new ByteArrayInputStream(data.get()));
+            if (source != null) {
+                return toCircle(source, size);
+            }
+        } catch (IOException e) {
+            System.err.println("Error decoding profile image for user " + userId + ": " + e.getMessage());
+        }
+        return NO_AVATAR;
+    }
+    
+    private void evictIfNeeded() {
+        Iterator<BufferedImage> it = avatars.values().iterator();
+        while ((cachedBytes > maxBytes || avatars.size() > MAX_ENTRIES) && avatars.size() > 1 && it.hasNext()) {
+            cachedBytes -= bytesOf(it.next());
+            it.remove();
+        }
+    }
+    
+    private static Long key(int userId, int size) {
+        return ((long) userId << 32) | (size & 0xFFFFFFFFL);
+    }
+    
+    private static long bytesOf(BufferedImage image) {
+        return image == NO_AVATAR ? 0 : (long) image.getWidth() * image.getHeight() * 4;
+    }
+    
+    public synchronized int getEntryCount() {
+        return avatars.size();
+    }
+    
+    public synchronized long getCachedBytes() {
+        return cachedBytes;
+    }
+    
+    public synchronized double getHitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+}
@@ -0,0 +1,294 @@
+package com.blog.service;
+
+import com.blog.model.AnalyticsEvent;
+import com.blog.model.TrendingPost;
+import com.blog.util.HyperLogLog;
+import com.blog.util.IntIntMap;
+import com.blog.util.SpaceSavingTopK;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Streaming popularity sketches over post views, fed with every
+ * {@link AnalyticsEvent#POST_VIEW} by {@link AnalyticsService} on its
+ * consumer thread. Memory stays the same however much traffic there is:
+ *
+ * - Trending posts per sliding window come from a ring of panes, each a
+ *   {@link SpaceSavingTopK} with a fixed number of counters; a query merges
+ *   the panes inside the window. A pane a full turn old is cleared and reused.
+ * - Unique readers per post come from a {@link HyperLogLog} over viewer ids,
+ *   kept for a fixed number of posts. Once every sketch is taken, a new post
+ *   reuses the sketch of one not viewed lately, picked by the CLOCK
+ *   (second-chance) approximation of least recently used.
+ *
+ * Counting a view allocates nothing: the sketches and their index are
+ * primitive arrays, reused rather than replaced.
+ *
+ * Anonymous views count towards trending but not towards unique readers,
+ * since there is no viewer id to tell them apart.
+ */
+public class PostPopularity {
+    // Counters per pane; a post outside a pane's top counters can be undercounted by at most its smallest count
+    private static final int COUNTERS_PER_PANE = Integer.getInteger("blog.analytics.popularity.counters", 256);
+    // Posts with a unique-reader sketch, and log2 of each sketch's registers
+    private static final int MAX_TRACKED_POSTS = Integer.getInteger("blog.analytics.popularity.maxPosts", 4096);
+    private static final int SKETCH_PRECISION = Integer.getInteger("blog.analytics.popularity.precision", 10);
+    
+    /**
+     * Sliding windows trending posts can be asked for
+     */
+    public enum Window {
+        LAST_HOUR(5 * 60_000L, 12, "last hour"),
+        LAST_DAY(3_600_000L, 24, "last 24 hours");
+        
+        private final long paneMillis;
+        private final int paneCount;
+        private final String label;
+        
+        Window(long paneMillis, int paneCount, String label) {
+            this.paneMillis = paneMillis;
+            this.paneCount = paneCount;
+            this.label = label;
+        }
+        
+        public long getMillis() {
+            return paneMillis * paneCount;
+        }
+        
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+    
+    private final int countersPerPane;
+    private final int maxTrackedPosts;
+    private final int sketchPrecision;
+    private final Panes[] windows;
+    // Unique-reader sketches by slot, the post each slot holds, and post id -> slot
+    private final HyperLogLog[] readers;
+    private final int[] readerPosts;
+    private final IntIntMap readerSlots;
+    // Set when a slot's post is viewed; the clock hand clears it on the way past and evicts unset slots
+    private final boolean[] recentlyViewed;
+    private int clockHand;
+    private int readerCount;
+    private long views;
+    private long anonymousViews;
+    private long evictedPosts;
+    
+    public PostPopularity() {
+        this(COUNTERS_PER_PANE, MAX_TRACKED_POSTS, SKETCH_PRECISION);
+    }
+    
+    /**
+     * @param countersPerPane counters in each window pane's top-K sketch
+     * @param maxTrackedPosts posts that keep a unique-reader sketch
+     * @param sketchPrecision log2 of the registers in each unique-reader sketch
+     */
+    public PostPopularity(int countersPerPane, int maxTrackedPosts, int sketchPrecision) {
+        this.countersPerPane = countersPerPane;
+        this.maxTrackedPosts = maxTrackedPosts;
+        this.sketchPrecision = sketchPrecision;
+        
+        Window[] values = Window.values();
+        windows = new Panes[values.length];
+        for (int i = 0; i < values.length; i++) {
+            windows[i] = new Panes(values[i]);
+        }
+        
+        readers = new HyperLogLog[maxTrackedPosts];
+        readerPosts = new int[maxTrackedPosts];
+        readerSlots = new IntIntMap(maxTrackedPosts);
+        recentlyViewed = new boolean[maxTrackedPosts];
+    }
+    
+    /**
+     * Count a post view; other events are ignored. Called on the analytics consumer thread.
+     */
+    public synchronized void accept(AnalyticsEvent event) {
+        if (event.getType() != AnalyticsEvent.POST_VIEW || event.getPostId() <= 0) {
+            return;
+        }
+        int postId = event.getPostId();
+        
+        views++;
+        for (Panes window : windows) {
+            window.add(event.getTimestamp(), postId);
+        }
+        
+        if (event.getUserId() <= 0) {
+            anonymousViews++;
+            return;
+        }
+        readers[readerSlot(postId)].add(event.getUserId());
+    }
+    
+    /**
+     * Slot of a post's unique-reader sketch, taking a free or evicted one for a new post
+     */
+    private int readerSlot(int postId) {
+        int slot = readerSlots.get(postId);
+        if (slot >= 0) {
+            recentlyViewed[slot] = true;
+            return slot;
+        }
+        
+        if (readerCount < readers.length) {
+            slot = readerCount++;
+            readers[slot] = new HyperLogLog(sketchPrecision);
+        } else {
+            // Sweep until a slot not viewed since the hand last passed it
+            while (recentlyViewed[clockHand]) {
+                recentlyViewed[clockHand] = false;
+                clockHand = (clockHand + 1) % readers.length;
+            }
+            slot = clockHand;
+            clockHand = (clockHand + 1) % readers.length;
+            readerSlots.remove(readerPosts[slot]);
+            readers[slot].clear();
+            evictedPosts++;
+        }
+        
+        readerPosts[slot] = postId;
+        readerSlots.put(postId, slot);
+        recentlyViewed[slot] = true;
+        return slot;
+    }
+    
+    /**
+     * Most viewed posts in a window ending now
+     * @return up to limit posts, most views first
+     */
+    public synchronized List<TrendingPost> getTrending(Window window, int limit) {
+        List<TrendingPost> trending = windows[window.ordinal()].top(System.currentTimeMillis(), limit);
+        List<TrendingPost> withReaders = new ArrayList<>(trending.size());
+        for (TrendingPost post : trending) {
+            withReaders.add(new TrendingPost(post.getPostId(), post.getViews(), post.getMaxError(),
+                uniqueReaders(post.getPostId())));
+        }
+        return withReaders;
+    }
+    
+    /**
+     * Estimated distinct signed-in readers of a post, or 0 if it has no sketch
+     */
+    public synchronized long getUniqueViewers(int postId) {
+        return uniqueReaders(postId);
+    }
+    
+    /**
+     * Estimated distinct signed-in readers of each post
+     */
+    public synchronized Map<Integer, Long> getUniqueViewers(Collection<Integer> postIds) {
+        Map<Integer, Long> estimates = new HashMap<>();
+        for (Integer postId : postIds) {
+            estimates.put(postId, uniqueReaders(postId));
+        }
+        return estimates;
+    }
+    
+    private long uniqueReaders(int postId) {
+        int slot = readerSlots.get(postId);
+        return slot < 0 ? 0 : readers[slot].estimate();
+    }
+    
+    /**
+     * Bytes held by the counters and sketches once full; fixed by the configuration
+     */
+    public long getCapacityBytes() {
+        long bytes = 0;
+        for (Panes window : windows) {
+            // keys, counts and errors, plus an index table of twice the counters
+            bytes += (long) window.panes.length * countersPerPane * (4 + 8 + 8 + 2 * (4 + 4));
+        }
+        // Registers, post id, flag and index entries per unique-reader sketch
+        return bytes + (long) maxTrackedPosts * ((1 << sketchPrecision) + 4 + 1 + 2 * (4 + 4));
+    }
+    
+    public synchronized String getStatus() {
+        return String.format("%,d post views (%,d anonymous), unique-reader sketches for %,d of %,d posts, " +
+            "%,d evicted, %,d KiB fixed", views, anonymousViews, readerCount, maxTrackedPosts, evictedPosts,
+            getCapacityBytes() / 1024);
+    }
+    
+    /**
+     * One window's ring of top-K panes, each covering paneMillis
+     */
+    private class Panes {
+        final Window window;
+        final SpaceSavingTopK[] panes;
+        // Pane number (time / paneMillis) each slot holds; Long.MIN_VALUE if unused
+        final long[] paneNumbers;
+        
+        Panes(Window window) {
+            this.window = window;
+            this.panes = new SpaceSavingTopK[window.paneCount];
+            this.paneNumbers = new long[window.paneCount];
+            Arrays.fill(paneNumbers, Long.MIN_VALUE);
+            for (int i = 0; i < panes.length; i++) {
+                panes[i] = new SpaceSavingTopK(countersPerPane);
+            }
+        }
+        
+        void add(long timestamp, int postId) {
+            long paneNumber = Math.floorDiv(timestamp, window.paneMillis);
+            int slot = (int) Math.floorMod(paneNumber, (long) panes.length);
+            if (paneNumbers[slot] != paneNumber) {
+                if (paneNumbers[slot] > paneNumber) {
+                    return; // A full turn older than the pane now in this slot
+                }
+                paneNumbers[slot] = paneNumber;
+                panes[slot].clear();
+            }
+            panes[slot].offer(postId);
+        }
+        
+        /**
+         * Merge the panes inside the window. A post's upper bound adds its
+         * count in each pane that has it and, for a full pane that doesn't,
+         * that pane's smallest count; the lower bound adds count minus error.
+         */
+        List<TrendingPost> top(long now, int limit) {
+            long lastPane = Math.floorDiv(now, window.paneMillis);
+            List<SpaceSavingTopK> live = new ArrayList<>(panes.length);
+            for (int slot = 0; slot < panes.length; slot++) {
+                if (paneNumbers[slot] > lastPane - panes.length && paneNumbers[slot] <= lastPane) {
+                    live.add(panes[slot]);
+                }
+            }
+            
+            Set<Integer> candidates = new LinkedHashSet<>();
+            for (SpaceSavingTopK pane : live) {
+                pane.forEach((postId, count, error) -> candidates.add(postId));
+            }
+            
+            List<TrendingPost> ranked = new ArrayList<>(candidates.size());
+            for (int postId : candidates) {
+                long upper = 0;
+                long lower = 0;
+                for (SpaceSavingTopK pane : live) {
+                    long count = pane.getCount(postId);
+                    if (count > 0) {
+                        upper += count;
+                        lower += count - pane.getError(postId);
+                    } else {
+                        upper += pane.getMinCount();
+                    }
+                }
+                ranked.add(new TrendingPost(postId, upper, upper - lower, 0));
+            }
+            ranked.sort((a, b) -> a.getViews() != b.getViews()
+                ? Long.compare(b.getViews(), a.getViews())
+                : Long.compare(b.getMinViews(), a.getMinViews()));
+            return new ArrayList<>(ranked.subList(0, Math.min(limit, ranked.size())));
+        }
+    }
+}
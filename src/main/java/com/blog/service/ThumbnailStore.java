@@ -0,0 +1,191 @@
+package com.blog.service;
+
+import com.blog.dao.MediaDAO;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decoded, scaled post thumbnails. Post summaries carry only the id of their
+ * first image; list views ask this store for a page's thumbnails at once.
+ * Images not cached yet are read with one batched query, decoded and scaled
+ * once, then kept in an LRU bounded by the pixel memory it holds, the way
+ * {@link AvatarStore} keeps avatars. Ids without a usable image are cached
+ * too, so reloading a page doesn't query the database again.
+ *
+ * Loading reads image BLOBs and decodes them; call it off the EDT.
+ */
+public class ThumbnailStore {
+    // Budget for cached pixels (4 bytes per ARGB pixel)
+    private static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+    // Also bounds the image-less entries, which hold no pixels
+    private static final int MAX_ENTRIES = 2000;
+    
+    // Cached for media with no usable image
+    private static final BufferedImage NO_THUMBNAIL = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+    
+    private static ThumbnailStore instance;
+    
+    private final MediaDAO mediaDAO;
+    private final long maxBytes;
+    private final Map<Long, BufferedImage> thumbnails = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+    private long hits;
+    private long misses;
+    
+    private ThumbnailStore(MediaDAO mediaDAO, long maxBytes) {
+        this.mediaDAO = mediaDAO;
+        this.maxBytes = maxBytes;
+    }
+    
+    public static synchronized ThumbnailStore getInstance() {
+        if (instance == null) {
+            instance = new ThumbnailStore(new MediaDAO(), DEFAULT_MAX_BYTES);
+        }
+        return instance;
+    }
+    
+    /**
+     * Get thumbnails of the given height for several images, loading the ones
+     * not cached yet with a single query
+     * @return thumbnails keyed by media id; ids without a usable image are left out
+     */
+    public Map<Integer, BufferedImage> getThumbnails(Collection<Integer> mediaIds, int height) {
+        Map<Integer, BufferedImage> result = new HashMap<>();
+        if (height <= 0 || mediaIds.isEmpty()) {
+            return result;
+        }
+        
+        List<Integer> missing = new ArrayList<>();
+        synchronized (this) {
+            for (Integer mediaId : mediaIds) {
+                BufferedImage thumbnail = thumbnails.get(key(mediaId, height));
+                if (thumbnail != null) {
+                    hits++;
+                    putIfUsable(result, mediaId, thumbnail);
+                } else {
+                    misses++;
+                    missing.add(mediaId);
+                }
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+        
+        // Read and decode without holding the lock, so cached lookups don't wait on the database
+        Map<Integer, byte[]> data = mediaDAO.getMediaDataByIds(missing);
+        Map<Integer, BufferedImage> loaded = new HashMap<>();
+        for (Integer mediaId : missing) {
+            loaded.put(mediaId, decode(mediaId, data.get(mediaId), height));
+        }
+        
+        synchronized (this) {
+            for (Map.Entry<Integer, BufferedImage> entry : loaded.entrySet()) {
+                BufferedImage previous = thumbnails.put(key(entry.getKey(), height), entry.getValue());
+                if (previous != null) {
+                    cachedBytes -= bytesOf(previous);
+                }
+                cachedBytes += bytesOf(entry.getValue());
+                putIfUsable(result, entry.getKey(), entry.getValue());
+            }
+            evictIfNeeded();
+        }
+        return result;
+    }
+    
+    /**
+     * Drop every cached size of an image; call after it is deleted
+     */
+    public synchronized void invalidate(int mediaId) {
+        Iterator<Map.Entry<Long, BufferedImage>> it = thumbnails.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, BufferedImage> entry = it.next();
+            if ((int) (entry.getKey() >>> 32) == mediaId) {
+                cachedBytes -= bytesOf(entry.getValue());
+                it.remove();
+            }
+        }
+    }
+    
+    public synchronized void clear() {
+        thumbnails.clear();
+        cachedBytes = 0;
+    }
+    
+    /**
+     * Scale an image to the given height, keeping its aspect ratio
+     */
+    public static BufferedImage scaleToHeight(BufferedImage source, int height) {
+        int width = Math.max(1, (int) (source.getWidth() * ((double) height / source.getHeight())));
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = scaled.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g2.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g2.drawImage(source, 0, 0, width, height, null);
+        g2.dispose();
+        return scaled;
+    }
+    
+    private static BufferedImage decode(int mediaId, byte[] data, int height) {
+        if (data == null) {
+            return NO_THUMBNAIL;
+        }
+        
+        try {
+            BufferedImage source = ImageIO.read(new ByteArrayInputStream(data));
+            if (source != null) {
+                return scaleToHeight(source, height);
+            }
+        } catch (IOException e) {
+            System.err.println("Error decoding thumbnail for media " + mediaId + ": " + e.getMessage());
+        }
+        return NO_THUMBNAIL;
+    }
+    
+    private static void putIfUsable(Map<Integer, BufferedImage> result, int mediaId, BufferedImage thumbnail) {
+        if (thumbnail != NO_THUMBNAIL) {
+            result.put(mediaId, thumbnail);
+        }
+    }
+    
+    private void evictIfNeeded() {
+        Iterator<BufferedImage> it = thumbnails.values().iterator();
+        while ((cachedBytes > maxBytes || thumbnails.size() > MAX_ENTRIES) && thumbnails.size() > 1 && it.hasNext()) {
+            cachedBytes -= bytesOf(it.next());
+            it.remove();
+        }
+    }
+    
+    private static Long key(int mediaId, int height) {
+        return ((long) mediaId << 32) | (height & 0xFFFFFFFFL);
+    }
+    
+    private static long bytesOf(BufferedImage image) {
+        return image == NO_THUMBNAIL ? 0 : (long) image.getWidth() * image.getHeight() * 4;
+    }
+    
+    public synchronized int getEntryCount() {
+        return thumbnails.size();
+    }
+    
+    public synchronized long getCachedBytes() {
+        return cachedBytes;
+    }
+    
+    public synchronized double getHitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+}
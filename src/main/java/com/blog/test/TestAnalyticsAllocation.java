@@ -0,0 +1,127 @@
+package com.blog.test;
+
+import com.blog.model.AnalyticsEvent;
+import com.blog.model.User;
+import com.blog.service.AnalyticsService;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Measures the heap allocated per tracked analytics event, on the calling
+ * thread and on the analytics consumer thread, for the structured
+ * {@link AnalyticsEvent} path, including the write to the analytics log.
+ * For comparison it also measures the previous approach, rebuilt here: a
+ * HashMap of boxed properties rendered into a details string with a
+ * StringBuilder on every call.
+ *
+ * Usage: TestAnalyticsAllocation
+ * Exits with status 1 if the structured path allocates on the caller.
+ */
+public class TestAnalyticsAllocation {
+    // Bursts fit in the buffer, so no event is dropped while measuring
+    private static final int BURST = 4096;
+    private static final int BURSTS = 250;
+    private static final int EVENTS = BURST * BURSTS;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // Keeps the legacy details strings reachable so they aren't optimized away
+    private static int sink;
+
+    public static void main(String[] args) throws IOException {
+        if (!THREADS.isThreadAllocatedMemorySupported()) {
+            System.out.println("Thread allocation counters are not supported by this JVM");
+            return;
+        }
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+        // Log to a scratch directory, so no earlier events are replayed into the counts
+        Path logDirectory = Files.createTempDirectory("analytics-log");
+        System.setProperty("blog.analytics.log.dir", logDirectory.toString());
+
+        AnalyticsService analytics = AnalyticsService.getInstance();
+        User user = new User("benchmark", "unused", "benchmark@example.com", "Benchmark User");
+        user.setId(1);
+        long consumerId = findThreadId("analytics-consumer");
+
+        // First pass warms up (and fills the recent-events window), second is measured
+        long callerBytes = 0;
+        long consumerBytes = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            callerBytes = 0;
+            long consumerBefore = THREADS.getThreadAllocatedBytes(consumerId);
+            for (int burst = 0; burst < BURSTS; burst++) {
+                long before = THREADS.getCurrentThreadAllocatedBytes();
+                for (int i = 0; i < BURST; i++) {
+                    analytics.trackEvent(AnalyticsService.EVENT_POST_VIEW, user, i + 1,
+                        AnalyticsEvent.ATTR_CONTENT_LENGTH, i);
+                }
+                callerBytes += THREADS.getCurrentThreadAllocatedBytes() - before;
+                analytics.awaitDrained(10_000);
+            }
+            consumerBytes = THREADS.getThreadAllocatedBytes(consumerId) - consumerBefore;
+        }
+
+        long legacyBytes = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            long before = THREADS.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < EVENTS; i++) {
+                sink += legacyTrackEvent(user, i + 1, i).length();
+            }
+            legacyBytes = THREADS.getCurrentThreadAllocatedBytes() - before;
+        }
+
+        AnalyticsService.IngestionStats stats = analytics.getIngestionStats();
+        System.out.printf("Structured event, caller:   %6.1f bytes/event%n", (double) callerBytes / EVENTS);
+        System.out.printf("Structured event, consumer: %6.1f bytes/event%n", (double) consumerBytes / EVENTS);
+        System.out.printf("Map + details string:       %6.1f bytes/event (caller only)%n",
+            (double) legacyBytes / EVENTS);
+        System.out.println("Ingestion: " + stats + " (" + sink + ")");
+
+        analytics.shutdown();
+        TestAnalyticsLog.deleteDirectory(logDirectory);
+        // Allow a little for the allocation counter itself and JIT activity
+        TestSupport.check((double) callerBytes / EVENTS < 1.0,
+            "tracking a structured event allocates nothing on the caller");
+        TestSupport.check(stats.getDropped() == 0, "no event was dropped while measuring");
+        TestSupport.finish("tracking a structured event allocated on the caller or dropped events",
+            "Structured events allocated nothing on the caller.");
+    }
+
+    /**
+     * What trackEvent used to do before handing the event to the buffer
+     */
+    private static String legacyTrackEvent(User user, int postId, int contentLength) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("postId", postId);
+        properties.put("contentLength", contentLength);
+
+        StringBuilder details = new StringBuilder();
+        details.append("User: ").append(user.getUsername()).append(" (").append(user.getId()).append(")");
+        details.append(", Properties: {");
+        boolean first = true;
+        for (Map.Entry<String, Object> entry : properties.entrySet()) {
+            if (!first) {
+                details.append(", ");
+            }
+            details.append(entry.getKey()).append("=").append(entry.getValue());
+            first = false;
+        }
+        details.append("}");
+        return details.toString();
+    }
+
+    private static long findThreadId(String name) {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (name.equals(thread.getName())) {
+                return thread.getId();
+            }
+        }
+        throw new IllegalStateException("No thread named " + name);
+    }
+}
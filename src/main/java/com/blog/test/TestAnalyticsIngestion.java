@@ -0,0 +1,112 @@
+package com.blog.test;
+
+import com.blog.model.AnalyticsEvent;
+import com.blog.service.AnalyticsService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Exercises analytics ingestion: AnalyticsService under a single caller and
+ * under a flood from several threads, checking that every tracked event is
+ * either consumed or counted as dropped/sampled, and printing the cost of
+ * trackEvent on the caller.
+ *
+ * Usage: TestAnalyticsIngestion [drop|sample|block]
+ * Exits with status 1 on any lost or duplicated event.
+ */
+public class TestAnalyticsIngestion {
+    private static final int PRODUCERS = 4;
+    private static final int PER_PRODUCER = 250_000;
+    // Latency is timed in bursts that fit in the buffer, so it measures the
+    // caller's cost rather than waiting on (or sharing a core with) the consumer
+    private static final int BURST = 2048;
+    private static final int BURSTS = 500;
+    private static final int LATENCY_CALLS = BURST * BURSTS;
+
+    public static void main(String[] args) throws InterruptedException, IOException {
+        // Must be set before AnalyticsService is first used
+        String policy = args.length > 0 ? args[0] : "drop";
+        System.setProperty("blog.analytics.overflow", policy);
+        // Log to a scratch directory, so no earlier events are replayed into the counts
+        Path logDirectory = Files.createTempDirectory("analytics-log");
+        System.setProperty("blog.analytics.log.dir", logDirectory.toString());
+
+        checkService();
+        TestAnalyticsLog.deleteDirectory(logDirectory);
+
+        TestSupport.finish("analytics ingestion lost or duplicated events",
+            "Analytics ingestion accounted for every event.");
+    }
+
+    private static void checkService() throws InterruptedException {
+        AnalyticsService analytics = AnalyticsService.getInstance();
+        int userId = 1;
+
+        // Single caller: cost of trackEvent on the calling thread (first pass warms up)
+        long elapsed = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            elapsed = 0;
+            for (int burst = 0; burst < BURSTS; burst++) {
+                long started = System.nanoTime();
+                for (int i = 0; i < BURST; i++) {
+                    analytics.trackEvent(AnalyticsService.EVENT_PAGE_VIEW, userId, 0, AnalyticsEvent.ATTR_PAGE, i & 3);
+                }
+                elapsed += System.nanoTime() - started;
+                analytics.awaitDrained(10_000);
+            }
+        }
+        System.out.printf("trackEvent on one thread: %.1f ns/call%n", (double) elapsed / LATENCY_CALLS);
+
+        // Flood from several threads, faster than the consumer can keep up with
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] producers = new Thread[PRODUCERS];
+        for (int p = 0; p < PRODUCERS; p++) {
+            producers[p] = new Thread(() -> {
+                awaitQuietly(start);
+                for (int i = 0; i < PER_PRODUCER; i++) {
+                    analytics.trackEvent(AnalyticsService.EVENT_POST_VIEW, userId, i + 1, AnalyticsEvent.ATTR_NONE, 0);
+                }
+            });
+            producers[p].start();
+        }
+        long started = System.nanoTime();
+        start.countDown();
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        elapsed = System.nanoTime() - started;
+        System.out.printf("trackEvent from %d threads: %.1f ns/call per thread%n",
+            PRODUCERS, (double) elapsed / PER_PRODUCER);
+
+        if (!analytics.awaitDrained(30_000)) {
+            TestSupport.fail("consumer did not catch up: " + analytics.getIngestionStats());
+            return;
+        }
+
+        AnalyticsService.IngestionStats stats = analytics.getIngestionStats();
+        long tracked = 2L * LATENCY_CALLS + (long) PRODUCERS * PER_PRODUCER;
+        long accounted = stats.getPublished() + stats.getDropped() + stats.getSampledOut();
+        long counted = analytics.getEventCounts().values().stream().mapToLong(Long::longValue).sum();
+        if (accounted != tracked || stats.getConsumed() != stats.getPublished() || counted != stats.getConsumed()) {
+            TestSupport.fail("tracked " + tracked + ", counted " + counted + ": " + stats);
+        } else {
+            System.out.println("PASS " + tracked + " events tracked: " + stats);
+        }
+        if (stats.getOverflowPolicy() == AnalyticsService.OverflowPolicy.BLOCK && stats.getDropped() > 0) {
+            TestSupport.fail("BLOCK policy dropped events");
+        }
+
+        analytics.shutdown();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.blog.test;
+
+import com.blog.model.AnalyticsEvent;
+import com.blog.util.AnalyticsLog;
+import com.blog.util.AnalyticsLogReader;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Exercises the analytics log in a temporary directory: events written
+ * across many small segments must replay complete and in order, retention
+ * must delete the oldest segments, a log reopened after a crash (no close,
+ * a torn last record) must continue where the complete records end, and
+ * prints the cost of an append.
+ *
+ * Usage: TestAnalyticsLog
+ * Exits with status 1 on any lost, reordered or corrupted event.
+ */
+public class TestAnalyticsLog {
+    private static final int RECORDS_PER_SEGMENT = 1000;
+    private static final long SEGMENT_BYTES = 32 + 32L * RECORDS_PER_SEGMENT;
+    private static final int EVENTS = 25_500;
+    private static final int BENCHMARK_EVENTS = 5_000_000;
+
+    public static void main(String[] args) throws IOException {
+        Path directory = Files.createTempDirectory("analytics-log-test");
+        try {
+            checkReplay(directory.resolve("replay"));
+            checkRetention(directory.resolve("retention"));
+            checkCrashRecovery(directory.resolve("crash"));
+            benchmarkAppend(directory.resolve("benchmark"));
+        } finally {
+            deleteDirectory(directory);
+        }
+
+        TestSupport.finish("analytics log lost or corrupted events", "Analytics log replayed every event.");
+    }
+
+    private static void checkReplay(Path directory) throws IOException {
+        AnalyticsLog log = new AnalyticsLog(directory, SEGMENT_BYTES, 0, 1000, 0, 1000);
+        AnalyticsEvent event = new AnalyticsEvent();
+        for (int i = 0; i < EVENTS; i++) {
+            fill(event, i);
+            log.append(event);
+        }
+        log.close();
+
+        AnalyticsLogReader reader = new AnalyticsLogReader(directory);
+        List<AnalyticsLogReader.Segment> segments = reader.getSegments();
+        int expectedSegments = (EVENTS + RECORDS_PER_SEGMENT - 1) / RECORDS_PER_SEGMENT;
+        TestSupport.check(segments.size() == expectedSegments,
+            "segments rolled over: " + segments.size() + " of " + expectedSegments);
+        TestSupport.check(segments.stream().allMatch(segment -> segment.getSealedAt() > 0),
+            "every segment sealed on close");
+
+        long replayed = checkSequence(reader, 0, "replay");
+        TestSupport.check(replayed == EVENTS, "replayed " + replayed + " of " + EVENTS + " events");
+
+        // A replay from a timestamp skips the earlier events
+        long from = timestampOf(EVENTS - 100);
+        long[] count = {0};
+        reader.replay(e -> count[0]++, from);
+        TestSupport.check(count[0] == 100, "replay from a timestamp returned " + count[0] + " of 100 events");
+    }
+
+    private static void checkRetention(Path directory) throws IOException {
+        int keep = 5;
+        AnalyticsLog log = new AnalyticsLog(directory, SEGMENT_BYTES, 0, keep, 0, 1000);
+        AnalyticsEvent event = new AnalyticsEvent();
+        for (int i = 0; i < EVENTS; i++) {
+            fill(event, i);
+            log.append(event);
+        }
+        log.close();
+
+        AnalyticsLogReader reader = new AnalyticsLogReader(directory);
+        List<AnalyticsLogReader.Segment> segments = reader.getSegments();
+        TestSupport.check(segments.size() == keep, "retention kept " + segments.size() + " of " + keep + " segments");
+        long first = segments.get(0).getBaseSequence();
+        long replayed = checkSequence(reader, (int) first, "retained replay");
+        TestSupport.check(first + replayed == EVENTS,
+            "retained segments end at " + (first + replayed) + " of " + EVENTS);
+
+        // Age-based retention: every sealed segment is far older than a day
+        AnalyticsLog aged = new AnalyticsLog(directory, SEGMENT_BYTES, 0, 1000, 24 * 3_600_000L, 1000);
+        aged.close();
+        TestSupport.check(reader.getSegments().isEmpty(),
+            "age retention left " + reader.getSegments().size() + " segments");
+    }
+
+    /**
+     * Simulate a crash: the last segment is never sealed and its final record is torn
+     */
+    private static void checkCrashRecovery(Path directory) throws IOException {
+        AnalyticsLog log = new AnalyticsLog(directory, SEGMENT_BYTES, 0, 1000, 0, 1000);
+        AnalyticsEvent event = new AnalyticsEvent();
+        int written = 1500;
+        for (int i = 0; i < written; i++) {
+            fill(event, i);
+            log.append(event);
+        }
+        // No close(): the mapped pages are still in the page cache, as after a process crash
+
+        List<AnalyticsLogReader.Segment> segments = new AnalyticsLogReader(directory).getSegments();
+        AnalyticsLogReader.Segment last = segments.get(segments.size() - 1);
+        TestSupport.check(last.getSealedAt() == 0, "crashed segment is unsealed");
+        try (RandomAccessFile file = new RandomAccessFile(last.getPath().toFile(), "rw")) {
+            // Tear the last record: clear its timestamp, as if it was interrupted mid-write
+            file.seek(32 + 32L * (last.countRecords() - 1));
+            file.writeLong(0);
+        }
+        written--;
+
+        AnalyticsLog reopened = new AnalyticsLog(directory, SEGMENT_BYTES, 0, 1000, 0, 1000);
+        for (int i = written; i < written + 10; i++) {
+            fill(event, i);
+            reopened.append(event);
+        }
+        reopened.close();
+
+        AnalyticsLogReader reader = new AnalyticsLogReader(directory);
+        TestSupport.check(reader.getSegments().stream().allMatch(segment -> segment.getSealedAt() > 0),
+            "crashed segment sealed on reopen");
+        long replayed = checkSequence(reader, 0, "recovered replay");
+        TestSupport.check(replayed == written + 10, "recovered " + replayed + " of " + (written + 10) + " events");
+    }
+
+    private static void benchmarkAppend(Path directory) throws IOException {
+        AnalyticsLog log = new AnalyticsLog(directory, 8L * 1024 * 1024, 0, 4, 0, 1000);
+        AnalyticsEvent event = new AnalyticsEvent();
+        long started = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_EVENTS; i++) {
+            fill(event, i);
+            log.append(event);
+            if ((i & 255) == 0) {
+                log.maybeSync(System.currentTimeMillis());
+            }
+        }
+        log.close();
+        long elapsed = System.nanoTime() - started;
+        System.out.printf("append: %.1f ns/event on the consumer thread (%s)%n",
+            (double) elapsed / BENCHMARK_EVENTS, log);
+    }
+
+    /**
+     * Replay and check every event matches what fill() wrote, in sequence
+     * @return the number of events replayed
+     */
+    private static long checkSequence(AnalyticsLogReader reader, int first, String name) throws IOException {
+        AnalyticsEvent expected = new AnalyticsEvent();
+        int[] next = {first};
+        boolean[] mismatch = {false};
+        long replayed = reader.replay(event -> {
+            fill(expected, next[0]);
+            if (!mismatch[0] && !sameEvent(expected, event)) {
+                TestSupport.fail(name + ": event " + next[0] + " is " + event + ", expected " + expected);
+                mismatch[0] = true;
+            }
+            next[0]++;
+        });
+        return replayed;
+    }
+
+    private static void fill(AnalyticsEvent event, int i) {
+        event.set(i % AnalyticsEvent.TYPE_COUNT, i % 97, i, timestampOf(i), AnalyticsEvent.ATTR_CONTENT_LENGTH, i * 3L);
+    }
+
+    private static long timestampOf(int i) {
+        return 1_700_000_000_000L + i;
+    }
+
+    private static boolean sameEvent(AnalyticsEvent a, AnalyticsEvent b) {
+        return a.getType() == b.getType() && a.getUserId() == b.getUserId() && a.getPostId() == b.getPostId()
+            && a.getTimestamp() == b.getTimestamp() && a.getAttributeKey() == b.getAttributeKey()
+            && a.getAttributeValue() == b.getAttributeValue();
+    }
+
+    /**
+     * Delete a directory tree; used by the analytics harnesses for their temporary logs
+     */
+    static void deleteDirectory(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.blog.test;
+
+import com.blog.model.AnalyticsEvent;
+import com.blog.model.TimeSeries;
+import com.blog.service.AnalyticsRollups;
+import com.blog.service.AnalyticsRollups.Resolution;
+
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Exercises the analytics rollups: events spread over the last few hours
+ * must land in the same minute and hour buckets as a naive recount, counts by
+ * post and user must match, events older than a wheel keeps must not leak
+ * into reused buckets, and the cost of a report's queries must stay the same
+ * whether ten thousand or millions of events were counted.
+ *
+ * Usage: TestAnalyticsRollups
+ * Exits with status 1 on any miscounted bucket.
+ */
+public class TestAnalyticsRollups {
+    private static final int POSTS = 500;
+    private static final int USERS = 200;
+    private static final long MINUTE = 60_000L;
+    private static final long HOUR = 3_600_000L;
+
+    public static void main(String[] args) {
+        checkCounts();
+        checkQueryCost();
+
+        TestSupport.finish("analytics rollups miscounted events", "Analytics rollups matched a full recount.");
+    }
+
+    private static void checkCounts() {
+        AnalyticsRollups rollups = new AnalyticsRollups(0);
+        long now = System.currentTimeMillis();
+        long currentMinute = Math.floorDiv(now, MINUTE);
+        long currentHour = Math.floorDiv(now, HOUR);
+        int minutes = Resolution.MINUTE.getBucketCount();
+        int hours = 6;
+
+        // Naive recount, bucketed the same way
+        long[] perMinute = new long[minutes];
+        long[] perHour = new long[hours];
+        long postViews = 0;
+        long userLikes = 0;
+        int watchedPost = 7;
+        int watchedUser = 11;
+
+        Random random = new Random(42);
+        AnalyticsEvent event = new AnalyticsEvent();
+        // Old events first: they fill minute buckets the wheel later reuses
+        for (int i = 0; i < 100_000; i++) {
+            long timestamp = now - (long) (random.nextDouble() * hours * HOUR);
+            int type = random.nextInt(AnalyticsEvent.TYPE_COUNT);
+            int postId = 1 + random.nextInt(POSTS);
+            int userId = random.nextInt(USERS); // 0 is anonymous
+            event.set(type, userId, postId, timestamp, AnalyticsEvent.ATTR_NONE, 0);
+            rollups.accept(event);
+
+            long minuteAgo = currentMinute - Math.floorDiv(timestamp, MINUTE);
+            if (minuteAgo < minutes) {
+                perMinute[(int) (minutes - 1 - minuteAgo)]++;
+            }
+            long hourAgo = currentHour - Math.floorDiv(timestamp, HOUR);
+            if (hourAgo < hours) {
+                perHour[(int) (hours - 1 - hourAgo)]++;
+            }
+            if (postId == watchedPost && type == AnalyticsEvent.POST_VIEW && hourAgo < hours) {
+                postViews++;
+            }
+            if (userId == watchedUser && type == AnalyticsEvent.LIKE && hourAgo < hours) {
+                userLikes++;
+            }
+        }
+
+        TimeSeries minuteSeries = rollups.getSeries(Resolution.MINUTE, AnalyticsRollups.ALL_TYPES, minutes);
+        TestSupport.check(matches(minuteSeries, perMinute),
+            "per-minute buckets match a recount over " + minutes + " minutes");
+        TimeSeries hourSeries = rollups.getSeries(Resolution.HOUR, AnalyticsRollups.ALL_TYPES, hours);
+        TestSupport.check(matches(hourSeries, perHour), "per-hour buckets match a recount over " + hours + " hours");
+        long dayTotal = rollups.getTotal(Resolution.DAY, AnalyticsRollups.ALL_TYPES, 2);
+        TestSupport.check(dayTotal == 100_000, "per-day buckets hold all " + dayTotal + " of 100000 events");
+
+        long rolledPostViews = rollups.getPostSeries(Resolution.HOUR, watchedPost, AnalyticsEvent.POST_VIEW, hours)
+            .getTotal();
+        TestSupport.check(rolledPostViews == postViews,
+            "post " + watchedPost + " views: " + rolledPostViews + " of " + postViews);
+        long rolledUserLikes = rollups.getUserSeries(Resolution.HOUR, watchedUser, AnalyticsEvent.LIKE, hours)
+            .getTotal();
+        TestSupport.check(rolledUserLikes == userLikes,
+            "user " + watchedUser + " likes: " + rolledUserLikes + " of " + userLikes);
+
+        Map<Integer, Long> top = rollups.getTopPosts(Resolution.HOUR, AnalyticsRollups.ALL_TYPES, hours, 5);
+        long previous = Long.MAX_VALUE;
+        boolean ordered = top.size() == 5;
+        for (Map.Entry<Integer, Long> entry : top.entrySet()) {
+            long expected = rollups.getPostSeries(Resolution.HOUR, entry.getKey(), AnalyticsRollups.ALL_TYPES, hours)
+                .getTotal();
+            ordered &= entry.getValue() <= previous && entry.getValue() == expected;
+            previous = entry.getValue();
+        }
+        TestSupport.check(ordered, "top posts ranked by their own totals: " + top);
+
+        // An event a full minute-wheel turn old must not land in a live bucket
+        long before = rollups.getTotal(Resolution.MINUTE, AnalyticsRollups.ALL_TYPES, minutes);
+        event.set(AnalyticsEvent.LOGIN, 1, 0, now - minutes * MINUTE - MINUTE, AnalyticsEvent.ATTR_NONE, 0);
+        rollups.accept(event);
+        long after = rollups.getTotal(Resolution.MINUTE, AnalyticsRollups.ALL_TYPES, minutes);
+        TestSupport.check(before == after, "an event older than the minute wheel is ignored there");
+    }
+
+    /**
+     * Time the queries a report makes after counting few and many events
+     */
+    private static void checkQueryCost() {
+        AnalyticsRollups rollups = new AnalyticsRollups(0);
+        Random random = new Random(7);
+        AnalyticsEvent event = new AnalyticsEvent();
+        long counted = 0;
+        for (int events : new int[]{10_000, 2_000_000}) {
+            long now = System.currentTimeMillis();
+            long started = System.nanoTime();
+            for (; counted < events; counted++) {
+                long timestamp = now - (long) (random.nextDouble() * 3 * HOUR);
+                event.set(random.nextInt(AnalyticsEvent.TYPE_COUNT), random.nextInt(USERS), 1 + random.nextInt(POSTS),
+                    timestamp, AnalyticsEvent.ATTR_NONE, 0);
+                rollups.accept(event);
+            }
+            double countCost = (double) (System.nanoTime() - started) / events;
+
+            double cost = 0;
+            for (int pass = 0; pass < 3; pass++) {
+                cost = timeReportQueries(rollups);
+            }
+            System.out.printf("%,d events counted (%.0f ns/event): report queries take %.2f ms%n",
+                counted, countCost, cost / 1_000_000);
+        }
+    }
+
+    private static double timeReportQueries(AnalyticsRollups rollups) {
+        int rounds = 50;
+        long started = System.nanoTime();
+        long sink = 0;
+        for (int round = 0; round < rounds; round++) {
+            for (int type = 0; type < AnalyticsEvent.TYPE_COUNT; type++) {
+                sink += rollups.getTotal(Resolution.MINUTE, type, 60);
+                sink += rollups.getTotal(Resolution.HOUR, type, 24);
+            }
+            sink += rollups.getSeries(Resolution.MINUTE, AnalyticsRollups.ALL_TYPES, 180).getMax();
+            sink += rollups.getSeries(Resolution.HOUR, AnalyticsRollups.ALL_TYPES, 168).getMax();
+            sink += rollups.getSeries(Resolution.DAY, AnalyticsRollups.ALL_TYPES, 90).getMax();
+        }
+        if (sink < 0) {
+            System.out.println(sink);
+        }
+        return (double) (System.nanoTime() - started) / rounds;
+    }
+
+    private static boolean matches(TimeSeries series, long[] expected) {
+        if (series.size() != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (series.getCount(i) != expected[i]) {
+                System.out.println("bucket " + i + ": " + series.getCount(i) + ", expected " + expected[i]);
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
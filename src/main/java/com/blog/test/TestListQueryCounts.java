@@ -0,0 +1,165 @@
+package com.blog.test;
+
+import com.blog.dao.BlogPostDAO;
+import com.blog.model.BlogPost;
+import com.blog.util.DatabaseUtil;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Checks that the BlogPostDAO list queries issue a constant number of SQL
+ * statements no matter how many posts they return (no N+1 lookups of authors
+ * or media). Runs against a throwaway database, seeded twice at different sizes.
+ *
+ * Exits with status 1 if any list query's statement count grows with the data.
+ */
+public class TestListQueryCounts {
+    private static final int SMALL = 10;
+    private static final int LARGE = 200;
+
+    public static void main(String[] args) throws IOException {
+        // Must be set before DatabaseUtil is first used
+        TestSupport.useTempDatabase("blog-query-counts");
+
+        BlogPostDAO blogPostDAO = new BlogPostDAO();
+
+        seed(SMALL);
+        long[] small = measureAll(blogPostDAO, SMALL);
+
+        seed(LARGE);
+        long[] large = measureAll(blogPostDAO, LARGE);
+
+        String[] names = {"getAllPosts", "getAllPostsForAdmin", "getPostsByUser",
+                          "getPostsByTag", "searchPosts", "getPostsByPopularity"};
+        for (int i = 0; i < names.length; i++) {
+            check(names[i], small[i], large[i]);
+        }
+
+        TestSupport.finish("some list queries scale with the number of posts",
+            "All list queries use a constant number of statements.");
+    }
+
+    private static long[] measureAll(BlogPostDAO dao, int expectedPosts) {
+        return new long[] {
+            measure("getAllPosts", expectedPosts, dao::getAllPosts),
+            measure("getAllPostsForAdmin", expectedPosts, dao::getAllPostsForAdmin),
+            measure("getPostsByUser", expectedPosts, () -> dao.getPostsByUser(1)),
+            measure("getPostsByTag", expectedPosts, () -> dao.getPostsByTag("java")),
+            measure("searchPosts", expectedPosts, () -> dao.searchPosts("Post")),
+            measure("getPostsByPopularity", expectedPosts, dao::getPostsByPopularity)
+        };
+    }
+
+    /**
+     * Run a list query and return how many statements it executed
+     */
+    private static long measure(String name, int expectedPosts, Supplier<List<BlogPost>> query) {
+        long before = DatabaseUtil.getPoolStats().getStatementCache().getExecutions();
+        List<BlogPost> posts = query.get();
+        long executions = DatabaseUtil.getPoolStats().getStatementCache().getExecutions() - before;
+
+        int withMedia = 0;
+        for (BlogPost post : posts) {
+            if (post.getAuthor() == null || post.getAuthor().getUsername() == null) {
+                TestSupport.fail(name + ": post " + post.getId() + " has no author");
+                break;
+            }
+            if (post.getMediaAttachments() != null && !post.getMediaAttachments().isEmpty()) {
+                withMedia++;
+            }
+        }
+
+        if (posts.size() != expectedPosts) {
+            TestSupport.fail(name + ": expected " + expectedPosts + " posts, got " + posts.size());
+        }
+        if (withMedia != expectedPosts / 2) {
+            TestSupport.fail(name + ": expected " + expectedPosts / 2 + " posts with media, got " + withMedia);
+        }
+
+        return executions;
+    }
+
+    private static void check(String name, long smallCount, long largeCount) {
+        if (smallCount == largeCount) {
+            System.out.println("PASS " + name + ": " + smallCount + " statements for " + SMALL + " and " + LARGE + " posts");
+        } else {
+            TestSupport.fail(name + ": " + smallCount + " statements for " + SMALL +
+                             " posts but " + largeCount + " for " + LARGE);
+        }
+    }
+
+    /**
+     * Replace the contents of the database with the given number of published
+     * posts by a single author, every other one with an image attached
+     */
+    private static void seed(int postCount) {
+        try (Connection conn = DatabaseUtil.getConnection()) {
+            conn.setAutoCommit(false);
+
+            try (PreparedStatement clear = conn.prepareStatement("DELETE FROM media")) {
+                clear.executeUpdate();
+            }
+            try (PreparedStatement clear = conn.prepareStatement("DELETE FROM post_tags")) {
+                clear.executeUpdate();
+            }
+            try (PreparedStatement clear = conn.prepareStatement("DELETE FROM blog_posts")) {
+                clear.executeUpdate();
+            }
+            try (PreparedStatement clear = conn.prepareStatement("DELETE FROM users")) {
+                clear.executeUpdate();
+            }
+
+            try (PreparedStatement user = conn.prepareStatement(
+                    "INSERT INTO users (id, username, password, email, full_name, role) VALUES (1, ?, ?, ?, ?, ?)")) {
+                user.setString(1, "author");
+                user.setString(2, "x");
+                user.setString(3, "author@example.com");
+                user.setString(4, "Test Author");
+                user.setString(5, "user");
+                user.executeUpdate();
+            }
+
+            try (PreparedStatement tag = conn.prepareStatement(
+                    "INSERT INTO tags (name) VALUES ('java'), ('testing') ON CONFLICT(name) DO NOTHING")) {
+                tag.executeUpdate();
+            }
+
+            try (PreparedStatement post = conn.prepareStatement(
+                    "INSERT INTO blog_posts (id, title, content, user_id, status, tags, view_count) VALUES (?, ?, ?, 1, 'published', ?, ?)");
+                 PreparedStatement postTags = conn.prepareStatement(
+                    "INSERT INTO post_tags (post_id, tag_id) SELECT ?, id FROM tags");
+                 PreparedStatement media = conn.prepareStatement(
+                    "INSERT INTO media (post_id, file_name, file_type, file_path) VALUES (?, ?, 'image/png', ?)")) {
+
+                for (int id = 1; id <= postCount; id++) {
+                    post.setInt(1, id);
+                    post.setString(2, "Post " + id);
+                    post.setString(3, "Content of post " + id);
+                    post.setString(4, "java,testing");
+                    post.setInt(5, id);
+                    post.executeUpdate();
+                    postTags.setInt(1, id);
+                    postTags.executeUpdate();
+
+                    if (id % 2 == 0) {
+                        media.setInt(1, id);
+                        media.setString(2, "image" + id + ".png");
+                        media.setString(3, "/tmp/image" + id + ".png");
+                        media.executeUpdate();
+                    }
+                }
+            }
+
+            conn.commit();
+            conn.setAutoCommit(true);
+        } catch (SQLException e) {
+            System.err.println("Error seeding test database: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.blog.test;
+
+import com.blog.dao.UserDAO;
+import com.blog.model.User;
+import com.blog.service.AuthenticationService;
+import com.blog.util.DatabaseUtil;
+import com.blog.util.PasswordHashing;
+import com.blog.util.Pbkdf2PasswordHasher;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Exercises password hashing: new hashes are salted PBKDF2 at the calibrated
+ * cost, SHA-256 and plaintext passwords from before are accepted once and
+ * replaced on that login, and logins run on the bounded login executor, which
+ * never verifies more passwords at once than it has threads and turns away a
+ * burst beyond its queue instead of blocking the caller.
+ *
+ * Usage: TestPasswordHashing
+ * Exits with status 1 if any check fails.
+ */
+public class TestPasswordHashing {
+    private static final long TARGET_MS = 50;
+    private static final int LOGIN_THREADS = 2;
+    private static final int LOGIN_QUEUE = 4;
+
+    public static void main(String[] args) throws IOException {
+        // Must be set before DatabaseUtil, PasswordHashing and AuthenticationService are first used
+        TestSupport.useTempDatabase("blog-passwords");
+        System.setProperty("blog.passwords.targetMs", String.valueOf(TARGET_MS));
+        System.setProperty("blog.auth.loginThreads", String.valueOf(LOGIN_THREADS));
+        System.setProperty("blog.auth.loginQueue", String.valueOf(LOGIN_QUEUE));
+
+        checkHashes();
+        checkLegacyUpgrade();
+        checkLoginExecutor();
+
+        TestSupport.finish("password hashing checks", "Password hashing passed every check.");
+    }
+
+    private static void checkHashes() {
+        Pbkdf2PasswordHasher hasher = (Pbkdf2PasswordHasher) PasswordHashing.getHasher();
+        String first = PasswordHashing.hash("correct horse");
+        String second = PasswordHashing.hash("correct horse");
+        TestSupport.check(first.startsWith("pbkdf2-sha256$" + hasher.getIterations() + "$"),
+            "new hashes are PBKDF2: " + first);
+        TestSupport.check(hasher.getIterations() >= Pbkdf2PasswordHasher.MIN_ITERATIONS,
+            "the cost is at least the floor");
+        TestSupport.check(!first.equals(second), "each hash has its own salt");
+
+        long started = System.nanoTime();
+        boolean matches = PasswordHashing.verify("correct horse", first);
+        long verifyMillis = (System.nanoTime() - started) / 1_000_000;
+        System.out.printf("Calibrated to %d iterations: one verification takes %d ms (target %d ms)%n",
+            hasher.getIterations(), verifyMillis, TARGET_MS);
+        TestSupport.check(matches && PasswordHashing.verify("correct horse", second), "the password verifies");
+        TestSupport.check(!PasswordHashing.verify("wrong horse", first), "a wrong password doesn't");
+        TestSupport.check(!PasswordHashing.verify(first, first), "the hash itself isn't accepted as the password");
+
+        TestSupport.check(!PasswordHashing.needsRehash(first), "a hash at the current cost is kept");
+        String cheap = new Pbkdf2PasswordHasher(hasher.getIterations() / 2).hash("correct horse");
+        TestSupport.check(PasswordHashing.verify("correct horse", cheap) && PasswordHashing.needsRehash(cheap),
+            "a hash below the current cost verifies and is marked for rehashing");
+        TestSupport.check(PasswordHashing.needsRehash(legacySha256("correct horse")),
+            "a SHA-256 hash is marked for rehashing");
+    }
+
+    private static void checkLegacyUpgrade() {
+        UserDAO userDAO = UserDAO.getInstance();
+        insertUser("legacy", legacySha256("old secret"));
+        insertUser("plain", "plain secret");
+
+        TestSupport.check(!userDAO.authenticateUser("legacy", legacySha256("old secret")).isPresent(),
+            "the stored SHA-256 hash isn't accepted as the password");
+        TestSupport.check(!userDAO.authenticateUser("legacy", "wrong").isPresent(),
+            "a wrong password doesn't upgrade the hash");
+        TestSupport.check(storedHash("legacy").equals(legacySha256("old secret")),
+            "the hash is untouched after failed logins");
+
+        for (String username : new String[] {"legacy", "plain"}) {
+            String password = username.equals("legacy") ? "old secret" : "plain secret";
+            TestSupport.check(userDAO.authenticateUser(username, password).isPresent(),
+                username + " logs in with the old hash");
+            String upgraded = storedHash(username);
+            TestSupport.check(upgraded.startsWith("pbkdf2-sha256$") && !PasswordHashing.needsRehash(upgraded),
+                username + "'s hash was upgraded on login");
+            TestSupport.check(userDAO.authenticateUser(username, password).isPresent(),
+                username + " logs in with the new hash");
+            TestSupport.check(storedHash(username).equals(upgraded), "a current hash isn't rewritten on every login");
+        }
+    }
+
+    private static void checkLoginExecutor() {
+        UserDAO.getInstance().registerUser(new User("burst", "burst secret", "burst@example.com", "Burst User"));
+
+        // Same hashes, but slow, and counting how many verify at once
+        int iterations = ((Pbkdf2PasswordHasher) PasswordHashing.getHasher()).getIterations();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        PasswordHashing.setHasher(new Pbkdf2PasswordHasher(iterations) {
+            @Override
+            public boolean verify(String password, String storedHash) {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(100);
+                    return super.verify(password, storedHash);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                } finally {
+                    running.decrementAndGet();
+                }
+            }
+        });
+
+        AuthenticationService auth = AuthenticationService.getInstance();
+        List<CompletableFuture<Boolean>> logins = new ArrayList<>();
+        long started = System.nanoTime();
+        for (int i = 0; i < 20; i++) {
+            logins.add(auth.loginAsync("burst", "burst secret"));
+        }
+        long submitMillis = (System.nanoTime() - started) / 1_000_000;
+        TestSupport.check(submitMillis < 100, "submitting 20 logins took " + submitMillis + " ms without blocking");
+
+        int succeeded = 0;
+        int rejected = 0;
+        for (CompletableFuture<Boolean> login : logins) {
+            try {
+                succeeded += login.join() ? 1 : 0;
+            } catch (RuntimeException e) {
+                rejected++;
+            }
+        }
+        System.out.printf("Burst of 20 logins: %d succeeded, %d turned away, at most %d verifying at once%n",
+            succeeded, rejected, maxRunning.get());
+        TestSupport.check(maxRunning.get() <= LOGIN_THREADS,
+            "no more than " + LOGIN_THREADS + " passwords verify at once");
+        TestSupport.check(rejected > 0 && succeeded + rejected == 20,
+            "logins beyond the queue are turned away, the rest succeed");
+        TestSupport.check(auth.loginAsync("burst", "wrong").join() == Boolean.FALSE,
+            "a wrong password fails asynchronously too");
+    }
+
+    private static void insertUser(String username, String password) {
+        String sql = "INSERT INTO users (username, password, email, full_name, role) VALUES (?, ?, ?, ?, 'reader')";
+        try (Connection conn = DatabaseUtil.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, username);
+            pstmt.setString(2, password);
+            pstmt.setString(3, username + "@example.com");
+            pstmt.setString(4, username);
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            System.err.println("Error inserting user: " + e.getMessage());
+        }
+    }
+
+    private static String storedHash(String username) {
+        try (Connection conn = DatabaseUtil.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT password FROM users WHERE username = ?")) {
+            pstmt.setString(1, username);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getString(1) : "";
+            }
+        } catch (SQLException e) {
+            System.err.println("Error reading password: " + e.getMessage());
+            return "";
+        }
+    }
+
+    /**
+     * The scheme passwords were stored with before: one unsalted SHA-256
+     */
+    private static String legacySha256(String password) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(password.getBytes());
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
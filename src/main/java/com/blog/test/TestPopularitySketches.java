@@ -0,0 +1,185 @@
+package com.blog.test;
+
+import com.blog.model.AnalyticsEvent;
+import com.blog.model.TrendingPost;
+import com.blog.service.PostPopularity;
+import com.blog.util.HyperLogLog;
+import com.blog.util.SpaceSavingTopK;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Exercises the post popularity sketches: the Space-Saving top-K must bound
+ * every reported count by the true count, and find the heaviest posts of a
+ * skewed stream; HyperLogLog estimates of unique readers must stay within a
+ * few standard errors; the trending windows must agree with an exact recount
+ * of the same panes; and the heap they retain must not grow with traffic.
+ *
+ * Usage: TestPopularitySketches
+ * Exits with status 1 on any estimate outside its bounds.
+ */
+public class TestPopularitySketches {
+    private static final long MINUTE = 60_000L;
+    private static final long PANE = 5 * MINUTE;
+
+    public static void main(String[] args) {
+        checkTopK();
+        checkUniqueCounts();
+        checkTrendingWindow();
+        checkFixedMemory();
+
+        TestSupport.finish("popularity sketches out of bounds",
+            "Popularity sketches stayed within their error bounds.");
+    }
+
+    private static void checkTopK() {
+        SpaceSavingTopK topK = new SpaceSavingTopK(200);
+        Map<Integer, Long> exact = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 1_000_000; i++) {
+            int postId = zipf(random, 100_000);
+            topK.offer(postId);
+            exact.merge(postId, 1L, Long::sum);
+        }
+
+        boolean bounded = true;
+        List<int[]> counted = new ArrayList<>();
+        topK.forEach((key, count, error) -> counted.add(new int[]{key}));
+        for (int[] entry : counted) {
+            long truth = exact.getOrDefault(entry[0], 0L);
+            long count = topK.getCount(entry[0]);
+            bounded &= count >= truth && count - topK.getError(entry[0]) <= truth;
+        }
+        TestSupport.check(bounded, "every counter is within [count - error, count] of the true count");
+
+        List<Map.Entry<Integer, Long>> heaviest = new ArrayList<>(exact.entrySet());
+        heaviest.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+        int found = 0;
+        for (int i = 0; i < 20; i++) {
+            if (topK.getCount(heaviest.get(i).getKey()) > 0) {
+                found++;
+            }
+        }
+        TestSupport.check(found == 20,
+            "the 20 heaviest of " + exact.size() + " posts all hold a counter (" + found + ")");
+
+        long unseen = 0;
+        for (Map.Entry<Integer, Long> entry : heaviest) {
+            if (topK.getCount(entry.getKey()) == 0) {
+                unseen = Math.max(unseen, entry.getValue());
+            }
+        }
+        TestSupport.check(unseen <= topK.getMinCount(), "posts without a counter had at most " + topK.getMinCount() +
+            " views (largest " + unseen + ")");
+    }
+
+    private static void checkUniqueCounts() {
+        HyperLogLog sketch = new HyperLogLog(10);
+        // Three standard errors at 1024 registers
+        double tolerance = 3 * 1.04 / Math.sqrt(1024);
+        Random random = new Random(7);
+        int added = 0;
+        for (int distinct : new int[]{10, 100, 1_000, 10_000, 100_000, 1_000_000}) {
+            for (; added < distinct; added++) {
+                // Each reader views the post a few times; repeats must not count
+                int views = 1 + random.nextInt(3);
+                for (int i = 0; i < views; i++) {
+                    sketch.add(added + 1);
+                }
+            }
+            long estimate = sketch.estimate();
+            double error = Math.abs(estimate - distinct) / (double) distinct;
+            TestSupport.check(error <= tolerance, String.format("%,d readers estimated as %,d (%.1f%% off)",
+                distinct, estimate, error * 100));
+        }
+    }
+
+    private static void checkTrendingWindow() {
+        PostPopularity popularity = new PostPopularity(64, 1_000, 10);
+        long now = System.currentTimeMillis();
+        long lastPane = Math.floorDiv(now, PANE);
+        Map<Integer, Long> exact = new HashMap<>();
+        Random random = new Random(11);
+        AnalyticsEvent event = new AnalyticsEvent();
+
+        // Two hours of views; the first hour has its own favourites, which must not trend now
+        for (int i = 0; i < 300_000; i++) {
+            long timestamp = now - (long) (random.nextDouble() * 120 * MINUTE);
+            boolean recent = Math.floorDiv(timestamp, PANE) > lastPane - 12;
+            int postId = recent ? zipf(random, 5_000) : 10_000 + zipf(random, 5_000);
+            int userId = random.nextInt(20) == 0 ? 0 : 1 + random.nextInt(50_000);
+            event.set(AnalyticsEvent.POST_VIEW, userId, postId, timestamp, AnalyticsEvent.ATTR_NONE, 0);
+            popularity.accept(event);
+            if (recent) {
+                exact.merge(postId, 1L, Long::sum);
+            }
+        }
+
+        List<TrendingPost> trending = popularity.getTrending(PostPopularity.Window.LAST_HOUR, 10);
+        boolean bounded = trending.size() == 10;
+        for (TrendingPost post : trending) {
+            long truth = exact.getOrDefault(post.getPostId(), 0L);
+            bounded &= post.getMinViews() <= truth && truth <= post.getViews();
+        }
+        TestSupport.check(bounded, "last-hour trending views bound the exact recount: " + trending.subList(0, 3));
+
+        List<Map.Entry<Integer, Long>> heaviest = new ArrayList<>(exact.entrySet());
+        heaviest.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+        int matched = 0;
+        for (int i = 0; i < 5; i++) {
+            if (trending.get(i).getPostId() == heaviest.get(i).getKey()) {
+                matched++;
+            }
+        }
+        TestSupport.check(matched == 5, "the top 5 trending posts match the exact top 5");
+        TestSupport.check(trending.get(0).getUniqueViewers() > 0, "trending posts carry unique-reader estimates");
+    }
+
+    /**
+     * Feed a stream of ever new posts and readers and compare the heap retained
+     * after one million and after five million views
+     */
+    private static void checkFixedMemory() {
+        PostPopularity popularity = new PostPopularity(256, 2_000, 10);
+        Random random = new Random(3);
+        AnalyticsEvent event = new AnalyticsEvent();
+        long now = System.currentTimeMillis();
+        long[] retained = new long[2];
+        int[] checkpoints = {1_000_000, 5_000_000};
+        int fed = 0;
+        for (int i = 0; i < checkpoints.length; i++) {
+            for (; fed < checkpoints[i]; fed++) {
+                int postId = 1 + random.nextInt(1_000_000);
+                event.set(AnalyticsEvent.POST_VIEW, 1 + random.nextInt(10_000_000), postId,
+                    now - random.nextInt(24 * 60) * MINUTE, AnalyticsEvent.ATTR_NONE, 0);
+                popularity.accept(event);
+            }
+            retained[i] = usedHeap();
+        }
+        long growth = retained[1] - retained[0];
+        System.out.printf("Sketches sized for %,d KiB; heap after 1M views %,d KiB, after 5M %,d KiB%n",
+            popularity.getCapacityBytes() / 1024, retained[0] / 1024, retained[1] / 1024);
+        TestSupport.check(growth < 1024 * 1024, "retained heap grew by " + growth / 1024 + " KiB over 4M more views");
+        System.out.println(popularity.getStatus());
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Roughly Zipf-distributed id in [1, n]: a few ids take most of the views
+     */
+    private static int zipf(Random random, int n) {
+        return (int) Math.min(n, Math.floor(Math.pow(n + 1, random.nextDouble())));
+    }
+
+}
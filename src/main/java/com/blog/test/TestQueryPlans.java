@@ -0,0 +1,195 @@
+package com.blog.test;
+
+import com.blog.dao.BlogPostDAO;
+import com.blog.dao.CommentDAO;
+import com.blog.dao.LikeDAO;
+import com.blog.dao.MediaDAO;
+import com.blog.dao.UserDAO;
+import com.blog.model.BlogPost;
+import com.blog.model.Comment;
+import com.blog.model.Like;
+import com.blog.model.Media;
+import com.blog.model.User;
+import com.blog.util.DatabaseUtil;
+import com.blog.util.SessionManager;
+import com.blog.util.ViewCountBuffer;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Runs every DAO method against a throwaway database, records the SQL each one
+ * prepares, and checks the EXPLAIN QUERY PLAN of every statement. Fails if any
+ * of them falls back to a full table scan, i.e. is missing an index.
+ *
+ * Bound to the Maven test phase, so a new DAO query without a supporting index
+ * breaks the build. When adding a DAO method, call it from runWorkload().
+ */
+public class TestQueryPlans {
+
+    public static void main(String[] args) throws IOException {
+        // Must be set before DatabaseUtil is first used
+        TestSupport.useTempDatabase("blog-query-plans");
+
+        Set<String> statements = Collections.synchronizedSet(new LinkedHashSet<>());
+        DatabaseUtil.setSqlObserver(statements::add);
+        runWorkload();
+        DatabaseUtil.setSqlObserver(null);
+
+        try (Connection conn = DatabaseUtil.getConnection()) {
+            for (String sql : new ArrayList<>(statements)) {
+                checkPlan(conn, sql);
+            }
+        } catch (SQLException e) {
+            TestSupport.fail("Could not check query plans: " + e.getMessage());
+        }
+
+        TestSupport.finishInBuild("some DAO statements scan a whole table",
+            "Checked " + statements.size() + " DAO statements: no table scans.");
+    }
+
+    /**
+     * Check that no step of one statement's plan scans a whole table
+     */
+    private static void checkPlan(Connection conn, String sql) throws SQLException {
+        if (sql.trim().toUpperCase().startsWith("INSERT")) {
+            return; // Plain inserts have no plan to check
+        }
+
+        try (PreparedStatement pstmt = conn.prepareStatement("EXPLAIN QUERY PLAN " + sql);
+             ResultSet rs = pstmt.executeQuery()) {
+            List<String> scans = new ArrayList<>();
+            while (rs.next()) {
+                String detail = rs.getString("detail");
+                if (isTableScan(detail)) {
+                    scans.add(detail);
+                }
+            }
+
+            TestSupport.check(scans.isEmpty(), scans.isEmpty() ? sql : sql + " -> " + String.join("; ", scans));
+        }
+    }
+
+    /**
+     * "SCAN t" reads every row of t; "SCAN t USING INDEX i", searches and
+     * full-text lookups ("SCAN f VIRTUAL TABLE INDEX ...") are fine
+     */
+    private static boolean isTableScan(String detail) {
+        if (!detail.startsWith("SCAN ")) {
+            return false;
+        }
+        return !detail.contains(" USING ") && !detail.contains(" VIRTUAL TABLE ")
+            && !detail.startsWith("SCAN CONSTANT ROW") && !detail.startsWith("SCAN (");
+    }
+
+    /**
+     * Call every DAO method at least once
+     */
+    private static void runWorkload() {
+        UserDAO userDAO = UserDAO.getInstance();
+        BlogPostDAO blogPostDAO = new BlogPostDAO();
+        MediaDAO mediaDAO = new MediaDAO();
+        CommentDAO commentDAO = new CommentDAO();
+        LikeDAO likeDAO = new LikeDAO();
+        SessionManager sessionManager = SessionManager.getInstance();
+
+        // Users
+        User author = new User("planauthor", "password123", "planauthor@example.com", "Plan Author");
+        userDAO.registerUser(author);
+        author = userDAO.authenticateUser("planauthor", "password123").orElseThrow();
+        userDAO.getUserById(author.getId());
+        userDAO.isUsernameTaken("planauthor");
+        userDAO.isEmailTaken("planauthor@example.com");
+        userDAO.getAllUsers();
+        userDAO.getLastRegisteredUserId();
+        userDAO.updateUserProfile(author);
+        userDAO.updateProfilePicture(author.getId(), new byte[]{1, 2, 3});
+        userDAO.getProfileImageData(author.getId());
+        userDAO.changePassword(author.getId(), "password456");
+
+        // Posts
+        BlogPost post = new BlogPost("Query plans", "Checking every query uses an index", author);
+        post.setStatus("published");
+        post.setTags("java,sqlite");
+        blogPostDAO.createPost(post);
+        blogPostDAO.updatePost(post);
+        blogPostDAO.incrementViewCount(post.getId());
+        ViewCountBuffer.getInstance().flush();
+        blogPostDAO.getPostById(post.getId());
+        blogPostDAO.getAllPosts();
+        blogPostDAO.getAllPostsForAdmin();
+        blogPostDAO.getPostsByUser(author.getId());
+        blogPostDAO.getPostsByTag("java");
+        blogPostDAO.searchPosts("plans");
+        blogPostDAO.getPostsByPopularity();
+        blogPostDAO.getTagCounts();
+        blogPostDAO.getPostSummariesForAdmin();
+        blogPostDAO.getPopularPostSummaries();
+        blogPostDAO.getPublishedPostSummaries(List.of(post.getId()));
+        blogPostDAO.getPublishedPostsPage(null, 10);
+        blogPostDAO.getPublishedPostsPage(blogPostDAO.getPublishedPostsPage(null, 1).getNextCursor(), 10);
+        blogPostDAO.getPostsByUserPage(author.getId(), null, 10);
+        blogPostDAO.getPostsByTagPage("java", null, 10);
+        blogPostDAO.searchPostsPage("plans", null, 10);
+        blogPostDAO.searchPostsRanked("\"query plans\" index*", 0, 10);
+        blogPostDAO.getPostsByPopularityPage(null, 10);
+
+        // Media
+        Media media = new Media("plan.png", "image/png", new byte[]{1, 2, 3});
+        media.setPostId(post.getId());
+        mediaDAO.saveMedia(media);
+        mediaDAO.getMediaByPostId(post.getId());
+        mediaDAO.getMediaByPostIds(List.of(post.getId(), post.getId() + 1));
+        mediaDAO.getMediaById(media.getId());
+        mediaDAO.getMediaDataByIds(List.of(media.getId(), media.getId() + 1));
+
+        // Comments
+        Comment comment = new Comment("First", author, post.getId());
+        commentDAO.createComment(comment);
+        Comment reply = new Comment("Reply", author, post.getId(), comment.getId(), 1);
+        commentDAO.createComment(reply);
+        commentDAO.saveComment(reply);
+        commentDAO.getCommentById(comment.getId());
+        commentDAO.updateComment(comment.getId(), "First, edited");
+        commentDAO.toggleCommentHidden(reply.getId());
+        commentDAO.countCommentsForPost(post.getId());
+        commentDAO.getCommentCountForPost(post.getId());
+        commentDAO.getCommentsForPost(post.getId());
+        commentDAO.getCommentsForPostWithThreading(post.getId());
+
+        // Likes
+        likeDAO.createLike(new Like(post.getId(), author, true));
+        likeDAO.createLike(new Like(post.getId(), author, false));
+        likeDAO.toggleReaction(author.getId(), post.getId(), true);
+        likeDAO.toggleReaction(author.getId(), post.getId(), true);
+        likeDAO.getLikeByUserAndPost(author.getId(), post.getId());
+        likeDAO.getLikesForPost(post.getId());
+        likeDAO.countLikesForPost(post.getId());
+        blogPostDAO.getPostStats(List.of(post.getId()), author.getId());
+        likeDAO.countDislikesForPost(post.getId());
+
+        // Sessions
+        String token = sessionManager.generateSessionToken();
+        sessionManager.createSession(author.getId(), token);
+        sessionManager.validateSession(token);
+        sessionManager.invalidateSession(token);
+        sessionManager.cleanupExpiredSessions();
+
+        // Deletes last
+        likeDAO.deleteLike(author.getId(), post.getId());
+        likeDAO.deleteLikesForPost(post.getId());
+        commentDAO.deleteComment(reply.getId());
+        commentDAO.deleteCommentsForPost(post.getId());
+        mediaDAO.deleteMedia(media.getId());
+        mediaDAO.deleteMediaForPost(post.getId());
+        blogPostDAO.deletePost(post.getId(), author.getId());
+    }
+}
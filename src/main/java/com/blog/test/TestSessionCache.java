@@ -0,0 +1,167 @@
+package com.blog.test;
+
+import com.blog.util.DatabaseUtil;
+import com.blog.util.HashedTimingWheel;
+import com.blog.util.SessionManager;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Exercises the session cache: validating a token must not run any SQL,
+ * invalidating one must reject it at once, sessions must stop validating at
+ * their expiry and be evicted by the timing wheel, and the sweeper must
+ * delete expired rows, including ones left by an earlier run, in batches.
+ * Also times validation from the cache against the SQL lookup it replaces.
+ *
+ * Usage: TestSessionCache
+ * Exits with status 1 if any check fails.
+ */
+public class TestSessionCache {
+    private static final long EXPIRATION_MS = 1_500;
+    private static final int USER_ID = 1;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        // Must be set before DatabaseUtil and SessionManager are first used
+        TestSupport.useTempDatabase("blog-sessions");
+        System.setProperty("blog.sessions.expirationMs", String.valueOf(EXPIRATION_MS));
+        System.setProperty("blog.sessions.wheelTickMs", "100");
+        System.setProperty("blog.sessions.sweepIntervalMs", "500");
+        System.setProperty("blog.sessions.sweepBatchSize", "100");
+
+        checkWheel();
+
+        // Rows an earlier run left behind, already expired
+        insertExpiredRows(250);
+
+        SessionManager sessions = SessionManager.getInstance();
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            String token = sessions.generateSessionToken();
+            sessions.createSession(USER_ID, token);
+            tokens.add(token);
+        }
+
+        // The hot path: every check answered from memory; the sweeper's statements run on its own thread
+        AtomicInteger statements = new AtomicInteger();
+        Thread validating = Thread.currentThread();
+        DatabaseUtil.setSqlObserver(sql -> {
+            if (Thread.currentThread() == validating) {
+                statements.incrementAndGet();
+            }
+        });
+        boolean allValid = true;
+        for (String token : tokens) {
+            allValid &= sessions.validateSession(token).equals(Optional.of(USER_ID));
+        }
+        allValid &= !sessions.validateSession("no-such-token").isPresent();
+        DatabaseUtil.setSqlObserver(null);
+        TestSupport.check(allValid, "1000 live sessions validate and an unknown token doesn't");
+        TestSupport.check(statements.get() == 0, "validation ran " + statements.get() + " SQL statements");
+
+        String loggedOut = tokens.remove(0);
+        sessions.invalidateSession(loggedOut);
+        TestSupport.check(!sessions.validateSession(loggedOut).isPresent(),
+            "an invalidated session is rejected at once");
+
+        timeValidation(sessions, tokens.get(0));
+
+        // Let every session expire, and give the wheel and the sweeper time to run
+        Thread.sleep(EXPIRATION_MS + 1_500);
+        TestSupport.check(!sessions.validateSession(tokens.get(1)).isPresent(), "an expired session is rejected");
+        TestSupport.check(sessions.getCachedSessionCount() == 0,
+            "the timing wheel evicted expired sessions (" + sessions.getCachedSessionCount() + " left)");
+        int rows = countRows();
+        TestSupport.check(rows == 0, "the sweeper deleted expired rows (" + rows + " left): " + sessions);
+
+        TestSupport.finish("session cache checks", "Session cache passed every check.");
+    }
+
+    private static void checkWheel() {
+        long start = 1_000_000L;
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(100, 8, start);
+        wheel.schedule("soon", start + 250);
+        wheel.schedule("next turn", start + 1_250);
+        HashedTimingWheel.Timeout<String> cancelled = wheel.schedule("cancelled", start + 250);
+        wheel.schedule("far", start + 60_000);
+        TestSupport.check(wheel.cancel(cancelled) && !wheel.cancel(cancelled), "a timeout cancels once");
+
+        List<String> expired = new ArrayList<>();
+        wheel.advance(start + 200, expired::add);
+        TestSupport.check(expired.isEmpty(), "nothing expires before its deadline");
+        wheel.advance(start + 300, expired::add);
+        TestSupport.check(expired.equals(List.of("soon")), "a deadline expires on its tick: " + expired);
+        // Jump more than a full turn: each bucket is visited once
+        wheel.advance(start + 5_000, expired::add);
+        TestSupport.check(expired.equals(List.of("soon", "next turn")),
+            "a later turn's deadline waits for its turn: " + expired);
+        TestSupport.check(wheel.size() == 1, "a far deadline stays scheduled");
+        wheel.advance(start + 60_000, expired::add);
+        TestSupport.check(expired.size() == 3 && wheel.size() == 0, "the far deadline expires after a long stall");
+    }
+
+    private static void timeValidation(SessionManager sessions, String token) {
+        int rounds = 200_000;
+        long sink = 0;
+        long started = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            sink += sessions.validateSession(token).orElse(0);
+        }
+        double cached = (double) (System.nanoTime() - started) / rounds;
+
+        String sql = "SELECT user_id, expires_at FROM sessions WHERE session_token = ?";
+        int sqlRounds = 5_000;
+        started = System.nanoTime();
+        for (int i = 0; i < sqlRounds; i++) {
+            try (Connection conn = DatabaseUtil.getReadConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, token);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    sink += rs.next() ? rs.getInt(1) : 0;
+                }
+            } catch (SQLException e) {
+                System.err.println("Error validating session: " + e.getMessage());
+            }
+        }
+        double lookup = (double) (System.nanoTime() - started) / sqlRounds;
+        System.out.printf("validateSession: %.0f ns/call from the cache, %.0f ns/call as a SQL lookup (%d)%n",
+            cached, lookup, sink % 2);
+    }
+
+    private static void insertExpiredRows(int count) {
+        String sql = "INSERT INTO sessions (user_id, session_token, expires_at) VALUES (?, ?, ?)";
+        try (Connection conn = DatabaseUtil.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            Timestamp past = new Timestamp(System.currentTimeMillis() - 60_000);
+            for (int i = 0; i < count; i++) {
+                pstmt.setInt(1, USER_ID);
+                pstmt.setString(2, "stale-" + i);
+                pstmt.setTimestamp(3, past);
+                pstmt.executeUpdate();
+            }
+        } catch (SQLException e) {
+            System.err.println("Error inserting sessions: " + e.getMessage());
+        }
+    }
+
+    private static int countRows() {
+        try (Connection conn = DatabaseUtil.getReadConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM sessions")) {
+            return rs.next() ? rs.getInt(1) : -1;
+        } catch (SQLException e) {
+            System.err.println("Error counting sessions: " + e.getMessage());
+            return -1;
+        }
+    }
+
+}
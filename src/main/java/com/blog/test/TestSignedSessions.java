@@ -0,0 +1,196 @@
+package com.blog.test;
+
+import com.blog.util.DatabaseUtil;
+import com.blog.util.SessionManager;
+import com.blog.util.SignedSessionTokens;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Exercises signed session tokens: a token validates without any SQL, a
+ * tampered or foreign token is rejected, a revoked token is rejected at once
+ * and its revocation is stored, tokens signed before a key rotation stay
+ * valid while a key whose tokens have all expired is dropped, and expired
+ * tokens and revocations are cleared. Also times signed validation against
+ * the cached database sessions and the SQL lookup.
+ *
+ * Usage: TestSignedSessions
+ * Exits with status 1 if any check fails.
+ */
+public class TestSignedSessions {
+    private static final long EXPIRATION_MS = 3_000;
+    private static final int USER_ID = 1;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        // Must be set before DatabaseUtil and SessionManager are first used
+        TestSupport.useTempDatabase("blog-signed-sessions");
+        Path keyFile = Files.createTempFile("session-keys", ".properties");
+        Files.delete(keyFile);
+        System.setProperty("blog.sessions.mode", "signed");
+        System.setProperty("blog.sessions.keyFile", keyFile.toString());
+        System.setProperty("blog.sessions.keyRotationMs", "0");
+        System.setProperty("blog.sessions.expirationMs", String.valueOf(EXPIRATION_MS));
+        System.setProperty("blog.sessions.wheelTickMs", "100");
+        System.setProperty("blog.sessions.sweepIntervalMs", "500");
+
+        SessionManager sessions = SessionManager.getInstance();
+        String token = sessions.issueSession(USER_ID);
+        TestSupport.check(SignedSessionTokens.isSignedToken(token) && Files.exists(keyFile),
+            "signed mode issues a signed token and creates the key file");
+
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            tokens.add(sessions.issueSession(USER_ID + i));
+        }
+
+        // Validation is pure CPU; the sweeper's statements run on its own thread
+        AtomicInteger statements = new AtomicInteger();
+        Thread validating = Thread.currentThread();
+        DatabaseUtil.setSqlObserver(sql -> {
+            if (Thread.currentThread() == validating) {
+                statements.incrementAndGet();
+            }
+        });
+        boolean allValid = true;
+        for (int i = 0; i < tokens.size(); i++) {
+            allValid &= sessions.validateSession(tokens.get(i)).equals(Optional.of(USER_ID + i));
+        }
+        DatabaseUtil.setSqlObserver(null);
+        TestSupport.check(allValid, "1000 signed tokens validate to their users");
+        TestSupport.check(statements.get() == 0, "validation ran " + statements.get() + " SQL statements");
+
+        checkTampering(sessions, token, keyFile);
+
+        String loggedOut = tokens.remove(0);
+        TestSupport.check(sessions.invalidateSession(loggedOut), "a signed token can be revoked");
+        TestSupport.check(!sessions.validateSession(loggedOut).isPresent(), "a revoked token is rejected at once");
+        TestSupport.check(countRows("revoked_tokens") == 1, "the revocation is stored for the next start");
+        TestSupport.check(sessions.validateSession(tokens.get(0)).isPresent(),
+            "revoking one token leaves the others valid");
+
+        int oldKey = SignedSessionTokens.open(keyFile, EXPIRATION_MS).verify(token).getKeyId();
+        TestSupport.check(sessions.rotateSigningKey(), "the signing key rotates");
+        String rotated = sessions.issueSession(USER_ID);
+        SignedSessionTokens reopened = SignedSessionTokens.open(keyFile, EXPIRATION_MS);
+        TestSupport.check(reopened.verify(rotated).getKeyId() == oldKey + 1, "new tokens are signed with the new key");
+        TestSupport.check(sessions.validateSession(token).isPresent(), "tokens signed before the rotation stay valid");
+        TestSupport.check(reopened.verify(token) != null, "the key file keeps the retired key after a restart");
+
+        checkKeyPruning();
+
+        timeValidation(sessions);
+
+        // Let every token and revocation expire, and give the wheel and the sweeper time to run
+        Thread.sleep(EXPIRATION_MS + 1_500);
+        TestSupport.check(!sessions.validateSession(rotated).isPresent(), "an expired token is rejected");
+        TestSupport.check(sessions.getRevokedTokenCount() == 0,
+            "expired revocations leave memory (" + sessions.getRevokedTokenCount() + " left)");
+        int rows = countRows("revoked_tokens");
+        TestSupport.check(rows == 0, "the sweeper deleted expired revocations (" + rows + " left): " + sessions);
+
+        Files.deleteIfExists(keyFile);
+        TestSupport.finish("signed session checks", "Signed sessions passed every check.");
+    }
+
+    private static void checkTampering(SessionManager sessions, String token, Path keyFile) throws IOException {
+        int dot = token.lastIndexOf('.');
+        // Change the user id byte in the payload, and a byte of the mac
+        String payload = token.substring(0, dot);
+        String forgedUser = payload.substring(0, 12) + (payload.charAt(12) == 'A' ? 'B' : 'A') + payload.substring(13) +
+            token.substring(dot);
+        String forgedMac = payload + "." + (token.charAt(dot + 1) == 'A' ? 'B' : 'A') + token.substring(dot + 2);
+        TestSupport.check(!sessions.validateSession(forgedUser).isPresent(),
+            "a token with a changed payload is rejected");
+        TestSupport.check(!sessions.validateSession(forgedMac).isPresent(),
+            "a token with a changed signature is rejected");
+        TestSupport.check(!sessions.validateSession(payload).isPresent()
+            && !sessions.validateSession("s1.not.base64!").isPresent(), "malformed tokens are rejected");
+
+        // Same format and key id, different secret
+        Path otherKeys = Files.createTempFile("other-keys", ".properties");
+        Files.delete(otherKeys);
+        String foreign = SignedSessionTokens.open(otherKeys, EXPIRATION_MS)
+            .issue(USER_ID, System.currentTimeMillis() + EXPIRATION_MS);
+        Files.deleteIfExists(otherKeys);
+        TestSupport.check(!sessions.validateSession(foreign).isPresent(),
+            "a token signed with another key file is rejected");
+        TestSupport.check(!sessions.invalidateSession(foreign), "a forged token can't be revoked");
+    }
+
+    private static void checkKeyPruning() throws IOException, InterruptedException {
+        Path keys = Files.createTempFile("pruned-keys", ".properties");
+        Files.delete(keys);
+        long maxTokenAge = 200;
+        SignedSessionTokens signer = SignedSessionTokens.open(keys, maxTokenAge);
+        String old = signer.issue(USER_ID, System.currentTimeMillis() + maxTokenAge);
+        signer.rotateKey();
+        TestSupport.check(SignedSessionTokens.open(keys, maxTokenAge).verify(old) != null,
+            "a just-retired key is kept");
+        Thread.sleep(maxTokenAge + 100);
+        TestSupport.check(SignedSessionTokens.open(keys, maxTokenAge).verify(old) == null,
+            "a key retired longer than a token lives is dropped");
+        Files.deleteIfExists(keys);
+    }
+
+    private static void timeValidation(SessionManager sessions) {
+        String signedToken = sessions.issueSession(USER_ID);
+        String databaseToken = sessions.generateSessionToken();
+        sessions.createSession(USER_ID, databaseToken);
+
+        int rounds = 200_000;
+        long sink = 0;
+        long started = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            sink += sessions.validateSession(signedToken).orElse(0);
+        }
+        double signed = (double) (System.nanoTime() - started) / rounds;
+
+        started = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            sink += sessions.validateSession(databaseToken).orElse(0);
+        }
+        double cached = (double) (System.nanoTime() - started) / rounds;
+
+        String sql = "SELECT user_id, expires_at FROM sessions WHERE session_token = ?";
+        int sqlRounds = 5_000;
+        started = System.nanoTime();
+        for (int i = 0; i < sqlRounds; i++) {
+            try (Connection conn = DatabaseUtil.getReadConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, databaseToken);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    sink += rs.next() ? rs.getInt(1) : 0;
+                }
+            } catch (SQLException e) {
+                System.err.println("Error validating session: " + e.getMessage());
+            }
+        }
+        double lookup = (double) (System.nanoTime() - started) / sqlRounds;
+        TestSupport.check(sink == (long) USER_ID * (2 * rounds + sqlRounds), "every timed validation succeeded");
+        System.out.printf("validateSession: signed %.0f/s (%.0f ns), cached database session %.0f/s (%.0f ns), " +
+            "SQL lookup %.0f/s (%.0f ns)%n", 1e9 / signed, signed, 1e9 / cached, cached, 1e9 / lookup, lookup);
+    }
+
+    private static int countRows(String table) {
+        try (Connection conn = DatabaseUtil.getReadConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            return rs.next() ? rs.getInt(1) : -1;
+        } catch (SQLException e) {
+            System.err.println("Error counting " + table + ": " + e.getMessage());
+            return -1;
+        }
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.blog.test;
+
+import com.blog.util.DatabaseUtil;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Scaffolding shared by the test harnesses: PASS/FAIL checks that decide the
+ * exit status, and a throwaway database for the harnesses that need one.
+ */
+final class TestSupport {
+    private static boolean failed = false;
+    private static boolean usingDatabase = false;
+
+    private TestSupport() {
+    }
+
+    /**
+     * Point DatabaseUtil at a new empty database file, deleted on exit.
+     * Must be called before DatabaseUtil is first used.
+     */
+    static void useTempDatabase(String prefix) throws IOException {
+        File dbFile = File.createTempFile(prefix, ".db");
+        dbFile.deleteOnExit();
+        System.setProperty("blog.db.url", "jdbc:sqlite:" + dbFile.getAbsolutePath());
+        usingDatabase = true;
+    }
+
+    static void check(boolean condition, String description) {
+        System.out.println((condition ? "PASS " : "FAIL ") + description);
+        if (!condition) {
+            failed = true;
+        }
+    }
+
+    static void fail(String description) {
+        check(false, description);
+    }
+
+    /**
+     * Close the temporary database if there is one, print the outcome, and
+     * exit with status 1 if any check failed
+     * @param failure what went wrong, printed after "FAILED: "
+     * @param success printed if every check passed
+     */
+    static void finish(String failure, String success) {
+        closeDatabase();
+        if (failed) {
+            System.out.println("FAILED: " + failure);
+            System.exit(1);
+        }
+        System.out.println(success);
+    }
+
+    /**
+     * Like {@link #finish}, for a harness bound to the Maven build. exec:java
+     * runs it inside Maven's JVM, where System.exit would stop Maven without
+     * a report, so a failure is thrown instead.
+     */
+    static void finishInBuild(String failure, String success) {
+        closeDatabase();
+        if (failed) {
+            throw new IllegalStateException(failure);
+        }
+        System.out.println(success);
+    }
+
+    private static void closeDatabase() {
+        if (usingDatabase) {
+            DatabaseUtil.closeConnection();
+        }
+    }
+}
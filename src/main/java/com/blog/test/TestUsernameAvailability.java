@@ -0,0 +1,156 @@
+package com.blog.test;
+
+import com.blog.dao.UserDAO;
+import com.blog.model.Availability;
+import com.blog.model.User;
+import com.blog.util.BloomFilter;
+import com.blog.util.DatabaseUtil;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Exercises the username/email availability filter: names never registered
+ * are reported free without touching SQLite except for the filter's rare
+ * false positives, registered names are always reported taken, names
+ * registered or changed after the filter was built are seen at once, and a
+ * check of both fields is one query. Also times a free-name check against
+ * the two COUNT(*) queries it replaces.
+ *
+ * Usage: TestUsernameAvailability
+ * Exits with status 1 if any check fails.
+ */
+public class TestUsernameAvailability {
+    private static final int USERS = 5_000;
+    private static final int PROBES = 5_000;
+
+    public static void main(String[] args) throws IOException {
+        // Must be set before DatabaseUtil is first used
+        TestSupport.useTempDatabase("blog-availability");
+
+        checkBloomFilter();
+
+        insertUsers(USERS);
+        UserDAO userDAO = UserDAO.getInstance();
+        userDAO.isUsernameTaken("warm-up"); // Builds the filter
+
+        AtomicInteger statements = new AtomicInteger();
+        DatabaseUtil.setSqlObserver(sql -> statements.incrementAndGet());
+        boolean allFree = true;
+        for (int i = 0; i < PROBES; i++) {
+            allFree &= userDAO.checkAvailability("newcomer" + i, "newcomer" + i + "@example.org").isAvailable();
+        }
+        int freeQueries = statements.getAndSet(0);
+        TestSupport.check(allFree, PROBES + " unregistered names and emails are free");
+        TestSupport.check(freeQueries <= PROBES / 20,
+            "free names ran " + freeQueries + " queries for " + PROBES + " checks");
+
+        boolean allTaken = true;
+        for (int i = 0; i < USERS; i += 7) {
+            allTaken &= userDAO.isUsernameTaken("user" + i) && userDAO.isEmailTaken("user" + i + "@example.com");
+        }
+        TestSupport.check(allTaken, "every registered username and email is taken");
+
+        statements.set(0);
+        Availability both = userDAO.checkAvailability("user42", "user43@example.com");
+        TestSupport.check(both.isUsernameTaken() && both.isEmailTaken() && statements.get() == 1,
+            "a username and an email are checked in one query (" + statements.get() + ")");
+        DatabaseUtil.setSqlObserver(null);
+
+        TestSupport.check(!userDAO.isUsernameTaken("USER42"),
+            "uniqueness is still exact; only the filter ignores case");
+
+        User late = new User("latecomer", "late secret", "late@example.com", "Late Comer");
+        TestSupport.check(userDAO.registerUser(late), "a new user registers");
+        TestSupport.check(userDAO.isUsernameTaken("latecomer") && userDAO.isEmailTaken("late@example.com"),
+            "a user registered after the filter was built is taken at once");
+
+        User existing = userDAO.authenticateUser("latecomer", "late secret").orElseThrow();
+        existing.setEmail("moved@example.com");
+        userDAO.updateUserProfile(existing);
+        TestSupport.check(userDAO.isEmailTaken("moved@example.com"), "a changed email is taken at once");
+
+        timeChecks(userDAO);
+        System.out.println("Filter: " + userDAO.getNameFilterStatus());
+
+        TestSupport.finish("availability checks", "Availability passed every check.");
+    }
+
+    private static void checkBloomFilter() {
+        int n = 10_000;
+        BloomFilter filter = new BloomFilter(n, 0.01);
+        for (int i = 0; i < n; i++) {
+            filter.add("member-" + i);
+        }
+        boolean noFalseNegatives = true;
+        for (int i = 0; i < n; i++) {
+            noFalseNegatives &= filter.mightContain("member-" + i);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < n; i++) {
+            if (filter.mightContain("stranger-" + i)) {
+                falsePositives++;
+            }
+        }
+        TestSupport.check(noFalseNegatives, "the Bloom filter has no false negatives");
+        TestSupport.check(falsePositives <= n / 50, "false positives at capacity: " + falsePositives + " of " + n +
+            " (expected ~" + Math.round(filter.getExpectedFalsePositiveRate() * n) + ", " +
+            filter.sizeInBytes() / 1024 + " KB, " + filter.getHashCount() + " hashes)");
+    }
+
+    private static void timeChecks(UserDAO userDAO) {
+        int rounds = 100_000;
+        long sink = 0;
+        long started = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            sink += userDAO.checkAvailability("someone" + (i & 1023), "someone@example.net").isAvailable() ? 1 : 0;
+        }
+        double filtered = (double) (System.nanoTime() - started) / rounds;
+
+        int sqlRounds = 5_000;
+        started = System.nanoTime();
+        for (int i = 0; i < sqlRounds; i++) {
+            sink += countRows("SELECT COUNT(*) FROM users WHERE username = ?", "someone" + (i & 1023));
+            sink += countRows("SELECT COUNT(*) FROM users WHERE email = ?", "someone@example.net");
+        }
+        double queried = (double) (System.nanoTime() - started) / sqlRounds;
+        System.out.printf("Availability of a free name: %.0f ns with the filter, %.0f ns as two COUNT(*) queries (%d)%n",
+            filtered, queried, sink % 2);
+    }
+
+    private static void insertUsers(int count) {
+        String sql = "INSERT INTO users (username, password, email, full_name, role) VALUES (?, 'x', ?, ?, 'reader')";
+        try (Connection conn = DatabaseUtil.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            conn.setAutoCommit(false);
+            for (int i = 0; i < count; i++) {
+                pstmt.setString(1, "user" + i);
+                pstmt.setString(2, "user" + i + "@example.com");
+                pstmt.setString(3, "User " + i);
+                pstmt.executeUpdate();
+            }
+            conn.commit();
+            conn.setAutoCommit(true);
+        } catch (SQLException e) {
+            System.err.println("Error inserting users: " + e.getMessage());
+        }
+    }
+
+    private static int countRows(String sql, String value) {
+        try (Connection conn = DatabaseUtil.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, value);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        } catch (SQLException e) {
+            System.err.println("Error counting users: " + e.getMessage());
+            return 0;
+        }
+    }
+
+}
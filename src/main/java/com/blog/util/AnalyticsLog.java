@@ -0,0 +1,267 @@
+package com.blog.util;
+
+import com.blog.model.AnalyticsEvent;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Append-only analytics event log on local disk, split into fixed-size
+ * segment files that are written through a memory map. Appending an event is
+ * a handful of stores into the mapped page cache; nothing is copied through a
+ * stream or synced per event.
+ *
+ * Only the analytics consumer thread writes, so trackEvent never waits on the
+ * disk. Segments are flushed with {@link #maybeSync(long)} every sync
+ * interval, when rolled over and on {@link #close()}. A segment rolls over
+ * when it is full or older than the rollover interval, and sealed segments
+ * beyond the retention age, or the optional retention count, are deleted.
+ * {@link AnalyticsLogReader} reads the segments back.
+ *
+ * Segment layout, all big-endian: a 32-byte header (magic, version, sequence
+ * number of the first record, created and sealed timestamps) followed by
+ * 32-byte records (timestamp, type, user id, post id, attribute key,
+ * attribute value). The timestamp is written last and is never 0, so a
+ * record with a zero timestamp marks the end of the data even after a crash.
+ */
+public class AnalyticsLog {
+    static final int MAGIC = 0x424C4F47; // "BLOG"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 32;
+    static final int RECORD_BYTES = 32;
+    static final int SEALED_AT_OFFSET = 24;
+    static final String SEGMENT_PREFIX = "analytics-";
+    static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final long rolloverMillis;
+    private final int retentionSegments;
+    private final long retentionMillis;
+    private final long syncIntervalMillis;
+
+    // Consumer thread only
+    private MappedByteBuffer segment;
+    private Path segmentPath;
+    private long segmentCreatedAt;
+    private int segmentRecords;
+    private long lastTimestamp;
+    private long nextSequence;
+    private boolean dirty;
+    private long lastSyncAt;
+    private boolean failed;
+
+    // Statistics, read by other threads for diagnostics
+    private volatile long appended;
+    private volatile long segmentsCreated;
+    private volatile long segmentsDeleted;
+    private volatile long syncs;
+
+    /**
+     * @param segmentBytes size of each segment file, header included
+     * @param rolloverMillis start a new segment once the current one is this old; 0 only rolls when full
+     * @param retentionSegments keep at most this many segments, the current one included; 0 keeps any number
+     * @param retentionMillis delete segments sealed longer ago than this; 0 keeps them regardless of age
+     * @param syncIntervalMillis how often maybeSync flushes written records to disk
+     */
+    public AnalyticsLog(Path directory, long segmentBytes, long rolloverMillis, int retentionSegments,
+                        long retentionMillis, long syncIntervalMillis) throws IOException {
+        if (segmentBytes < HEADER_BYTES + RECORD_BYTES || segmentBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Segment size must be between " + (HEADER_BYTES + RECORD_BYTES) +
+                " bytes and 2 GiB: " + segmentBytes);
+        }
+        this.directory = directory;
+        this.recordsPerSegment = (int) ((segmentBytes - HEADER_BYTES) / RECORD_BYTES);
+        this.rolloverMillis = rolloverMillis;
+        this.retentionSegments = Math.max(0, retentionSegments);
+        this.retentionMillis = retentionMillis;
+        this.syncIntervalMillis = syncIntervalMillis;
+
+        Files.createDirectories(directory);
+        // Continue the sequence after the existing segments, sealing the last
+        // one if the previous run stopped without closing it
+        List<AnalyticsLogReader.Segment> existing = new AnalyticsLogReader(directory).getSegments();
+        if (!existing.isEmpty()) {
+            AnalyticsLogReader.Segment last = existing.get(existing.size() - 1);
+            nextSequence = last.getBaseSequence() + last.countRecords();
+            if (last.getSealedAt() == 0) {
+                writeSealedAt(last.getPath(), Math.max(last.getCreatedAt(), last.getLastTimestamp()));
+            }
+        }
+        enforceRetention(System.currentTimeMillis());
+    }
+
+    /**
+     * Build the log from blog.analytics.log.* system properties. Segments are
+     * kept for defaultRetentionMillis unless blog.analytics.log.retentionHours
+     * says otherwise, and only capped by count if retentionSegments is set:
+     * restarts and busy hours start extra segments, so a count cap would keep
+     * less history than the age suggests.
+     * @param defaultRetentionMillis how long the readers of the log need events kept
+     * @return the log, or null if it is disabled or can't be opened
+     */
+    public static AnalyticsLog fromSystemProperties(long defaultRetentionMillis) {
+        if (!Boolean.parseBoolean(System.getProperty("blog.analytics.log.enabled", "true"))) {
+            return null;
+        }
+        Path directory = Paths.get(System.getProperty("blog.analytics.log.dir", "analytics-log"));
+        try {
+            return new AnalyticsLog(directory,
+                Long.getLong("blog.analytics.log.segmentBytes", 8L * 1024 * 1024),
+                Long.getLong("blog.analytics.log.rolloverMinutes", 24 * 60L) * 60_000L,
+                Integer.getInteger("blog.analytics.log.retentionSegments", 0),
+                Long.getLong("blog.analytics.log.retentionHours", defaultRetentionMillis / 3_600_000L) * 3_600_000L,
+                Long.getLong("blog.analytics.log.syncIntervalMs", 1_000L));
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error opening analytics log in " + directory + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Append an event. Consumer thread only. After an I/O error the log stops
+     * writing rather than failing every event.
+     */
+    public void append(AnalyticsEvent event) {
+        if (failed) {
+            return;
+        }
+
+        long timestamp = Math.max(1, event.getTimestamp());
+        try {
+            if (segment == null || segmentRecords == recordsPerSegment
+                    || (rolloverMillis > 0 && timestamp - segmentCreatedAt >= rolloverMillis)) {
+                roll(timestamp);
+            }
+        } catch (IOException e) {
+            System.err.println("Error rolling analytics log segment, logging stopped: " + e.getMessage());
+            failed = true;
+            return;
+        }
+
+        int offset = HEADER_BYTES + segmentRecords * RECORD_BYTES;
+        segment.putInt(offset + 8, event.getType());
+        segment.putInt(offset + 12, event.getUserId());
+        segment.putInt(offset + 16, event.getPostId());
+        segment.putInt(offset + 20, event.getAttributeKey());
+        segment.putLong(offset + 24, event.getAttributeValue());
+        // Written last: a non-zero timestamp marks the record as complete
+        segment.putLong(offset, timestamp);
+
+        segmentRecords++;
+        nextSequence++;
+        lastTimestamp = timestamp;
+        dirty = true;
+        appended++;
+    }
+
+    /**
+     * Flush written records to disk if the sync interval has passed. Consumer thread only.
+     */
+    public void maybeSync(long nowMillis) {
+        if (dirty && nowMillis - lastSyncAt >= syncIntervalMillis) {
+            sync(nowMillis);
+        }
+    }
+
+    private void sync(long nowMillis) {
+        segment.force();
+        dirty = false;
+        lastSyncAt = nowMillis;
+        syncs++;
+    }
+
+    /**
+     * Seal and flush the current segment. Consumer thread only, or after it has stopped.
+     */
+    public void close() {
+        try {
+            sealCurrent();
+        } catch (IOException e) {
+            System.err.println("Error closing analytics log segment: " + e.getMessage());
+        }
+    }
+
+    private void roll(long timestamp) throws IOException {
+        sealCurrent();
+
+        Path path = directory.resolve(segmentFileName(nextSequence));
+        long size = HEADER_BYTES + (long) recordsPerSegment * RECORD_BYTES;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // The mapping stays valid after the channel is closed
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        segment.putInt(0, MAGIC);
+        segment.putInt(4, VERSION);
+        segment.putLong(8, nextSequence);
+        segment.putLong(16, timestamp);
+        segment.putLong(SEALED_AT_OFFSET, 0);
+        segmentPath = path;
+        segmentCreatedAt = timestamp;
+        segmentRecords = 0;
+        segmentsCreated++;
+
+        enforceRetention(timestamp);
+    }
+
+    private void sealCurrent() throws IOException {
+        if (segment == null) {
+            return;
+        }
+        segment.putLong(SEALED_AT_OFFSET, Math.max(segmentCreatedAt, lastTimestamp));
+        sync(System.currentTimeMillis());
+        segment = null;
+        segmentPath = null;
+    }
+
+    /**
+     * Delete the oldest sealed segments beyond the retention count or age
+     */
+    private void enforceRetention(long nowMillis) throws IOException {
+        List<AnalyticsLogReader.Segment> segments = new AnalyticsLogReader(directory).getSegments();
+        int remaining = segments.size();
+        for (AnalyticsLogReader.Segment old : segments) {
+            if (old.getPath().equals(segmentPath)) {
+                break;
+            }
+            long endedAt = old.getSealedAt() > 0 ? old.getSealedAt() : old.getCreatedAt();
+            boolean tooMany = retentionSegments > 0 && remaining > retentionSegments;
+            boolean tooOld = retentionMillis > 0 && nowMillis - endedAt > retentionMillis;
+            if (!tooMany && !tooOld) {
+                break; // Segments are in order, so the rest are newer
+            }
+            Files.deleteIfExists(old.getPath());
+            remaining--;
+            segmentsDeleted++;
+        }
+    }
+
+    private static void writeSealedAt(Path path, long sealedAt) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            ByteBuffer value = ByteBuffer.allocate(8).putLong(0, sealedAt);
+            channel.write(value, SEALED_AT_OFFSET);
+        }
+    }
+
+    static String segmentFileName(long baseSequence) {
+        return String.format("%s%020d%s", SEGMENT_PREFIX, baseSequence, SEGMENT_SUFFIX);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d events appended, %d segments created, %d deleted, %d syncs%s",
+            directory, appended, segmentsCreated, segmentsDeleted, syncs, failed ? " (stopped after an error)" : "");
+    }
+}
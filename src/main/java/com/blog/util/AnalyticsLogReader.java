@@ -0,0 +1,187 @@
+package com.blog.util;
+
+import com.blog.model.AnalyticsEvent;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Reads the segments written by {@link AnalyticsLog}, oldest first. Used to
+ * replay the log into the analytics aggregators on startup and for offline
+ * reports. Segments are mapped read-only, so the active segment of a running
+ * process can be read too; replay stops at its last complete record.
+ */
+public class AnalyticsLogReader {
+    private final Path directory;
+
+    public AnalyticsLogReader(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * List the segments with a valid header, in sequence order. Files that
+     * aren't segments are skipped with a warning.
+     */
+    public List<Segment> getSegments() throws IOException {
+        List<Segment> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+
+        String pattern = AnalyticsLog.SEGMENT_PREFIX + "*" + AnalyticsLog.SEGMENT_SUFFIX;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, pattern)) {
+            for (Path file : files) {
+                Segment segment = readHeader(file);
+                if (segment != null) {
+                    segments.add(segment);
+                }
+            }
+        }
+        segments.sort(Comparator.comparingLong(Segment::getBaseSequence));
+        return segments;
+    }
+
+    /**
+     * Pass every event in the log to the handler, oldest first. The handler
+     * gets the same event object each time; copy it to keep it.
+     * @return the number of events replayed
+     */
+    public long replay(Consumer<AnalyticsEvent> handler) throws IOException {
+        return replay(handler, 0);
+    }
+
+    /**
+     * Pass the events at or after a timestamp to the handler, oldest first
+     * @return the number of events replayed
+     */
+    public long replay(Consumer<AnalyticsEvent> handler, long fromTimestamp) throws IOException {
+        AnalyticsEvent event = new AnalyticsEvent();
+        long replayed = 0;
+        for (Segment segment : getSegments()) {
+            if (segment.getSealedAt() > 0 && segment.getSealedAt() < fromTimestamp) {
+                continue; // Ended before the range starts
+            }
+            MappedByteBuffer records = segment.map();
+            for (int offset = AnalyticsLog.HEADER_BYTES; offset + AnalyticsLog.RECORD_BYTES <= records.limit();
+                    offset += AnalyticsLog.RECORD_BYTES) {
+                long timestamp = records.getLong(offset);
+                if (timestamp == 0) {
+                    break; // End of the written records
+                }
+                if (timestamp < fromTimestamp) {
+                    continue;
+                }
+                event.set(records.getInt(offset + 8), records.getInt(offset + 12), records.getInt(offset + 16),
+                    timestamp, records.getInt(offset + 20), records.getLong(offset + 24));
+                handler.accept(event);
+                replayed++;
+            }
+        }
+        return replayed;
+    }
+
+    private static Segment readHeader(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(AnalyticsLog.HEADER_BYTES);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // Keep reading until the header is complete or the file ends
+            }
+            if (header.hasRemaining() || header.getInt(0) != AnalyticsLog.MAGIC) {
+                System.err.println("Skipping " + file + ": not an analytics log segment");
+                return null;
+            }
+            if (header.getInt(4) != AnalyticsLog.VERSION) {
+                System.err.println("Skipping " + file + ": unsupported analytics log version " + header.getInt(4));
+                return null;
+            }
+            return new Segment(file, header.getLong(8), header.getLong(16),
+                header.getLong(AnalyticsLog.SEALED_AT_OFFSET));
+        } catch (IOException e) {
+            System.err.println("Error reading analytics log segment " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * One segment file and its header
+     */
+    public static class Segment {
+        private final Path path;
+        private final long baseSequence;
+        private final long createdAt;
+        private final long sealedAt;
+
+        Segment(Path path, long baseSequence, long createdAt, long sealedAt) {
+            this.path = path;
+            this.baseSequence = baseSequence;
+            this.createdAt = createdAt;
+            this.sealedAt = sealedAt;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        /**
+         * Sequence number of the segment's first record
+         */
+        public long getBaseSequence() {
+            return baseSequence;
+        }
+
+        public long getCreatedAt() {
+            return createdAt;
+        }
+
+        /**
+         * @return the timestamp of the last record when sealed, or 0 while
+         * the segment is still being written (or its writer crashed)
+         */
+        public long getSealedAt() {
+            return sealedAt;
+        }
+
+        MappedByteBuffer map() throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        }
+
+        /**
+         * Count the complete records, scanning for the first empty one
+         */
+        public int countRecords() throws IOException {
+            MappedByteBuffer records = map();
+            int count = 0;
+            for (int offset = AnalyticsLog.HEADER_BYTES; offset + AnalyticsLog.RECORD_BYTES <= records.limit();
+                    offset += AnalyticsLog.RECORD_BYTES) {
+                if (records.getLong(offset) == 0) {
+                    break;
+                }
+                count++;
+            }
+            return count;
+        }
+
+        /**
+         * Timestamp of the last complete record, or 0 if there is none
+         */
+        public long getLastTimestamp() throws IOException {
+            int count = countRecords();
+            if (count == 0) {
+                return 0;
+            }
+            return map().getLong(AnalyticsLog.HEADER_BYTES + (count - 1) * AnalyticsLog.RECORD_BYTES);
+        }
+    }
+}
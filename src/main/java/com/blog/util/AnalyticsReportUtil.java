@@ -1,12 +1,19 @@
 package com.blog.util;
 
+import com.blog.model.AnalyticsEvent;
+import com.blog.model.TimeSeries;
+import com.blog.model.TrendingPost;
+import com.blog.service.AnalyticsRollups;
 import com.blog.service.AnalyticsService;
-import com.blog.service.AnalyticsService.AnalyticsEvent;
+import com.blog.service.PostPopularity;
 
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.List;
-import java.util.Map;
 
 /**
  * Utility class for generating analytics reports
@@ -24,39 +31,121 @@ public class AnalyticsReportUtil {
      * Print a simple analytics report to the console
      */
     public static void printSimpleReport() {
+        System.out.print(generateSimpleReport());
+    }
+    
+    /**
+     * Build the simple analytics report: totals, last hour and last 24 hours
+     * by event type, events per hour, trending posts, and the latest events. Reads the
+     * rollup buckets and a few recent events, never every tracked event.
+     * @return The report text
+     */
+    public static String generateSimpleReport() {
         AnalyticsService analyticsService = AnalyticsService.getInstance();
-        Map<String, List<AnalyticsEvent>> allEvents = analyticsService.getAllEvents();
+        // Let events tracked just before the report reach the aggregators
+        analyticsService.awaitDrained(1000);
+        AnalyticsRollups rollups = analyticsService.getRollups();
         
-        System.out.println("\n===== ANALYTICS REPORT =====");
-        System.out.println("Generated at: " + DATE_FORMAT.format(new Date()));
-        System.out.println("---------------------------");
+        StringWriter text = new StringWriter();
+        PrintWriter out = new PrintWriter(text);
+        out.println("\n===== ANALYTICS REPORT =====");
+        out.println("Generated at: " + DATE_FORMAT.format(new Date()));
+        out.println("---------------------------");
         
-        if (allEvents.isEmpty()) {
-            System.out.println("No events recorded.");
+        boolean any = false;
+        for (int type = 0; type < AnalyticsEvent.TYPE_COUNT; type++) {
+            long total = analyticsService.getEventCount(type);
+            if (total == 0) {
+                continue;
+            }
+            any = true;
+            out.printf("%-16s %8d events (last hour %d, last 24h %d)%n",
+                AnalyticsEvent.typeName(type).toUpperCase() + ":", total,
+                rollups.getTotal(AnalyticsRollups.Resolution.MINUTE, type, 60),
+                rollups.getTotal(AnalyticsRollups.Resolution.HOUR, type, 24));
+        }
+        
+        if (!any) {
+            out.println("No events recorded.");
         } else {
-            allEvents.forEach((eventType, events) -> {
-                System.out.println(eventType.toUpperCase() + ": " + events.size() + " events");
-            });
+            out.println("---------------------------");
+            out.println("EVENTS PER HOUR:");
+            TimeSeries hourly = rollups.getSeries(AnalyticsRollups.Resolution.HOUR, AnalyticsRollups.ALL_TYPES, 12);
+            SimpleDateFormat hourFormat = new SimpleDateFormat("MM-dd HH:00");
+            for (int i = 0; i < hourly.size(); i++) {
+                out.println(hourFormat.format(new Date(hourly.getBucketStart(i))) + "  " + hourly.getCount(i));
+            }
             
-            System.out.println("---------------------------");
+            out.println("---------------------------");
+            out.println("TRENDING POSTS (" + PostPopularity.Window.LAST_HOUR + "):");
+            for (TrendingPost post : analyticsService.getPopularity().getTrending(PostPopularity.Window.LAST_HOUR, 5)) {
+                out.println("Post " + post.getPostId() + "  " + post.getViews() + " views, ~" +
+                    post.getUniqueViewers() + " unique readers");
+            }
             
-            // Print last 5 events
-            System.out.println("RECENT EVENTS:");
-            allEvents.values().stream()
-                .flatMap(List::stream)
-                .sorted((e1, e2) -> Long.compare(e2.getTimestamp(), e1.getTimestamp()))
-                .limit(5)
-                .forEach(event -> {
-                    System.out.println(
-                        DATE_FORMAT.format(new Date(event.getTimestamp())) + 
-                        " - " + 
-                        event.getType() + 
-                        ": " + 
-                        event.getDetails()
-                    );
-                });
+            out.println("---------------------------");
+            out.println("RECENT EVENTS:");
+            for (AnalyticsEvent event : analyticsService.getRecentEvents(5)) {
+                out.println(DATE_FORMAT.format(new Date(event.getTimestamp())) + " - " +
+                    event.getTypeName() + ": " + event.describe());
+            }
+        }
+        
+        out.println("---------------------------");
+        out.println("INGESTION: " + analyticsService.getIngestionStats());
+        out.println("LOG: " + analyticsService.getLogStatus());
+        out.println("============================\n");
+        out.flush();
+        return text.toString();
+    }
+    
+    /**
+     * Print event counts from an analytics log directory, without a running
+     * AnalyticsService; the log can come from another process
+     * @param directory The directory of the log's segments
+     */
+    public static void printLogReport(Path directory) {
+        AnalyticsLogReader reader = new AnalyticsLogReader(directory);
+        long[] counts = new long[AnalyticsEvent.TYPE_COUNT];
+        long[] range = {Long.MAX_VALUE, Long.MIN_VALUE};
+        int segments;
+        long total;
+        try {
+            segments = reader.getSegments().size();
+            total = reader.replay(event -> {
+                if (AnalyticsEvent.isValidType(event.getType())) {
+                    counts[event.getType()]++;
+                }
+                range[0] = Math.min(range[0], event.getTimestamp());
+                range[1] = Math.max(range[1], event.getTimestamp());
+            });
+        } catch (IOException e) {
+            System.err.println("Error reading analytics log " + directory + ": " + e.getMessage());
+            return;
         }
         
-        System.out.println("============================\n");
+        System.out.println("\n===== ANALYTICS LOG REPORT =====");
+        System.out.println("Log: " + directory.toAbsolutePath() + " (" + segments + " segments)");
+        if (total == 0) {
+            System.out.println("No events recorded.");
+        } else {
+            System.out.println("From " + DATE_FORMAT.format(new Date(range[0])) +
+                " to " + DATE_FORMAT.format(new Date(range[1])));
+            System.out.println("---------------------------");
+            for (int type = 0; type < counts.length; type++) {
+                if (counts[type] > 0) {
+                    System.out.println(AnalyticsEvent.typeName(type).toUpperCase() + ": " + counts[type] + " events");
+                }
+            }
+            System.out.println("TOTAL: " + total + " events");
+        }
+        System.out.println("================================\n");
+    }
+    
+    /**
+     * Offline report: AnalyticsReportUtil [log directory]
+     */
+    public static void main(String[] args) {
+        printLogReport(Paths.get(args.length > 0 ? args[0] : System.getProperty("blog.analytics.log.dir", "analytics-log")));
     }
-} 
\ No newline at end of file
+}
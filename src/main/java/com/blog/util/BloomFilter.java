@@ -0,0 +1,106 @@
+package com.blog.util;
+
+/**
+ * Bloom filter over strings: a bit array that answers "definitely not added"
+ * or "possibly added", sized for an expected number of values and false
+ * positive rate. Each value sets k bits picked by double hashing one 64-bit
+ * hash (Kirsch and Mitzenmacher), so a lookup costs one pass over the string
+ * and k bit tests. Values can't be removed. All methods are synchronized.
+ */
+public class BloomFilter {
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashCount;
+    private final int capacity;
+    private int insertions;
+
+    /**
+     * @param expectedInsertions values the filter is sized for; more raise the false positive rate
+     * @param falsePositiveRate target rate at expectedInsertions, e.g. 0.01
+     */
+    public BloomFilter(int expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Need a positive size and a rate between 0 and 1");
+        }
+        // m = -n ln p / (ln 2)^2, k = m/n ln 2
+        long m = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.max(1, (m + 63) / 64);
+        this.bits = new long[words];
+        this.bitCount = (long) words * 64;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+        this.capacity = expectedInsertions;
+    }
+
+    public synchronized void add(String value) {
+        long hash = hash(value);
+        long h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(hash + i * h2, bitCount);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+        insertions++;
+    }
+
+    /**
+     * @return false if the value was definitely never added
+     */
+    public synchronized boolean mightContain(String value) {
+        long hash = hash(value);
+        long h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(hash + i * h2, bitCount);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Values added, counting repeats
+     */
+    public synchronized int getInsertions() {
+        return insertions;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    /**
+     * False positive rate at the current number of insertions: (1 - e^(-kn/m))^k
+     */
+    public synchronized double getExpectedFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-(double) hashCount * insertions / bitCount), hashCount);
+    }
+
+    public int sizeInBytes() {
+        return bits.length * Long.BYTES;
+    }
+
+    /**
+     * FNV-1a over the chars, then the MurmurHash3 finalizer so every bit depends on every char
+     */
+    private static long hash(String value) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        return mix(h);
+    }
+
+    private static long mix(long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,99 @@
+package com.blog.util;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically folds the WAL back into the main database file so the log stays
+ * small and reads don't have to scan a long WAL. Runs PASSIVE checkpoints on a
+ * background thread, which never block readers or the writer, and a TRUNCATE
+ * checkpoint on shutdown so the -wal file is left empty.
+ */
+public class CheckpointScheduler {
+    private final ConnectionPool pool;
+    private final int intervalSeconds;
+    private ScheduledExecutorService executor;
+
+    // Outcome of the most recent checkpoint, for diagnostics
+    private volatile long lastRunAt;
+    private volatile String lastResult = "not run yet";
+
+    public CheckpointScheduler(ConnectionPool pool, int intervalSeconds) {
+        this.pool = pool;
+        this.intervalSeconds = intervalSeconds;
+    }
+
+    /**
+     * Start the periodic checkpoint task
+     */
+    public synchronized void start() {
+        if (executor != null || intervalSeconds <= 0) {
+            return;
+        }
+
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "sqlite-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(() -> checkpoint("PASSIVE"),
+            intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stop the periodic task and run a final truncating checkpoint
+     */
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        checkpoint("TRUNCATE");
+    }
+
+    /**
+     * Run a checkpoint now
+     *
+     * @param mode PASSIVE, FULL, RESTART or TRUNCATE
+     * @return true if the checkpoint ran to completion
+     */
+    public boolean checkpoint(String mode) {
+        if (pool.isClosed()) {
+            return false;
+        }
+
+        try (Connection conn = pool.borrowWriter();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA wal_checkpoint(" + mode + ")")) {
+
+            if (rs.next()) {
+                // Columns: busy flag, frames in the WAL, frames checkpointed
+                boolean busy = rs.getInt(1) != 0;
+                int logFrames = rs.getInt(2);
+                int checkpointed = rs.getInt(3);
+                lastResult = mode + ": " + checkpointed + "/" + logFrames + " frames" + (busy ? " (busy)" : "");
+                lastRunAt = System.currentTimeMillis();
+                return !busy;
+            }
+
+        } catch (SQLException e) {
+            lastResult = mode + " failed: " + e.getMessage();
+            System.err.println("Error running WAL checkpoint: " + e.getMessage());
+        }
+
+        return false;
+    }
+
+    public long getLastRunAt() {
+        return lastRunAt;
+    }
+
+    public String getLastResult() {
+        return lastResult;
+    }
+}
@@ -0,0 +1,555 @@
+package com.blog.util;
+
+import org.sqlite.SQLiteConfig;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Bounded pool of SQLite connections.
+ *
+ * SQLite allows many concurrent readers but only one writer, so the pool keeps a
+ * fixed set of read-only connections and a single writer connection guarded by a
+ * lock. Leases are thread-confined and reentrant: a thread that already holds a
+ * lease gets the same physical connection back, so nested DAO calls neither
+ * deadlock on the pool nor open a second connection. Closing a leased
+ * {@link Connection} releases the lease; the physical connection stays open.
+ */
+public class ConnectionPool {
+    private final String url;
+    private final int maxReaders;
+    private final long acquireTimeoutMillis;
+    private final long validationIntervalMillis;
+    private final DatabaseProfile profile;
+    private final int statementCacheSize;
+
+    // Idle readers, most recently used first
+    private final BlockingDeque<PooledConnection> idleReaders = new LinkedBlockingDeque<>();
+    private final AtomicInteger openReaders = new AtomicInteger();
+    private final AtomicInteger activeReaders = new AtomicInteger();
+    private final ThreadLocal<ReaderLease> currentReader = new ThreadLocal<>();
+
+    // Single writer, fair so that writers are served in arrival order
+    private final ReentrantLock writerLock = new ReentrantLock(true);
+    private PooledConnection writer;
+
+    // Statistics
+    private final LongAdder readerBorrows = new LongAdder();
+    private final LongAdder writerBorrows = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder replacedConnections = new LongAdder();
+    private final StatementCache.Counters statementCounters = new StatementCache.Counters();
+
+    private volatile boolean closed;
+
+    // Optional hook told about every SQL string prepared through a lease
+    private volatile Consumer<String> sqlObserver;
+
+    public ConnectionPool(String url, int maxReaders, long acquireTimeoutMillis, long validationIntervalMillis,
+                          DatabaseProfile profile, int statementCacheSize) {
+        if (maxReaders < 1) {
+            throw new IllegalArgumentException("maxReaders must be at least 1");
+        }
+        this.url = url;
+        this.maxReaders = maxReaders;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.validationIntervalMillis = validationIntervalMillis;
+        this.profile = profile;
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    public DatabaseProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Lease the writer connection. Blocks while another thread holds it.
+     */
+    public Connection borrowWriter() throws SQLException {
+        checkOpen();
+
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = writerLock.tryLock(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the writer connection", e);
+        }
+        if (!acquired) {
+            timeouts.increment();
+            throw new SQLException("Timed out after " + acquireTimeoutMillis + " ms waiting for the writer connection");
+        }
+
+        // Outermost lease on this thread: account for the wait and make sure the connection is usable
+        if (writerLock.getHoldCount() == 1) {
+            try {
+                recordWait(start);
+                writerBorrows.increment();
+                if (writer == null) {
+                    writer = newPooledConnection(false);
+                } else {
+                    writer = validate(writer, false);
+                }
+            } catch (SQLException | RuntimeException e) {
+                writerLock.unlock();
+                throw e;
+            }
+        }
+
+        return lease(writer, this::releaseWriter);
+    }
+
+    /**
+     * Lease a read-only connection. A thread holding the writer reads through it,
+     * so it sees its own uncommitted changes.
+     */
+    public Connection borrowReader() throws SQLException {
+        checkOpen();
+
+        if (writerLock.isHeldByCurrentThread()) {
+            return borrowWriter();
+        }
+
+        ReaderLease held = currentReader.get();
+        if (held != null) {
+            held.depth++;
+            return lease(held.pooled, () -> releaseReader(held));
+        }
+
+        long start = System.nanoTime();
+        PooledConnection pooled = idleReaders.pollFirst();
+        if (pooled == null) {
+            pooled = tryOpenReader();
+        }
+        if (pooled == null) {
+            try {
+                pooled = idleReaders.pollFirst(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a read connection", e);
+            }
+            if (pooled == null) {
+                timeouts.increment();
+                throw new SQLException("Timed out after " + acquireTimeoutMillis + " ms waiting for a read connection");
+            }
+        }
+        recordWait(start);
+        readerBorrows.increment();
+
+        try {
+            pooled = validate(pooled, true);
+        } catch (SQLException e) {
+            openReaders.decrementAndGet();
+            throw e;
+        }
+
+        activeReaders.incrementAndGet();
+        ReaderLease lease = new ReaderLease(pooled);
+        currentReader.set(lease);
+        return lease(pooled, () -> releaseReader(lease));
+    }
+
+    /**
+     * Snapshot of the pool counters
+     */
+    public Stats getStats() {
+        int active = activeReaders.get();
+        long borrows = readerBorrows.sum() + writerBorrows.sum();
+        return new Stats(
+            maxReaders,
+            openReaders.get(),
+            active,
+            idleReaders.size(),
+            writerLock.isLocked(),
+            writerLock.getQueueLength(),
+            readerBorrows.sum(),
+            writerBorrows.sum(),
+            borrows == 0 ? 0 : totalWaitNanos.sum() / borrows,
+            maxWaitNanos.get(),
+            timeouts.sum(),
+            replacedConnections.sum(),
+            statementCounters
+        );
+    }
+
+    /**
+     * Close every idle connection and the writer. Leases still in use are
+     * closed when they are released.
+     */
+    public void close() {
+        closed = true;
+
+        List<PooledConnection> drained = new ArrayList<>();
+        idleReaders.drainTo(drained);
+        for (PooledConnection pooled : drained) {
+            closeQuietly(pooled);
+            openReaders.decrementAndGet();
+        }
+
+        writerLock.lock();
+        try {
+            if (writer != null) {
+                closeQuietly(writer);
+                writer = null;
+            }
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Register a hook that receives the SQL of every statement prepared through
+     * a lease, e.g. to check query plans. Pass null to remove it.
+     */
+    public void setSqlObserver(Consumer<String> observer) {
+        this.sqlObserver = observer;
+    }
+
+    private void checkOpen() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+    }
+
+    private PooledConnection tryOpenReader() throws SQLException {
+        while (true) {
+            int open = openReaders.get();
+            if (open >= maxReaders) {
+                return null;
+            }
+            if (openReaders.compareAndSet(open, open + 1)) {
+                break;
+            }
+        }
+        try {
+            return newPooledConnection(true);
+        } catch (SQLException e) {
+            openReaders.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private PooledConnection newPooledConnection(boolean readOnly) throws SQLException {
+        Connection conn = openConnection(readOnly);
+        return new PooledConnection(conn, new StatementCache(conn, statementCacheSize, statementCounters));
+    }
+
+    private Connection openConnection(boolean readOnly) throws SQLException {
+        Connection conn;
+        if (readOnly) {
+            SQLiteConfig config = new SQLiteConfig();
+            config.setReadOnly(true);
+            conn = DriverManager.getConnection(url, config.toProperties());
+        } else {
+            conn = DriverManager.getConnection(url);
+        }
+
+        try {
+            profile.apply(conn, readOnly);
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+        return conn;
+    }
+
+    /**
+     * Health check for connections that have been idle for a while; broken
+     * connections are replaced with a fresh one.
+     */
+    private PooledConnection validate(PooledConnection pooled, boolean readOnly) throws SQLException {
+        long now = System.currentTimeMillis();
+        if (now - pooled.lastUsed < validationIntervalMillis && !pooled.connection.isClosed()) {
+            return pooled;
+        }
+
+        try (Statement stmt = pooled.connection.createStatement()) {
+            stmt.execute("SELECT 1");
+            pooled.lastUsed = now;
+            return pooled;
+        } catch (SQLException e) {
+            System.err.println("Replacing broken database connection: " + e.getMessage());
+            closeQuietly(pooled);
+            replacedConnections.increment();
+            return newPooledConnection(readOnly);
+        }
+    }
+
+    private void releaseWriter() {
+        try {
+            if (writerLock.getHoldCount() == 1 && writer != null) {
+                writer.lastUsed = System.currentTimeMillis();
+                resetAutoCommit(writer);
+            }
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    private void releaseReader(ReaderLease lease) {
+        if (--lease.depth > 0) {
+            return;
+        }
+
+        currentReader.remove();
+        activeReaders.decrementAndGet();
+
+        PooledConnection pooled = lease.pooled;
+        pooled.lastUsed = System.currentTimeMillis();
+        if (closed) {
+            closeQuietly(pooled);
+            openReaders.decrementAndGet();
+        } else {
+            idleReaders.offerFirst(pooled);
+        }
+    }
+
+    /**
+     * A lease must never leave an open transaction behind for the next borrower
+     */
+    private void resetAutoCommit(PooledConnection pooled) {
+        try {
+            if (!pooled.connection.getAutoCommit()) {
+                System.err.println("Rolling back transaction left open on a released connection");
+                pooled.connection.rollback();
+                pooled.connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            System.err.println("Error resetting connection state: " + e.getMessage());
+        }
+    }
+
+    private void recordWait(long startNanos) {
+        long waited = System.nanoTime() - startNanos;
+        totalWaitNanos.add(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+    }
+
+    private void closeQuietly(PooledConnection pooled) {
+        pooled.statements.closeAll();
+        try {
+            pooled.connection.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing pooled connection: " + e.getMessage());
+        }
+    }
+
+    private void observeSql(String sql) {
+        Consumer<String> observer = sqlObserver;
+        if (observer != null) {
+            observer.accept(sql);
+        }
+    }
+
+    /**
+     * Wrap a physical connection so that close() releases the lease exactly once
+     */
+    private Connection lease(PooledConnection pooled, Runnable release) {
+        InvocationHandler handler = new LeaseHandler(pooled, release, this::observeSql);
+        return (Connection) Proxy.newProxyInstance(
+            Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, handler);
+    }
+
+    private static class LeaseHandler implements InvocationHandler {
+        private final Connection connection;
+        private final StatementCache statements;
+        private final Runnable release;
+        private final Consumer<String> sqlObserver;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        LeaseHandler(PooledConnection pooled, Runnable release, Consumer<String> sqlObserver) {
+            this.connection = pooled.connection;
+            this.statements = pooled.statements;
+            this.release = release;
+            this.sqlObserver = sqlObserver;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (released.compareAndSet(false, true)) {
+                        release.run();
+                    }
+                    return null;
+                case "isClosed":
+                    return released.get() || connection.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Lease[" + connection + "]";
+                default:
+                    break;
+            }
+
+            if (released.get()) {
+                throw new SQLException("Connection lease has already been released");
+            }
+
+            // Plain prepareStatement(sql) and prepareStatement(sql, autoGeneratedKeys) go through the cache
+            if ("prepareStatement".equals(method.getName()) && args.length <= 2
+                    && (args.length == 1 || args[1] instanceof Integer)) {
+                int keys = args.length == 2 ? (Integer) args[1] : Statement.NO_GENERATED_KEYS;
+                sqlObserver.accept((String) args[0]);
+                return statements.borrow((String) args[0], keys);
+            }
+
+            try {
+                return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private static class PooledConnection {
+        final Connection connection;
+        final StatementCache statements;
+        volatile long lastUsed;
+
+        PooledConnection(Connection connection, StatementCache statements) {
+            this.connection = connection;
+            this.statements = statements;
+            this.lastUsed = System.currentTimeMillis();
+        }
+    }
+
+    private static class ReaderLease {
+        final PooledConnection pooled;
+        int depth = 1;
+
+        ReaderLease(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+    }
+
+    /**
+     * Point-in-time view of pool usage
+     */
+    public static class Stats {
+        private final int maxReaders;
+        private final int openReaders;
+        private final int activeReaders;
+        private final int idleReaders;
+        private final boolean writerBusy;
+        private final int writerQueueLength;
+        private final long readerBorrows;
+        private final long writerBorrows;
+        private final long averageWaitNanos;
+        private final long maxWaitNanos;
+        private final long timeouts;
+        private final long replacedConnections;
+        private final StatementCache.Counters statements;
+
+        public Stats(int maxReaders, int openReaders, int activeReaders, int idleReaders,
+                     boolean writerBusy, int writerQueueLength, long readerBorrows, long writerBorrows,
+                     long averageWaitNanos, long maxWaitNanos, long timeouts, long replacedConnections,
+                     StatementCache.Counters statements) {
+            this.maxReaders = maxReaders;
+            this.openReaders = openReaders;
+            this.activeReaders = activeReaders;
+            this.idleReaders = idleReaders;
+            this.writerBusy = writerBusy;
+            this.writerQueueLength = writerQueueLength;
+            this.readerBorrows = readerBorrows;
+            this.writerBorrows = writerBorrows;
+            this.averageWaitNanos = averageWaitNanos;
+            this.maxWaitNanos = maxWaitNanos;
+            this.timeouts = timeouts;
+            this.replacedConnections = replacedConnections;
+            this.statements = statements;
+        }
+
+        public int getMaxReaders() {
+            return maxReaders;
+        }
+
+        public int getOpenReaders() {
+            return openReaders;
+        }
+
+        public int getActiveReaders() {
+            return activeReaders;
+        }
+
+        public int getIdleReaders() {
+            return idleReaders;
+        }
+
+        public boolean isWriterBusy() {
+            return writerBusy;
+        }
+
+        public int getWriterQueueLength() {
+            return writerQueueLength;
+        }
+
+        public long getReaderBorrows() {
+            return readerBorrows;
+        }
+
+        public long getWriterBorrows() {
+            return writerBorrows;
+        }
+
+        public double getAverageWaitMillis() {
+            return averageWaitNanos / 1_000_000.0;
+        }
+
+        public double getMaxWaitMillis() {
+            return maxWaitNanos / 1_000_000.0;
+        }
+
+        public long getTimeouts() {
+            return timeouts;
+        }
+
+        public long getReplacedConnections() {
+            return replacedConnections;
+        }
+
+        /**
+         * Prepared statement cache counters, summed over every pooled connection
+         */
+        public StatementCache.Counters getStatementCache() {
+            return statements;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                "readers: %d active, %d idle, %d/%d open; writer: %s (%d waiting); " +
+                "borrows: %d read, %d write; wait: avg %.3f ms, max %.3f ms; timeouts: %d; replaced: %d",
+                activeReaders, idleReaders, openReaders, maxReaders,
+                writerBusy ? "busy" : "idle", writerQueueLength,
+                readerBorrows, writerBorrows, getAverageWaitMillis(), getMaxWaitMillis(),
+                timeouts, replacedConnections);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.blog.util;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * SQLite performance settings applied to every pooled connection as it opens.
+ * The defaults favour a desktop app with one writer: WAL so readers never block
+ * on writes, synchronous=NORMAL (durable at checkpoints, no fsync per commit),
+ * a larger page cache and memory-mapped reads.
+ *
+ * Each setting can be overridden with a system property, e.g.
+ * -Dblog.db.synchronous=FULL or -Dblog.db.mmapSizeMb=0.
+ */
+public class DatabaseProfile {
+    private static final Set<String> JOURNAL_MODES = Set.of("DELETE", "TRUNCATE", "PERSIST", "MEMORY", "WAL", "OFF");
+    private static final Set<String> SYNCHRONOUS_MODES = Set.of("OFF", "NORMAL", "FULL", "EXTRA");
+    private static final Set<String> TEMP_STORES = Set.of("DEFAULT", "FILE", "MEMORY");
+
+    private final String journalMode;
+    private final String synchronous;
+    private final int cacheSizeKb;
+    private final long mmapSizeBytes;
+    private final String tempStore;
+    private final int busyTimeoutMs;
+    private final int walAutoCheckpointPages;
+    private final int checkpointIntervalSeconds;
+
+    public DatabaseProfile(String journalMode, String synchronous, int cacheSizeKb, long mmapSizeBytes,
+                           String tempStore, int busyTimeoutMs, int walAutoCheckpointPages,
+                           int checkpointIntervalSeconds) {
+        this.journalMode = checkOption("journal_mode", journalMode, JOURNAL_MODES);
+        this.synchronous = checkOption("synchronous", synchronous, SYNCHRONOUS_MODES);
+        this.tempStore = checkOption("temp_store", tempStore, TEMP_STORES);
+        this.cacheSizeKb = cacheSizeKb;
+        this.mmapSizeBytes = mmapSizeBytes;
+        this.busyTimeoutMs = busyTimeoutMs;
+        this.walAutoCheckpointPages = walAutoCheckpointPages;
+        this.checkpointIntervalSeconds = checkpointIntervalSeconds;
+    }
+
+    /**
+     * Build the profile from blog.db.* system properties, falling back to the defaults
+     */
+    public static DatabaseProfile fromSystemProperties() {
+        return new DatabaseProfile(
+            System.getProperty("blog.db.journalMode", "WAL"),
+            System.getProperty("blog.db.synchronous", "NORMAL"),
+            Integer.getInteger("blog.db.cacheSizeKb", 16 * 1024),
+            Long.getLong("blog.db.mmapSizeMb", 256L) * 1024 * 1024,
+            System.getProperty("blog.db.tempStore", "MEMORY"),
+            Integer.getInteger("blog.db.busyTimeoutMs", 5_000),
+            Integer.getInteger("blog.db.walAutoCheckpointPages", 1_000),
+            Integer.getInteger("blog.db.checkpointIntervalSeconds", 60)
+        );
+    }
+
+    /**
+     * Apply the profile to a freshly opened connection. The journal mode is a
+     * property of the database file, so only the writer sets it.
+     */
+    public void apply(Connection conn, boolean readOnly) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            // Set first so that the remaining pragmas wait out a locked database
+            stmt.execute("PRAGMA busy_timeout = " + busyTimeoutMs);
+
+            if (!readOnly) {
+                stmt.execute("PRAGMA journal_mode = " + journalMode);
+                stmt.execute("PRAGMA wal_autocheckpoint = " + walAutoCheckpointPages);
+            }
+
+            stmt.execute("PRAGMA synchronous = " + synchronous);
+            // Negative cache_size is in KiB rather than pages
+            stmt.execute("PRAGMA cache_size = -" + cacheSizeKb);
+            stmt.execute("PRAGMA mmap_size = " + mmapSizeBytes);
+            stmt.execute("PRAGMA temp_store = " + tempStore);
+        }
+    }
+
+    /**
+     * Whether a periodic checkpoint is needed: only WAL databases have a log to fold back
+     */
+    public boolean isWal() {
+        return "WAL".equals(journalMode);
+    }
+
+    public String getJournalMode() {
+        return journalMode;
+    }
+
+    public String getSynchronous() {
+        return synchronous;
+    }
+
+    public int getCacheSizeKb() {
+        return cacheSizeKb;
+    }
+
+    public long getMmapSizeBytes() {
+        return mmapSizeBytes;
+    }
+
+    public String getTempStore() {
+        return tempStore;
+    }
+
+    public int getBusyTimeoutMs() {
+        return busyTimeoutMs;
+    }
+
+    public int getWalAutoCheckpointPages() {
+        return walAutoCheckpointPages;
+    }
+
+    public int getCheckpointIntervalSeconds() {
+        return checkpointIntervalSeconds;
+    }
+
+    /**
+     * Configured values keyed by setting name, for display
+     */
+    public Map<String, String> toMap() {
+        Map<String, String> settings = new LinkedHashMap<>();
+        settings.put("journal_mode", journalMode);
+        settings.put("synchronous", synchronous);
+        settings.put("cache_size", cacheSizeKb + " KiB");
+        settings.put("mmap_size", mmapSizeBytes / (1024 * 1024) + " MiB");
+        settings.put("temp_store", tempStore);
+        settings.put("busy_timeout", busyTimeoutMs + " ms");
+        settings.put("wal_autocheckpoint", walAutoCheckpointPages + " pages");
+        settings.put("checkpoint interval", checkpointIntervalSeconds + " s");
+        return settings;
+    }
+
+    private static String checkOption(String name, String value, Set<String> allowed) {
+        String normalized = value == null ? "" : value.trim().toUpperCase(Locale.ROOT);
+        if (!allowed.contains(normalized)) {
+            throw new IllegalArgumentException("Unsupported " + name + ": " + value);
+        }
+        return normalized;
+    }
+}
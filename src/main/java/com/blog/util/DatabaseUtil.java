@@ -1,158 +1,213 @@
 package com.blog.util;
 
+import com.blog.dao.UserDAO;
+
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
 
+/**
+ * Entry point for database access. Connections are leased from a
+ * {@link ConnectionPool}: callers must close the returned connection (ideally
+ * with try-with-resources) on the same thread, which hands it back to the pool.
+ */
 public class DatabaseUtil {
-    private static Connection connection;
-    private static final String DB_URL = "jdbc:sqlite:blog.db";
+    private static final String DB_URL = System.getProperty("blog.db.url", "jdbc:sqlite:blog.db");
+    
+    // Pool sizing; readers default to the number of cores, capped to keep file handles modest
+    private static final int MAX_READERS = Integer.getInteger("blog.db.readers",
+        Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors())));
+    private static final long ACQUIRE_TIMEOUT_MS = Long.getLong("blog.db.acquireTimeoutMs", 10_000L);
+    private static final long VALIDATION_INTERVAL_MS = Long.getLong("blog.db.validationIntervalMs", 30_000L);
+    private static final int STATEMENT_CACHE_SIZE = Integer.getInteger("blog.db.statementCacheSize", 64);
+    // How often the post counters are recounted; 0 disables the background job
+    private static final int COUNTER_RECONCILE_SECONDS = Integer.getInteger("blog.counters.reconcileSeconds", 3600);
+    
+    private static final DatabaseProfile PROFILE = DatabaseProfile.fromSystemProperties();
     
+    private static volatile ConnectionPool pool;
+    private static CheckpointScheduler checkpointScheduler;
+    private static CounterReconciler counterReconciler;
+    
+    /**
+     * Lease the writer connection. Use this for any statement that modifies data.
+     * 
+     * @return a leased connection, or null if the database is unavailable
+     */
     public static Connection getConnection() {
-        if (connection == null) {
-            try {
-                // Create connection
-                connection = DriverManager.getConnection(DB_URL);
-                
-                // Create tables if they don't exist
-                createTables();
-                
-                return connection;
+        try {
+            return getPool().borrowWriter();
+        } catch (SQLException e) {
+            System.err.println("Error connecting to database: " + e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Lease a read-only connection. Readers run in parallel with each other and
+     * with the writer.
+     * 
+     * @return a leased connection, or null if the database is unavailable
+     */
+    public static Connection getReadConnection() {
+        try {
+            return getPool().borrowReader();
+        } catch (SQLException e) {
+            System.err.println("Error connecting to database: " + e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Get current pool usage (active, idle, wait time)
+     */
+    public static ConnectionPool.Stats getPoolStats() {
+        return getPool().getStats();
+    }
+    
+    /**
+     * Recount likes, dislikes and comments for every post now
+     * 
+     * @return the number of posts whose counters were repaired, or -1 on error
+     */
+    public static int reconcileCounters() {
+        getPool();
+        synchronized (DatabaseUtil.class) {
+            return counterReconciler != null ? counterReconciler.reconcile() : -1;
+        }
+    }
+    
+    /**
+     * Register a hook that receives the SQL of every prepared statement, or null to remove it
+     */
+    public static void setSqlObserver(Consumer<String> observer) {
+        getPool().setSqlObserver(observer);
+    }
+    
+    /**
+     * Get the PRAGMA profile applied to every connection
+     */
+    public static DatabaseProfile getProfile() {
+        return PROFILE;
+    }
+    
+    /**
+     * Collect the settings actually in effect on a live connection, together with
+     * pool and checkpoint status, for the admin diagnostics view
+     */
+    public static Map<String, String> getDiagnostics() {
+        Map<String, String> diagnostics = new LinkedHashMap<>();
+        diagnostics.put("Database URL", DB_URL);
+        
+        String[] pragmas = {"journal_mode", "synchronous", "cache_size", "mmap_size", "temp_store",
+                            "busy_timeout", "wal_autocheckpoint", "page_size", "page_count", "freelist_count"};
+        Connection conn = getReadConnection();
+        if (conn == null) {
+            diagnostics.put("Error", "Could not open a database connection");
+        } else {
+            try (conn; Statement stmt = conn.createStatement()) {
+                for (String pragma : pragmas) {
+                    try (ResultSet rs = stmt.executeQuery("PRAGMA " + pragma)) {
+                        diagnostics.put(pragma, rs.next() ? rs.getString(1) : "");
+                    }
+                }
+                diagnostics.put("Schema version", SchemaMigrator.getCurrentVersion(conn) + " of " +
+                    SchemaMigrator.getLatestVersion());
             } catch (SQLException e) {
-                System.err.println("Error connecting to database: " + e.getMessage());
-                return null;
+                diagnostics.put("Error", e.getMessage());
             }
         }
         
-        // Check if the connection is closed and reopen if needed
-        try {
-            if (connection.isClosed()) {
-                System.out.println("DEBUG: Reopening closed database connection");
-                connection = DriverManager.getConnection(DB_URL);
+        PROFILE.toMap().forEach((key, value) -> diagnostics.put("Configured " + key, value));
+        ConnectionPool.Stats stats = getPoolStats();
+        diagnostics.put("Connection pool", stats.toString());
+        diagnostics.put("Statement cache", stats.getStatementCache().toString());
+        diagnostics.put("User cache", UserDAO.getInstance().getUserCache().toString());
+        diagnostics.put("Username/email filter", UserDAO.getInstance().getNameFilterStatus());
+        diagnostics.put("View count buffer", ViewCountBuffer.getInstance().toString());
+        diagnostics.put("Session cache", SessionManager.getInstance().toString());
+        
+        synchronized (DatabaseUtil.class) {
+            if (checkpointScheduler != null) {
+                long lastRun = checkpointScheduler.getLastRunAt();
+                diagnostics.put("Last checkpoint", checkpointScheduler.getLastResult() +
+                    (lastRun > 0 ? " at " + new java.util.Date(lastRun) : ""));
+            } else {
+                diagnostics.put("Last checkpoint", "scheduler not running");
             }
-        } catch (SQLException e) {
-            System.err.println("Error checking or reopening database connection: " + e.getMessage());
-            try {
-                connection = DriverManager.getConnection(DB_URL);
-            } catch (SQLException ex) {
-                System.err.println("Failed to reopen database connection: " + ex.getMessage());
+            if (counterReconciler != null) {
+                long lastRun = counterReconciler.getLastRunAt();
+                diagnostics.put("Last counter reconcile", counterReconciler.getLastResult() +
+                    (lastRun > 0 ? " at " + new java.util.Date(lastRun) : ""));
             }
         }
-        
-        return connection;
+        return diagnostics;
     }
     
+    /**
+     * Close every pooled connection. The pool is recreated on the next request.
+     */
     public static void closeConnection() {
-        if (connection != null) {
-            try {
-                connection.close();
-                connection = null;
-                System.out.println("DEBUG: Database connection closed by application");
-            } catch (SQLException e) {
-                System.err.println("Error closing database connection: " + e.getMessage());
+        // Write out buffered post views while the pool is still open. Outside
+        // the lock: a flush may need it to reopen the pool.
+        ViewCountBuffer.getInstance().flush();
+        
+        synchronized (DatabaseUtil.class) {
+            if (checkpointScheduler != null) {
+                checkpointScheduler.stop();
+                checkpointScheduler = null;
+            }
+            if (counterReconciler != null) {
+                counterReconciler.stop();
+                counterReconciler = null;
+            }
+            if (pool != null) {
+                pool.close();
+                pool = null;
+                System.out.println("DEBUG: Database connection pool closed by application");
             }
         }
     }
     
-    private static void createTables() {
-        try {
-            Statement stmt = connection.createStatement();
-            
-            // Users table
-            stmt.execute(
-                "CREATE TABLE IF NOT EXISTS users (" +
-                "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                "username TEXT NOT NULL UNIQUE," +
-                "password TEXT NOT NULL," +
-                "email TEXT NOT NULL UNIQUE," +
-                "full_name TEXT NOT NULL," +
-                "role TEXT," +
-                "profile_picture TEXT," +
-                "bio TEXT," +
-                "profile_image_data BLOB" +
-                ")"
-            );
-            
-            // Blog posts table with enhanced fields
-            stmt.execute(
-                "CREATE TABLE IF NOT EXISTS blog_posts (" +
-                "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                "title TEXT NOT NULL," +
-                "content TEXT NOT NULL," +
-                "user_id INTEGER NOT NULL," +
-                "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
-                "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
-                "status TEXT DEFAULT 'draft'," +
-                "tags TEXT," +
-                "comment_count INTEGER DEFAULT 0," +
-                "like_count INTEGER DEFAULT 0," +
-                "dislike_count INTEGER DEFAULT 0," +
-                "FOREIGN KEY (user_id) REFERENCES users(id)" +
-                ")"
-            );
-            
-            // Media table for blog post attachments
-            stmt.execute(
-                "CREATE TABLE IF NOT EXISTS media (" +
-                "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                "post_id INTEGER NOT NULL," +
-                "file_name TEXT NOT NULL," +
-                "file_type TEXT NOT NULL," +
-                "file_data BLOB," +
-                "file_path TEXT," +
-                "uploaded_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
-                "caption TEXT," +
-                "FOREIGN KEY (post_id) REFERENCES blog_posts(id) ON DELETE CASCADE" +
-                ")"
-            );
-            
-            // Comments table with support for threaded comments
-            stmt.execute(
-                "CREATE TABLE IF NOT EXISTS comments (" +
-                "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                "post_id INTEGER NOT NULL," +
-                "user_id INTEGER NOT NULL," +
-                "content TEXT NOT NULL," +
-                "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
-                "hidden BOOLEAN DEFAULT 0," +
-                "parent_id INTEGER," +
-                "FOREIGN KEY (post_id) REFERENCES blog_posts(id) ON DELETE CASCADE," +
-                "FOREIGN KEY (user_id) REFERENCES users(id)," +
-                "FOREIGN KEY (parent_id) REFERENCES comments(id) ON DELETE CASCADE" +
-                ")"
-            );
-            
-            // Likes table for tracking user reactions to posts
-            stmt.execute(
-                "CREATE TABLE IF NOT EXISTS likes (" +
-                "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                "post_id INTEGER NOT NULL," +
-                "user_id INTEGER NOT NULL," +
-                "is_like BOOLEAN NOT NULL," +  // true for like, false for dislike
-                "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
-                "FOREIGN KEY (post_id) REFERENCES blog_posts(id) ON DELETE CASCADE," +
-                "FOREIGN KEY (user_id) REFERENCES users(id)," +
-                "UNIQUE(post_id, user_id)" +  // Each user can only have one reaction per post
-                ")"
-            );
-            
-            // Sessions table for user login sessions
-            stmt.execute(
-                "CREATE TABLE IF NOT EXISTS sessions (" +
-                "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                "user_id INTEGER NOT NULL," +
-                "session_token TEXT NOT NULL UNIQUE," +
-                "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
-                "expires_at TIMESTAMP," +
-                "FOREIGN KEY (user_id) REFERENCES users(id)" +
-                ")"
-            );
-            
-            stmt.close();
-            
+    private static ConnectionPool getPool() {
+        ConnectionPool current = pool;
+        if (current != null && !current.isClosed()) {
+            return current;
+        }
+        
+        synchronized (DatabaseUtil.class) {
+            if (pool == null || pool.isClosed()) {
+                ConnectionPool created = new ConnectionPool(DB_URL, MAX_READERS, ACQUIRE_TIMEOUT_MS,
+                    VALIDATION_INTERVAL_MS, PROFILE, STATEMENT_CACHE_SIZE);
+                
+                // Create or upgrade the schema
+                migrateSchema(created);
+                pool = created;
+                
+                if (PROFILE.isWal()) {
+                    checkpointScheduler = new CheckpointScheduler(created, PROFILE.getCheckpointIntervalSeconds());
+                    checkpointScheduler.start();
+                }
+                
+                counterReconciler = new CounterReconciler(created, COUNTER_RECONCILE_SECONDS);
+                counterReconciler.start();
+            }
+            return pool;
+        }
+    }
+    
+    /**
+     * Bring the schema up to date before the pool is handed out
+     */
+    private static void migrateSchema(ConnectionPool pool) {
+        try (Connection connection = pool.borrowWriter()) {
+            SchemaMigrator.migrate(connection);
         } catch (SQLException e) {
-            System.err.println("Error creating tables: " + e.getMessage());
+            System.err.println("Error migrating database schema: " + e.getMessage());
         }
     }
     
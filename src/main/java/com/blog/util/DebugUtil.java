@@ -82,9 +82,8 @@ public class DebugUtil {
      * Print all blog posts in the database for debug purposes
      */
     public static void printBlogPosts() {
-        try {
-            Connection conn = DatabaseUtil.getConnection();
-            Statement stmt = conn.createStatement();
+        try (Connection conn = DatabaseUtil.getReadConnection();
+             Statement stmt = conn.createStatement()) {
             ResultSet rs = stmt.executeQuery("SELECT * FROM blog_posts");
             
             System.out.println("\n=== BLOG POSTS IN DATABASE ===");
@@ -98,7 +97,6 @@ public class DebugUtil {
             System.out.println("============================\n");
             
             rs.close();
-            stmt.close();
         } catch (SQLException e) {
             System.err.println("Error printing blog posts: " + e.getMessage());
         }
@@ -108,9 +106,8 @@ public class DebugUtil {
      * Print all media attachments in the database for debug purposes
      */
     public static void printMedia() {
-        try {
-            Connection conn = DatabaseUtil.getConnection();
-            Statement stmt = conn.createStatement();
+        try (Connection conn = DatabaseUtil.getReadConnection();
+             Statement stmt = conn.createStatement()) {
             ResultSet rs = stmt.executeQuery("SELECT id, post_id, file_name, file_type FROM media");
             
             System.out.println("\n=== MEDIA IN DATABASE ===");
@@ -123,7 +120,6 @@ public class DebugUtil {
             System.out.println("========================\n");
             
             rs.close();
-            stmt.close();
         } catch (SQLException e) {
             System.err.println("Error printing media: " + e.getMessage());
         }
@@ -133,9 +129,8 @@ public class DebugUtil {
      * Print all tables in the database
      */
     public static void printAllTables() {
-        try {
-            Connection conn = DatabaseUtil.getConnection();
-            Statement stmt = conn.createStatement();
+        try (Connection conn = DatabaseUtil.getReadConnection();
+             Statement stmt = conn.createStatement()) {
             ResultSet rs = stmt.executeQuery("SELECT name FROM sqlite_master WHERE type='table'");
             
             System.out.println("\n=== TABLES IN DATABASE ===");
@@ -145,7 +140,6 @@ public class DebugUtil {
             System.out.println("========================\n");
             
             rs.close();
-            stmt.close();
         } catch (SQLException e) {
             System.err.println("Error printing tables: " + e.getMessage());
         }
@@ -155,9 +149,8 @@ public class DebugUtil {
      * Print the schema for a specific table
      */
     public static void printTableSchema(String tableName) {
-        try {
-            Connection conn = DatabaseUtil.getConnection();
-            Statement stmt = conn.createStatement();
+        try (Connection conn = DatabaseUtil.getReadConnection();
+             Statement stmt = conn.createStatement()) {
             ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + tableName + ")");
             
             System.out.println("\n=== SCHEMA FOR " + tableName + " ===");
@@ -168,7 +161,6 @@ public class DebugUtil {
             System.out.println("========================\n");
             
             rs.close();
-            stmt.close();
         } catch (SQLException e) {
             System.err.println("Error printing schema: " + e.getMessage());
         }
@@ -0,0 +1,155 @@
+package com.blog.util;
+
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel (Varghese and Lauck): deadlines hashed by tick into a
+ * fixed ring of buckets, each a doubly linked list. Scheduling and cancelling
+ * are O(1), and advancing the clock visits only the buckets of the ticks that
+ * passed, so the cost of expiring entries doesn't depend on how many are
+ * scheduled further out. A deadline more than one turn away stays in its
+ * bucket until the turn it falls in.
+ *
+ * Entries expire at tick granularity, up to one tick after their deadline.
+ * All methods are synchronized; the expiry callback runs under the lock and
+ * must not call back into the wheel.
+ */
+public class HashedTimingWheel<T> {
+    private final long tickMillis;
+    private final long startMillis;
+    private final Timeout<T>[] buckets;
+    private final int mask;
+    // Next tick to process; every tick before it has been expired
+    private long currentTick;
+    private int size;
+
+    /**
+     * @param tickMillis length of one tick
+     * @param bucketCount buckets in the ring, rounded up to a power of two
+     * @param nowMillis the wheel's start time
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public HashedTimingWheel(long tickMillis, int bucketCount, long nowMillis) {
+        if (tickMillis <= 0 || bucketCount <= 0) {
+            throw new IllegalArgumentException("Tick and bucket count must be positive");
+        }
+        int buckets = Integer.highestOneBit(Math.max(1, bucketCount * 2 - 1));
+        this.tickMillis = tickMillis;
+        this.startMillis = nowMillis;
+        this.buckets = (Timeout<T>[]) new Timeout[buckets];
+        this.mask = buckets - 1;
+    }
+
+    /**
+     * Schedule a value to expire at a deadline; a deadline already passed
+     * expires on the next advance
+     * @return a handle for {@link #cancel(Timeout)}
+     */
+    public synchronized Timeout<T> schedule(T value, long deadlineMillis) {
+        // Round up, so nothing expires before its deadline
+        long tick = Math.max(currentTick, Math.floorDiv(deadlineMillis - startMillis + tickMillis - 1, tickMillis));
+        Timeout<T> timeout = new Timeout<>(value, deadlineMillis, tick);
+        int bucket = (int) (tick & mask);
+        timeout.next = buckets[bucket];
+        if (timeout.next != null) {
+            timeout.next.prev = timeout;
+        }
+        buckets[bucket] = timeout;
+        size++;
+        return timeout;
+    }
+
+    /**
+     * Remove a scheduled value before it expires
+     * @return false if it had already expired or been cancelled
+     */
+    public synchronized boolean cancel(Timeout<T> timeout) {
+        if (timeout.removed) {
+            return false;
+        }
+        unlink(timeout);
+        return true;
+    }
+
+    /**
+     * Expire every value whose tick has passed by now, oldest tick first
+     * @param expired called with each expired value, under the wheel's lock
+     * @return the number of values expired
+     */
+    public synchronized int advance(long nowMillis, Consumer<T> expired) {
+        long lastTick = Math.floorDiv(nowMillis - startMillis, tickMillis);
+        if (lastTick < currentTick) {
+            return 0;
+        }
+
+        // After a stall of more than one turn, each bucket is visited once
+        long ticks = Math.min(lastTick - currentTick + 1, buckets.length);
+        int count = 0;
+        for (long i = 0; i < ticks; i++) {
+            Timeout<T> timeout = buckets[(int) ((currentTick + i) & mask)];
+            while (timeout != null) {
+                Timeout<T> next = timeout.next;
+                if (timeout.tick <= lastTick) {
+                    unlink(timeout);
+                    expired.accept(timeout.value);
+                    count++;
+                }
+                timeout = next;
+            }
+        }
+        currentTick = lastTick + 1;
+        return count;
+    }
+
+    /**
+     * Values scheduled and not yet expired or cancelled
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    public long getTickMillis() {
+        return tickMillis;
+    }
+
+    private void unlink(Timeout<T> timeout) {
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            buckets[(int) (timeout.tick & mask)] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.removed = true;
+        size--;
+    }
+
+    /**
+     * A scheduled value, linked into its bucket
+     */
+    public static final class Timeout<T> {
+        private final T value;
+        private final long deadlineMillis;
+        private final long tick;
+        private Timeout<T> prev;
+        private Timeout<T> next;
+        private boolean removed;
+
+        private Timeout(T value, long deadlineMillis, long tick) {
+            this.value = value;
+            this.deadlineMillis = deadlineMillis;
+            this.tick = tick;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        public long getDeadlineMillis() {
+            return deadlineMillis;
+        }
+    }
+}
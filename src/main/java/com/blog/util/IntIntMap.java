@@ -0,0 +1,107 @@
+package com.blog.util;
+
+/**
+ * Fixed-capacity map from int keys to non-negative int values, such as array
+ * positions, in two primitive arrays with open addressing (linear probing),
+ * so lookups and updates allocate nothing. Key 0 is reserved to mark empty
+ * slots. Removal shifts later entries of a probe run back instead of leaving
+ * tombstones, so the table never needs rebuilding. Not thread-safe.
+ */
+public class IntIntMap {
+    private final int capacity;
+    private final int[] keys;
+    private final int[] values;
+    private final int mask;
+    private int size;
+
+    /**
+     * @param capacity most keys the map will hold
+     */
+    public IntIntMap(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        // Load factor at most one half
+        int tableSize = Integer.highestOneBit(capacity * 2 - 1) << 1;
+        this.keys = new int[tableSize];
+        this.values = new int[tableSize];
+        this.mask = tableSize - 1;
+    }
+
+    /**
+     * @return the key's value, or -1 if it has none
+     */
+    public int get(int key) {
+        if (key == 0) {
+            return -1;
+        }
+        int slot = find(key);
+        return keys[slot] == key ? values[slot] : -1;
+    }
+
+    /**
+     * Set a key's value
+     * @throws IllegalStateException if the key is new and the map is at capacity
+     */
+    public void put(int key, int value) {
+        if (key == 0) {
+            throw new IllegalArgumentException("Key 0 is reserved");
+        }
+        int slot = find(key);
+        if (keys[slot] != key) {
+            if (size >= capacity) {
+                throw new IllegalStateException("Map is full");
+            }
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+    }
+
+    /**
+     * Remove a key, if present
+     */
+    public void remove(int key) {
+        if (key == 0) {
+            return;
+        }
+        int hole = find(key);
+        if (keys[hole] != key) {
+            return;
+        }
+        int next = (hole + 1) & mask;
+        while (keys[next] != 0) {
+            int home = mix(keys[next]) & mask;
+            // The entry can fill the hole if the hole lies between its home slot and where it sits
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[hole] = 0;
+        size--;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Slot holding the key, or the empty slot where it would go
+     */
+    private int find(int key) {
+        int slot = mix(key) & mask;
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,123 @@
+package com.blog.util;
+
+import java.util.Arrays;
+
+/**
+ * Counts by long key, in two primitive arrays with open addressing (linear
+ * probing), so counting allocates nothing once the map has grown. Key 0 is
+ * reserved to mark empty slots. Grows up to maxSize keys; beyond that new
+ * keys are refused rather than growing further. Not thread-safe.
+ */
+public class LongCountMap {
+    private static final int MIN_CAPACITY = 16;
+
+    private final int maxSize;
+    private long[] keys;
+    private long[] counts;
+    private int size;
+
+    public LongCountMap(int maxSize) {
+        this.maxSize = maxSize;
+        this.keys = new long[MIN_CAPACITY];
+        this.counts = new long[MIN_CAPACITY];
+    }
+
+    /**
+     * Add to a key's count
+     * @return false if the key is new and the map is already at maxSize
+     */
+    public boolean add(long key, long delta) {
+        if (key == 0) {
+            throw new IllegalArgumentException("Key 0 is reserved");
+        }
+
+        int slot = find(key);
+        if (keys[slot] == key) {
+            counts[slot] += delta;
+            return true;
+        }
+        if (size >= maxSize) {
+            return false;
+        }
+        keys[slot] = key;
+        counts[slot] = delta;
+        size++;
+        // Keep the load factor at or below one half
+        if (size * 2 > keys.length) {
+            grow();
+        }
+        return true;
+    }
+
+    /**
+     * @return the key's count, or 0 if it has none
+     */
+    public long get(long key) {
+        if (key == 0) {
+            return 0;
+        }
+        int slot = find(key);
+        return keys[slot] == key ? counts[slot] : 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Remove every key, keeping the arrays for reuse
+     */
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(keys, 0);
+            Arrays.fill(counts, 0);
+            size = 0;
+        }
+    }
+
+    /**
+     * Pass every key and count to the visitor, in no particular order
+     */
+    public void forEach(Visitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                visitor.visit(keys[i], counts[i]);
+            }
+        }
+    }
+
+    public interface Visitor {
+        void visit(long key, long count);
+    }
+
+    /**
+     * Slot holding the key, or the empty slot where it would go
+     */
+    private int find(long key) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldCounts = counts;
+        keys = new long[oldKeys.length * 2];
+        counts = new long[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
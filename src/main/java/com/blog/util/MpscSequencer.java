@@ -0,0 +1,111 @@
+package com.blog.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Slot bookkeeping for a bounded ring shared by many producer threads and a
+ * single consumer thread; the slots' contents live in the caller's own arrays,
+ * indexed with {@link #index(long)}, so they can be primitives.
+ *
+ * Each slot has a sequence number that says whose turn it is. A producer
+ * claims a position with one CAS on the tail, fills the slot and calls
+ * {@link #publish(long)}, whose volatile write makes the contents visible to
+ * the consumer. The consumer reads slots in order and calls
+ * {@link #release(long)} to hand each one back to the producers one lap on.
+ */
+public class MpscSequencer {
+    private final int capacity;
+    private final int mask;
+    // sequences[i] == position: free for the producer claiming that position;
+    // position + 1: published, ready for the consumer
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    // Only the consumer thread moves the head; volatile so size() can read it
+    private volatile long head;
+
+    /**
+     * @param requestedCapacity rounded up to a power of two
+     */
+    public MpscSequencer(int requestedCapacity) {
+        if (requestedCapacity < 2 || requestedCapacity > (1 << 30)) {
+            throw new IllegalArgumentException("Capacity must be between 2 and 2^30: " + requestedCapacity);
+        }
+        this.capacity = Integer.highestOneBit(requestedCapacity - 1) << 1;
+        this.mask = capacity - 1;
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Claim the next position for writing. Safe to call from any thread; the
+     * caller must fill the slot at index(position) and then publish it.
+     *
+     * @return the claimed position, or -1 if the ring is full
+     */
+    public long claim() {
+        while (true) {
+            long position = tail.get();
+            long lag = sequences.get(index(position)) - position;
+
+            if (lag == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    return position;
+                }
+                // Another producer claimed this position; retry with the new tail
+            } else if (lag < 0) {
+                return -1; // The consumer hasn't released this slot yet: full
+            }
+            // lag > 0: our tail read is stale; retry
+        }
+    }
+
+    /**
+     * Make a claimed and filled slot visible to the consumer
+     */
+    public void publish(long position) {
+        sequences.set(index(position), position + 1);
+    }
+
+    /**
+     * Position of the next slot to consume, or -1 if it isn't published yet.
+     * Consumer thread only.
+     */
+    public long next() {
+        long position = head;
+        return sequences.get(index(position)) == position + 1 ? position : -1;
+    }
+
+    /**
+     * Hand a consumed slot back to the producers. Consumer thread only, in order.
+     */
+    public void release(long position) {
+        sequences.set(index(position), position + capacity);
+        head = position + 1;
+    }
+
+    public int index(long position) {
+        return (int) position & mask;
+    }
+
+    /**
+     * Approximate number of claimed but not yet released slots
+     */
+    public int size() {
+        long size = tail.get() - head;
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+
+    /**
+     * Total number of positions ever claimed
+     */
+    public long getClaimedCount() {
+        return tail.get();
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+}
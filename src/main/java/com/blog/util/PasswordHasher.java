@@ -0,0 +1,42 @@
+package com.blog.util;
+
+/**
+ * A password hashing scheme. Implementations write hashes in a format they
+ * can recognise again, with the salt and cost stored alongside, so the cost
+ * can change without invalidating existing hashes.
+ */
+public interface PasswordHasher {
+    /**
+     * Hash a password with a fresh random salt
+     *
+     * @param password The plaintext password
+     * @return The encoded hash to store
+     */
+    String hash(String password);
+
+    /**
+     * Whether a stored hash is in this hasher's format
+     *
+     * @param storedHash The hash from the database
+     * @return True if {@link #verify} can check passwords against it
+     */
+    boolean handles(String storedHash);
+
+    /**
+     * Check a password against a stored hash in this hasher's format
+     *
+     * @param password The plaintext password
+     * @param storedHash The hash from the database
+     * @return True if the password matches
+     */
+    boolean verify(String password, String storedHash);
+
+    /**
+     * Whether a stored hash should be replaced on the next successful login,
+     * e.g. because its cost is below the current setting
+     *
+     * @param storedHash The hash from the database
+     * @return True if the password should be hashed again
+     */
+    boolean needsRehash(String storedHash);
+}
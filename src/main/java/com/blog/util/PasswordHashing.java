@@ -0,0 +1,135 @@
+package com.blog.util;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * Entry point for hashing and checking passwords. New passwords are hashed
+ * with the current {@link PasswordHasher}: by default a {@link Pbkdf2PasswordHasher}
+ * calibrated on first use so a verification takes about blog.passwords.targetMs
+ * (100 ms), or the class named by blog.passwords.hasher.
+ *
+ * Hashes written before this existed are still accepted: unsalted SHA-256,
+ * and plaintext from before passwords were hashed at all. They are only
+ * recognised when the stored value isn't in a KDF format, and
+ * {@link #needsRehash} reports them so login can replace them.
+ */
+public final class PasswordHashing {
+    private static final long TARGET_MILLIS = Long.getLong("blog.passwords.targetMs", 100L);
+    private static final String HASHER_CLASS = System.getProperty("blog.passwords.hasher");
+
+    // Checks PBKDF2 hashes even when another hasher is current; the cost is read from each hash
+    private static final PasswordHasher PBKDF2 = new Pbkdf2PasswordHasher(Pbkdf2PasswordHasher.MIN_ITERATIONS);
+
+    private static volatile PasswordHasher hasher;
+
+    private PasswordHashing() {
+    }
+
+    /**
+     * Get the hasher for new passwords, creating (and calibrating) it on first use
+     */
+    public static PasswordHasher getHasher() {
+        PasswordHasher current = hasher;
+        if (current != null) {
+            return current;
+        }
+        synchronized (PasswordHashing.class) {
+            if (hasher == null) {
+                hasher = createHasher();
+                System.out.println("Password hashing: " + hasher);
+            }
+            return hasher;
+        }
+    }
+
+    /**
+     * Replace the hasher for new passwords; existing hashes in its format
+     * are checked by it from then on
+     */
+    public static synchronized void setHasher(PasswordHasher newHasher) {
+        hasher = newHasher;
+    }
+
+    /**
+     * Hash a password for storage with the current hasher
+     */
+    public static String hash(String password) {
+        return getHasher().hash(password);
+    }
+
+    /**
+     * Check a password against a stored hash in any supported format
+     */
+    public static boolean verify(String password, String storedHash) {
+        if (password == null || storedHash == null) {
+            return false;
+        }
+
+        PasswordHasher current = getHasher();
+        if (current.handles(storedHash)) {
+            return current.verify(password, storedHash);
+        }
+        if (PBKDF2.handles(storedHash)) {
+            return PBKDF2.verify(password, storedHash);
+        }
+
+        // Legacy formats. A stored SHA-256 hash is never compared as plaintext,
+        // or the hash itself would work as the password.
+        byte[] stored = storedHash.getBytes();
+        if (isLegacySha256(storedHash)) {
+            return MessageDigest.isEqual(stored, legacySha256(password).getBytes());
+        }
+        return MessageDigest.isEqual(stored, password.getBytes());
+    }
+
+    /**
+     * Whether a stored hash should be replaced with one from the current
+     * hasher after the password has been verified
+     */
+    public static boolean needsRehash(String storedHash) {
+        PasswordHasher current = getHasher();
+        return !current.handles(storedHash) || current.needsRehash(storedHash);
+    }
+
+    private static PasswordHasher createHasher() {
+        if (HASHER_CLASS != null && !HASHER_CLASS.isEmpty()) {
+            try {
+                return (PasswordHasher) Class.forName(HASHER_CLASS).getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | ClassCastException e) {
+                System.err.println("Error creating password hasher " + HASHER_CLASS + ": " + e.getMessage() +
+                    "; using PBKDF2");
+            }
+        }
+        return Pbkdf2PasswordHasher.calibrate(TARGET_MILLIS);
+    }
+
+    /**
+     * Whether a stored value is Base64 of 32 bytes, i.e. a legacy SHA-256 hash
+     */
+    private static boolean isLegacySha256(String storedHash) {
+        if (storedHash.length() != 44 || !storedHash.endsWith("=")) {
+            return false;
+        }
+        try {
+            return Base64.getDecoder().decode(storedHash).length == 32;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * The original scheme: one unsalted SHA-256, Base64 encoded
+     */
+    private static String legacySha256(String password) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            byte[] hash = md.digest(password.getBytes());
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            System.err.println("Error hashing password: " + e.getMessage());
+            return "";
+        }
+    }
+}
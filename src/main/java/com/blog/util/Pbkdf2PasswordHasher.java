@@ -0,0 +1,146 @@
+package com.blog.util;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * PBKDF2-HMAC-SHA256 with a 16-byte random salt per password, stored as
+ * "pbkdf2-sha256$iterations$salt$hash" (Base64). The iteration count is
+ * read back from each hash, so raising it only affects new hashes; hashes
+ * well below the current count are reported by {@link #needsRehash}.
+ *
+ * {@link #calibrate(long)} picks the iteration count that makes one
+ * verification take about a target time on this machine.
+ */
+public class Pbkdf2PasswordHasher implements PasswordHasher {
+    private static final String PREFIX = "pbkdf2-sha256$";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    // Floor regardless of how slow the machine is, and a cap against a bad measurement
+    public static final int MIN_ITERATIONS = 50_000;
+    private static final int MAX_ITERATIONS = 10_000_000;
+    // Calibration noise shouldn't rehash every password on every restart
+    private static final double REHASH_BELOW = 0.75;
+
+    private final int iterations;
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * @param iterations PBKDF2 iterations for new hashes
+     */
+    public Pbkdf2PasswordHasher(int iterations) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("Iterations must be positive");
+        }
+        this.iterations = iterations;
+    }
+
+    /**
+     * Create a hasher whose hashes take about targetMillis to verify here,
+     * and never fewer than MIN_ITERATIONS iterations
+     */
+    public static Pbkdf2PasswordHasher calibrate(long targetMillis) {
+        char[] sample = "calibration-password".toCharArray();
+        byte[] salt = new byte[SALT_BYTES];
+        int probe = 10_000;
+
+        // Warm up, so the measured run is compiled code
+        for (int i = 0; i < 3; i++) {
+            derive(sample, salt, probe);
+        }
+        long started = System.nanoTime();
+        derive(sample, salt, probe);
+        double nanosPerIteration = Math.max(1.0, (double) (System.nanoTime() - started) / probe);
+
+        long target = (long) (targetMillis * 1_000_000.0 / nanosPerIteration);
+        int iterations = (int) Math.max(MIN_ITERATIONS, Math.min(MAX_ITERATIONS, target));
+        return new Pbkdf2PasswordHasher(iterations);
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    @Override
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        byte[] hash = derive(password.toCharArray(), salt, iterations);
+        Base64.Encoder encoder = Base64.getEncoder();
+        return PREFIX + iterations + "$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(hash);
+    }
+
+    @Override
+    public boolean handles(String storedHash) {
+        return storedHash != null && storedHash.startsWith(PREFIX);
+    }
+
+    @Override
+    public boolean verify(String password, String storedHash) {
+        String[] parts = split(storedHash);
+        if (parts == null) {
+            return false;
+        }
+
+        try {
+            int storedIterations = Integer.parseInt(parts[0]);
+            byte[] salt = Base64.getDecoder().decode(parts[1]);
+            byte[] expected = Base64.getDecoder().decode(parts[2]);
+            if (storedIterations < 1 || storedIterations > MAX_ITERATIONS) {
+                return false;
+            }
+            byte[] actual = derive(password.toCharArray(), salt, storedIterations);
+            // Constant-time comparison
+            return MessageDigest.isEqual(expected, actual);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Malformed password hash: " + e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public boolean needsRehash(String storedHash) {
+        String[] parts = split(storedHash);
+        if (parts == null) {
+            return true;
+        }
+        try {
+            return Integer.parseInt(parts[0]) < iterations * REHASH_BELOW;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PBKDF2-HMAC-SHA256, " + iterations + " iterations";
+    }
+
+    /**
+     * Split a stored hash into iterations, salt and hash, or null if it isn't one of ours
+     */
+    private static String[] split(String storedHash) {
+        if (storedHash == null || !storedHash.startsWith(PREFIX)) {
+            return null;
+        }
+        String[] parts = storedHash.substring(PREFIX.length()).split("\\$");
+        return parts.length == 3 ? parts : null;
+    }
+
+    private static byte[] derive(char[] password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password, salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            // Every Java 8+ runtime provides PBKDF2WithHmacSHA256
+            throw new IllegalStateException("PBKDF2 unavailable: " + e.getMessage(), e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
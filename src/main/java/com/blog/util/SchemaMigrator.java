@@ -0,0 +1,481 @@
+package com.blog.util;
+
+import com.blog.model.BlogPost;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Versioned schema migrations. Each migration runs once, in order, inside its
+ * own transaction, and is recorded in the schema_version table. Migrations are
+ * written to be idempotent (IF NOT EXISTS, column checks) so that databases
+ * created before versioning existed are brought up to date safely.
+ *
+ * To change the schema, append a new migration with the next version number;
+ * never edit one that has already shipped.
+ */
+public class SchemaMigrator {
+    private static final List<Migration> MIGRATIONS = List.of(
+        new Migration(1, "Create core tables", SchemaMigrator::createCoreTables),
+        new Migration(2, "Add columns missing from older databases", SchemaMigrator::addMissingColumns),
+        new Migration(3, "Add secondary indexes for DAO queries", SchemaMigrator::addIndexes),
+        new Migration(4, "Drop unused legacy posts tables", SchemaMigrator::dropLegacyTables),
+        new Migration(5, "Add full-text search index on posts", SchemaMigrator::createSearchIndex),
+        new Migration(6, "Add normalized tags and post_tags tables", SchemaMigrator::createTagTables),
+        new Migration(7, "Maintain post like, dislike and comment counters", SchemaMigrator::createCounterTriggers),
+        new Migration(8, "Add revoked_tokens table for signed session tokens", SchemaMigrator::createRevokedTokens)
+    );
+    
+    /**
+     * Private constructor to prevent instantiation
+     */
+    private SchemaMigrator() {
+    }
+    
+    /**
+     * Apply every migration newer than the database's current version
+     * 
+     * @param conn a writable connection
+     * @return the number of migrations applied
+     */
+    public static int migrate(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(
+                "CREATE TABLE IF NOT EXISTS schema_version (" +
+                "version INTEGER PRIMARY KEY," +
+                "description TEXT NOT NULL," +
+                "applied_at INTEGER NOT NULL" +
+                ")"
+            );
+        }
+        
+        int currentVersion = getCurrentVersion(conn);
+        int applied = 0;
+        
+        boolean autoCommit = conn.getAutoCommit();
+        try {
+            for (Migration migration : MIGRATIONS) {
+                if (migration.version <= currentVersion) {
+                    continue;
+                }
+                
+                conn.setAutoCommit(false);
+                try {
+                    migration.step.apply(conn);
+                    recordVersion(conn, migration);
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw new SQLException("Migration " + migration.version + " (" + migration.description +
+                                           ") failed: " + e.getMessage(), e);
+                }
+                
+                System.out.println("Applied schema migration " + migration.version + ": " + migration.description);
+                applied++;
+            }
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+        
+        return applied;
+    }
+    
+    /**
+     * Get the highest migration version applied to the database, or 0 if none
+     */
+    public static int getCurrentVersion(Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT MAX(version) FROM schema_version");
+             ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+    
+    /**
+     * Get the version the schema will be at once every migration has run
+     */
+    public static int getLatestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version;
+    }
+    
+    private static void recordVersion(Connection conn, Migration migration) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "INSERT INTO schema_version (version, description, applied_at) VALUES (?, ?, ?)")) {
+            pstmt.setInt(1, migration.version);
+            pstmt.setString(2, migration.description);
+            pstmt.setLong(3, System.currentTimeMillis());
+            pstmt.executeUpdate();
+        }
+    }
+    
+    /**
+     * Version 1: the tables the application has always created at startup
+     */
+    private static void createCoreTables(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            // Users table
+            stmt.execute(
+                "CREATE TABLE IF NOT EXISTS users (" +
+                "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                "username TEXT NOT NULL UNIQUE," +
+                "password TEXT NOT NULL," +
+                "email TEXT NOT NULL UNIQUE," +
+                "full_name TEXT NOT NULL," +
+                "role TEXT," +
+                "profile_picture TEXT," +
+                "bio TEXT," +
+                "profile_image_data BLOB" +
+                ")"
+            );
+        
+            // Blog posts table with enhanced fields
+            stmt.execute(
+                "CREATE TABLE IF NOT EXISTS blog_posts (" +
+                "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                "title TEXT NOT NULL," +
+                "content TEXT NOT NULL," +
+                "user_id INTEGER NOT NULL," +
+                "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
+                "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
+                "status TEXT DEFAULT 'draft'," +
+                "tags TEXT," +
+                "view_count INTEGER DEFAULT 0," +
+                "comment_count INTEGER DEFAULT 0," +
+                "like_count INTEGER DEFAULT 0," +
+                "dislike_count INTEGER DEFAULT 0," +
+                "FOREIGN KEY (user_id) REFERENCES users(id)" +
+                ")"
+            );
+        
+            // Media table for blog post attachments
+            stmt.execute(
+                "CREATE TABLE IF NOT EXISTS media (" +
+                "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                "post_id INTEGER NOT NULL," +
+                "file_name TEXT NOT NULL," +
+                "file_type TEXT NOT NULL," +
+                "file_data BLOB," +
+                "file_path TEXT," +
+                "uploaded_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
+                "caption TEXT," +
+                "FOREIGN KEY (post_id) REFERENCES blog_posts(id) ON DELETE CASCADE" +
+                ")"
+            );
+        
+            // Comments table with support for threaded comments
+            stmt.execute(
+                "CREATE TABLE IF NOT EXISTS comments (" +
+                "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                "post_id INTEGER NOT NULL," +
+                "user_id INTEGER NOT NULL," +
+                "content TEXT NOT NULL," +
+                "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
+                "hidden BOOLEAN DEFAULT 0," +
+                "parent_id INTEGER," +
+                "FOREIGN KEY (post_id) REFERENCES blog_posts(id) ON DELETE CASCADE," +
+                "FOREIGN KEY (user_id) REFERENCES users(id)," +
+                "FOREIGN KEY (parent_id) REFERENCES comments(id) ON DELETE CASCADE" +
+                ")"
+            );
+        
+            // Likes table for tracking user reactions to posts
+            stmt.execute(
+                "CREATE TABLE IF NOT EXISTS likes (" +
+                "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                "post_id INTEGER NOT NULL," +
+                "user_id INTEGER NOT NULL," +
+                "is_like BOOLEAN NOT NULL," +  // true for like, false for dislike
+                "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
+                "FOREIGN KEY (post_id) REFERENCES blog_posts(id) ON DELETE CASCADE," +
+                "FOREIGN KEY (user_id) REFERENCES users(id)," +
+                "UNIQUE(post_id, user_id)" +  // Each user can only have one reaction per post
+                ")"
+            );
+        
+            // Sessions table for user login sessions
+            stmt.execute(
+                "CREATE TABLE IF NOT EXISTS sessions (" +
+                "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                "user_id INTEGER NOT NULL," +
+                "session_token TEXT NOT NULL UNIQUE," +
+                "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
+                "expires_at TIMESTAMP," +
+                "FOREIGN KEY (user_id) REFERENCES users(id)" +
+                ")"
+            );
+        }
+    }
+    
+    /**
+     * Version 2: databases created by older builds lack some columns that
+     * CREATE TABLE IF NOT EXISTS cannot add
+     */
+    private static void addMissingColumns(Connection conn) throws SQLException {
+        addColumnIfMissing(conn, "blog_posts", "view_count", "INTEGER DEFAULT 0");
+        addColumnIfMissing(conn, "blog_posts", "comment_count", "INTEGER DEFAULT 0");
+        addColumnIfMissing(conn, "blog_posts", "like_count", "INTEGER DEFAULT 0");
+        addColumnIfMissing(conn, "blog_posts", "dislike_count", "INTEGER DEFAULT 0");
+        addColumnIfMissing(conn, "comments", "hidden", "BOOLEAN DEFAULT 0");
+        addColumnIfMissing(conn, "comments", "parent_id", "INTEGER");
+    }
+    
+    /**
+     * Version 3: an index behind every DAO lookup, so none of them scans a table.
+     * Unique columns (users.username, users.email, sessions.session_token and
+     * likes(post_id, user_id)) are already indexed by their constraints.
+     */
+    private static void addIndexes(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            // Feeds: keyset pagination walks these from the cursor instead of sorting every post
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_blog_posts_feed ON blog_posts(status, created_at, id)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_blog_posts_user_feed ON blog_posts(user_id, created_at, id)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_blog_posts_popular ON blog_posts(status, view_count, created_at, id)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_blog_posts_created ON blog_posts(created_at, id)");
+            
+            // Comments by post in display order; also covers COUNT(*) per post
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_comments_post ON comments(post_id, created_at)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_comments_parent ON comments(parent_id)");
+            
+            // Covers the like/dislike counts per post
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_likes_post_reaction ON likes(post_id, is_like)");
+            
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_media_post ON media(post_id, id)");
+            
+            // Expired session cleanup
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_sessions_expires ON sessions(expires_at)");
+        }
+    }
+    
+    /**
+     * Version 4: DatabaseSetup used to create a second, conflicting posts schema
+     * (posts, post_media) that nothing reads. Drop it unless it holds data.
+     */
+    private static void dropLegacyTables(Connection conn) throws SQLException {
+        // post_media references posts, so it goes first
+        for (String table : new String[]{"post_media", "posts"}) {
+            if (!tableExists(conn, table)) {
+                continue;
+            }
+            
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + table)) {
+                if (rs.next() && rs.getInt(1) > 0) {
+                    System.err.println("Keeping legacy table " + table + " because it is not empty");
+                    continue;
+                }
+            }
+            
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("DROP TABLE " + table);
+            }
+        }
+    }
+    
+    /**
+     * Version 5: an FTS5 index over post titles, content and tags. It is an
+     * external-content table (the text lives only in blog_posts), kept in sync
+     * by triggers; the update trigger only fires when indexed columns change,
+     * so view count updates don't touch it.
+     */
+    private static void createSearchIndex(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            // prefix='2 3' keeps short prefix queries ("ja*") on an index
+            stmt.execute(
+                "CREATE VIRTUAL TABLE IF NOT EXISTS blog_posts_fts USING fts5(" +
+                "title, content, tags," +
+                "content='blog_posts', content_rowid='id'," +
+                "tokenize='unicode61 remove_diacritics 2', prefix='2 3'" +
+                ")"
+            );
+            
+            stmt.execute(
+                "CREATE TRIGGER IF NOT EXISTS blog_posts_fts_insert AFTER INSERT ON blog_posts BEGIN " +
+                "INSERT INTO blog_posts_fts(rowid, title, content, tags) VALUES (new.id, new.title, new.content, new.tags); " +
+                "END"
+            );
+            stmt.execute(
+                "CREATE TRIGGER IF NOT EXISTS blog_posts_fts_delete AFTER DELETE ON blog_posts BEGIN " +
+                "INSERT INTO blog_posts_fts(blog_posts_fts, rowid, title, content, tags) " +
+                "VALUES ('delete', old.id, old.title, old.content, old.tags); " +
+                "END"
+            );
+            stmt.execute(
+                "CREATE TRIGGER IF NOT EXISTS blog_posts_fts_update AFTER UPDATE OF title, content, tags ON blog_posts BEGIN " +
+                "INSERT INTO blog_posts_fts(blog_posts_fts, rowid, title, content, tags) " +
+                "VALUES ('delete', old.id, old.title, old.content, old.tags); " +
+                "INSERT INTO blog_posts_fts(rowid, title, content, tags) VALUES (new.id, new.title, new.content, new.tags); " +
+                "END"
+            );
+            
+            // Index the posts that already exist
+            stmt.execute("INSERT INTO blog_posts_fts(blog_posts_fts) VALUES ('rebuild')");
+        }
+    }
+    
+    /**
+     * Version 6: tags as rows instead of a comma-separated string, so a tag
+     * filter is an index lookup rather than a LIKE scan over every post. The
+     * blog_posts.tags column stays as the display copy; BlogPostDAO keeps both
+     * in step on create and update. Existing posts are backfilled here.
+     */
+    private static void createTagTables(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(
+                "CREATE TABLE IF NOT EXISTS tags (" +
+                "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                "name TEXT NOT NULL UNIQUE COLLATE NOCASE" +
+                ")"
+            );
+            stmt.execute(
+                "CREATE TABLE IF NOT EXISTS post_tags (" +
+                "post_id INTEGER NOT NULL," +
+                "tag_id INTEGER NOT NULL," +
+                "PRIMARY KEY (post_id, tag_id)" +
+                ") WITHOUT ROWID"
+            );
+            
+            // Tag filter and tag counts go from tag to posts
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_post_tags_tag ON post_tags(tag_id, post_id)");
+            
+            stmt.execute(
+                "CREATE TRIGGER IF NOT EXISTS blog_posts_tags_delete AFTER DELETE ON blog_posts BEGIN " +
+                "DELETE FROM post_tags WHERE post_id = old.id; " +
+                "END"
+            );
+        }
+        
+        try (Statement select = conn.createStatement();
+             ResultSet rs = select.executeQuery("SELECT id, tags FROM blog_posts WHERE tags IS NOT NULL AND tags <> ''");
+             PreparedStatement insertTag = conn.prepareStatement(
+                 "INSERT INTO tags (name) VALUES (?) ON CONFLICT(name) DO NOTHING");
+             PreparedStatement link = conn.prepareStatement(
+                 "INSERT OR IGNORE INTO post_tags (post_id, tag_id) SELECT ?, id FROM tags WHERE name = ?")) {
+            
+            while (rs.next()) {
+                int postId = rs.getInt("id");
+                for (String name : BlogPost.parseTags(rs.getString("tags"))) {
+                    insertTag.setString(1, name);
+                    insertTag.executeUpdate();
+                    link.setInt(1, postId);
+                    link.setString(2, name);
+                    link.executeUpdate();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Version 7: keep blog_posts.like_count, dislike_count and comment_count
+     * up to date from triggers, so every write path (including ON CONFLICT
+     * updates and cascading deletes) adjusts them in its own transaction and
+     * reads never count rows. Existing posts are recounted here;
+     * CounterReconciler repairs any later drift.
+     */
+    private static void createCounterTriggers(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(
+                "CREATE TRIGGER IF NOT EXISTS likes_count_insert AFTER INSERT ON likes BEGIN " +
+                "UPDATE blog_posts SET like_count = like_count + (new.is_like = 1), " +
+                "dislike_count = dislike_count + (new.is_like = 0) WHERE id = new.post_id; " +
+                "END"
+            );
+            stmt.execute(
+                "CREATE TRIGGER IF NOT EXISTS likes_count_delete AFTER DELETE ON likes BEGIN " +
+                "UPDATE blog_posts SET like_count = like_count - (old.is_like = 1), " +
+                "dislike_count = dislike_count - (old.is_like = 0) WHERE id = old.post_id; " +
+                "END"
+            );
+            stmt.execute(
+                "CREATE TRIGGER IF NOT EXISTS likes_count_update AFTER UPDATE OF post_id, is_like ON likes BEGIN " +
+                "UPDATE blog_posts SET like_count = like_count - (old.is_like = 1), " +
+                "dislike_count = dislike_count - (old.is_like = 0) WHERE id = old.post_id; " +
+                "UPDATE blog_posts SET like_count = like_count + (new.is_like = 1), " +
+                "dislike_count = dislike_count + (new.is_like = 0) WHERE id = new.post_id; " +
+                "END"
+            );
+            stmt.execute(
+                "CREATE TRIGGER IF NOT EXISTS comments_count_insert AFTER INSERT ON comments BEGIN " +
+                "UPDATE blog_posts SET comment_count = comment_count + 1 WHERE id = new.post_id; " +
+                "END"
+            );
+            stmt.execute(
+                "CREATE TRIGGER IF NOT EXISTS comments_count_delete AFTER DELETE ON comments BEGIN " +
+                "UPDATE blog_posts SET comment_count = comment_count - 1 WHERE id = old.post_id; " +
+                "END"
+            );
+            stmt.execute(
+                "CREATE TRIGGER IF NOT EXISTS comments_count_update AFTER UPDATE OF post_id ON comments BEGIN " +
+                "UPDATE blog_posts SET comment_count = comment_count - 1 WHERE id = old.post_id; " +
+                "UPDATE blog_posts SET comment_count = comment_count + 1 WHERE id = new.post_id; " +
+                "END"
+            );
+        }
+        
+        CounterReconciler.reconcile(conn);
+    }
+    
+    /**
+     * Version 8: signed session tokens carry their own user and expiry, so
+     * they need no sessions row; logging out before expiry records the token's
+     * id here instead. Rows are only needed until the token would have
+     * expired, and the session sweeper deletes them after that.
+     */
+    private static void createRevokedTokens(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(
+                "CREATE TABLE IF NOT EXISTS revoked_tokens (" +
+                "token_id INTEGER PRIMARY KEY," +
+                "expires_at TIMESTAMP NOT NULL" +
+                ")"
+            );
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_revoked_tokens_expires ON revoked_tokens(expires_at)");
+        }
+    }
+    
+    private static void addColumnIfMissing(Connection conn, String table, String column, String definition)
+            throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + table + ")")) {
+                while (rs.next()) {
+                    if (column.equalsIgnoreCase(rs.getString("name"))) {
+                        return;
+                    }
+                }
+            }
+            stmt.execute("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+        }
+    }
+    
+    private static boolean tableExists(Connection conn, String table) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?")) {
+            pstmt.setString(1, table);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+    
+    /**
+     * A schema change applied inside the migration's transaction
+     */
+    @FunctionalInterface
+    private interface MigrationStep {
+        void apply(Connection conn) throws SQLException;
+    }
+    
+    private static class Migration {
+        final int version;
+        final String description;
+        final MigrationStep step;
+        
+        Migration(int version, String description, MigrationStep step) {
+            this.version = version;
+            this.description = description;
+            this.step = step;
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.blog.util;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -8,23 +11,86 @@ import java.sql.Timestamp;
 import java.util.Date;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Manages user sessions for the application
  * Implemented as a singleton to ensure consistent session management
+ *
+ * Live sessions are held in a ConcurrentHashMap keyed by token, loaded from
+ * the sessions table once and kept in step by createSession and
+ * invalidateSession, so validating a token is a map lookup that never
+ * touches SQLite. Expiry is tracked with a {@link HashedTimingWheel}: a
+ * background sweeper advances it every tick to evict expired sessions from
+ * the map, and deletes expired rows from the table in small batches.
+ *
+ * With blog.sessions.mode=signed, new sessions are instead
+ * {@link SignedSessionTokens}: the token carries the user id and expiry
+ * under an HMAC, so it is checked without any lookup at all. Logging out
+ * before expiry records the token's id in the revoked_tokens table and an
+ * in-memory set, which the same wheel and sweeper empty as tokens expire.
+ * The signing key is rotated every blog.sessions.keyRotationMs.
+ *
+ * The map assumes this process is the only one writing the sessions table.
  */
 public class SessionManager {
     // Singleton instance
     private static SessionManager instance;
     
     // Session expiration time in milliseconds (24 hours)
-    private static final long SESSION_EXPIRATION = 24 * 60 * 60 * 1000;
+    private static final long SESSION_EXPIRATION = Long.getLong("blog.sessions.expirationMs", 24 * 60 * 60 * 1000L);
+    
+    // Expiry wheel tick and size: one-second ticks, a turn of about 8.5 minutes
+    private static final long WHEEL_TICK_MS = Long.getLong("blog.sessions.wheelTickMs", 1_000L);
+    private static final int WHEEL_BUCKETS = Integer.getInteger("blog.sessions.wheelBuckets", 512);
+    // How often expired rows are deleted, and how many per statement; 0 disables the sweeper
+    private static final long SWEEP_INTERVAL_MS = Long.getLong("blog.sessions.sweepIntervalMs", 60_000L);
+    private static final int SWEEP_BATCH_SIZE = Integer.getInteger("blog.sessions.sweepBatchSize", 500);
+    
+    // "database" for random tokens stored in the sessions table, "signed" for signed tokens
+    private static final boolean SIGNED_MODE = "signed".equalsIgnoreCase(System.getProperty("blog.sessions.mode", "database"));
+    private static final String KEY_FILE = System.getProperty("blog.sessions.keyFile", "session-keys.properties");
+    // How long a signing key signs new tokens (7 days); 0 disables rotation
+    private static final long KEY_ROTATION_MS = Long.getLong("blog.sessions.keyRotationMs", 7 * 24 * 60 * 60 * 1000L);
+    
+    private final ConcurrentHashMap<String, CachedSession> sessions = new ConcurrentHashMap<>();
+    private final HashedTimingWheel<CachedSession> expiryWheel =
+        new HashedTimingWheel<>(WHEEL_TICK_MS, WHEEL_BUCKETS, System.currentTimeMillis());
+    // Set once the table's live sessions are in the map
+    private volatile boolean loaded = false;
+    // Set when a session expired, so the next sweep has rows to delete
+    private volatile boolean sweepPending = true;
+    private ScheduledExecutorService sweeper;
+    
+    // Null unless signed tokens are enabled or were issued before
+    private final SignedSessionTokens signedTokens;
+    // Ids of signed tokens logged out before expiry, mapped to their expiry
+    private final ConcurrentHashMap<Long, Long> revokedTokens = new ConcurrentHashMap<>();
+    private final HashedTimingWheel<Long> revocationWheel =
+        new HashedTimingWheel<>(WHEEL_TICK_MS, WHEEL_BUCKETS, System.currentTimeMillis());
+    
+    // Statistics, for diagnostics
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder swept = new LongAdder();
+    private volatile String lastSweep = "not run yet";
     
     /**
      * Private constructor for Singleton pattern
      */
     private SessionManager() {
-        // Private constructor
+        // Keep verifying signed tokens already issued after switching back to database mode
+        Path keyFile = Paths.get(KEY_FILE);
+        if (SIGNED_MODE || Files.exists(keyFile)) {
+            signedTokens = SignedSessionTokens.open(keyFile, SESSION_EXPIRATION);
+        } else {
+            signedTokens = null;
+        }
     }
     
     /**
@@ -34,19 +100,64 @@ public class SessionManager {
     public static synchronized SessionManager getInstance() {
         if (instance == null) {
             instance = new SessionManager();
+            instance.startSweeper();
         }
         return instance;
     }
     
+    /**
+     * Start the background task that expires cached sessions every wheel tick
+     * and deletes expired rows every sweep interval
+     */
+    private synchronized void startSweeper() {
+        if (sweeper != null || SWEEP_INTERVAL_MS <= 0) {
+            return;
+        }
+        
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "session-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::expireCachedSessions, WHEEL_TICK_MS, WHEEL_TICK_MS, TimeUnit.MILLISECONDS);
+        sweeper.scheduleWithFixedDelay(() -> {
+            if (loaded && sweepPending) {
+                cleanupExpiredSessions();
+            }
+            if (SIGNED_MODE && signedTokens != null) {
+                signedTokens.rotateIfOlderThan(KEY_ROTATION_MS);
+            }
+        }, SWEEP_INTERVAL_MS, SWEEP_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Start a session for a user in the configured mode
+     *
+     * @param userId The user ID
+     * @return the session token, or null if the session couldn't be created
+     */
+    public String issueSession(int userId) {
+        // Falls back to a database session if the key file couldn't be loaded
+        if (SIGNED_MODE && signedTokens != null) {
+            // Load the revocations now rather than on the first check
+            ensureLoaded();
+            return signedTokens.issue(userId, System.currentTimeMillis() + SESSION_EXPIRATION);
+        }
+        
+        String sessionToken = generateSessionToken();
+        return createSession(userId, sessionToken) ? sessionToken : null;
+    }
+    
     /**
      * Create a new session for a user
-     * 
+     *
      * @param userId The user ID
      * @param sessionToken The session token
      * @return true if session was created successfully
      */
     public boolean createSession(int userId, String sessionToken) {
         String sql = "INSERT INTO sessions (user_id, session_token, expires_at) VALUES (?, ?, ?)";
+        ensureLoaded();
         
         Connection conn = null;
         PreparedStatement pstmt = null;
@@ -63,30 +174,118 @@ public class SessionManager {
             pstmt.setTimestamp(3, expiresAt);
             
             int affectedRows = pstmt.executeUpdate();
-            return affectedRows > 0;
-            
+            if (affectedRows > 0) {
+                cache(sessionToken, userId, expiresAt.getTime());
+                return true;
+            }
+            return false;
+        
         } catch (SQLException e) {
             System.err.println("Error creating session: " + e.getMessage());
             return false;
         } finally {
-            closeResources(pstmt);
+            closeResources(conn, pstmt, null);
         }
     }
     
     /**
-     * Validate a session token and return the associated user ID
-     * 
+     * Validate a session token and return the associated user ID. Answered
+     * from the session map; SQLite is only read if the map couldn't be loaded.
+     *
      * @param sessionToken The session token to validate
      * @return Optional containing the user ID if session is valid, empty otherwise
      */
     public Optional<Integer> validateSession(String sessionToken) {
+        if (sessionToken == null) {
+            return Optional.empty();
+        }
+        if (SignedSessionTokens.isSignedToken(sessionToken)) {
+            return validateSignedToken(sessionToken);
+        }
+        if (!ensureLoaded()) {
+            return validateFromDatabase(sessionToken);
+        }
+        
+        CachedSession session = sessions.get(sessionToken);
+        if (session == null) {
+            rejected.increment();
+            return Optional.empty();
+        }
+        
+        // The wheel evicts within a tick of expiry; don't honour a session in that gap
+        if (System.currentTimeMillis() >= session.expiresAt) {
+            evict(session);
+            expired.increment();
+            sweepPending = true;
+            rejected.increment();
+            return Optional.empty();
+        }
+        
+        hits.increment();
+        return Optional.of(session.userId);
+    }
+    
+    /**
+     * Check a signed token's signature, expiry and revocation; no SQL unless
+     * the revocations couldn't be loaded
+     */
+    private Optional<Integer> validateSignedToken(String sessionToken) {
+        SignedSessionTokens.Claims claims = signedTokens == null ? null : signedTokens.verify(sessionToken);
+        if (claims == null || System.currentTimeMillis() >= claims.getExpiresAt()) {
+            rejected.increment();
+            return Optional.empty();
+        }
+        
+        boolean revoked = ensureLoaded()
+            ? revokedTokens.containsKey(claims.getTokenId())
+            : isRevokedInDatabase(claims.getTokenId());
+        if (revoked) {
+            rejected.increment();
+            return Optional.empty();
+        }
+        
+        hits.increment();
+        return Optional.of(claims.getUserId());
+    }
+    
+    /**
+     * Look a signed token's id up in revoked_tokens, for when the revocations
+     * couldn't be loaded. Treats the token as revoked if the lookup fails.
+     */
+    private boolean isRevokedInDatabase(long tokenId) {
+        String sql = "SELECT 1 FROM revoked_tokens WHERE token_id = ?";
+        
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            conn = DatabaseUtil.getReadConnection();
+            pstmt = conn.prepareStatement(sql);
+            
+            pstmt.setLong(1, tokenId);
+            
+            rs = pstmt.executeQuery();
+            return rs.next();
+        
+        } catch (SQLException e) {
+            System.err.println("Error checking revoked tokens: " + e.getMessage());
+            return true;
+        } finally {
+            closeResources(conn, pstmt, rs);
+        }
+    }
+    
+    /**
+     * Look a token up in the sessions table, for when the map couldn't be loaded
+     */
+    private Optional<Integer> validateFromDatabase(String sessionToken) {
         String sql = "SELECT user_id, expires_at FROM sessions WHERE session_token = ?";
         
         Connection conn = null;
         PreparedStatement pstmt = null;
         ResultSet rs = null;
         try {
-            conn = DatabaseUtil.getConnection();
+            conn = DatabaseUtil.getReadConnection();
             pstmt = conn.prepareStatement(sql);
             
             pstmt.setString(1, sessionToken);
@@ -94,37 +293,39 @@ public class SessionManager {
             rs = pstmt.executeQuery();
             if (rs.next()) {
                 Timestamp expiresAt = rs.getTimestamp("expires_at");
-                Date now = new Date();
                 
-                // Check if session has expired
-                if (now.after(expiresAt)) {
-                    // Session has expired, remove it
-                    invalidateSession(sessionToken);
-                    return Optional.empty();
+                // Expired rows are left for the sweeper
+                if (new Date().before(expiresAt)) {
+                    return Optional.of(rs.getInt("user_id"));
                 }
-                
-                // Session is valid
-                int userId = rs.getInt("user_id");
-                return Optional.of(userId);
             }
-            
+        
         } catch (SQLException e) {
             System.err.println("Error validating session: " + e.getMessage());
         } finally {
-            closeResources(pstmt, rs);
+            closeResources(conn, pstmt, rs);
         }
         
         return Optional.empty();
     }
     
     /**
-     * Invalidate a session token
-     * 
+     * Invalidate a session token. The session leaves the map before the row
+     * is deleted, so it stops validating at once.
+     *
      * @param sessionToken The session token to invalidate
      * @return true if session was invalidated successfully
      */
     public boolean invalidateSession(String sessionToken) {
         String sql = "DELETE FROM sessions WHERE session_token = ?";
+        if (SignedSessionTokens.isSignedToken(sessionToken)) {
+            return revokeSignedToken(sessionToken);
+        }
+        
+        CachedSession session = sessions.get(sessionToken);
+        if (session != null) {
+            evict(session);
+        }
         
         Connection conn = null;
         PreparedStatement pstmt = null;
@@ -136,15 +337,61 @@ public class SessionManager {
             
             int affectedRows = pstmt.executeUpdate();
             return affectedRows > 0;
-            
+        
         } catch (SQLException e) {
             System.err.println("Error invalidating session: " + e.getMessage());
             return false;
         } finally {
-            closeResources(pstmt);
+            closeResources(conn, pstmt, null);
+        }
+    }
+    
+    /**
+     * Revoke a signed token until it expires. It joins the in-memory set
+     * before the row is written, so it stops validating at once.
+     */
+    private boolean revokeSignedToken(String sessionToken) {
+        String sql = "INSERT OR IGNORE INTO revoked_tokens (token_id, expires_at) VALUES (?, ?)";
+        
+        SignedSessionTokens.Claims claims = signedTokens == null ? null : signedTokens.verify(sessionToken);
+        if (claims == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() >= claims.getExpiresAt()) {
+            return true; // Already expired; nothing to remember
+        }
+        ensureLoaded();
+        revoke(claims.getTokenId(), claims.getExpiresAt());
+        
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        try {
+            conn = DatabaseUtil.getConnection();
+            pstmt = conn.prepareStatement(sql);
+            
+            pstmt.setLong(1, claims.getTokenId());
+            pstmt.setTimestamp(2, new Timestamp(claims.getExpiresAt()));
+            
+            pstmt.executeUpdate();
+            return true;
+        
+        } catch (SQLException e) {
+            System.err.println("Error revoking session: " + e.getMessage());
+            return false;
+        } finally {
+            closeResources(conn, pstmt, null);
         }
     }
     
+    /**
+     * Make a new key sign new tokens; tokens signed with the old one stay valid
+     *
+     * @return false if signed tokens aren't enabled or the key file couldn't be written
+     */
+    public boolean rotateSigningKey() {
+        return signedTokens != null && signedTokens.rotateKey() >= 0;
+    }
+    
     /**
      * Generate a new session token
      */
@@ -153,39 +400,176 @@ public class SessionManager {
     }
     
     /**
-     * Clean up expired sessions
+     * Clean up expired sessions and revocations, deleting at most
+     * SWEEP_BATCH_SIZE rows per statement so the writer is never held for
+     * long. Run by the sweeper.
+     *
+     * @return the number of rows deleted, or -1 on error
      */
-    public void cleanupExpiredSessions() {
-        String sql = "DELETE FROM sessions WHERE expires_at < ?";
+    public int cleanupExpiredSessions() {
+        String[] sweeps = {
+            "DELETE FROM sessions WHERE id IN " +
+            "(SELECT id FROM sessions WHERE expires_at < ? LIMIT ?)",
+            "DELETE FROM revoked_tokens WHERE token_id IN " +
+            "(SELECT token_id FROM revoked_tokens WHERE expires_at < ? LIMIT ?)"
+        };
         
+        // Clear the flag first; an expiry during the sweep sets it again
+        sweepPending = false;
+        int deleted = 0;
+        int batches = 0;
         Connection conn = null;
         PreparedStatement pstmt = null;
         try {
-            conn = DatabaseUtil.getConnection();
-            pstmt = conn.prepareStatement(sql);
-            
-            pstmt.setTimestamp(1, new Timestamp(System.currentTimeMillis()));
-            
-            pstmt.executeUpdate();
+            Timestamp now = new Timestamp(System.currentTimeMillis());
+            for (String sql : sweeps) {
+                int batch;
+                do {
+                    conn = DatabaseUtil.getConnection();
+                    pstmt = conn.prepareStatement(sql);
+                    
+                    pstmt.setTimestamp(1, now);
+                    pstmt.setInt(2, SWEEP_BATCH_SIZE);
+                    
+                    batch = pstmt.executeUpdate();
+                    deleted += batch;
+                    batches++;
+                    
+                    // Release the writer between batches
+                    closeResources(conn, pstmt, null);
+                    conn = null;
+                    pstmt = null;
+                } while (batch == SWEEP_BATCH_SIZE);
+            }
             
+            swept.add(deleted);
+            lastSweep = "deleted " + deleted + " rows in " + batches + " batches at " + new Date();
+            return deleted;
+        
         } catch (SQLException e) {
+            sweepPending = true;
+            lastSweep = "failed: " + e.getMessage();
             System.err.println("Error cleaning up expired sessions: " + e.getMessage());
+            return -1;
         } finally {
-            closeResources(pstmt);
+            closeResources(conn, pstmt, null);
         }
     }
     
     /**
-     * Close database resources
+     * Evict the sessions and revocations whose wheel tick has passed; run
+     * every tick by the sweeper
      */
-    private void closeResources(PreparedStatement stmt) {
-        closeResources(stmt, null);
+    private void expireCachedSessions() {
+        long now = System.currentTimeMillis();
+        int count = expiryWheel.advance(now, session -> sessions.remove(session.token, session));
+        count += revocationWheel.advance(now, tokenId -> revokedTokens.remove(tokenId));
+        if (count > 0) {
+            expired.add(count);
+            sweepPending = true;
+        }
+    }
+    
+    /**
+     * Load every unexpired session and revocation into memory, once
+     *
+     * @return true if memory holds the live sessions and revocations
+     */
+    private boolean ensureLoaded() {
+        if (loaded) {
+            return true;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return true;
+            }
+            
+            String sql = "SELECT user_id, session_token, expires_at FROM sessions WHERE expires_at > ?";
+            String revokedSql = "SELECT token_id, expires_at FROM revoked_tokens WHERE expires_at > ?";
+            Connection conn = null;
+            PreparedStatement pstmt = null;
+            ResultSet rs = null;
+            try {
+                conn = DatabaseUtil.getReadConnection();
+                pstmt = conn.prepareStatement(sql);
+                
+                Timestamp now = new Timestamp(System.currentTimeMillis());
+                pstmt.setTimestamp(1, now);
+                
+                rs = pstmt.executeQuery();
+                while (rs.next()) {
+                    cache(rs.getString("session_token"), rs.getInt("user_id"), rs.getTimestamp("expires_at").getTime());
+                }
+                rs.close();
+                pstmt.close();
+                
+                pstmt = conn.prepareStatement(revokedSql);
+                pstmt.setTimestamp(1, now);
+                
+                rs = pstmt.executeQuery();
+                while (rs.next()) {
+                    revoke(rs.getLong("token_id"), rs.getTimestamp("expires_at").getTime());
+                }
+                loaded = true;
+            
+            } catch (SQLException e) {
+                System.err.println("Error loading sessions: " + e.getMessage());
+            } finally {
+                closeResources(conn, pstmt, rs);
+            }
+            return loaded;
+        }
+    }
+    
+    private void cache(String token, int userId, long expiresAt) {
+        CachedSession session = new CachedSession(token, userId, expiresAt);
+        session.timeout = expiryWheel.schedule(session, expiresAt);
+        CachedSession previous = sessions.put(token, session);
+        if (previous != null) {
+            expiryWheel.cancel(previous.timeout);
+        }
+    }
+    
+    private void evict(CachedSession session) {
+        if (sessions.remove(session.token, session)) {
+            expiryWheel.cancel(session.timeout);
+        }
+    }
+    
+    private void revoke(long tokenId, long expiresAt) {
+        if (revokedTokens.putIfAbsent(tokenId, expiresAt) == null) {
+            revocationWheel.schedule(tokenId, expiresAt);
+        }
+    }
+    
+    /**
+     * Number of live sessions held in memory
+     */
+    public int getCachedSessionCount() {
+        return sessions.size();
+    }
+    
+    /**
+     * Number of signed tokens revoked and not yet expired
+     */
+    public int getRevokedTokenCount() {
+        return revokedTokens.size();
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("%d sessions cached (%d scheduled to expire), hits %d, rejected %d, expired %d, " +
+            "rows swept %d, last sweep: %s", sessions.size(), expiryWheel.size(), hits.sum(), rejected.sum(),
+            expired.sum(), swept.sum(), lastSweep) +
+            (signedTokens == null ? ", signed tokens off"
+                : ", signed tokens " + (SIGNED_MODE ? "issued" : "verified only") + " with " + signedTokens +
+                  ", " + revokedTokens.size() + " revoked");
     }
     
     /**
      * Close database resources
      */
-    private void closeResources(PreparedStatement stmt, ResultSet rs) {
+    private void closeResources(Connection conn, PreparedStatement stmt, ResultSet rs) {
         try {
             if (rs != null) {
                 rs.close();
@@ -193,6 +577,9 @@ public class SessionManager {
             if (stmt != null) {
                 stmt.close();
             }
+            if (conn != null) {
+                conn.close(); // Returns the lease to the pool
+            }
         } catch (SQLException e) {
             System.err.println("Error closing resources: " + e.getMessage());
         }
@@ -202,4 +589,20 @@ public class SessionManager {
     protected static void resetInstance() {
         instance = null;
     }
-} 
\ No newline at end of file
+    
+    /**
+     * A live session, with its handle in the expiry wheel
+     */
+    private static class CachedSession {
+        final String token;
+        final int userId;
+        final long expiresAt;
+        HashedTimingWheel.Timeout<CachedSession> timeout;
+        
+        CachedSession(String token, int userId, long expiresAt) {
+            this.token = token;
+            this.userId = userId;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package com.blog.util;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Stateless session tokens: the token itself carries the user id, a random
+ * token id and the expiry, signed with HMAC-SHA256 under a key kept in a
+ * local file, so checking one needs no database at all.
+ *
+ * A token is "s1." + base64url(payload) + "." + base64url(mac), where the
+ * payload is key id, user id, token id and expiry (24 bytes) and the mac
+ * covers everything before the last dot. The key id lets keys be rotated:
+ * a new key signs new tokens, while retired keys still verify the tokens
+ * they signed until those have all expired, and are then dropped from the
+ * key file.
+ *
+ * Expiry and revocation are left to {@link SessionManager}; verify only
+ * checks that a token is well formed and was signed by a known key.
+ */
+public class SignedSessionTokens {
+    private static final String PREFIX = "s1.";
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int KEY_BYTES = 32;
+    private static final int PAYLOAD_BYTES = 4 + 4 + 8 + 8;
+    private static final int MAC_BYTES = 32;
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+    
+    private final Path keyFile;
+    private final long maxTokenAgeMillis;
+    private final SecureRandom random = new SecureRandom();
+    // Replaced as a whole on rotation, so verification reads them without locking
+    private volatile Map<Integer, SigningKey> keys;
+    private volatile SigningKey current;
+    
+    private SignedSessionTokens(Path keyFile, long maxTokenAgeMillis) {
+        this.keyFile = keyFile;
+        this.maxTokenAgeMillis = maxTokenAgeMillis;
+    }
+    
+    /**
+     * Load the signing keys from a key file, creating it with a first key if
+     * it doesn't exist yet
+     * @param maxTokenAgeMillis longest a token stays valid; retired keys are kept this long
+     * @return the token signer, or null if the key file couldn't be read or written
+     */
+    public static SignedSessionTokens open(Path keyFile, long maxTokenAgeMillis) {
+        SignedSessionTokens tokens = new SignedSessionTokens(keyFile, maxTokenAgeMillis);
+        try {
+            tokens.load();
+            return tokens;
+        } catch (IOException | GeneralSecurityException | IllegalArgumentException e) {
+            System.err.println("Error loading session signing keys from " + keyFile + ": " + e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Whether a token is in the signed format, as opposed to a random session id
+     */
+    public static boolean isSignedToken(String token) {
+        return token != null && token.startsWith(PREFIX);
+    }
+    
+    /**
+     * Issue a token for a user, signed with the current key
+     */
+    public String issue(int userId, long expiresAt) {
+        SigningKey key = current;
+        long tokenId;
+        do {
+            tokenId = random.nextLong();
+        } while (tokenId == 0);
+        
+        ByteBuffer payload = ByteBuffer.allocate(PAYLOAD_BYTES);
+        payload.putInt(key.id).putInt(userId).putLong(tokenId).putLong(expiresAt);
+        String signed = PREFIX + ENCODER.encodeToString(payload.array());
+        return signed + "." + ENCODER.encodeToString(key.sign(signed));
+    }
+    
+    /**
+     * Check a token's format and signature
+     * @return the token's claims, or null if it is malformed, its key is
+     *         unknown, or the signature doesn't match
+     */
+    public Claims verify(String token) {
+        if (!isSignedToken(token)) {
+            return null;
+        }
+        int dot = token.lastIndexOf('.');
+        if (dot <= PREFIX.length()) {
+            return null;
+        }
+        
+        byte[] payload;
+        byte[] mac;
+        try {
+            payload = DECODER.decode(token.substring(PREFIX.length(), dot));
+            mac = DECODER.decode(token.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (payload.length != PAYLOAD_BYTES || mac.length != MAC_BYTES) {
+            return null;
+        }
+        
+        ByteBuffer claims = ByteBuffer.wrap(payload);
+        SigningKey key = keys.get(claims.getInt());
+        if (key == null) {
+            return null; // Signed with a key that has since been dropped, or never existed
+        }
+        // Constant-time comparison, so timing doesn't reveal how much of a forged mac matched
+        if (!MessageDigest.isEqual(mac, key.sign(token.substring(0, dot)))) {
+            return null;
+        }
+        return new Claims(key.id, claims.getInt(), claims.getLong(), claims.getLong());
+    }
+    
+    /**
+     * Make a new key current. The previous key keeps verifying its tokens
+     * until they have all expired.
+     * @return the new key's id, or -1 if the key file couldn't be written
+     */
+    public synchronized int rotateKey() {
+        long now = System.currentTimeMillis();
+        Map<Integer, SigningKey> rotated = new HashMap<>();
+        for (SigningKey key : keys.values()) {
+            // Drop keys whose tokens have all expired
+            if (key.retiredAt == 0 || now - key.retiredAt <= maxTokenAgeMillis) {
+                rotated.put(key.id, key == current ? key.retire(now) : key);
+            }
+        }
+        try {
+            SigningKey created = newKey(current.id + 1, now);
+            rotated.put(created.id, created);
+            save(rotated, created);
+            keys = Collections.unmodifiableMap(rotated);
+            current = created;
+            return created.id;
+        } catch (IOException | GeneralSecurityException e) {
+            System.err.println("Error rotating session signing key: " + e.getMessage());
+            return -1;
+        }
+    }
+    
+    /**
+     * Rotate the key if the current one is older than maxKeyAgeMillis
+     * @return true if the key was rotated
+     */
+    public boolean rotateIfOlderThan(long maxKeyAgeMillis) {
+        if (maxKeyAgeMillis <= 0 || System.currentTimeMillis() - current.createdAt < maxKeyAgeMillis) {
+            return false;
+        }
+        return rotateKey() >= 0;
+    }
+    
+    public int getCurrentKeyId() {
+        return current.id;
+    }
+    
+    @Override
+    public String toString() {
+        return "signing key " + current.id + " since " + new Date(current.createdAt) +
+               ", " + keys.size() + " keys verifying, key file " + keyFile;
+    }
+    
+    private synchronized void load() throws IOException, GeneralSecurityException {
+        long now = System.currentTimeMillis();
+        Map<Integer, SigningKey> loaded = new HashMap<>();
+        SigningKey loadedCurrent = null;
+        
+        if (Files.exists(keyFile)) {
+            Properties properties = new Properties();
+            try (InputStream in = Files.newInputStream(keyFile)) {
+                properties.load(in);
+            }
+            int currentId = Integer.parseInt(properties.getProperty("current", "0"));
+            for (String name : properties.stringPropertyNames()) {
+                if (!name.startsWith("key.")) {
+                    continue;
+                }
+                int id = Integer.parseInt(name.substring("key.".length()));
+                long retiredAt = Long.parseLong(properties.getProperty("retired." + id, "0"));
+                // Every token this key signed has expired
+                if (id != currentId && retiredAt > 0 && now - retiredAt > maxTokenAgeMillis) {
+                    continue;
+                }
+                SigningKey key = new SigningKey(id, Base64.getDecoder().decode(properties.getProperty(name)),
+                    Long.parseLong(properties.getProperty("created." + id, "0")), retiredAt);
+                loaded.put(id, key);
+                if (id == currentId) {
+                    loadedCurrent = key;
+                }
+            }
+        }
+        
+        if (loadedCurrent == null) {
+            int nextId = loaded.keySet().stream().mapToInt(Integer::intValue).max().orElse(0) + 1;
+            loadedCurrent = newKey(nextId, now);
+            loaded.put(loadedCurrent.id, loadedCurrent);
+        }
+        // Write back, which also drops keys pruned above
+        save(loaded, loadedCurrent);
+        keys = Collections.unmodifiableMap(loaded);
+        current = loadedCurrent;
+    }
+    
+    private SigningKey newKey(int id, long now) throws GeneralSecurityException {
+        byte[] secret = new byte[KEY_BYTES];
+        random.nextBytes(secret);
+        return new SigningKey(id, secret, now, 0);
+    }
+    
+    /**
+     * Write the keys to a temporary file readable only by the owner, then
+     * move it over the key file, so a crash never leaves a partial file
+     */
+    private void save(Map<Integer, SigningKey> toSave, SigningKey currentKey) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("current", String.valueOf(currentKey.id));
+        for (SigningKey key : toSave.values()) {
+            properties.setProperty("key." + key.id, Base64.getEncoder().encodeToString(key.secret));
+            properties.setProperty("created." + key.id, String.valueOf(key.createdAt));
+            if (key.retiredAt > 0) {
+                properties.setProperty("retired." + key.id, String.valueOf(key.retiredAt));
+            }
+        }
+        
+        Path directory = keyFile.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, keyFile.getFileName().toString(), ".tmp");
+        try {
+            try {
+                Files.setPosixFilePermissions(temp, PosixFilePermissions.fromString("rw-------"));
+            } catch (UnsupportedOperationException e) {
+                // Not a POSIX file system; rely on the directory's permissions
+            }
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                properties.store(out, "Session token signing keys - keep private");
+            }
+            Files.move(temp, keyFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+    
+    /**
+     * What a verified token says
+     */
+    public static final class Claims {
+        private final int keyId;
+        private final int userId;
+        private final long tokenId;
+        private final long expiresAt;
+        
+        Claims(int keyId, int userId, long tokenId, long expiresAt) {
+            this.keyId = keyId;
+            this.userId = userId;
+            this.tokenId = tokenId;
+            this.expiresAt = expiresAt;
+        }
+        
+        public int getKeyId() {
+            return keyId;
+        }
+        
+        public int getUserId() {
+            return userId;
+        }
+        
+        /**
+         * Random id of this token, recorded when it is revoked
+         */
+        public long getTokenId() {
+            return tokenId;
+        }
+        
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+    }
+    
+    /**
+     * One signing key, with a Mac per thread since Mac instances aren't thread-safe
+     */
+    private static final class SigningKey {
+        final int id;
+        final byte[] secret;
+        final long createdAt;
+        final long retiredAt;
+        final SecretKeySpec spec;
+        final ThreadLocal<Mac> macs;
+        
+        SigningKey(int id, byte[] secret, long createdAt, long retiredAt) throws GeneralSecurityException {
+            this.id = id;
+            this.secret = secret;
+            this.createdAt = createdAt;
+            this.retiredAt = retiredAt;
+            this.spec = new SecretKeySpec(secret, ALGORITHM);
+            // Fail now rather than on the first token if the algorithm is unavailable
+            Mac.getInstance(ALGORITHM).init(spec);
+            this.macs = ThreadLocal.withInitial(() -> {
+                try {
+                    Mac mac = Mac.getInstance(ALGORITHM);
+                    mac.init(spec);
+                    return mac;
+                } catch (GeneralSecurityException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        }
+        
+        SigningKey retire(long now) {
+            try {
+                return new SigningKey(id, secret, createdAt, now);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        
+        byte[] sign(String text) {
+            return macs.get().doFinal(text.getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.blog.util;
+
+/**
+ * Approximate top-K counts by int key with the Space-Saving algorithm, in a
+ * fixed number of counters however many distinct keys are offered.
+ *
+ * The counters form a min-heap by count. A key that already has a counter
+ * adds to it; a new key takes a free counter, or else replaces the key with
+ * the smallest count, inheriting that count as its error. A key's reported
+ * count is therefore never below its true count and at most its error above
+ * it, and any key without a counter occurred at most {@link #getMinCount()}
+ * times. Keys map to their heap positions through an {@link IntIntMap} sized
+ * with the heap, so counting allocates nothing. Key 0 is reserved.
+ * Not thread-safe.
+ */
+public class SpaceSavingTopK {
+    private final int capacity;
+    // Heap of counters, smallest count at 0
+    private final int[] keys;
+    private final long[] counts;
+    private final long[] errors;
+    private int size;
+
+    // Key -> heap position
+    private final IntIntMap positions;
+
+    public SpaceSavingTopK(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.keys = new int[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+        this.positions = new IntIntMap(capacity);
+    }
+
+    /**
+     * Count one occurrence of a key
+     */
+    public void offer(int key) {
+        offer(key, 1);
+    }
+
+    /**
+     * Count occurrences of a key
+     */
+    public void offer(int key, long weight) {
+        if (key == 0) {
+            throw new IllegalArgumentException("Key 0 is reserved");
+        }
+
+        int position = positions.get(key);
+        if (position >= 0) {
+            counts[position] += weight;
+            siftDown(position);
+            return;
+        }
+
+        if (size < capacity) {
+            position = size++;
+            keys[position] = key;
+            counts[position] = weight;
+            errors[position] = 0;
+            positions.put(key, position);
+            siftUp(position);
+            return;
+        }
+
+        // Replace the smallest counter; the new key may have occurred up to that many times unseen
+        positions.remove(keys[0]);
+        positions.put(key, 0);
+        keys[0] = key;
+        errors[0] = counts[0];
+        counts[0] += weight;
+        siftDown(0);
+    }
+
+    /**
+     * Upper bound on the count of a key, or 0 if it has no counter
+     */
+    public long getCount(int key) {
+        int position = positions.get(key);
+        return position < 0 ? 0 : counts[position];
+    }
+
+    /**
+     * How far a key's count may exceed its true count, or 0 if it has no counter
+     */
+    public long getError(int key) {
+        int position = positions.get(key);
+        return position < 0 ? 0 : errors[position];
+    }
+
+    /**
+     * Most a key without a counter can have occurred: the smallest count once
+     * every counter is in use, otherwise 0
+     */
+    public long getMinCount() {
+        return size < capacity ? 0 : counts[0];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Drop every counter, keeping the arrays for reuse
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            positions.remove(keys[i]);
+        }
+        size = 0;
+    }
+
+    /**
+     * Pass every counted key to the visitor, in no particular order
+     */
+    public void forEach(Visitor visitor) {
+        for (int i = 0; i < size; i++) {
+            visitor.visit(keys[i], counts[i], errors[i]);
+        }
+    }
+
+    public interface Visitor {
+        void visit(int key, long count, long error);
+    }
+
+    private void siftUp(int position) {
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (counts[parent] <= counts[position]) {
+                return;
+            }
+            swap(position, parent);
+            position = parent;
+        }
+    }
+
+    private void siftDown(int position) {
+        while (true) {
+            int smallest = position;
+            int left = position * 2 + 1;
+            int right = left + 1;
+            if (left < size && counts[left] < counts[smallest]) {
+                smallest = left;
+            }
+            if (right < size && counts[right] < counts[smallest]) {
+                smallest = right;
+            }
+            if (smallest == position) {
+                return;
+            }
+            swap(position, smallest);
+            position = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int key = keys[a];
+        long count = counts[a];
+        long error = errors[a];
+        keys[a] = keys[b];
+        counts[a] = counts[b];
+        errors[a] = errors[b];
+        keys[b] = key;
+        counts[b] = count;
+        errors[b] = error;
+        positions.put(keys[a], a);
+        positions.put(keys[b], b);
+    }
+}
@@ -0,0 +1,273 @@
+package com.blog.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LRU cache of prepared statements bound to one physical connection, keyed by
+ * SQL text. Leased connections hand out statements from here, so a DAO that
+ * calls {@code conn.prepareStatement(sql)} on every call only pays SQLite's
+ * parse and plan cost the first time; closing the statement returns it to the
+ * cache with its parameters cleared.
+ *
+ * A connection is only ever used by one thread at a time (see
+ * {@link ConnectionPool}); the methods are synchronized only so that shutdown
+ * from another thread is safe.
+ */
+public class StatementCache {
+    private final Connection connection;
+    private final int maxSize;
+    private final Counters counters;
+    private final Map<String, Entry> entries;
+
+    public StatementCache(Connection connection, int maxSize, Counters counters) {
+        this.connection = connection;
+        this.maxSize = maxSize;
+        this.counters = counters;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Borrow a prepared statement for the given SQL. If the cached statement is
+     * already checked out (a nested call running the same query) a separate,
+     * uncached statement is returned instead.
+     */
+    public synchronized PreparedStatement borrow(String sql, int autoGeneratedKeys) throws SQLException {
+        if (maxSize <= 0) {
+            counters.misses.increment();
+            return wrap(uncached(sql, autoGeneratedKeys));
+        }
+
+        String key = autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS ? "K:" + sql : "N:" + sql;
+        Entry entry = entries.get(key);
+
+        if (entry != null && entry.inUse) {
+            counters.bypasses.increment();
+            return wrap(uncached(sql, autoGeneratedKeys));
+        }
+
+        if (entry != null && entry.statement.isClosed()) {
+            entries.remove(key);
+            entry = null;
+        }
+
+        if (entry == null) {
+            counters.misses.increment();
+            entry = new Entry(key, connection.prepareStatement(sql, autoGeneratedKeys), true);
+            entries.put(key, entry);
+            evictIfNeeded();
+        } else {
+            counters.hits.increment();
+        }
+
+        entry.inUse = true;
+        return wrap(entry);
+    }
+
+    /**
+     * Close every cached statement; called when the physical connection closes
+     */
+    public synchronized void closeAll() {
+        for (Entry entry : entries.values()) {
+            closeQuietly(entry.statement);
+        }
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * A one-off statement that is closed rather than cached when released
+     */
+    private Entry uncached(String sql, int autoGeneratedKeys) throws SQLException {
+        Entry entry = new Entry("U:" + sql, connection.prepareStatement(sql, autoGeneratedKeys), false);
+        entry.inUse = true;
+        return entry;
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (entries.size() > maxSize && it.hasNext()) {
+            Entry eldest = it.next();
+            it.remove();
+            counters.evictions.increment();
+            if (eldest.inUse) {
+                // Closed by its borrower on release
+                eldest.evicted = true;
+            } else {
+                closeQuietly(eldest.statement);
+            }
+        }
+    }
+
+    private synchronized void release(Entry entry, List<ResultSet> openResults) {
+        // Closing the result sets resets the statement so it no longer pins a read snapshot
+        for (ResultSet rs : openResults) {
+            try {
+                rs.close();
+            } catch (SQLException e) {
+                System.err.println("Error closing cached statement result: " + e.getMessage());
+            }
+        }
+        openResults.clear();
+
+        entry.inUse = false;
+        if (entry.evicted || !entry.cached) {
+            closeQuietly(entry.statement);
+            return;
+        }
+
+        try {
+            entry.statement.clearParameters();
+            entry.statement.clearWarnings();
+        } catch (SQLException e) {
+            // A statement that cannot be reset is not worth keeping
+            entries.remove(entry.key);
+            closeQuietly(entry.statement);
+        }
+    }
+
+    private PreparedStatement wrap(Entry entry) {
+        InvocationHandler handler = new BorrowedStatementHandler(entry);
+        return (PreparedStatement) Proxy.newProxyInstance(
+            PreparedStatement.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, handler);
+    }
+
+    private static void closeQuietly(Statement stmt) {
+        try {
+            stmt.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing cached statement: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Intercepts close() so the statement goes back to the cache
+     */
+    private class BorrowedStatementHandler implements InvocationHandler {
+        private final Entry entry;
+        private final List<ResultSet> openResults = new ArrayList<>(1);
+        private boolean returned;
+
+        BorrowedStatementHandler(Entry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        release(entry, openResults);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || entry.statement.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return (entry.cached ? "Cached[" : "Uncached[") + entry.key.substring(2) + "]";
+                default:
+                    break;
+            }
+
+            if (returned) {
+                throw new SQLException("Statement has already been closed");
+            }
+
+            if (method.getName().startsWith("execute")) {
+                counters.executions.increment();
+            }
+
+            Object result;
+            try {
+                result = method.invoke(entry.statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (result instanceof ResultSet) {
+                openResults.add((ResultSet) result);
+            }
+            return result;
+        }
+    }
+
+    private static class Entry {
+        final String key;
+        final PreparedStatement statement;
+        final boolean cached;
+        boolean inUse;
+        boolean evicted;
+
+        Entry(String key, PreparedStatement statement, boolean cached) {
+            this.key = key;
+            this.statement = statement;
+            this.cached = cached;
+        }
+    }
+
+    /**
+     * Hit/miss and execution counters shared by every cache in a pool
+     */
+    public static class Counters {
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+        final LongAdder bypasses = new LongAdder();
+        final LongAdder evictions = new LongAdder();
+        final LongAdder executions = new LongAdder();
+
+        public long getHits() {
+            return hits.sum();
+        }
+
+        public long getMisses() {
+            return misses.sum();
+        }
+
+        public long getBypasses() {
+            return bypasses.sum();
+        }
+
+        public long getEvictions() {
+            return evictions.sum();
+        }
+
+        /**
+         * Number of prepared statement executions, cached or not. Useful for
+         * checking how many queries a code path issues.
+         */
+        public long getExecutions() {
+            return executions.sum();
+        }
+
+        public double getHitRatio() {
+            long hitCount = hits.sum();
+            long total = hitCount + misses.sum() + bypasses.sum();
+            return total == 0 ? 0.0 : (double) hitCount / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hits %d, misses %d, bypassed %d, evicted %d (hit ratio %.1f%%), executions %d",
+                getHits(), getMisses(), getBypasses(), getEvictions(), getHitRatio() * 100, getExecutions());
+        }
+    }
+}
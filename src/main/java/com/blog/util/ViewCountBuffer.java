@@ -0,0 +1,168 @@
+package com.blog.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind buffer for post view counts. Opening a post only bumps an
+ * in-memory LongAdder, which is striped so concurrent viewers of the same post
+ * don't contend; a background thread adds the accumulated deltas to
+ * blog_posts.view_count in one batched transaction every interval, and once
+ * more when {@link DatabaseUtil#closeConnection()} shuts the pool down. Reads
+ * add {@link #getPending(int)} to the stored value.
+ *
+ * One adder is kept per post viewed since startup (removing idle ones could
+ * lose an increment racing with the removal); deleted posts are dropped. A
+ * read that lands while a flush is committing may briefly miss those views.
+ */
+public class ViewCountBuffer {
+    // How often buffered views are written out; 0 writes them only when flushed explicitly
+    private static final long FLUSH_INTERVAL_MS = Long.getLong("blog.views.flushIntervalMs", 5_000L);
+
+    private static ViewCountBuffer instance;
+
+    private final long intervalMillis;
+    private final Map<Integer, LongAdder> pending = new ConcurrentHashMap<>();
+    private ScheduledExecutorService executor;
+
+    // Flush statistics, for diagnostics
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder flushedViews = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private volatile String lastResult = "not run yet";
+
+    private ViewCountBuffer(long intervalMillis) {
+        this.intervalMillis = intervalMillis;
+    }
+
+    public static synchronized ViewCountBuffer getInstance() {
+        if (instance == null) {
+            instance = new ViewCountBuffer(FLUSH_INTERVAL_MS);
+            instance.start();
+        }
+        return instance;
+    }
+
+    /**
+     * Start the periodic flush task. With a non-positive interval the buffer is
+     * only flushed on demand and at shutdown.
+     */
+    private synchronized void start() {
+        if (executor != null || intervalMillis <= 0) {
+            return;
+        }
+
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "view-count-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::flush, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Count one view of a post
+     */
+    public void record(int postId) {
+        pending.computeIfAbsent(postId, id -> new LongAdder()).increment();
+        recorded.increment();
+    }
+
+    /**
+     * Views of a post not yet written to the database
+     */
+    public int getPending(int postId) {
+        LongAdder adder = pending.get(postId);
+        return adder == null ? 0 : (int) adder.sum();
+    }
+
+    /**
+     * Forget the pending views of a deleted post
+     */
+    public void discard(int postId) {
+        pending.remove(postId);
+    }
+
+    /**
+     * Add every pending delta to its post's view_count in one transaction. If the
+     * write fails the deltas are put back and retried on the next flush.
+     *
+     * @return the number of posts updated, or -1 on error
+     */
+    public synchronized int flush() {
+        // Drain first; views recorded from here on go into the next flush
+        Map<Integer, Long> deltas = new LinkedHashMap<>();
+        for (Map.Entry<Integer, LongAdder> entry : pending.entrySet()) {
+            long delta = entry.getValue().sumThenReset();
+            if (delta != 0) {
+                deltas.put(entry.getKey(), delta);
+            }
+        }
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+
+        Connection conn = null;
+        try {
+            conn = DatabaseUtil.getConnection();
+            if (conn == null) {
+                restore(deltas);
+                return -1;
+            }
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "UPDATE blog_posts SET view_count = view_count + ? WHERE id = ?")) {
+                for (Map.Entry<Integer, Long> delta : deltas.entrySet()) {
+                    pstmt.setLong(1, delta.getValue());
+                    pstmt.setInt(2, delta.getKey());
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+            }
+            conn.commit();
+
+            long views = deltas.values().stream().mapToLong(Long::longValue).sum();
+            flushedViews.add(views);
+            flushes.increment();
+            lastResult = views + " views on " + deltas.size() + " posts";
+            return deltas.size();
+
+        } catch (SQLException e) {
+            restore(deltas);
+            lastResult = "failed: " + e.getMessage();
+            System.err.println("Error flushing view counts: " + e.getMessage());
+            return -1;
+        } finally {
+            if (conn != null) {
+                try {
+                    if (!conn.getAutoCommit()) {
+                        conn.rollback();
+                        conn.setAutoCommit(true);
+                    }
+                    conn.close();
+                } catch (SQLException e) {
+                    System.err.println("Error ending view count flush: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void restore(Map<Integer, Long> deltas) {
+        deltas.forEach((postId, delta) -> pending.computeIfAbsent(postId, id -> new LongAdder()).add(delta));
+    }
+
+    @Override
+    public String toString() {
+        long waiting = pending.values().stream().mapToLong(LongAdder::sum).sum();
+        return String.format("%d views recorded, %d written in %d flushes, %d pending; last flush: %s",
+            recorded.sum(), flushedViews.sum(), flushes.sum(), waiting, lastResult);
+    }
+}
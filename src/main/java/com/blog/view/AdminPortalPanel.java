@@ -2,9 +2,16 @@ package com.blog.view;
 
 import com.blog.controller.BlogController;
 import com.blog.controller.UserController;
-import com.blog.model.BlogPost;
+import com.blog.model.AnalyticsEvent;
 import com.blog.model.Comment;
+import com.blog.model.PostSummary;
+import com.blog.model.TimeSeries;
+import com.blog.model.TrendingPost;
 import com.blog.model.User;
+import com.blog.service.AnalyticsRollups;
+import com.blog.service.AnalyticsService;
+import com.blog.service.PostPopularity;
+import com.blog.util.DatabaseUtil;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
@@ -12,14 +19,39 @@ import javax.swing.border.TitledBorder;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
 
 public class AdminPortalPanel extends JPanel {
+    // Ranges offered by the events-over-time chart
+    private static final ChartRange[] CHART_RANGES = {
+        new ChartRange("Last 3 hours, per minute", AnalyticsRollups.Resolution.MINUTE, 180, "HH:mm"),
+        new ChartRange("Last 24 hours, per hour", AnalyticsRollups.Resolution.HOUR, 24, "HH:00"),
+        new ChartRange("Last 7 days, per hour", AnalyticsRollups.Resolution.HOUR, 7 * 24, "MM-dd HH:00"),
+        new ChartRange("Last 90 days, per day", AnalyticsRollups.Resolution.DAY, 90, "MM-dd")
+    };
+    // How long a background wait for the analytics log replay lasts before checking again
+    private static final long REPLAY_WAIT_MILLIS = 60_000;
+    
     private final BlogApp app;
     private JTabbedPane tabbedPane;
     private JTable usersTable;
     private JTable postsTable;
     private DefaultTableModel usersTableModel;
     private DefaultTableModel postsTableModel;
+    private DefaultTableModel diagnosticsTableModel;
+    private EventsChartPanel eventsChart;
+    private JComboBox<ChartRange> chartRangeBox;
+    private JComboBox<String> chartTypeBox;
+    private JLabel chartSummaryLabel;
+    // Reloads the analytics views once the log replay is done; null when none is waiting
+    private SwingWorker<Void, Void> replayWaiter;
+    private DefaultTableModel trendingTableModel;
+    private JComboBox<PostPopularity.Window> trendingWindowBox;
+    private JLabel trendingSummaryLabel;
+    // Bumped on every trending reload, so a slower earlier lookup can't overwrite a newer one
+    private int trendingGeneration;
     
     public AdminPortalPanel(BlogApp app) {
         this.app = app;
@@ -60,6 +92,10 @@ public class AdminPortalPanel extends JPanel {
         JPanel analyticsPanel = createAnalyticsPanel();
         tabbedPane.addTab("Analytics", analyticsPanel);
         
+        // Database Diagnostics Panel
+        JPanel diagnosticsPanel = createDiagnosticsPanel();
+        tabbedPane.addTab("Database", diagnosticsPanel);
+        
         add(tabbedPane, BorderLayout.CENTER);
     }
     
@@ -202,11 +238,11 @@ public class AdminPortalPanel extends JPanel {
         // Most Viewed Posts Table
         JPanel popularPostsPanel = new JPanel(new BorderLayout());
         
-        String[] popularColumns = {"ID", "Title", "Author", "Views", "Likes", "Comments", "Actions"};
+        String[] popularColumns = {"ID", "Title", "Author", "Views", "Unique Readers", "Likes", "Comments", "Actions"};
         DefaultTableModel popularPostsModel = new DefaultTableModel(popularColumns, 0) {
             @Override
             public boolean isCellEditable(int row, int column) {
-                return column == 6; // Only allow editing of the Actions column
+                return column == 7; // Only allow editing of the Actions column
             }
         };
         
@@ -239,6 +275,8 @@ public class AdminPortalPanel extends JPanel {
         popularPostsPanel.add(popularButtonsPanel, BorderLayout.SOUTH);
         
         analyticsTabs.addTab("Most Viewed Posts", popularPostsPanel);
+        analyticsTabs.addTab("Trending", createTrendingPanel());
+        analyticsTabs.addTab("Events Over Time", createEventsChartPanel());
         
         // Add the tabs to the panel
         panel.add(analyticsTabs, BorderLayout.CENTER);
@@ -249,6 +287,285 @@ public class AdminPortalPanel extends JPanel {
         return panel;
     }
     
+    /**
+     * Create the diagnostics panel showing the SQLite settings in effect and pool usage
+     */
+    private JPanel createDiagnosticsPanel() {
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.setBorder(new EmptyBorder(10, 10, 10, 10));
+        
+        String[] diagnosticsColumns = {"Setting", "Value"};
+        diagnosticsTableModel = new DefaultTableModel(diagnosticsColumns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        
+        JTable diagnosticsTable = new JTable(diagnosticsTableModel);
+        diagnosticsTable.getColumnModel().getColumn(0).setPreferredWidth(180);
+        diagnosticsTable.getColumnModel().getColumn(1).setPreferredWidth(520);
+        panel.add(new JScrollPane(diagnosticsTable), BorderLayout.CENTER);
+        
+        JPanel actionPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        
+        JButton refreshButton = new JButton("Refresh Diagnostics");
+        refreshButton.addActionListener(e -> loadDiagnostics());
+        actionPanel.add(refreshButton);
+        
+        JButton rebuildSearchButton = new JButton("Rebuild Search Index");
+        rebuildSearchButton.addActionListener(e -> {
+            if (app.getBlogController().rebuildSearchIndex()) {
+                JOptionPane.showMessageDialog(this, 
+                    "Search index rebuilt", 
+                    "Success", 
+                    JOptionPane.INFORMATION_MESSAGE);
+            } else {
+                JOptionPane.showMessageDialog(this, 
+                    "Failed to rebuild the search index", 
+                    "Error", 
+                    JOptionPane.ERROR_MESSAGE);
+            }
+        });
+        actionPanel.add(rebuildSearchButton);
+        
+        JButton rotateKeyButton = new JButton("Rotate Session Key");
+        rotateKeyButton.addActionListener(e -> {
+            if (app.getUserController().rotateSessionSigningKey()) {
+                loadDiagnostics();
+                JOptionPane.showMessageDialog(this, 
+                    "New session tokens are signed with a new key", 
+                    "Success", 
+                    JOptionPane.INFORMATION_MESSAGE);
+            } else {
+                JOptionPane.showMessageDialog(this, 
+                    "Signed session tokens are not enabled, or the key file could not be written", 
+                    "Error", 
+                    JOptionPane.ERROR_MESSAGE);
+            }
+        });
+        actionPanel.add(rotateKeyButton);
+        
+        panel.add(actionPanel, BorderLayout.SOUTH);
+        
+        return panel;
+    }
+    
+    /**
+     * Load the current database settings into the diagnostics table
+     */
+    private void loadDiagnostics() {
+        diagnosticsTableModel.setRowCount(0);
+        
+        Map<String, String> diagnostics = DatabaseUtil.getDiagnostics();
+        for (Map.Entry<String, String> entry : diagnostics.entrySet()) {
+            diagnosticsTableModel.addRow(new Object[]{entry.getKey(), entry.getValue()});
+        }
+        diagnosticsTableModel.addRow(new Object[]{"Post cache", app.getBlogController().getPostCache().toString()});
+        diagnosticsTableModel.addRow(new Object[]{"Analytics ingestion",
+            AnalyticsService.getInstance().getIngestionStats().toString()});
+        diagnosticsTableModel.addRow(new Object[]{"Analytics log", AnalyticsService.getInstance().getLogStatus()});
+        diagnosticsTableModel.addRow(new Object[]{"Popularity sketches",
+            AnalyticsService.getInstance().getPopularity().getStatus()});
+    }
+    
+    /**
+     * Create the table of posts trending in a sliding window, with its window choice
+     */
+    private JPanel createTrendingPanel() {
+        JPanel panel = new JPanel(new BorderLayout(0, 5));
+        
+        JPanel controlsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        trendingWindowBox = new JComboBox<>(PostPopularity.Window.values());
+        trendingWindowBox.addActionListener(e -> loadTrending());
+        controlsPanel.add(trendingWindowBox);
+        
+        JButton refreshTrendingButton = new JButton("Refresh");
+        refreshTrendingButton.addActionListener(e -> loadTrending());
+        controlsPanel.add(refreshTrendingButton);
+        
+        trendingSummaryLabel = new JLabel();
+        controlsPanel.add(trendingSummaryLabel);
+        panel.add(controlsPanel, BorderLayout.NORTH);
+        
+        String[] trendingColumns = {"ID", "Title", "Author", "Views", "Overcount (at most)", "Unique Readers"};
+        trendingTableModel = new DefaultTableModel(trendingColumns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        JTable trendingTable = new JTable(trendingTableModel);
+        panel.add(new JScrollPane(trendingTable), BorderLayout.CENTER);
+        
+        JPanel buttonsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        JButton viewPostButton = new JButton("View Post");
+        viewPostButton.addActionListener(e -> {
+            int selectedRow = trendingTable.getSelectedRow();
+            if (selectedRow >= 0) {
+                app.showPostView((Integer) trendingTable.getValueAt(selectedRow, 0));
+            } else {
+                JOptionPane.showMessageDialog(this, 
+                    "Please select a post to view", 
+                    "No Selection", 
+                    JOptionPane.WARNING_MESSAGE);
+            }
+        });
+        buttonsPanel.add(viewPostButton);
+        panel.add(buttonsPanel, BorderLayout.SOUTH);
+        
+        loadTrending();
+        return panel;
+    }
+    
+    /**
+     * Load the posts trending in the selected window from the popularity
+     * sketches. The sketches are read here; the titles and authors are looked
+     * up in the database on a background thread and filled in when they arrive.
+     */
+    private void loadTrending() {
+        if (trendingTableModel == null) {
+            return;
+        }
+        int generation = ++trendingGeneration;
+        
+        PostPopularity.Window window = (PostPopularity.Window) trendingWindowBox.getSelectedItem();
+        List<TrendingPost> trending = app.getBlogController().getTrendingPostStats(window, 50);
+        
+        trendingTableModel.setRowCount(0);
+        long views = 0;
+        for (TrendingPost post : trending) {
+            trendingTableModel.addRow(new Object[]{
+                post.getPostId(),
+                "Loading...",
+                "",
+                post.getViews(),
+                post.getMaxError(),
+                post.getUniqueViewers()
+            });
+            views += post.getMinViews();
+        }
+        String summary = "At least " + views + " views of the top " + trending.size() + " posts in the " + window;
+        if (AnalyticsService.getInstance().isReplaying()) {
+            summary += " (replaying the analytics log...)";
+            reloadAfterReplay();
+        }
+        trendingSummaryLabel.setText(summary);
+        
+        new SwingWorker<Map<Integer, PostSummary>, Void>() {
+            @Override
+            protected Map<Integer, PostSummary> doInBackground() {
+                return app.getBlogController().getPublishedPostSummaries(
+                    trending.stream().map(TrendingPost::getPostId).collect(Collectors.toList()));
+            }
+            
+            @Override
+            protected void done() {
+                if (generation != trendingGeneration) {
+                    return; // A newer reload replaced these rows
+                }
+                try {
+                    Map<Integer, PostSummary> summaries = get();
+                    for (int row = 0; row < trending.size(); row++) {
+                        PostSummary post = summaries.get(trending.get(row).getPostId());
+                        String title = post != null ? post.getTitle() : "(unpublished or deleted)";
+                        trendingTableModel.setValueAt(title, row, 1);
+                        trendingTableModel.setValueAt(post != null ? post.getAuthorName() : "", row, 2);
+                    }
+                } catch (InterruptedException | ExecutionException e) {
+                    System.err.println("Error loading trending post titles: " + e.getMessage());
+                }
+            }
+        }.execute();
+    }
+    
+    /**
+     * Create the events-over-time chart with its range and event type choices
+     */
+    private JPanel createEventsChartPanel() {
+        JPanel panel = new JPanel(new BorderLayout(0, 5));
+        
+        JPanel controlsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        chartRangeBox = new JComboBox<>(CHART_RANGES);
+        chartRangeBox.addActionListener(e -> loadEventsChart());
+        controlsPanel.add(chartRangeBox);
+        
+        chartTypeBox = new JComboBox<>();
+        chartTypeBox.addItem("All events");
+        for (int type = 0; type < AnalyticsEvent.TYPE_COUNT; type++) {
+            chartTypeBox.addItem(AnalyticsEvent.typeName(type));
+        }
+        chartTypeBox.addActionListener(e -> loadEventsChart());
+        controlsPanel.add(chartTypeBox);
+        
+        JButton refreshChartButton = new JButton("Refresh");
+        refreshChartButton.addActionListener(e -> loadEventsChart());
+        controlsPanel.add(refreshChartButton);
+        
+        chartSummaryLabel = new JLabel();
+        controlsPanel.add(chartSummaryLabel);
+        panel.add(controlsPanel, BorderLayout.NORTH);
+        
+        eventsChart = new EventsChartPanel();
+        panel.add(eventsChart, BorderLayout.CENTER);
+        
+        loadEventsChart();
+        return panel;
+    }
+    
+    /**
+     * Load the selected range and event type from the analytics rollups
+     */
+    private void loadEventsChart() {
+        if (eventsChart == null) {
+            return;
+        }
+        
+        ChartRange range = (ChartRange) chartRangeBox.getSelectedItem();
+        // The first choice is every type; the rest follow the event type ids
+        int eventType = chartTypeBox.getSelectedIndex() - 1;
+        if (eventType < 0) {
+            eventType = AnalyticsRollups.ALL_TYPES;
+        }
+        
+        // Reading the rollups costs one pass over the buckets; never wait for the consumer here
+        AnalyticsService analytics = AnalyticsService.getInstance();
+        TimeSeries series = analytics.getRollups().getSeries(range.resolution, eventType, range.buckets);
+        eventsChart.setSeries(series, range.labelPattern);
+        String summary = series.getTotal() + " events, peak " + series.getMax() + " per bucket";
+        if (analytics.isReplaying()) {
+            summary += " (replaying the analytics log...)";
+            reloadAfterReplay();
+        }
+        chartSummaryLabel.setText(summary);
+    }
+    
+    /**
+     * Reload the analytics views once the startup replay of the analytics log
+     * is done, waiting for it on a background thread rather than the EDT
+     */
+    private void reloadAfterReplay() {
+        if (replayWaiter != null) {
+            return;
+        }
+        
+        replayWaiter = new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() {
+                AnalyticsService.getInstance().awaitDrained(REPLAY_WAIT_MILLIS);
+                return null;
+            }
+            
+            @Override
+            protected void done() {
+                replayWaiter = null;
+                loadEventsChart();
+                loadTrending();
+            }
+        };
+        replayWaiter.execute();
+    }
+    
     /**
      * Load analytics data for the popular posts table
      */
@@ -257,15 +574,19 @@ public class AdminPortalPanel extends JPanel {
         model.setRowCount(0);
         
         // Get posts sorted by popularity
-        List<BlogPost> popularPosts = app.getBlogController().getPopularPosts();
+        List<PostSummary> popularPosts = app.getBlogController().getPopularPosts();
+        // Distinct readers from the popularity sketches, where a post has one
+        Map<Integer, Long> uniqueReaders = app.getBlogController().getUniqueViewers(
+            popularPosts.stream().map(PostSummary::getId).collect(Collectors.toList()));
         
         // Add posts to the table
-        for (BlogPost post : popularPosts) {
+        for (PostSummary post : popularPosts) {
             Object[] row = {
                 post.getId(),
                 post.getTitle(),
-                post.getAuthor().getUsername(),
+                post.getAuthorName(),
                 post.getViewCount(),
+                uniqueReaders.getOrDefault(post.getId(), 0L),
                 post.getLikeCount(),
                 post.getCommentCount(),
                 ""  // Actions column
@@ -357,14 +678,14 @@ public class AdminPortalPanel extends JPanel {
         postsTableModel.setRowCount(0);
         
         // Get all posts from the controller (admin view shows all posts)
-        List<BlogPost> posts = app.getBlogController().getAllPostsForAdmin();
+        List<PostSummary> posts = app.getBlogController().getAllPostsForAdmin();
         
         // Add posts to the table
-        for (BlogPost post : posts) {
+        for (PostSummary post : posts) {
             Object[] row = {
                 post.getId(),
                 post.getTitle(),
-                post.getAuthor().getUsername(),
+                post.getAuthorName(),
                 post.getStatus(),
                 ""  // Actions column
             };
@@ -404,6 +725,9 @@ public class AdminPortalPanel extends JPanel {
     public void refresh() {
         loadUsers();
         loadPosts();
+        loadDiagnostics();
+        loadEventsChart();
+        loadTrending();
         
         // Refresh analytics if that tab exists and is visible
         if (tabbedPane.getTabCount() > 2) {
@@ -422,4 +746,26 @@ public class AdminPortalPanel extends JPanel {
         super.addNotify();
         refresh();
     }
-} 
\ No newline at end of file
+    
+    /**
+     * A time range for the events chart
+     */
+    private static class ChartRange {
+        final String label;
+        final AnalyticsRollups.Resolution resolution;
+        final int buckets;
+        final String labelPattern;
+        
+        ChartRange(String label, AnalyticsRollups.Resolution resolution, int buckets, String labelPattern) {
+            this.label = label;
+            this.resolution = resolution;
+            this.buckets = buckets;
+            this.labelPattern = labelPattern;
+        }
+        
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+}
\ No newline at end of file
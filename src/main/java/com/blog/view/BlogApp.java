@@ -2,10 +2,12 @@ package com.blog.view;
 
 import com.blog.controller.BlogController;
 import com.blog.controller.UserController;
+import com.blog.model.AnalyticsEvent;
 import com.blog.model.BlogPost;
 import com.blog.model.User;
 import com.blog.service.AnalyticsService;
 import com.blog.service.AuthenticationService;
+import com.blog.service.AvatarStore;
 import com.blog.util.AnalyticsReportUtil;
 import com.blog.util.DatabaseSetup;
 import com.blog.util.DatabaseUtil;
@@ -16,12 +18,8 @@ import javax.swing.border.EmptyBorder;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
-import javax.imageio.ImageIO;
 import java.util.Optional;
-import java.util.Map;
-import java.util.HashMap;
+import java.util.function.BiConsumer;
 
 public class BlogApp {
     private final UserController userController;
@@ -114,25 +112,12 @@ public class BlogApp {
                     
                     // Try to use profile image if available
                     boolean imageDrawn = false;
-                    if (user.getProfileImageData() != null) {
-                        try {
-                            BufferedImage img = ImageIO.read(new ByteArrayInputStream(user.getProfileImageData()));
-                            if (img != null) {
-                                int size = Math.min(getWidth(), getHeight());
-                                g2d.setClip(new java.awt.geom.Ellipse2D.Float(
-                                    (getWidth() - size) / 2,
-                                    (getHeight() - size) / 2,
-                                    size, size));
-                                g2d.drawImage(img.getScaledInstance(size, size, Image.SCALE_SMOOTH), 
-                                    (getWidth() - size) / 2, 
-                                    (getHeight() - size) / 2, 
-                                    this);
-                                imageDrawn = true;
-                            }
-                        } catch (IOException e) {
-                            // Fall back to initials if image loading fails
-                            System.err.println("Error loading profile image: " + e.getMessage());
-                        }
+                    int avatarSize = Math.min(getWidth(), getHeight());
+                    Optional<BufferedImage> avatar = AvatarStore.getInstance().getAvatar(user.getId(), avatarSize);
+                    if (avatar.isPresent()) {
+                        // Already scaled and clipped to a circle by the store
+                        g2d.drawImage(avatar.get(), (getWidth() - avatarSize) / 2, (getHeight() - avatarSize) / 2, this);
+                        imageDrawn = true;
                     }
                     
                     if (!imageDrawn) {
@@ -317,26 +302,16 @@ public class BlogApp {
     public void showLoginPanel() {
         cardLayout.show(cardPanel, LOGIN_PANEL);
         // Track page view
-        if (userController.isLoggedIn()) {
-            analyticsService.trackEvent(AnalyticsService.EVENT_PAGE_VIEW, 
-                userController.getCurrentUser(), "page", "login");
-        } else {
-            analyticsService.trackEvent(AnalyticsService.EVENT_PAGE_VIEW, 
-                null, "page", "login");
-        }
+        analyticsService.trackEvent(AnalyticsService.EVENT_PAGE_VIEW, userController.getCurrentUser(), 0,
+            AnalyticsEvent.ATTR_PAGE, AnalyticsEvent.PAGE_LOGIN);
         appBar.updateUI(); // Update the app bar
     }
     
     public void showRegisterPanel() {
         cardLayout.show(cardPanel, REGISTER_PANEL);
         // Track page view
-        if (userController.isLoggedIn()) {
-            analyticsService.trackEvent(AnalyticsService.EVENT_PAGE_VIEW, 
-                userController.getCurrentUser(), "page", "register");
-        } else {
-            analyticsService.trackEvent(AnalyticsService.EVENT_PAGE_VIEW, 
-                null, "page", "register");
-        }
+        analyticsService.trackEvent(AnalyticsService.EVENT_PAGE_VIEW, userController.getCurrentUser(), 0,
+            AnalyticsEvent.ATTR_PAGE, AnalyticsEvent.PAGE_REGISTER);
         appBar.updateUI(); // Update the app bar
     }
     
@@ -348,13 +323,8 @@ public class BlogApp {
             blogPanel.refreshContent();
         }
         // Track page view
-        if (userController.isLoggedIn()) {
-            analyticsService.trackEvent(AnalyticsService.EVENT_PAGE_VIEW, 
-                userController.getCurrentUser(), "page", "blog_list");
-        } else {
-            analyticsService.trackEvent(AnalyticsService.EVENT_PAGE_VIEW, 
-                null, "page", "blog_list");
-        }
+        analyticsService.trackEvent(AnalyticsService.EVENT_PAGE_VIEW, userController.getCurrentUser(), 0,
+            AnalyticsEvent.ATTR_PAGE, AnalyticsEvent.PAGE_BLOG_LIST);
         appBar.updateUI(); // Update the app bar
     }
     
@@ -442,15 +412,7 @@ public class BlogApp {
         System.out.println("DEBUG: Showing card: " + cardName);
         
         // Track post view event
-        Map<String, Object> properties = new HashMap<>();
-        properties.put("postId", postId);
-        
-        // Get post title if available
-        Optional<BlogPost> post = blogController.getPostById(postId);
-        post.ifPresent(p -> properties.put("title", p.getTitle()));
-        
-        analyticsService.trackEvent(AnalyticsService.EVENT_POST_VIEW, 
-            userController.getCurrentUser(), properties);
+        analyticsService.trackEvent(AnalyticsService.EVENT_POST_VIEW, userController.getCurrentUser(), postId);
     }
     
     /**
@@ -502,18 +464,39 @@ public class BlogApp {
     public boolean login(String username, String password) {
         boolean result = authService.login(username, password);
         if (result) {
-            // Update app bar UI to show logout and possibly admin button
-            appBar.logoutButton.setVisible(true);
-            appBar.adminButton.setVisible(userController.isCurrentUserAdmin());
-            appBar.repaint();
-            
-            // Track login event
-            analyticsService.trackEvent(AnalyticsService.EVENT_LOGIN, 
-                userController.getCurrentUser(), "method", "credentials");
+            onLoggedIn();
         }
         return result;
     }
     
+    /**
+     * Log in off the EDT, so verifying the password hash doesn't freeze the UI
+     * 
+     * @param onDone called on the EDT with the result, or with an error if
+     *               too many logins are already waiting
+     */
+    public void loginAsync(String username, String password, BiConsumer<Boolean, Throwable> onDone) {
+        authService.loginAsync(username, password).whenComplete((result, error) ->
+            SwingUtilities.invokeLater(() -> {
+                boolean success = error == null && result;
+                if (success) {
+                    onLoggedIn();
+                }
+                onDone.accept(success, error);
+            }));
+    }
+    
+    private void onLoggedIn() {
+        // Update app bar UI to show logout and possibly admin button
+        appBar.logoutButton.setVisible(true);
+        appBar.adminButton.setVisible(userController.isCurrentUserAdmin());
+        appBar.repaint();
+        
+        // Track login event
+        analyticsService.trackEvent(AnalyticsService.EVENT_LOGIN, userController.getCurrentUser(), 0,
+            AnalyticsEvent.ATTR_METHOD, AnalyticsEvent.METHOD_CREDENTIALS);
+    }
+    
     public boolean register(String username, String password, String email, String fullName) {
         // Use AuthenticationService instead of UserController directly
         return authService.register(username, password, email, fullName);
@@ -528,9 +511,8 @@ public class BlogApp {
     public void logout() {
         // Track logout event before actually logging out
         if (userController.isLoggedIn()) {
-            analyticsService.trackEvent(AnalyticsService.EVENT_LOGOUT, 
-                userController.getCurrentUser(), "session_duration_seconds", 
-                (System.currentTimeMillis() - authService.getLastLoginTime()) / 1000);
+            analyticsService.trackEvent(AnalyticsService.EVENT_LOGOUT, userController.getCurrentUser(), 0,
+                AnalyticsEvent.ATTR_SESSION_SECONDS, (System.currentTimeMillis() - authService.getLastLoginTime()) / 1000);
         }
         
         // Perform logout
@@ -556,6 +538,15 @@ public class BlogApp {
     }
     
     public static void main(String[] args) {
+        // Command-line maintenance: rebuild the full-text search index and exit
+        if (args.length > 0 && "--rebuild-search-index".equals(args[0])) {
+            DatabaseSetup.initializeDatabase();
+            boolean rebuilt = DatabaseSetup.rebuildSearchIndex();
+            System.out.println(rebuilt ? "Search index rebuilt." : "Failed to rebuild the search index.");
+            DatabaseUtil.closeConnection();
+            System.exit(rebuilt ? 0 : 1);
+        }
+        
         // Set system look and feel
         try {
             UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
@@ -583,7 +574,13 @@ public class BlogApp {
             analyticsItem.addActionListener(e -> {
                 // Only allow admin users to view analytics
                 if (app.userController.isLoggedIn() && app.userController.isCurrentUserAdmin()) {
-                    AnalyticsReportUtil.printSimpleReport();
+                    JTextArea reportArea = new JTextArea(AnalyticsReportUtil.generateSimpleReport(), 25, 70);
+                    reportArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+                    reportArea.setEditable(false);
+                    JOptionPane.showMessageDialog(frame, 
+                        new JScrollPane(reportArea), 
+                        "Analytics Report", 
+                        JOptionPane.INFORMATION_MESSAGE);
                 } else {
                     JOptionPane.showMessageDialog(frame, 
                         "You must be logged in as an admin to view analytics", 
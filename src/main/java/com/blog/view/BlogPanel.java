@@ -1,10 +1,14 @@
 package com.blog.view;
 
-import com.blog.model.BlogPost;
-import com.blog.model.Media;
+import com.blog.model.PostCursor;
+import com.blog.model.PostPage;
+import com.blog.model.PostStats;
+import com.blog.model.PostSummary;
+import com.blog.model.SearchResult;
 import com.blog.model.User;
+import com.blog.service.PostPopularity;
+import com.blog.service.ThumbnailStore;
 
-import javax.imageio.ImageIO;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
@@ -13,28 +17,48 @@ import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
 import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
 
 public class BlogPanel extends JPanel {
+    // Posts fetched per page, and how close to the bottom (in pixels) scrolling triggers the next page
+    private static final int PAGE_SIZE = 20;
+    private static final int LOAD_MORE_THRESHOLD = 300;
+    private static final int THUMBNAIL_HEIGHT = 80;
+    
     private final BlogApp app;
     private JPanel postsPanel;
+    private JScrollPane postsScrollPane;
+    private JButton loadMoreButton;
     private JPanel sidebarPanel;
     private JLabel welcomeLabel;
     private JButton newPostButton;
     private JButton myPostsButton;
     private JButton allPostsButton;
+    private JButton trendingButton;
     private JTextField searchField;
     private JComboBox<String> tagFilterComboBox;
     private JLabel statusLabel;
     
     // View state
     private boolean showingUserPosts = false;
+    private boolean showingTrending = false;
     private String currentTag = null;
+    private Map<String, Integer> tagCounts = Collections.emptyMap();
     private String currentSearch = null;
     
+    // Paging state for the current view
+    private PostCursor nextCursor = null;
+    private int searchOffset = 0;
+    private boolean hasMorePosts = false;
+    private boolean loadingPage = false;
+    private boolean updatingTags = false;
+    
     private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
 
     public BlogPanel(BlogApp app) {
@@ -84,6 +108,7 @@ public class BlogPanel extends JPanel {
         myPostsButton.setMaximumSize(new Dimension(Integer.MAX_VALUE, myPostsButton.getPreferredSize().height));
         myPostsButton.addActionListener(e -> {
             showingUserPosts = true;
+            showingTrending = false;
             currentTag = null;
             refreshContent();
         });
@@ -96,11 +121,25 @@ public class BlogPanel extends JPanel {
         allPostsButton.setMaximumSize(new Dimension(Integer.MAX_VALUE, allPostsButton.getPreferredSize().height));
         allPostsButton.addActionListener(e -> {
             showingUserPosts = false;
+            showingTrending = false;
             currentTag = null;
             refreshContent();
         });
         sidebarPanel.add(allPostsButton);
         
+        sidebarPanel.add(Box.createRigidArea(new Dimension(0, 5)));
+        
+        trendingButton = new JButton("Trending Now");
+        trendingButton.setAlignmentX(Component.LEFT_ALIGNMENT);
+        trendingButton.setMaximumSize(new Dimension(Integer.MAX_VALUE, trendingButton.getPreferredSize().height));
+        trendingButton.addActionListener(e -> {
+            showingTrending = true;
+            showingUserPosts = false;
+            currentTag = null;
+            refreshContent();
+        });
+        sidebarPanel.add(trendingButton);
+        
         sidebarPanel.add(Box.createRigidArea(new Dimension(0, 15)));
         
         JLabel tagsLabel = new JLabel("Filter by Tag:");
@@ -112,10 +151,24 @@ public class BlogPanel extends JPanel {
         tagFilterComboBox = new JComboBox<>(new String[]{"All Tags"});
         tagFilterComboBox.setAlignmentX(Component.LEFT_ALIGNMENT);
         tagFilterComboBox.setMaximumSize(new Dimension(Integer.MAX_VALUE, tagFilterComboBox.getPreferredSize().height));
+        tagFilterComboBox.setRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                          boolean isSelected, boolean cellHasFocus) {
+                // Show how many published posts carry each tag
+                Integer count = value == null ? null : tagCounts.get(value.toString());
+                Object text = count != null ? value + " (" + count + ")" : value;
+                return super.getListCellRendererComponent(list, text, index, isSelected, cellHasFocus);
+            }
+        });
         tagFilterComboBox.addActionListener(e -> {
+            if (updatingTags) {
+                return; // Repopulating the list, not a user selection
+            }
             String selected = (String) tagFilterComboBox.getSelectedItem();
             if (selected != null && !"All Tags".equals(selected)) {
                 currentTag = selected;
+                showingTrending = false;
             } else {
                 currentTag = null;
             }
@@ -149,6 +202,7 @@ public class BlogPanel extends JPanel {
                 currentSearch = searchText;
                 // Reset other filters
                 showingUserPosts = false;
+                showingTrending = false;
                 currentTag = null;
             }
             refreshContent();
@@ -176,6 +230,7 @@ public class BlogPanel extends JPanel {
                 currentSearch = searchText;
                 // Reset other filters
                 showingUserPosts = false;
+                showingTrending = false;
                 currentTag = null;
             }
             refreshContent();
@@ -196,9 +251,16 @@ public class BlogPanel extends JPanel {
         postsPanel = new JPanel();
         postsPanel.setLayout(new BoxLayout(postsPanel, BoxLayout.Y_AXIS));
         
-        JScrollPane scrollPane = new JScrollPane(postsPanel);
-        scrollPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_ALWAYS);
-        postsContainer.add(scrollPane, BorderLayout.CENTER);
+        postsScrollPane = new JScrollPane(postsPanel);
+        postsScrollPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_ALWAYS);
+        postsScrollPane.getVerticalScrollBar().setUnitIncrement(16);
+        // Fetch the next page as the user scrolls near the end of the loaded posts
+        postsScrollPane.getVerticalScrollBar().addAdjustmentListener(e -> loadMoreIfNearEnd());
+        postsContainer.add(postsScrollPane, BorderLayout.CENTER);
+        
+        loadMoreButton = new JButton("Load More Posts");
+        loadMoreButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+        loadMoreButton.addActionListener(e -> loadNextPage());
         
         mainPanel.add(postsContainer, BorderLayout.CENTER);
         add(mainPanel, BorderLayout.CENTER);
@@ -211,8 +273,11 @@ public class BlogPanel extends JPanel {
         updateWelcomeMessage();
         updateTags();
         
-        // Clear existing posts
+        // Clear existing posts and start again from the first page
         postsPanel.removeAll();
+        nextCursor = null;
+        searchOffset = 0;
+        hasMorePosts = false;
         
         // Update status label
         if (currentSearch != null) {
@@ -221,53 +286,185 @@ public class BlogPanel extends JPanel {
             statusLabel.setText("Showing posts with tag: " + currentTag);
         } else if (showingUserPosts) {
             statusLabel.setText("Showing your posts");
+        } else if (showingTrending) {
+            statusLabel.setText("Most viewed in the " + PostPopularity.Window.LAST_HOUR);
         } else {
             statusLabel.setText("Showing all published posts");
         }
         
-        List<BlogPost> posts;
+        loadNextPage();
         
-        if (currentSearch != null) {
-            // Search mode takes priority
-            posts = app.getBlogController().searchPosts(currentSearch);
-            if (posts.isEmpty()) {
-                JLabel noResultsLabel = new JLabel("No results found for: " + currentSearch);
-                noResultsLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
-                postsPanel.add(noResultsLabel);
-                postsPanel.revalidate();
-                postsPanel.repaint();
-                return;
+        // Back to the top for the new view
+        SwingUtilities.invokeLater(() -> postsScrollPane.getVerticalScrollBar().setValue(0));
+    }
+    
+    /**
+     * Fetch the next page of the current view and append it to the posts panel
+     */
+    private void loadNextPage() {
+        if (loadingPage) {
+            return;
+        }
+        loadingPage = true;
+        
+        try {
+            if (currentSearch != null) {
+                // Search mode takes priority
+                loadNextSearchPage();
+            } else {
+                loadNextFeedPage();
             }
-        } else if (currentTag != null) {
+        } finally {
+            loadingPage = false;
+        }
+        
+        // A short first page may not fill the viewport, so check again once laid out
+        SwingUtilities.invokeLater(this::loadMoreIfNearEnd);
+    }
+    
+    /**
+     * Fetch the next page of the current feed (all, tag or user posts), newest
+     * first; trending posts come as a single page, most viewed first
+     */
+    private void loadNextFeedPage() {
+        boolean firstPage = nextCursor == null;
+        PostPage page;
+        
+        if (currentTag != null) {
             // Filter by tag
-            posts = app.getBlogController().getPostsByTag(currentTag);
+            page = app.getBlogController().getPostsByTag(currentTag, nextCursor, PAGE_SIZE);
         } else if (showingUserPosts) {
             // Show user's posts
-            posts = app.getBlogController().getCurrentUserPosts();
+            page = app.getBlogController().getCurrentUserPosts(nextCursor, PAGE_SIZE);
+        } else if (showingTrending) {
+            // Ranked by recent views from the analytics sketches, not the all-time view count
+            page = new PostPage(app.getBlogController().getTrendingPosts(PostPopularity.Window.LAST_HOUR, PAGE_SIZE), null);
         } else {
             // Show all published posts
-            posts = app.getBlogController().getAllPosts();
+            page = app.getBlogController().getAllPosts(nextCursor, PAGE_SIZE);
         }
         
-        if (posts.isEmpty()) {
+        postsPanel.remove(loadMoreButton);
+        
+        if (firstPage && page.getPosts().isEmpty()) {
             JLabel emptyLabel = new JLabel("No posts found");
             emptyLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
             postsPanel.add(emptyLabel);
         } else {
-            for (BlogPost post : posts) {
-                postsPanel.add(createPostPanel(post));
+            Map<Integer, PostStats> stats = app.getBlogController().getPostStats(
+                page.getPosts().stream().map(PostSummary::getId).collect(Collectors.toList()));
+            Map<Integer, JLabel> thumbnailLabels = new HashMap<>();
+            for (PostSummary post : page.getPosts()) {
+                postsPanel.add(createPostPanel(post, null, stats.get(post.getId()), thumbnailLabels));
                 postsPanel.add(Box.createRigidArea(new Dimension(0, 10)));
             }
+            loadThumbnails(thumbnailLabels);
+        }
+        
+        nextCursor = page.getNextCursor();
+        hasMorePosts = page.hasMore();
+        if (hasMorePosts) {
+            postsPanel.add(loadMoreButton);
         }
         
         postsPanel.revalidate();
         postsPanel.repaint();
     }
     
+    /**
+     * Fetch the next page of full-text search results, best matches first
+     */
+    private void loadNextSearchPage() {
+        List<SearchResult> results = app.getBlogController().searchPostsRanked(currentSearch, searchOffset, PAGE_SIZE);
+        
+        postsPanel.remove(loadMoreButton);
+        
+        if (searchOffset == 0 && results.isEmpty()) {
+            JLabel noResultsLabel = new JLabel("No results found for: " + currentSearch);
+            noResultsLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+            postsPanel.add(noResultsLabel);
+        } else {
+            Map<Integer, PostStats> stats = app.getBlogController().getPostStats(
+                results.stream().map(result -> result.getPost().getId()).collect(Collectors.toList()));
+            Map<Integer, JLabel> thumbnailLabels = new HashMap<>();
+            for (SearchResult result : results) {
+                postsPanel.add(createPostPanel(result.getPost(), result, stats.get(result.getPost().getId()),
+                    thumbnailLabels));
+                postsPanel.add(Box.createRigidArea(new Dimension(0, 10)));
+            }
+            loadThumbnails(thumbnailLabels);
+        }
+        
+        searchOffset += results.size();
+        hasMorePosts = results.size() == PAGE_SIZE;
+        if (hasMorePosts) {
+            postsPanel.add(loadMoreButton);
+        }
+        
+        postsPanel.revalidate();
+        postsPanel.repaint();
+    }
+    
+    /**
+     * Load the next page if the visible area is within LOAD_MORE_THRESHOLD of the end
+     */
+    private void loadMoreIfNearEnd() {
+        if (!hasMorePosts || loadingPage || !postsScrollPane.isShowing()) {
+            return;
+        }
+        
+        JScrollBar scrollBar = postsScrollPane.getVerticalScrollBar();
+        if (scrollBar.getVisibleAmount() <= 0) {
+            return; // Not laid out yet
+        }
+        
+        int distanceToEnd = scrollBar.getMaximum() - (scrollBar.getValue() + scrollBar.getVisibleAmount());
+        if (distanceToEnd <= LOAD_MORE_THRESHOLD) {
+            loadNextPage();
+        }
+    }
+    
+    /**
+     * Fill in a page's thumbnails in the background: the images not cached yet
+     * are read with one query and decoded off the EDT
+     * @param thumbnailLabels the empty thumbnail label of each card, by media id
+     */
+    private void loadThumbnails(Map<Integer, JLabel> thumbnailLabels) {
+        if (thumbnailLabels.isEmpty()) {
+            return;
+        }
+        
+        new SwingWorker<Map<Integer, BufferedImage>, Void>() {
+            @Override
+            protected Map<Integer, BufferedImage> doInBackground() {
+                return ThumbnailStore.getInstance().getThumbnails(thumbnailLabels.keySet(), THUMBNAIL_HEIGHT);
+            }
+            
+            @Override
+            protected void done() {
+                try {
+                    for (Map.Entry<Integer, BufferedImage> entry : get().entrySet()) {
+                        JLabel imageLabel = thumbnailLabels.get(entry.getKey());
+                        imageLabel.setIcon(new ImageIcon(entry.getValue()));
+                        imageLabel.setBorder(BorderFactory.createEmptyBorder(0, 0, 0, 10));
+                    }
+                    postsPanel.revalidate();
+                    postsPanel.repaint();
+                } catch (InterruptedException | ExecutionException e) {
+                    System.err.println("Error loading thumbnails: " + e.getMessage());
+                }
+            }
+        }.execute();
+    }
+    
     /**
      * Create a panel for displaying a blog post
+     * @param match the search hit for this post, or null outside search results
+     * @param stats current counts and the user's reaction, or null to use the summary's counts
+     * @param thumbnailLabels receives the card's thumbnail label, by media id, for loadThumbnails to fill in
      */
-    private JPanel createPostPanel(BlogPost post) {
+    private JPanel createPostPanel(PostSummary post, SearchResult match, PostStats stats,
+                                   Map<Integer, JLabel> thumbnailLabels) {
         JPanel postPanel = new JPanel(new BorderLayout());
         postPanel.setBorder(BorderFactory.createCompoundBorder(
                 BorderFactory.createLineBorder(Color.LIGHT_GRAY),
@@ -277,7 +474,10 @@ public class BlogPanel extends JPanel {
         // Post header with title and author info
         JPanel headerPanel = new JPanel(new BorderLayout());
         
-        JLabel titleLabel = new JLabel(post.getTitle());
+        // Search results show the title and a snippet with the matched terms in bold
+        JLabel titleLabel = match != null
+                ? new JLabel("<html>" + match.getTitleHtml() + "</html>")
+                : new JLabel(post.getTitle());
         titleLabel.setFont(new Font("Arial", Font.BOLD, 16));
         headerPanel.add(titleLabel, BorderLayout.WEST);
         
@@ -292,48 +492,28 @@ public class BlogPanel extends JPanel {
         // Post content
         JPanel contentPanel = new JPanel(new BorderLayout());
         
-        // Truncate content for preview
-        String contentPreview = post.getContent();
-        if (contentPreview.length() > 200) {
-            contentPreview = contentPreview.substring(0, 200) + "...";
+        if (match != null) {
+            JEditorPane snippetPane = new JEditorPane("text/html", "<html>" + match.getSnippetHtml() + "</html>");
+            snippetPane.putClientProperty(JEditorPane.HONOR_DISPLAY_PROPERTIES, Boolean.TRUE);
+            snippetPane.setEditable(false);
+            snippetPane.setBackground(postPanel.getBackground());
+            contentPanel.add(snippetPane, BorderLayout.CENTER);
+        } else {
+            JTextArea contentArea = new JTextArea(post.getPreview());
+            contentArea.setLineWrap(true);
+            contentArea.setWrapStyleWord(true);
+            contentArea.setEditable(false);
+            contentArea.setBackground(postPanel.getBackground());
+            contentArea.setRows(3);
+            
+            contentPanel.add(contentArea, BorderLayout.CENTER);
         }
         
-        JTextArea contentArea = new JTextArea(contentPreview);
-        contentArea.setLineWrap(true);
-        contentArea.setWrapStyleWord(true);
-        contentArea.setEditable(false);
-        contentArea.setBackground(postPanel.getBackground());
-        contentArea.setRows(3);
-        
-        contentPanel.add(contentArea, BorderLayout.CENTER);
-        
-        // Add thumbnail of first image if available
-        if (post.getMediaAttachments() != null && !post.getMediaAttachments().isEmpty()) {
-            for (Media media : post.getMediaAttachments()) {
-                if (media.isImage()) {
-                    try {
-                        app.getBlogController().getMediaById(media.getId()).ifPresent(fullMedia -> {
-                            try {
-                                BufferedImage img = ImageIO.read(new ByteArrayInputStream(fullMedia.getFileData()));
-                                if (img != null) {
-                                    int thumbHeight = 80;
-                                    int thumbWidth = (int)(img.getWidth() * ((double)thumbHeight / img.getHeight()));
-                                    
-                                    Image scaledImg = img.getScaledInstance(thumbWidth, thumbHeight, Image.SCALE_SMOOTH);
-                                    JLabel imageLabel = new JLabel(new ImageIcon(scaledImg));
-                                    imageLabel.setBorder(BorderFactory.createEmptyBorder(0, 0, 0, 10));
-                                    contentPanel.add(imageLabel, BorderLayout.WEST);
-                                }
-                            } catch (IOException e) {
-                                System.err.println("Error creating thumbnail: " + e.getMessage());
-                            }
-                        });
-                        break; // Only show the first image
-                    } catch (Exception e) {
-                        System.err.println("Error creating thumbnail: " + e.getMessage());
-                    }
-                }
-            }
+        // Placeholder for the thumbnail of the first image, filled in by loadThumbnails
+        if (post.hasThumbnail()) {
+            JLabel imageLabel = new JLabel();
+            contentPanel.add(imageLabel, BorderLayout.WEST);
+            thumbnailLabels.put(post.getThumbnailMediaId(), imageLabel);
         }
         
         postPanel.add(contentPanel, BorderLayout.CENTER);
@@ -344,27 +524,30 @@ public class BlogPanel extends JPanel {
         JPanel leftFooter = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
         leftFooter.setOpaque(false);
         
-        JLabel authorLabel = new JLabel("Author: " + post.getAuthor().getUsername());
+        JLabel authorLabel = new JLabel("Author: " + post.getAuthorName());
         authorLabel.setFont(new Font("Arial", Font.ITALIC, 12));
         leftFooter.add(authorLabel);
         
-        // Add like and comment counts
+        // Add like and comment counts, fetched for the whole page rather than queried per post
         leftFooter.add(Box.createHorizontalStrut(10));
-        int likeCount = app.getBlogController().getLikeCount(post.getId());
-        int dislikeCount = app.getBlogController().getDislikeCount(post.getId());
-        int commentCount = app.getBlogController().getCommentCount(post.getId());
-        
-        JLabel likesLabel = new JLabel("👍 " + likeCount);
+        JLabel likesLabel = new JLabel("👍 " + (stats != null ? stats.getLikeCount() : post.getLikeCount()));
         likesLabel.setFont(new Font("Arial", Font.PLAIN, 12));
         leftFooter.add(likesLabel);
         
         leftFooter.add(Box.createHorizontalStrut(5));
-        JLabel dislikesLabel = new JLabel("👎 " + dislikeCount);
+        JLabel dislikesLabel = new JLabel("👎 " + (stats != null ? stats.getDislikeCount() : post.getDislikeCount()));
         dislikesLabel.setFont(new Font("Arial", Font.PLAIN, 12));
         leftFooter.add(dislikesLabel);
         
+        // Show the current user's own reaction the same way PostView's buttons do
+        if (stats != null && stats.isLikedByUser()) {
+            likesLabel.setForeground(new Color(0, 150, 0));
+        } else if (stats != null && stats.isDislikedByUser()) {
+            dislikesLabel.setForeground(new Color(150, 0, 0));
+        }
+        
         leftFooter.add(Box.createHorizontalStrut(5));
-        JLabel commentsLabel = new JLabel("💬 " + commentCount);
+        JLabel commentsLabel = new JLabel("💬 " + (stats != null ? stats.getCommentCount() : post.getCommentCount()));
         commentsLabel.setFont(new Font("Arial", Font.PLAIN, 12));
         leftFooter.add(commentsLabel);
         
@@ -388,7 +571,7 @@ public class BlogPanel extends JPanel {
         
         // Add action buttons to bottom panel if the post belongs to current user or if user is admin
         if (app.getUserController().isLoggedIn() && 
-            (app.getUserController().getCurrentUser().getId() == post.getAuthor().getId() ||
+            (app.getUserController().getCurrentUser().getId() == post.getAuthorId() ||
              app.getUserController().getCurrentUser().isAdmin())) {
             
             JButton editButton = new JButton("Edit");
@@ -470,26 +653,21 @@ public class BlogPanel extends JPanel {
      * Update available tags in the tag filter
      */
     private void updateTags() {
-        tagFilterComboBox.removeAllItems();
-        tagFilterComboBox.addItem("All Tags");
-        
-        // Extract unique tags from all posts
-        List<BlogPost> allPosts = app.getBlogController().getAllPosts();
-        for (BlogPost post : allPosts) {
-            if (post.getTags() != null && !post.getTags().isEmpty()) {
-                for (String tag : post.getTagsArray()) {
-                    boolean exists = false;
-                    for (int i = 0; i < tagFilterComboBox.getItemCount(); i++) {
-                        if (tag.equals(tagFilterComboBox.getItemAt(i))) {
-                            exists = true;
-                            break;
-                        }
-                    }
-                    if (!exists) {
-                        tagFilterComboBox.addItem(tag);
-                    }
-                }
+        updatingTags = true;
+        try {
+            tagFilterComboBox.removeAllItems();
+            tagFilterComboBox.addItem("All Tags");
+            
+            // One aggregate query over post_tags, most used tags first
+            tagCounts = app.getBlogController().getTagCounts();
+            for (String tag : tagCounts.keySet()) {
+                tagFilterComboBox.addItem(tag);
             }
+            
+            // Keep the current filter selected
+            tagFilterComboBox.setSelectedItem(currentTag != null ? currentTag : "All Tags");
+        } finally {
+            updatingTags = false;
         }
     }
     
@@ -0,0 +1,95 @@
+package com.blog.view;
+
+import com.blog.model.TimeSeries;
+
+import javax.swing.*;
+import java.awt.*;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Bar chart of a {@link TimeSeries}: one bar per bucket, oldest on the left,
+ * with the peak count on the y axis and a few bucket times along the x axis
+ */
+public class EventsChartPanel extends JPanel {
+    private static final int MARGIN_LEFT = 50;
+    private static final int MARGIN_RIGHT = 15;
+    private static final int MARGIN_TOP = 15;
+    private static final int MARGIN_BOTTOM = 30;
+    private static final int X_LABELS = 6;
+    private static final Color BAR_COLOR = new Color(70, 130, 180);
+    
+    private TimeSeries series;
+    private SimpleDateFormat labelFormat = new SimpleDateFormat("HH:mm");
+    
+    public EventsChartPanel() {
+        setBackground(Color.WHITE);
+        setPreferredSize(new Dimension(600, 300));
+    }
+    
+    /**
+     * Show a series
+     * @param labelPattern SimpleDateFormat pattern for the bucket times on the x axis
+     */
+    public void setSeries(TimeSeries series, String labelPattern) {
+        this.series = series;
+        this.labelFormat = new SimpleDateFormat(labelPattern);
+        repaint();
+    }
+    
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        if (series == null || series.size() == 0) {
+            return;
+        }
+        
+        Graphics2D g2d = (Graphics2D) g.create();
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        FontMetrics metrics = g2d.getFontMetrics();
+        
+        int plotWidth = getWidth() - MARGIN_LEFT - MARGIN_RIGHT;
+        int plotHeight = getHeight() - MARGIN_TOP - MARGIN_BOTTOM;
+        if (plotWidth <= 0 || plotHeight <= 0) {
+            g2d.dispose();
+            return;
+        }
+        int baseline = MARGIN_TOP + plotHeight;
+        long max = Math.max(1, series.getMax());
+        
+        // Axes, with the peak and zero marked on the y axis
+        g2d.setColor(Color.GRAY);
+        g2d.drawLine(MARGIN_LEFT, MARGIN_TOP, MARGIN_LEFT, baseline);
+        g2d.drawLine(MARGIN_LEFT, baseline, MARGIN_LEFT + plotWidth, baseline);
+        String maxLabel = String.valueOf(max);
+        g2d.drawString(maxLabel, MARGIN_LEFT - metrics.stringWidth(maxLabel) - 5, MARGIN_TOP + metrics.getAscent());
+        g2d.drawString("0", MARGIN_LEFT - metrics.stringWidth("0") - 5, baseline);
+        
+        // Bars
+        double barWidth = (double) plotWidth / series.size();
+        g2d.setColor(BAR_COLOR);
+        for (int i = 0; i < series.size(); i++) {
+            long count = series.getCount(i);
+            if (count == 0) {
+                continue;
+            }
+            int height = (int) Math.max(1, Math.round((double) count / max * plotHeight));
+            int x = MARGIN_LEFT + (int) Math.round(i * barWidth);
+            int width = Math.max(1, (int) Math.round((i + 1) * barWidth) - (int) Math.round(i * barWidth) - 1);
+            g2d.fillRect(x, baseline - height, width, height);
+        }
+        
+        // Bucket times along the x axis
+        g2d.setColor(Color.DARK_GRAY);
+        int step = Math.max(1, series.size() / X_LABELS);
+        for (int i = 0; i < series.size(); i += step) {
+            String label = labelFormat.format(new Date(series.getBucketStart(i)));
+            int x = MARGIN_LEFT + (int) Math.round(i * barWidth);
+            if (x + metrics.stringWidth(label) <= getWidth()) {
+                g2d.drawString(label, x, baseline + metrics.getAscent() + 5);
+            }
+        }
+        
+        g2d.dispose();
+    }
+}
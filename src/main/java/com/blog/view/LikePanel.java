@@ -1,6 +1,7 @@
 package com.blog.view;
 
 import com.blog.controller.LikeController;
+import com.blog.model.ReactionState;
 import com.blog.model.User;
 
 import javax.swing.*;
@@ -88,32 +89,15 @@ public class LikePanel extends JPanel {
             return;
         }
         
+        // One transaction toggles the reaction and returns the new counts
         LikeController likeController = app.getBlogController().getLikeController();
-        Boolean userReaction = likeController.getUserReaction(postId);
-        boolean userLiked = userReaction != null && userReaction;
-        boolean userDisliked = userReaction != null && !userReaction;
-        
-        if (isLike) {
-            // Handle like button click
-            if (userLiked) {
-                // Remove like if already liked
-                likeController.removeReaction(postId);
-            } else {
-                // Add like
-                likeController.likePost(postId);
-            }
-        } else {
-            // Handle dislike button click
-            if (userDisliked) {
-                // Remove dislike if already disliked
-                likeController.removeReaction(postId);
-            } else {
-                // Add dislike
-                likeController.dislikePost(postId);
-            }
+        ReactionState state = likeController.toggleReaction(postId, isLike);
+        if (state == null) {
+            refreshLikeState();
+            return;
         }
         
-        refreshLikeState();
+        showLikeState(state.getLikeCount(), state.getDislikeCount(), state.isLiked(), state.isDisliked());
     }
     
     /**
@@ -123,19 +107,19 @@ public class LikePanel extends JPanel {
         LikeController likeController = app.getBlogController().getLikeController();
         
         // Update like/dislike counts
-        int likeCount = likeController.getLikeCount(postId);
-        int dislikeCount = likeController.getDislikeCount(postId);
+        int[] counts = likeController.getLikeCountsForPost(postId);
         
+        Boolean userReaction = likeController.getUserReaction(postId);
+        showLikeState(counts[0], counts[1], userReaction != null && userReaction, userReaction != null && !userReaction);
+    }
+    
+    private void showLikeState(int likeCount, int dislikeCount, boolean userLiked, boolean userDisliked) {
         likesCountLabel.setText(String.valueOf(likeCount));
         dislikesCountLabel.setText(String.valueOf(dislikeCount));
         
         // Update button appearance based on current user's state
         User currentUser = app.getUserController().getCurrentUser();
         if (currentUser != null) {
-            Boolean userReaction = likeController.getUserReaction(postId);
-            boolean userLiked = userReaction != null && userReaction;
-            boolean userDisliked = userReaction != null && !userReaction;
-            
             // Highlight the button if user has already liked/disliked
             likeButton.setForeground(userLiked ? new Color(0, 150, 0) : Color.BLACK);
             dislikeButton.setForeground(userDisliked ? new Color(150, 0, 0) : Color.BLACK);
@@ -13,6 +13,7 @@ public class LoginPanel extends JPanel {
     private JPasswordField passwordField;
     private JButton loginButton;
     private JButton registerButton;
+    private JButton adminPortalButton;
     private JLabel statusLabel;
 
     public LoginPanel(BlogApp app) {
@@ -88,7 +89,7 @@ public class LoginPanel extends JPanel {
         gbc.gridx = 0;
         gbc.gridy = 4;
         gbc.gridwidth = 3;
-        JButton adminPortalButton = new JButton("ADMIN PORTAL");
+        adminPortalButton = new JButton("ADMIN PORTAL");
         adminPortalButton.setBackground(new Color(50, 100, 150));
         adminPortalButton.setForeground(Color.WHITE);
         adminPortalButton.setFont(new Font("Arial", Font.BOLD, 14));
@@ -137,18 +138,23 @@ public class LoginPanel extends JPanel {
             return;
         }
         
-        System.out.println("Login attempt: Username=" + username + ", Password=" + password);
+        System.out.println("Login attempt: Username=" + username);
         DebugUtil.printUsers();
         
-        boolean success = app.login(username, password);
-        if (success) {
-            usernameField.setText("");
-            passwordField.setText("");
-            statusLabel.setText("");
-            app.showBlogPanel();
-        } else {
-            statusLabel.setText("Invalid username or password");
-        }
+        setBusy(true);
+        app.loginAsync(username, password, (success, error) -> {
+            setBusy(false);
+            if (error != null) {
+                statusLabel.setText("Too many sign-in attempts right now, please try again");
+            } else if (success) {
+                usernameField.setText("");
+                passwordField.setText("");
+                statusLabel.setText("");
+                app.showBlogPanel();
+            } else {
+                statusLabel.setText("Invalid username or password");
+            }
+        });
     }
 
     private void handleAdminLogin() {
@@ -162,14 +168,31 @@ public class LoginPanel extends JPanel {
         
         System.out.println("Admin login attempt: Username=" + username);
         
-        boolean success = app.login(username, password);
-        if (success && app.getUserController().isCurrentUserAdmin()) {
-            usernameField.setText("");
-            passwordField.setText("");
-            statusLabel.setText("");
-            app.showAdminPortal();
-        } else {
-            statusLabel.setText("Invalid admin credentials");
-        }
+        setBusy(true);
+        app.loginAsync(username, password, (success, error) -> {
+            setBusy(false);
+            if (error != null) {
+                statusLabel.setText("Too many sign-in attempts right now, please try again");
+            } else if (success && app.getUserController().isCurrentUserAdmin()) {
+                usernameField.setText("");
+                passwordField.setText("");
+                statusLabel.setText("");
+                app.showAdminPortal();
+            } else {
+                statusLabel.setText("Invalid admin credentials");
+            }
+        });
+    }
+    
+    /**
+     * Disable the form while a login is being verified
+     */
+    private void setBusy(boolean busy) {
+        loginButton.setEnabled(!busy);
+        adminPortalButton.setEnabled(!busy);
+        usernameField.setEnabled(!busy);
+        passwordField.setEnabled(!busy);
+        statusLabel.setText(busy ? "Signing in..." : " ");
+        setCursor(busy ? Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR) : Cursor.getDefaultCursor());
     }
 }
\ No newline at end of file
@@ -163,9 +163,9 @@ public class PostView extends BasePanel {
             JPanel likeSection = new JPanel(new FlowLayout(FlowLayout.LEFT));
             likeSection.setAlignmentX(Component.LEFT_ALIGNMENT);
             
-            // Get current counts from controllers
-            int likeCount = app.getBlogController().getLikeCount(postId);
-            int dislikeCount = app.getBlogController().getDislikeCount(postId);
+            // Counts come with the post's row
+            int likeCount = post.getLikeCount();
+            int dislikeCount = post.getDislikeCount();
             
             JButton likeButton = new JButton("👍 Like (" + likeCount + ")");
             likeButton.addActionListener(e -> {
@@ -185,7 +185,7 @@ public class PostView extends BasePanel {
             contentPanel.add(Box.createVerticalStrut(20));
             
             // YouTube-style Comment section
-            int commentCount = app.getBlogController().getCommentCount(postId);
+            int commentCount = post.getCommentCount();
             JLabel commentsSectionLabel = new JLabel("Comments (" + commentCount + ")");
             commentsSectionLabel.setFont(new Font("Arial", Font.BOLD, 18));
             commentsSectionLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
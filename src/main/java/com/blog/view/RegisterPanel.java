@@ -1,8 +1,11 @@
 package com.blog.view;
 
+import com.blog.model.Availability;
 import com.blog.util.DebugUtil;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.*;
 import java.awt.event.ActionEvent;
@@ -25,6 +28,9 @@ public class RegisterPanel extends JPanel {
     private JButton registerButton;
     private JButton cancelButton;
     private JLabel statusLabel;
+    private JLabel usernameHint;
+    private JLabel emailHint;
+    private Timer availabilityTimer;
     private byte[] profileImageData;
     private File selectedImageFile;
 
@@ -64,6 +70,12 @@ public class RegisterPanel extends JPanel {
         usernameField = new JTextField(20);
         formPanel.add(usernameField, gbc);
         
+        gbc.gridx = 3;
+        gbc.gridy = 0;
+        gbc.gridwidth = 1;
+        usernameHint = createHintLabel();
+        formPanel.add(usernameHint, gbc);
+        
         // Password
         gbc.gridx = 0;
         gbc.gridy = 1;
@@ -103,6 +115,12 @@ public class RegisterPanel extends JPanel {
         emailField = new JTextField(20);
         formPanel.add(emailField, gbc);
         
+        gbc.gridx = 3;
+        gbc.gridy = 3;
+        gbc.gridwidth = 1;
+        emailHint = createHintLabel();
+        formPanel.add(emailHint, gbc);
+        
         // Full Name
         gbc.gridx = 0;
         gbc.gridy = 4;
@@ -229,6 +247,67 @@ public class RegisterPanel extends JPanel {
                 app.showLoginPanel();
             }
         });
+        
+        // Check availability once typing pauses, not on every keystroke
+        availabilityTimer = new Timer(250, e -> updateAvailabilityHints());
+        availabilityTimer.setRepeats(false);
+        DocumentListener availabilityListener = new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                availabilityTimer.restart();
+            }
+            
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                availabilityTimer.restart();
+            }
+            
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                availabilityTimer.restart();
+            }
+        };
+        usernameField.getDocument().addDocumentListener(availabilityListener);
+        emailField.getDocument().addDocumentListener(availabilityListener);
+    }
+    
+    private JLabel createHintLabel() {
+        JLabel hint = new JLabel(" ");
+        hint.setPreferredSize(new Dimension(110, hint.getPreferredSize().height));
+        return hint;
+    }
+    
+    /**
+     * Show whether the typed username and email are free. Names never
+     * registered are answered from memory; the rest take one indexed query.
+     */
+    private void updateAvailabilityHints() {
+        String username = usernameField.getText();
+        String email = emailField.getText();
+        boolean checkUsername = !username.trim().isEmpty();
+        boolean checkEmail = email.contains("@") && email.contains(".");
+        if (!checkUsername && !checkEmail) {
+            showHint(usernameHint, false, false);
+            showHint(emailHint, false, false);
+            return;
+        }
+        
+        Availability availability = app.getUserController().checkAvailability(
+            checkUsername ? username : null, checkEmail ? email : null);
+        showHint(usernameHint, checkUsername, availability.isUsernameTaken());
+        showHint(emailHint, checkEmail, availability.isEmailTaken());
+    }
+    
+    private void showHint(JLabel hint, boolean checked, boolean taken) {
+        if (!checked) {
+            hint.setText(" ");
+        } else if (taken) {
+            hint.setText("Already taken");
+            hint.setForeground(Color.RED);
+        } else {
+            hint.setText("Available");
+            hint.setForeground(new Color(0, 128, 0));
+        }
     }
     
     private void selectProfilePicture() {
@@ -311,5 +390,8 @@ public class RegisterPanel extends JPanel {
         selectedImageFile = null;
         statusLabel.setText("");
         roleComboBox.setSelectedIndex(0);
+        availabilityTimer.stop();
+        usernameHint.setText(" ");
+        emailHint.setText(" ");
     }
 } 
\ No newline at end of file
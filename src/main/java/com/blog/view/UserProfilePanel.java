@@ -1,11 +1,15 @@
 package com.blog.view;
 
+import com.blog.model.PostStats;
+import com.blog.model.PostSummary;
 import com.blog.model.User;
+import com.blog.service.AvatarStore;
 
 import javax.imageio.ImageIO;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.filechooser.FileNameExtensionFilter;
+import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
@@ -15,6 +19,10 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
 
 public class UserProfilePanel extends JPanel {
     private final BlogApp app;
@@ -34,6 +42,10 @@ public class UserProfilePanel extends JPanel {
     
     private static final int IMAGE_WIDTH = 150;
     private static final int IMAGE_HEIGHT = 150;
+    
+    // Most recent posts listed on the My Posts tab
+    private static final int MY_POSTS_LIMIT = 50;
+    private DefaultTableModel myPostsTableModel;
 
     private JLabel roleDisplayLabel;
 
@@ -77,6 +89,10 @@ public class UserProfilePanel extends JPanel {
         JPanel passwordTab = createPasswordTab();
         tabbedPane.addTab("Change Password", passwordTab);
         
+        // My posts tab
+        JPanel myPostsTab = createMyPostsTab();
+        tabbedPane.addTab("My Posts", myPostsTab);
+        
         add(tabbedPane, BorderLayout.CENTER);
     }
     
@@ -203,6 +219,49 @@ public class UserProfilePanel extends JPanel {
         return mainPanel;
     }
     
+    private JPanel createMyPostsTab() {
+        JPanel mainPanel = new JPanel(new BorderLayout());
+        mainPanel.setBorder(new EmptyBorder(20, 20, 20, 20));
+        
+        String[] columns = {"Title", "Status", "Views", "Likes", "Dislikes", "Comments"};
+        myPostsTableModel = new DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        
+        JTable myPostsTable = new JTable(myPostsTableModel);
+        mainPanel.add(new JScrollPane(myPostsTable), BorderLayout.CENTER);
+        
+        return mainPanel;
+    }
+    
+    /**
+     * Fill the My Posts table with the user's most recent posts and their
+     * current counts, fetched for all rows in one query
+     */
+    private void loadMyPosts() {
+        myPostsTableModel.setRowCount(0);
+        
+        List<PostSummary> posts = app.getBlogController().getCurrentUserPosts(null, MY_POSTS_LIMIT).getPosts();
+        Map<Integer, PostStats> stats = app.getBlogController().getPostStats(
+            posts.stream().map(PostSummary::getId).collect(Collectors.toList()));
+        
+        for (PostSummary post : posts) {
+            PostStats postStats = stats.get(post.getId());
+            Object[] row = {
+                post.getTitle(),
+                post.getStatus(),
+                post.getViewCount(),
+                postStats != null ? postStats.getLikeCount() : post.getLikeCount(),
+                postStats != null ? postStats.getDislikeCount() : post.getDislikeCount(),
+                postStats != null ? postStats.getCommentCount() : post.getCommentCount()
+            };
+            myPostsTableModel.addRow(row);
+        }
+    }
+    
     private JPanel createPasswordTab() {
         JPanel mainPanel = new JPanel(new BorderLayout());
         mainPanel.setBorder(new EmptyBorder(20, 20, 20, 20));
@@ -296,13 +355,18 @@ public class UserProfilePanel extends JPanel {
             roleDisplayLabel.setForeground(Color.BLUE); // Blue for reader
         }
         
-        // Load profile image
-        if (user.getProfileImageData() != null) {
-            displayProfileImage(user.getProfileImageData());
-            imageData = user.getProfileImageData();
+        // Load profile image; imageData only holds a newly chosen image to upload
+        imageData = null;
+        int size = Math.min(IMAGE_WIDTH, IMAGE_HEIGHT);
+        Optional<BufferedImage> avatar = AvatarStore.getInstance().getAvatar(user.getId(), size);
+        if (avatar.isPresent()) {
+            profileImage.setText(null);
+            profileImage.setIcon(new ImageIcon(avatar.get()));
         } else {
             displayDefaultImage();
         }
+        
+        loadMyPosts();
     }
     
     private void displayProfileImage(byte[] data) {
@@ -314,19 +378,10 @@ public class UserProfilePanel extends JPanel {
         try {
             BufferedImage img = ImageIO.read(new ByteArrayInputStream(data));
             if (img != null) {
-                // Create a circular image for profile picture
+                // Preview of a newly chosen image, drawn the same way as stored avatars
                 int size = Math.min(IMAGE_WIDTH, IMAGE_HEIGHT);
-                BufferedImage circularImage = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
-                Graphics2D g2 = circularImage.createGraphics();
-                g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-                g2.setClip(new java.awt.geom.Ellipse2D.Float(0, 0, size, size));
-                
-                // Draw the image scaled to fit the circle
-                Image scaledImg = img.getScaledInstance(size, size, Image.SCALE_SMOOTH);
-                g2.drawImage(scaledImg, 0, 0, null);
-                g2.dispose();
-                
-                profileImage.setIcon(new ImageIcon(circularImage));
+                profileImage.setText(null);
+                profileImage.setIcon(new ImageIcon(AvatarStore.toCircle(img, size)));
             }
         } catch (IOException e) {
             System.err.println("Error displaying profile image: " + e.getMessage());